@@ -18,6 +18,7 @@ package org.jitsi.impl.configuration;
 import java.beans.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 
 import org.jitsi.impl.configuration.xml.*;
@@ -91,6 +92,17 @@ public class ConfigurationServiceImpl
      */
     public static String PASSWORD_SYS_PROPS;
 
+    /**
+     * The name of the <tt>long</tt> property which specifies the number of
+     * milliseconds by which the storing of the configuration file after a
+     * property change is to be delayed so that a burst of changes is coalesced
+     * into a single write performed on a background thread. The default value
+     * is <tt>0</tt> which means that the configuration file is written
+     * synchronously on the thread which changes the property.
+     */
+    public static final String PNAME_STORE_DELAY
+        = "org.jitsi.impl.configuration.STORE_DELAY";
+
     /**
      * A reference to the currently used configuration file.
      */
@@ -143,6 +155,41 @@ public class ConfigurationServiceImpl
      */
     private ConfigurationStore store;
 
+    /**
+     * The number of milliseconds by which the storing of the configuration
+     * file after a property change is delayed. If not positive, the
+     * configuration file is stored synchronously.
+     *
+     * @see #PNAME_STORE_DELAY
+     */
+    private long storeDelay = 0;
+
+    /**
+     * The <tt>ScheduledExecutorService</tt> which performs the delayed
+     * (write-behind) storing of the configuration file. Initialized upon the
+     * first property change if {@link #storeDelay} is positive.
+     */
+    private ScheduledExecutorService storeExecutor;
+
+    /**
+     * The scheduled but not yet executed storing of the configuration file
+     * or <tt>null</tt> if there are no property changes pending to be stored.
+     */
+    private ScheduledFuture<?> pendingStore;
+
+    /**
+     * The <tt>Thread</tt> registered as a shutdown hook in order to store the
+     * property changes pending in {@link #storeExecutor} upon exit.
+     */
+    private Thread storeShutdownHook;
+
+    /**
+     * The <tt>Object</tt> which synchronizes the access to
+     * {@link #storeExecutor}, {@link #storeShutdownHook} and
+     * {@link #pendingStore}.
+     */
+    private final Object storeSyncRoot = new Object();
+
     public ConfigurationServiceImpl()
     {
         /*
@@ -159,6 +206,8 @@ public class ConfigurationServiceImpl
             preloadSystemPropertyFiles();
             loadDefaultProperties();
             reloadConfiguration();
+
+            storeDelay = getLong(PNAME_STORE_DELAY, 0);
         }
         catch (IOException ex)
         {
@@ -228,7 +277,7 @@ public class ConfigurationServiceImpl
 
         try
         {
-            storeConfiguration();
+            storeConfigurationAfterChange();
         }
         catch (IOException ex)
         {
@@ -277,7 +326,7 @@ public class ConfigurationServiceImpl
 
         try
         {
-            storeConfiguration();
+            storeConfigurationAfterChange();
         }
         catch (IOException ex)
         {
@@ -376,7 +425,7 @@ public class ConfigurationServiceImpl
 
         try
         {
-            storeConfiguration();
+            storeConfigurationAfterChange();
         }
         catch (IOException ex)
         {
@@ -768,9 +817,198 @@ public class ConfigurationServiceImpl
     public synchronized void storeConfiguration()
         throws IOException
     {
+        // Any pending write-behind is made redundant by this store.
+        cancelPendingStore();
+
         storeConfiguration(getConfigurationFile());
     }
 
+    /**
+     * Stores the property changes which are pending to be written into the
+     * configuration file by the delayed (write-behind) storing, if any. Does
+     * nothing if there are no such changes.
+     *
+     * @throws IOException if there was a problem writing the configuration
+     * file
+     * @see #PNAME_STORE_DELAY
+     */
+    public void flush()
+        throws IOException
+    {
+        if (cancelPendingStore())
+            storeConfiguration();
+    }
+
+    /**
+     * Cancels the delayed (write-behind) storing of the configuration file,
+     * if any.
+     *
+     * @return <tt>true</tt> if there was a pending storing of the
+     * configuration file; otherwise, <tt>false</tt>
+     */
+    private boolean cancelPendingStore()
+    {
+        synchronized (storeSyncRoot)
+        {
+            if (pendingStore == null)
+                return false;
+
+            pendingStore.cancel(false);
+            pendingStore = null;
+            return true;
+        }
+    }
+
+    /**
+     * Stores the configuration file after a property change. If
+     * {@link #PNAME_STORE_DELAY} specifies a positive delay, schedules a
+     * single storing of the configuration file on a background thread which
+     * coalesces all property changes made until it executes. Otherwise, stores
+     * the configuration file on the calling thread.
+     *
+     * @throws IOException if the configuration file is stored synchronously
+     * and there was a problem writing it
+     */
+    private void storeConfigurationAfterChange()
+        throws IOException
+    {
+        if (storeDelay <= 0)
+        {
+            storeConfiguration();
+            return;
+        }
+
+        synchronized (storeSyncRoot)
+        {
+            // The change will be written by the already scheduled storing.
+            if (pendingStore != null)
+                return;
+
+            if (storeExecutor == null)
+            {
+                ScheduledThreadPoolExecutor storeExecutor
+                    = new ScheduledThreadPoolExecutor(
+                            1,
+                            new ThreadFactory()
+                            {
+                                @Override
+                                public Thread newThread(Runnable r)
+                                {
+                                    Thread t
+                                        = new Thread(
+                                                r,
+                                                ConfigurationServiceImpl.class
+                                                        .getName()
+                                                    + ".storeExecutor");
+
+                                    t.setDaemon(true);
+                                    return t;
+                                }
+                            });
+
+                /*
+                 * The delayed storing which is pending upon stop() is
+                 * performed by stop() itself so that the thread terminates
+                 * right away.
+                 */
+                storeExecutor
+                    .setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                this.storeExecutor = storeExecutor;
+
+                /*
+                 * The executor's thread is a daemon one so make sure that the
+                 * pending property changes are not lost upon exit.
+                 */
+                storeShutdownHook
+                    = new Thread(
+                            ConfigurationServiceImpl.class.getName() + ".flush")
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                flush();
+                            }
+                            catch (IOException ioe)
+                            {
+                                logger.error(
+                                        "Failed to store configuration upon"
+                                            + " shutdown",
+                                        ioe);
+                            }
+                        }
+                    };
+                Runtime.getRuntime().addShutdownHook(storeShutdownHook);
+            }
+
+            pendingStore
+                = storeExecutor.schedule(
+                        new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                try
+                                {
+                                    flush();
+                                }
+                                catch (IOException ioe)
+                                {
+                                    logger.error(
+                                            "Failed to store configuration"
+                                                + " after property changes",
+                                            ioe);
+                                }
+                            }
+                        },
+                        storeDelay,
+                        TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops this <tt>ConfigurationService</tt> i.e. stores the property changes
+     * which are pending to be written into the configuration file by the
+     * delayed (write-behind) storing, if any, and shuts down the background
+     * thread which performs the delayed storing. A subsequent property change
+     * starts a new background thread if necessary.
+     */
+    public void stop()
+    {
+        ScheduledExecutorService storeExecutor;
+        Thread storeShutdownHook;
+
+        synchronized (storeSyncRoot)
+        {
+            storeExecutor = this.storeExecutor;
+            this.storeExecutor = null;
+            storeShutdownHook = this.storeShutdownHook;
+            this.storeShutdownHook = null;
+        }
+        if (storeExecutor == null)
+            return;
+
+        // The delayed storing which is pending, if any, is performed below.
+        storeExecutor.shutdown();
+        try
+        {
+            flush();
+        }
+        catch (IOException ioe)
+        {
+            logger.error("Failed to store configuration upon stop", ioe);
+        }
+        try
+        {
+            Runtime.getRuntime().removeShutdownHook(storeShutdownHook);
+        }
+        catch (IllegalStateException ise)
+        {
+            // The virtual machine is already shutting down.
+        }
+    }
+
     /**
      * Stores local properties in the specified configuration file.
      *
@@ -1522,6 +1760,8 @@ public class ConfigurationServiceImpl
      */
     public void purgeStoredConfiguration()
     {
+        cancelPendingStore();
+
         if (configurationFile != null)
         {
             configurationFile.delete();
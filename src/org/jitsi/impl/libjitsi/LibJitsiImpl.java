@@ -17,6 +17,7 @@ package org.jitsi.impl.libjitsi;
 
 import java.util.*;
 
+import org.jitsi.impl.configuration.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
@@ -63,6 +64,26 @@ public class LibJitsiImpl
         }
     }
 
+    /**
+     * Stops the service instances associated with this implementation of the
+     * <tt>libjitsi</tt> library which acquire resources such as threads.
+     */
+    @Override
+    protected void doStop()
+    {
+        List<Object> services;
+
+        synchronized (this.services)
+        {
+            services = new ArrayList<Object>(this.services.values());
+        }
+        for (Object service : services)
+        {
+            if (service instanceof ConfigurationServiceImpl)
+                ((ConfigurationServiceImpl) service).stop();
+        }
+    }
+
     /**
      * Gets a service of a specific type associated with this implementation of
      * the <tt>libjitsi</tt> library.
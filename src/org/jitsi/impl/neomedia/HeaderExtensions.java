@@ -0,0 +1,730 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.util.*;
+
+/**
+ * Indexes the RTP header extensions of a <tt>RawPacket</tt> and edits them.
+ * The one-byte and the two-byte header extension forms of RFC 8285 are parsed
+ * in a single pass when the index is first used and the index is kept with the
+ * packet until the packet is modified through its setters. Any number of
+ * extensions may be added, replaced and removed with {@link #put}
+ * and {@link #remove} and the edits take effect with a single rewrite of the
+ * packet by {@link #apply()}, in place unless the buffer of the packet is too
+ * small.
+ * <p>
+ * An instance is obtained through {@link RawPacket#getHeaderExtensions()}. As
+ * <tt>RawPacket</tt>, it is not thread-safe.
+ * </p>
+ */
+public class HeaderExtensions
+{
+    /**
+     * The maximum ID of an extension in the one-byte header form.
+     */
+    private static final int MAX_ONE_BYTE_ID = 14;
+
+    /**
+     * The maximum length of the data of an extension in the one-byte header
+     * form.
+     */
+    private static final int MAX_ONE_BYTE_LENGTH = 16;
+
+    /**
+     * The "defined by profile" value of the one-byte header form.
+     */
+    public static final int ONE_BYTE_PROFILE = 0xBEDE;
+
+    /**
+     * The "defined by profile" value of the two-byte header form without any
+     * "appbits".
+     */
+    public static final int TWO_BYTE_PROFILE = 0x1000;
+
+    /**
+     * The offset in the buffer of the packet at which the data of the header
+     * extension block begins or <tt>-1</tt> if the packet has no header
+     * extension.
+     */
+    private int blockOffset = -1;
+
+    /**
+     * The length in bytes of the data of the header extension block.
+     */
+    private int blockLength;
+
+    /**
+     * The buffer of the packet at the time it was indexed.
+     */
+    private byte[] buffer;
+
+    /**
+     * The number of indexed extensions.
+     */
+    private int count;
+
+    /**
+     * The number of pending edits.
+     */
+    private int editCount;
+
+    /**
+     * The data of the pending edits or <tt>null</tt> for removals.
+     */
+    private byte[][] editData = new byte[4][];
+
+    /**
+     * The extension IDs of the pending edits.
+     */
+    private int[] editIDs = new int[4];
+
+    /**
+     * The lengths of the data of the pending edits.
+     */
+    private int[] editLengths = new int[4];
+
+    /**
+     * The offsets of the data of the pending edits.
+     */
+    private int[] editOffsets = new int[4];
+
+    /**
+     * The IDs of the indexed extensions in order of appearance.
+     */
+    private int[] ids = new int[8];
+
+    /**
+     * The indicator which determines whether the index is up to date.
+     */
+    private boolean indexed;
+
+    /**
+     * The lengths of the data of the indexed extensions.
+     */
+    private int[] lengths = new int[8];
+
+    /**
+     * The offset of the packet at the time it was indexed.
+     */
+    private int offset;
+
+    /**
+     * The offsets in the buffer of the packet of the data of the indexed
+     * extensions.
+     */
+    private int[] offsets = new int[8];
+
+    /**
+     * The <tt>RawPacket</tt> whose header extensions are indexed and edited
+     * by this instance.
+     */
+    private final RawPacket pkt;
+
+    /**
+     * The "defined by profile" field of the header extension of the packet or
+     * <tt>0</tt> if the packet has no header extension.
+     */
+    private int profile;
+
+    /**
+     * The buffer in which the header extension block is laid out by
+     * {@link #rewrite()} before it is written into the packet.
+     */
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Initializes a new <tt>HeaderExtensions</tt> instance which is to index
+     * and edit the header extensions of a specific <tt>RawPacket</tt>.
+     *
+     * @param pkt the <tt>RawPacket</tt> whose header extensions are to be
+     * indexed and edited by the new instance
+     */
+    HeaderExtensions(RawPacket pkt)
+    {
+        this.pkt = pkt;
+    }
+
+    /**
+     * Applies the edits requested through {@link #put} and {@link #remove}
+     * to the packet. If every edit replaces the data of an existing extension
+     * with data of the same length, the data is overwritten. Otherwise, the
+     * header extension block is rewritten once and the payload is moved at
+     * most once.
+     *
+     * @throws IllegalStateException if the packet has a header extension
+     * which is in neither of the RFC 8285 forms
+     */
+    public void apply()
+    {
+        if (editCount == 0)
+            return;
+
+        try
+        {
+            index();
+
+            if (isOverwrite())
+            {
+                for (int e = 0; e < editCount; e++)
+                {
+                    byte[] data = editData[e];
+
+                    if (data != null)
+                    {
+                        System.arraycopy(
+                                data, editOffsets[e],
+                                pkt.getBuffer(), offsets[indexOf(editIDs[e])],
+                                editLengths[e]);
+                    }
+                }
+            }
+            else
+            {
+                rewrite();
+            }
+        }
+        finally
+        {
+            Arrays.fill(editData, 0, editCount, null);
+            editCount = 0;
+        }
+    }
+
+    /**
+     * Appends an extension to the index.
+     *
+     * @param id the ID of the extension
+     * @param off the offset of the data of the extension
+     * @param len the length of the data of the extension
+     */
+    private void append(int id, int off, int len)
+    {
+        if (count == ids.length)
+        {
+            ids = Arrays.copyOf(ids, 2 * count);
+            offsets = Arrays.copyOf(offsets, 2 * count);
+            lengths = Arrays.copyOf(lengths, 2 * count);
+        }
+        ids[count] = id;
+        offsets[count] = off;
+        lengths[count] = len;
+        count++;
+    }
+
+    /**
+     * Records a pending edit, replacing any pending edit of the extension with
+     * the same ID.
+     *
+     * @param id the ID of the extension
+     * @param data the data of the extension or <tt>null</tt> to remove it
+     * @param off the offset of the data in <tt>data</tt>
+     * @param len the length of the data
+     */
+    private void edit(int id, byte[] data, int off, int len)
+    {
+        int e = editIndexOf(id);
+
+        if (e == -1)
+        {
+            if (editCount == editIDs.length)
+            {
+                editIDs = Arrays.copyOf(editIDs, 2 * editCount);
+                editData = Arrays.copyOf(editData, 2 * editCount);
+                editOffsets = Arrays.copyOf(editOffsets, 2 * editCount);
+                editLengths = Arrays.copyOf(editLengths, 2 * editCount);
+            }
+            e = editCount++;
+            editIDs[e] = id;
+        }
+        editData[e] = data;
+        editOffsets[e] = off;
+        editLengths[e] = len;
+    }
+
+    /**
+     * Gets the index of the pending edit of the extension with a specific ID.
+     *
+     * @param id the ID of the extension
+     * @return the index of the pending edit of the extension with the
+     * specified <tt>id</tt> or <tt>-1</tt> if there is no such edit
+     */
+    private int editIndexOf(int id)
+    {
+        for (int e = 0; e < editCount; e++)
+        {
+            if (editIDs[e] == id)
+                return e;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the ID of the extension at a specific index.
+     *
+     * @param index the index of the extension
+     * @return the ID of the extension at the specified <tt>index</tt>
+     */
+    public int getID(int index)
+    {
+        index();
+        return ids[index];
+    }
+
+    /**
+     * Gets the length of the data of the extension at a specific index.
+     *
+     * @param index the index of the extension
+     * @return the length of the data of the extension at the specified
+     * <tt>index</tt>
+     */
+    public int getLength(int index)
+    {
+        index();
+        return lengths[index];
+    }
+
+    /**
+     * Gets the offset in the buffer of the packet at which the data of the
+     * extension at a specific index begins.
+     *
+     * @param index the index of the extension
+     * @return the offset in the buffer of the packet at which the data of the
+     * extension at the specified <tt>index</tt> begins
+     */
+    public int getOffset(int index)
+    {
+        index();
+        return offsets[index];
+    }
+
+    /**
+     * Gets the "defined by profile" field of the header extension of the
+     * packet.
+     *
+     * @return the "defined by profile" field of the header extension of the
+     * packet or <tt>0</tt> if the packet has no header extension
+     */
+    public int getProfile()
+    {
+        index();
+        return profile;
+    }
+
+    /**
+     * Indexes the header extensions of the packet unless the index is up to
+     * date.
+     */
+    private void index()
+    {
+        byte[] buf = pkt.getBuffer();
+        int off = pkt.getOffset();
+
+        if (indexed && (buffer == buf) && (offset == off))
+            return;
+
+        indexed = true;
+        buffer = buf;
+        offset = off;
+        count = 0;
+        profile = 0;
+        blockOffset = -1;
+        blockLength = 0;
+
+        int end = off + pkt.getLength();
+
+        if ((buf == null)
+                || (end - off < RawPacket.FIXED_HEADER_SIZE)
+                || ((buf[off] & 0x10) == 0))
+        {
+            return;
+        }
+
+        int extHdr = off + RawPacket.FIXED_HEADER_SIZE + (buf[off] & 0x0F) * 4;
+
+        if (extHdr + RawPacket.EXT_HEADER_SIZE > end)
+            return;
+
+        profile = ((buf[extHdr] & 0xFF) << 8) | (buf[extHdr + 1] & 0xFF);
+        blockOffset = extHdr + RawPacket.EXT_HEADER_SIZE;
+        blockLength
+            = 4 * (((buf[extHdr + 2] & 0xFF) << 8) | (buf[extHdr + 3] & 0xFF));
+
+        boolean oneByte = (profile == ONE_BYTE_PROFILE);
+
+        if (!oneByte && !isTwoByteProfile(profile))
+            return;
+
+        int blockEnd = Math.min(blockOffset + blockLength, end);
+
+        for (int i = blockOffset; i < blockEnd;)
+        {
+            int id;
+            int len;
+
+            if (oneByte)
+            {
+                //      0
+                //      0 1 2 3 4 5 6 7
+                //      +-+-+-+-+-+-+-+-+
+                //      |  ID   |  len  |
+                //      +-+-+-+-+-+-+-+-+
+                id = (buf[i] & 0xF0) >> 4;
+                if (id == 0) // padding
+                {
+                    i++;
+                    continue;
+                }
+                if (id == 15) // reserved, stop parsing
+                    break;
+                len = (buf[i] & 0x0F) + 1;
+                i++;
+            }
+            else
+            {
+                //       0                   1
+                //       0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5
+                //      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+                //      |       ID      |     length    |
+                //      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+                id = buf[i] & 0xFF;
+                if (id == 0) // padding
+                {
+                    i++;
+                    continue;
+                }
+                if (i + 1 >= blockEnd)
+                    break;
+                len = buf[i + 1] & 0xFF;
+                i += 2;
+            }
+            if (i + len > blockEnd)
+                break;
+
+            append(id, i, len);
+            i += len;
+        }
+    }
+
+    /**
+     * Gets the index of the extension with a specific ID.
+     *
+     * @param id the ID of the extension
+     * @return the index of the extension with the specified <tt>id</tt> or
+     * <tt>-1</tt> if the packet does not contain such an extension
+     */
+    public int indexOf(int id)
+    {
+        index();
+        for (int i = 0; i < count; i++)
+        {
+            if (ids[i] == id)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Marks the index out of date so that it is rebuilt when it is next used.
+     */
+    void invalidate()
+    {
+        indexed = false;
+    }
+
+    /**
+     * Determines whether the pending edits may be applied by overwriting the
+     * data of existing extensions.
+     *
+     * @return <tt>true</tt> if every pending edit replaces the data of an
+     * existing extension with data of the same length or removes an extension
+     * which does not exist; otherwise, <tt>false</tt>
+     */
+    private boolean isOverwrite()
+    {
+        for (int e = 0; e < editCount; e++)
+        {
+            int i = indexOf(editIDs[e]);
+
+            if (editData[e] == null)
+            {
+                if (i != -1)
+                    return false;
+            }
+            else if ((i == -1) || (lengths[i] != editLengths[e]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a specific "defined by profile" value denotes the
+     * two-byte header form.
+     *
+     * @param profile the "defined by profile" value
+     * @return <tt>true</tt> if <tt>profile</tt> denotes the two-byte header
+     * form; otherwise, <tt>false</tt>
+     */
+    private static boolean isTwoByteProfile(int profile)
+    {
+        return (profile & 0xFFF0) == TWO_BYTE_PROFILE;
+    }
+
+    /**
+     * Requests that the packet carries an extension with a specific ID and
+     * data. The data of an existing extension with the specified ID is
+     * replaced, otherwise the extension is appended. The data is not copied
+     * until {@link #apply()} is invoked.
+     *
+     * @param id the ID of the extension in the range <tt>[1, 255]</tt>
+     * @param data the buffer which contains the data of the extension
+     * @param off the offset in <tt>data</tt> at which the data of the
+     * extension begins
+     * @param len the length of the data of the extension in the range
+     * <tt>[0, 255]</tt>
+     * @return this <tt>HeaderExtensions</tt> so that edits may be chained
+     * @throws IllegalArgumentException if <tt>id</tt> or <tt>len</tt> is out
+     * of range
+     */
+    public HeaderExtensions put(int id, byte[] data, int off, int len)
+    {
+        if ((id < 1) || (id > 255))
+            throw new IllegalArgumentException("id " + id);
+        if ((len < 0) || (len > 255))
+            throw new IllegalArgumentException("len " + len);
+
+        edit(id, data, off, len);
+        return this;
+    }
+
+    /**
+     * Requests that the packet does not carry an extension with a specific
+     * ID.
+     *
+     * @param id the ID of the extension to remove
+     * @return this <tt>HeaderExtensions</tt> so that edits may be chained
+     */
+    public HeaderExtensions remove(int id)
+    {
+        edit(id, null, 0, 0);
+        return this;
+    }
+
+    /**
+     * Rewrites the header extension block of the packet with the pending
+     * edits applied. The new block is laid out in {@link #scratch} first
+     * because the data of the existing extensions may be overwritten when the
+     * payload is moved.
+     */
+    private void rewrite()
+    {
+        boolean twoByte = isTwoByteProfile(profile);
+
+        if ((blockOffset != -1) && !twoByte && (profile != ONE_BYTE_PROFILE))
+        {
+            throw new IllegalStateException(
+                    "Unsupported header extension profile " + profile);
+        }
+
+        // Determine the form and the length of the new block.
+        int size = 0;
+        int extensionCount = 0;
+
+        for (int pass = 0; pass < 2; pass++)
+        {
+            size = 0;
+            extensionCount = 0;
+            for (int i = 0; i < count; i++)
+            {
+                int e = editIndexOf(ids[i]);
+
+                if ((e != -1) && (editData[e] == null))
+                    continue;
+
+                int len = (e == -1) ? lengths[i] : editLengths[e];
+
+                if ((ids[i] > MAX_ONE_BYTE_ID)
+                        || (len < 1)
+                        || (len > MAX_ONE_BYTE_LENGTH))
+                {
+                    twoByte = true;
+                }
+                size += (twoByte ? 2 : 1) + len;
+                extensionCount++;
+            }
+            for (int e = 0; e < editCount; e++)
+            {
+                if ((editData[e] == null) || (indexOf(editIDs[e]) != -1))
+                    continue;
+
+                int len = editLengths[e];
+
+                if ((editIDs[e] > MAX_ONE_BYTE_ID)
+                        || (len < 1)
+                        || (len > MAX_ONE_BYTE_LENGTH))
+                {
+                    twoByte = true;
+                }
+                size += (twoByte ? 2 : 1) + len;
+                extensionCount++;
+            }
+            // The second pass is only needed if the form has changed midway.
+            if (!twoByte || (pass == 1))
+                break;
+        }
+
+        int paddedSize = (size + 3) & ~3;
+
+        if (scratch.length < paddedSize)
+            scratch = new byte[paddedSize];
+
+        // Lay out the new block.
+        byte[] buf = pkt.getBuffer();
+        int s = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            int e = editIndexOf(ids[i]);
+
+            if (e == -1)
+                s = write(twoByte, ids[i], buf, offsets[i], lengths[i], s);
+            else if (editData[e] != null)
+            {
+                s
+                    = write(
+                            twoByte,
+                            ids[i],
+                            editData[e], editOffsets[e], editLengths[e],
+                            s);
+            }
+        }
+        for (int e = 0; e < editCount; e++)
+        {
+            if ((editData[e] != null) && (indexOf(editIDs[e]) == -1))
+            {
+                s
+                    = write(
+                            twoByte,
+                            editIDs[e],
+                            editData[e], editOffsets[e], editLengths[e],
+                            s);
+            }
+        }
+        Arrays.fill(scratch, s, paddedSize, (byte) 0);
+
+        // Move the payload.
+        int off = pkt.getOffset();
+        int end = off + pkt.getLength();
+        int extHdr = off + RawPacket.FIXED_HEADER_SIZE + (buf[off] & 0x0F) * 4;
+        int oldPayloadOffset
+            = (blockOffset == -1) ? extHdr : (blockOffset + blockLength);
+        int newPayloadOffset
+            = (extensionCount == 0)
+                ? extHdr
+                : (extHdr + RawPacket.EXT_HEADER_SIZE + paddedSize);
+        int payloadLength = end - oldPayloadOffset;
+        int newEnd = newPayloadOffset + payloadLength;
+
+        if (newEnd > buf.length)
+        {
+            byte[] newBuf = new byte[newEnd];
+
+            System.arraycopy(buf, off, newBuf, off, extHdr - off);
+            System.arraycopy(
+                    buf, oldPayloadOffset,
+                    newBuf, newPayloadOffset,
+                    payloadLength);
+            buf = newBuf;
+            pkt.setBuffer(buf);
+        }
+        else if (newPayloadOffset != oldPayloadOffset)
+        {
+            System.arraycopy(
+                    buf, oldPayloadOffset,
+                    buf, newPayloadOffset,
+                    payloadLength);
+        }
+
+        // Write the new block.
+        if (extensionCount == 0)
+        {
+            buf[off] &= (byte) 0xEF;
+        }
+        else
+        {
+            int newProfile
+                = twoByte
+                    ? (isTwoByteProfile(profile) ? profile : TWO_BYTE_PROFILE)
+                    : ONE_BYTE_PROFILE;
+            int lengthInWords = paddedSize / 4;
+
+            buf[off] |= 0x10;
+            buf[extHdr] = (byte) (newProfile >> 8);
+            buf[extHdr + 1] = (byte) newProfile;
+            buf[extHdr + 2] = (byte) (lengthInWords >> 8);
+            buf[extHdr + 3] = (byte) lengthInWords;
+            System.arraycopy(
+                    scratch, 0,
+                    buf, extHdr + RawPacket.EXT_HEADER_SIZE,
+                    paddedSize);
+        }
+        pkt.setLength(newEnd - off);
+        invalidate();
+    }
+
+    /**
+     * Gets the number of indexed extensions.
+     *
+     * @return the number of extensions in the packet
+     */
+    public int size()
+    {
+        index();
+        return count;
+    }
+
+    /**
+     * Writes an extension into {@link #scratch}.
+     *
+     * @param twoByte <tt>true</tt> to use the two-byte header form
+     * @param id the ID of the extension
+     * @param data the buffer which contains the data of the extension
+     * @param off the offset of the data in <tt>data</tt>
+     * @param len the length of the data
+     * @param s the offset in <tt>scratch</tt> at which to write
+     * @return the offset in <tt>scratch</tt> after the written extension
+     */
+    private int write(
+            boolean twoByte,
+            int id,
+            byte[] data, int off, int len,
+            int s)
+    {
+        if (twoByte)
+        {
+            scratch[s++] = (byte) id;
+            scratch[s++] = (byte) len;
+        }
+        else
+        {
+            scratch[s++] = (byte) ((id << 4) | (len - 1));
+        }
+        System.arraycopy(data, off, scratch, s, len);
+        return s + len;
+    }
+}
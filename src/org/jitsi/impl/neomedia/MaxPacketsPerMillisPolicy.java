@@ -22,6 +22,7 @@ import net.sf.fmj.media.util.*;
 
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
 
 /**
  * Implements the functionality which allows this <tt>OutputDataStream</tt>
@@ -144,22 +145,19 @@ public abstract class MaxPacketsPerMillisPolicy
         if (sendThread == null)
         {
             sendThread
-                = new Thread()
-                {
-                    @Override
-                    public void run()
-                    {
-                        runInSendThread();
-                    }
-                };
-            sendThread.setDaemon(true);
-            sendThread.setName(
-                    MaxPacketsPerMillisPolicy.class.getName() + ".sendThread");
-
-            RTPConnectorInputStream.setThreadPriority(
-                    sendThread,
-                    MediaThread.getNetworkPriority());
-
+                = ExecutorUtils.newThread(
+                        new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                runInSendThread();
+                            }
+                        },
+                        MaxPacketsPerMillisPolicy.class.getName()
+                            + ".sendThread",
+                        true,
+                        MediaThread.getNetworkPriority());
             sendThread.start();
         }
     }
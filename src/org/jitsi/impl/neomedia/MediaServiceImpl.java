@@ -21,6 +21,7 @@ import java.beans.*;
 import java.io.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 import javax.media.*;
 import javax.media.control.*;
@@ -112,6 +113,19 @@ public class MediaServiceImpl
     private static final List<MediaDevice> EMPTY_DEVICES
         = Collections.emptyList();
 
+    /**
+     * The name of the <tt>boolean</tt> <tt>ConfigurationService</tt> and/or
+     * <tt>System</tt> property which indicates whether libjitsi runs without
+     * any capture or playback devices (e.g. on a media server). In headless
+     * mode the <tt>DeviceSystem</tt>s are not probed, the custom
+     * <tt>Renderer</tt>s are not registered and the formats of the custom
+     * codecs are cached across restarts (by
+     * <tt>FMJPlugInConfiguration</tt>) in order to speed up the startup. The
+     * default value is <tt>false</tt>.
+     */
+    public static final String HEADLESS_PNAME
+        = MediaServiceImpl.class.getName() + ".HEADLESS";
+
     /**
      * The name of the <tt>System</tt> boolean property which specifies whether
      * the committing of the JMF/FMJ <tt>Registry</tt> is to be disabled.
@@ -194,6 +208,14 @@ public class MediaServiceImpl
      */
     private MediaFormatFactory formatFactory;
 
+    /**
+     * The <tt>MediaStreamMetrics</tt> of the <tt>MediaStream</tt>s which have
+     * not been closed.
+     */
+    private final Set<MediaStreamMetrics> mediaStreamMetrics
+        = Collections.newSetFromMap(
+                new ConcurrentHashMap<MediaStreamMetrics, Boolean>());
+
     /**
      * The one and only <tt>MediaDevice</tt> instance with
      * <tt>MediaDirection</tt> not allowing sending and <tt>MediaType</tt> equal
@@ -787,6 +809,47 @@ public class MediaServiceImpl
         return outputVolumeControl;
     }
 
+    /**
+     * Adds the metrics of a <tt>MediaStream</tt> to the metrics accumulated by
+     * {@link #getMediaStreamMetrics()}.
+     *
+     * @param metrics the <tt>MediaStreamMetrics</tt> of a
+     * <tt>MediaStream</tt> which has been initialized
+     */
+    void addMediaStreamMetrics(MediaStreamMetrics metrics)
+    {
+        mediaStreamMetrics.add(metrics);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Reads the striped counters and the histograms of the
+     * <tt>MediaStream</tt>s without locking them.
+     */
+    @Override
+    public MediaStreamMetrics.Snapshot getMediaStreamMetrics()
+    {
+        MediaStreamMetrics.Snapshot snapshot
+            = new MediaStreamMetrics.Snapshot();
+
+        for (MediaStreamMetrics metrics : mediaStreamMetrics)
+            metrics.addTo(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Removes the metrics of a <tt>MediaStream</tt> from the metrics
+     * accumulated by {@link #getMediaStreamMetrics()}.
+     *
+     * @param metrics the <tt>MediaStreamMetrics</tt> of a
+     * <tt>MediaStream</tt> which has been closed
+     */
+    void removeMediaStreamMetrics(MediaStreamMetrics metrics)
+    {
+        mediaStreamMetrics.remove(metrics);
+    }
+
     /**
      * Gets the <tt>VolumeControl</tt> which controls the volume level of audio
      * input/capture.
@@ -1508,6 +1571,24 @@ public class MediaServiceImpl
         return new RTPTranslatorImpl();
     }
 
+    /**
+     * Determines whether libjitsi runs in headless mode i.e. without any
+     * capture or playback devices. The <tt>ConfigurationService</tt> and
+     * <tt>System</tt> property {@link #HEADLESS_PNAME} enable the headless
+     * mode.
+     *
+     * @return <tt>true</tt> if libjitsi runs in headless mode; otherwise,
+     * <tt>false</tt>
+     */
+    public static boolean isHeadless()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        return
+            ((cfg != null) && cfg.getBoolean(HEADLESS_PNAME, false))
+                || Boolean.getBoolean(HEADLESS_PNAME);
+    }
+
     /**
      * Gets the indicator which determines whether the loading of the JMF/FMJ
      * <tt>Registry</tt> has been disabled.
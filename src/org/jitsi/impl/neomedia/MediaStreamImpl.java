@@ -181,6 +181,12 @@ public class MediaStreamImpl
      */
     private MediaStreamStatsImpl mediaStreamStatsImpl;
 
+    /**
+     * The counters and histograms of this <tt>MediaStream</tt>.
+     */
+    private final MediaStreamMetrics mediaStreamMetrics
+        = new MediaStreamMetrics();
+
     /**
      * The indicator which determines whether this <tt>MediaStream</tt> is set
      * to transmit "silence" instead of the actual media fed from its
@@ -341,6 +347,21 @@ public class MediaStreamImpl
     private final CachingTransformer cachingTransformer
             = createCachingTransformer();
 
+    /**
+     * The transformer which selects the simulcast layer forwarded to the
+     * remote endpoint of this {@link MediaStream} or <tt>null</tt> if this
+     * instance does not support simulcast.
+     */
+    private final SimulcastEngine simulcastEngine = createSimulcastEngine();
+
+    /**
+     * The transformer which drops the VP8 temporal layers which are not
+     * forwarded to the remote endpoint of this {@link MediaStream} or
+     * <tt>null</tt> if this instance does not support temporal scalability.
+     */
+    private final TemporalLayerFilteringEngine temporalLayerFilteringEngine
+        = createTemporalLayerFilteringEngine();
+
     /**
      * The chain used to by the RTPConnector to transform packets.
      */
@@ -418,6 +439,12 @@ public class MediaStreamImpl
 
         this.mediaStreamStatsImpl = new MediaStreamStatsImpl(this);
 
+        MediaServiceImpl mediaService
+            = NeomediaServiceUtils.getMediaServiceImpl();
+
+        if (mediaService != null)
+            mediaService.addMediaStreamMetrics(mediaStreamMetrics);
+
         if (logger.isTraceEnabled())
         {
             logger.trace(
@@ -671,6 +698,12 @@ public class MediaStreamImpl
 
         srtpControl.cleanup(this);
 
+        MediaServiceImpl mediaService
+            = NeomediaServiceUtils.getMediaServiceImpl();
+
+        if (mediaService != null)
+            mediaService.removeMediaStreamMetrics(mediaStreamMetrics);
+
         if (csrcEngine != null)
         {
             csrcEngine = null;
@@ -952,6 +985,25 @@ public class MediaStreamImpl
         return null;
     }
 
+    /**
+     * Creates the {@link SimulcastEngine} for this {@code MediaStream}.
+     * @return the created {@link SimulcastEngine}.
+     */
+    protected SimulcastEngine createSimulcastEngine()
+    {
+        return null;
+    }
+
+    /**
+     * Creates the {@link TemporalLayerFilteringEngine} for this
+     * {@code MediaStream}.
+     * @return the created {@link TemporalLayerFilteringEngine}.
+     */
+    protected TemporalLayerFilteringEngine createTemporalLayerFilteringEngine()
+    {
+        return null;
+    }
+
     /**
      * Creates a chain of transform engines for use with this stream. Note
      * that this is the only place where the <tt>TransformEngineChain</tt> is
@@ -993,6 +1045,13 @@ public class MediaStreamImpl
         if (redTransformEngine != null)
             engineChain.add(redTransformEngine);
 
+        // Simulcast layer selection drops packets so it goes before the SSRC
+        // rewriting and, most importantly, the encryption.
+        if (simulcastEngine != null)
+            engineChain.add(simulcastEngine);
+        if (temporalLayerFilteringEngine != null)
+            engineChain.add(temporalLayerFilteringEngine);
+
         engineChain.add(ssrcRewritingEngine);
 
         // RTCPTerminationTransformEngine passes received RTCP to
@@ -1041,10 +1100,13 @@ public class MediaStreamImpl
         if (ssrcEngine != null)
             engineChain.add(ssrcEngine);
 
-        return
-            new TransformEngineChain(
+        TransformEngineChain transformEngineChain
+            = new TransformEngineChain(
                     engineChain.toArray(
                             new TransformEngine[engineChain.size()]));
+
+        transformEngineChain.setMediaStreamMetrics(mediaStreamMetrics);
+        return transformEngineChain;
     }
 
     /**
@@ -1539,6 +1601,16 @@ public class MediaStreamImpl
         return localSourceID;
     }
 
+    /**
+     * Gets the counters and histograms of this <tt>MediaStream</tt>.
+     *
+     * @return the <tt>MediaStreamMetrics</tt> of this <tt>MediaStream</tt>
+     */
+    public MediaStreamMetrics getMediaStreamMetrics()
+    {
+        return mediaStreamMetrics;
+    }
+
     /**
      * Returns the statistical information gathered about this
      * <tt>MediaStream</tt>.
@@ -2725,6 +2797,18 @@ public class MediaStreamImpl
         }
     }
 
+    /**
+     * Gets the <tt>RTPTranslator</tt> which forwards RTP and RTCP traffic
+     * between this and other <tt>MediaStream</tt>s.
+     *
+     * @return the <tt>RTPTranslator</tt> which forwards RTP and RTCP traffic
+     * between this and other <tt>MediaStream</tt>s or <tt>null</tt>
+     */
+    public RTPTranslator getRTPTranslator()
+    {
+        return rtpTranslator;
+    }
+
     /**
      * Sets the <tt>RTPTranslator</tt> which is to forward RTP and RTCP traffic
      * between this and other <tt>MediaStream</tt>s.
@@ -3612,4 +3696,30 @@ public class MediaStreamImpl
     {
         return cachingTransformer;
     }
+
+    /**
+     * Gets the {@link SimulcastEngine} which selects the simulcast layer
+     * forwarded to the remote endpoint of this {@code MediaStream}.
+     *
+     * @return the {@code SimulcastEngine} of this {@code MediaStream} or
+     * <tt>null</tt> if it does not support simulcast
+     */
+    public SimulcastEngine getSimulcastEngine()
+    {
+        return simulcastEngine;
+    }
+
+    /**
+     * Gets the {@link TemporalLayerFilteringEngine} which drops the VP8
+     * temporal layers not forwarded to the remote endpoint of this
+     * {@code MediaStream}.
+     *
+     * @return the {@code TemporalLayerFilteringEngine} of this
+     * {@code MediaStream} or <tt>null</tt> if it does not support temporal
+     * scalability
+     */
+    public TemporalLayerFilteringEngine getTemporalLayerFilteringEngine()
+    {
+        return temporalLayerFilteringEngine;
+    }
 }
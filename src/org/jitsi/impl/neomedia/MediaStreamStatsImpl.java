@@ -1296,7 +1296,22 @@ public class MediaStreamStatsImpl
         uploadFeedbackNbPackets = uploadNewNbRecv;
 
         // Computes RTT.
-        setRttMs(computeRTTInMs(feedback));
+        long rttMs = computeRTTInMs(feedback);
+
+        setRttMs(rttMs);
+
+        // Updates the distributions.
+        MediaStreamMetrics metrics = mediaStreamImpl.getMediaStreamMetrics();
+        double jitterMs = rtpTimeToMs(feedback.getJitter());
+
+        if (jitterMs >= 0)
+        {
+            metrics.uploadFeedbackReported(
+                    Math.round(jitterMs),
+                    feedback.getFractionLost() * 100L / 256);
+        }
+        if (rttMs >= 0)
+            metrics.rttComputed(rttMs);
     }
 
     /**
@@ -1308,6 +1323,14 @@ public class MediaStreamStatsImpl
     {
         updateJitterRTPTimestampUnits(feedback, StreamDirection.DOWNLOAD);
 
+        double jitterMs = rtpTimeToMs(feedback.getJitter());
+
+        if (jitterMs >= 0)
+        {
+            mediaStreamImpl.getMediaStreamMetrics().downloadJitterReported(
+                    Math.round(jitterMs));
+        }
+
         // No need to update the download loss as we have a more accurate value
         // in the global reception stats, which are updated for each new packet
         // received.
@@ -101,52 +101,6 @@ public abstract class RTPConnectorInputStream<T>
         return array;
     }
 
-    /**
-     * Sets a specific priority on a specific <tt>Thread</tt>.
-     * 
-     * @param thread the <tt>Thread</tt> to set the specified <tt>priority</tt>
-     * on
-     * @param priority the priority to set on the specified <tt>thread</tt>
-     */
-    public static void setThreadPriority(Thread thread, int priority)
-    {
-        int oldPriority = thread.getPriority();
-
-        if (priority != oldPriority)
-        {
-            Throwable throwable = null;
-
-            try
-            {
-                thread.setPriority(priority);
-            }
-            catch (IllegalArgumentException iae)
-            {
-                throwable = iae;
-            }
-            catch (SecurityException se)
-            {
-                throwable = se;
-            }
-            if (throwable != null)
-            {
-                logger.warn("Failed to use Thread priority: " + priority);
-            }
-            if (logger.isDebugEnabled())
-            {
-                int newPriority = thread.getPriority();
-
-                if (priority != newPriority)
-                {
-                    logger.debug(
-                            "Did not change Thread priority from "
-                                + oldPriority + " to " + priority + ", "
-                                + newPriority + " instead.");
-                }
-            }
-        }
-    }
-
     /**
      * Packet receive buffer
      */
@@ -631,23 +585,20 @@ public abstract class RTPConnectorInputStream<T>
             if ((socket != null) && !closed && (transferHandler != null))
             {
                 receiveThread
-                    = new Thread()
-                    {
-                        @Override
-                        public void run()
-                        {
-                            RTPConnectorInputStream.this.runInReceiveThread();
-                        }
-                    };
-                receiveThread.setDaemon(true);
-                receiveThread.setName(
-                        RTPConnectorInputStream.class.getName()
-                            + ".receiveThread");
-
-                setThreadPriority(
-                        receiveThread,
-                        MediaThread.getNetworkPriority());
-
+                    = ExecutorUtils.newThread(
+                            new Runnable()
+                            {
+                                @Override
+                                public void run()
+                                {
+                                    RTPConnectorInputStream.this
+                                        .runInReceiveThread();
+                                }
+                            },
+                            RTPConnectorInputStream.class.getName()
+                                + ".receiveThread",
+                            true,
+                            MediaThread.getNetworkPriority());
                 receiveThread.start();
             }
         }
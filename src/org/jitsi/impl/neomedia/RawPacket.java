@@ -52,6 +52,12 @@ public class RawPacket
      */
     private byte[] buffer;
 
+    /**
+     * The index of the RTP header extensions of this packet or <tt>null</tt>
+     * if it has not been requested yet.
+     */
+    private HeaderExtensions headerExtensions;
+
     /**
      * The bitmap/flag mask that specifies the set of boolean attributes enabled
      * for this <tt>RawPacket</tt>. The value is the logical sum of all of the
@@ -109,45 +115,42 @@ public class RawPacket
      */
     public void addExtension(byte[] extBuff, int newExtensionLen)
     {
-        int newBuffLen = length + offset + newExtensionLen;
-        int bufferOffset = offset;
-        int newBufferOffset = offset;
-        int lengthToCopy = FIXED_HEADER_SIZE + getCsrcCount()*4;
         boolean extensionBit = getExtensionBit();
-        //if there was no extension previously, we also need to consider adding
-        //the extension header.
-        if (extensionBit)
+        int extensionLength = getExtensionLength();
+        int extHdrOffset = offset + FIXED_HEADER_SIZE + getCsrcCount() * 4;
+        int payloadOffset
+            = extensionBit
+                ? (extHdrOffset + EXT_HEADER_SIZE + extensionLength)
+                : extHdrOffset;
+        int payloadLength = offset + length - payloadOffset;
+        int growth = newExtensionLen + (extensionBit ? 0 : EXT_HEADER_SIZE);
+        byte[] newBuffer;
+
+        // Reuse the buffer if it has room for the extension.
+        if (offset + length + growth <= buffer.length)
         {
-            // without copying the extension length value, will set it later
-            lengthToCopy += EXT_HEADER_SIZE - 2;
+            newBuffer = buffer;
         }
         else
-            newBuffLen += EXT_HEADER_SIZE;
-
-        byte[] newBuffer = new byte[ newBuffLen ];
+        {
+            newBuffer = new byte[offset + length + growth];
+            // Copy header, CSRC list and the extension header and data if any.
+            System.arraycopy(
+                    buffer, offset,
+                    newBuffer, offset,
+                    payloadOffset - offset);
+        }
+        // Move the payload past the new extension.
+        System.arraycopy(
+                buffer, payloadOffset,
+                newBuffer, payloadOffset + growth,
+                payloadLength);
 
-        /*
-         * Copy header, CSRC list and the leading two bytes of the extension
-         * header if any.
-         */
-        System.arraycopy(buffer, bufferOffset,
-            newBuffer, newBufferOffset, lengthToCopy);
         //raise the extension bit.
-        newBuffer[newBufferOffset] |= 0x10;
-        bufferOffset += lengthToCopy;
-        newBufferOffset += lengthToCopy;
-
-        // Set the extension header or modify the existing one.
-        int totalExtensionLen = newExtensionLen + getExtensionLength();
+        newBuffer[offset] |= 0x10;
 
         //if there were no extensions previously, we need to add the hdr now
-        if(extensionBit)
-        {
-            // We've copied "defined by profile" already. Consequently, we have
-            // to skip the length only.
-            bufferOffset += 2;
-        }
-        else
+        if (!extensionBit)
         {
            // we will now be adding the RFC 5285 ext header which looks like
            // this:
@@ -157,40 +160,22 @@ public class RawPacket
            // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
            // |       0xBE    |    0xDE       |           length=3            |
            // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-           newBuffer[newBufferOffset++] = (byte)0xBE;
-           newBuffer[newBufferOffset++] = (byte)0xDE;
+           newBuffer[extHdrOffset] = (byte)0xBE;
+           newBuffer[extHdrOffset + 1] = (byte)0xDE;
         }
         // length field counts the number of 32-bit words in the extension
-        int lengthInWords = (totalExtensionLen + 3)/4;
-        newBuffer[newBufferOffset++] = (byte)(lengthInWords >> 8);
-        newBuffer[newBufferOffset++] = (byte)lengthInWords;
-
-        // Copy the existing extension content if any.
-        if (extensionBit)
-        {
-            lengthToCopy = getExtensionLength();
-            System.arraycopy(buffer, bufferOffset,
-                newBuffer, newBufferOffset, lengthToCopy);
-            bufferOffset += lengthToCopy;
-            newBufferOffset += lengthToCopy;
-        }
+        int lengthInWords = (newExtensionLen + extensionLength + 3)/4;
+        newBuffer[extHdrOffset + 2] = (byte)(lengthInWords >> 8);
+        newBuffer[extHdrOffset + 3] = (byte)lengthInWords;
 
         //copy the extension content from the new extension.
         System.arraycopy(extBuff, 0,
-            newBuffer, newBufferOffset, newExtensionLen);
-        newBufferOffset += newExtensionLen;
-
-        //now copy the payload
-        int payloadLength = getPayloadLength();
-
-        System.arraycopy(
-                buffer, bufferOffset,
-                newBuffer, newBufferOffset,
-                payloadLength);
-        newBufferOffset += payloadLength;
+            newBuffer, payloadOffset + growth - newExtensionLen,
+            newExtensionLen);
 
         buffer = newBuffer;
-        this.length = newBufferOffset - offset;
+        this.length += growth;
+        invalidateHeaderExtensions();
     }
 
     /**
@@ -317,82 +302,6 @@ public class RawPacket
         return getCsrcAudioLevel(ssrcExtID, 0, Byte.MIN_VALUE);
     }
 
-    /**
-     * Returns the index of the element in this packet's buffer where the
-     * content of the header with the specified <tt>extensionID</tt> starts.
-     *
-     * @param extensionID the ID of the extension whose content we are looking
-     * for.
-     *
-     * @return the index of the first byte of the content of the extension
-     * with the specified <tt>extensionID</tt> or -1 if no such extension was
-     * found.
-     */
-    private int findExtension(int extensionID)
-    {
-        if( !getExtensionBit() || getExtensionLength() == 0)
-            return 0;
-
-        int extOffset = offset + FIXED_HEADER_SIZE
-                + getCsrcCount()*4 + EXT_HEADER_SIZE;
-
-        int extensionEnd = extOffset + getExtensionLength();
-        int extHdrLen = getExtensionHeaderLength();
-
-        if (extHdrLen != 1 && extHdrLen != 2)
-        {
-            return -1;
-        }
-
-        while (extOffset < extensionEnd)
-        {
-            int currType = -1;
-            int currLen = -1;
-
-            if(extHdrLen == 1)
-            {
-                //short header. type is in the lefter 4 bits and length is on
-                //the right; like this:
-                //      0
-                //      0 1 2 3 4 5 6 7
-                //      +-+-+-+-+-+-+-+-+
-                //      |  ID   |  len  |
-                //      +-+-+-+-+-+-+-+-+
-
-                currType = buffer[extOffset] >> 4;
-                currLen = (buffer[extOffset] & 0x0F) + 1; //add one as per 5285
-
-                //now skip the header
-                extOffset ++;
-            }
-            else
-            {
-                //long header. type is in the first byte and length is in the
-                //second
-                //       0                   1
-                //       0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5
-                //      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-                //      |       ID      |     length    |
-                //      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-
-                currType = buffer[extOffset];
-                currLen = buffer[extOffset + 1];
-
-                //now skip the header
-                extOffset += 2;
-            }
-
-            if(currType == extensionID)
-            {
-                return extOffset;
-            }
-
-            extOffset += currLen;
-        }
-
-        return -1;
-    }
-
     /**
      * Get buffer containing the content of this packet
      *
@@ -422,13 +331,15 @@ public class RawPacket
 
         if (getExtensionBit() && getExtensionLength() != 0)
         {
-            int levelsStart = findExtension(csrcExtID);
+            HeaderExtensions headerExtensions = getHeaderExtensions();
+            int i = headerExtensions.indexOf(csrcExtID);
 
-            if (levelsStart != -1)
+            if (i != -1)
             {
-                int levelsCount = getLengthForExtension(levelsStart);
+                int levelsStart = headerExtensions.getOffset(i);
+                int levelsCount = headerExtensions.getLength(i);
 
-                if (levelsCount < index)
+                if (levelsCount <= index)
                 {
                     //apparently the remote side sent more CSRCs than levels.
                     // ... yeah remote sides do that now and then ...
@@ -464,37 +375,6 @@ public class RawPacket
         return (buffer[offset] & 0x10) == 0x10;
     }
 
-    /**
-     * Returns the length of the extension header being used in this packet or
-     * <tt>-1</tt> in case there were no extension headers here or we didn't
-     * understand the kind of extension being used.
-     *
-     * @return  the length of the extension header being used in this packet or
-     * <tt>-1</tt> in case there were no extension headers here or we didn't
-     * understand the kind of extension being used.
-     */
-    private int getExtensionHeaderLength()
-    {
-        if (!getExtensionBit())
-            return -1;
-
-        //the type of the extension header comes right after the RTP header and
-        //the CSRC list.
-        int extLenIndex =  offset + FIXED_HEADER_SIZE + getCsrcCount()*4;
-
-        //0xBEDE means short extension header.
-        if (buffer[extLenIndex] == (byte)0xBE
-            && buffer[extLenIndex + 1] == (byte)0xDE)
-                return 1;
-
-        //0x100 means a two-byte extension header.
-        if (buffer[extLenIndex]== (byte)0x10
-            && (buffer[extLenIndex + 1] >> 4)== 0)
-                return 2;
-
-        return -1;
-    }
-
     /**
      * Returns the length of the extensions currently added to this packet.
      *
@@ -525,6 +405,21 @@ public class RawPacket
         return flags;
     }
 
+    /**
+     * Gets the index of the RTP header extensions of this packet through
+     * which they may be read and edited without scanning the header extension
+     * block for each of them. The index is rebuilt when it is used after the
+     * buffer, the offset or the length of this packet have been set.
+     *
+     * @return the index of the RTP header extensions of this packet
+     */
+    public HeaderExtensions getHeaderExtensions()
+    {
+        if (headerExtensions == null)
+            headerExtensions = new HeaderExtensions(this);
+        return headerExtensions;
+    }
+
     /**
      * Return the define by profile part of the extension header.
      * @return the starting two bytes of extension header.
@@ -565,27 +460,12 @@ public class RawPacket
     }
 
     /**
-     * Returns the length of the header extension that is carrying the content
-     * starting at <tt>contentStart</tt>. In other words this method checks the
-     * size of extension headers in this packet and then either returns the
-     * value of the byte right before <tt>contentStart</tt> or its lower 4 bits.
-     * This is a very basic method so if you are using it - make sure u know
-     * what you are doing.
-     *
-     * @param contentStart the index of the first element of the content of
-     * the extension whose size we are trying to obtain.
-     *
-     * @return the length of the extension carrying the content starting at
-     * <tt>contentStart</tt>.
+     * Marks the index of the RTP header extensions of this packet out of date.
      */
-    private int getLengthForExtension(int contentStart)
+    private void invalidateHeaderExtensions()
     {
-        int hdrLen = getExtensionHeaderLength();
-
-        if( hdrLen == 1 )
-            return (buffer[contentStart - 1] & 0x0F) + 1;
-        else
-            return buffer[contentStart - 1];
+        if (headerExtensions != null)
+            headerExtensions.invalidate();
     }
 
     /**
@@ -940,6 +820,7 @@ public class RawPacket
         this.length -= extHeaderLen;
 
         setExtensionBit(false);
+        invalidateHeaderExtensions();
     }
 
     /**
@@ -948,6 +829,7 @@ public class RawPacket
     public void setBuffer(byte[] buffer)
     {
         this.buffer = buffer;
+        invalidateHeaderExtensions();
     }
 
     /**
@@ -1013,6 +895,7 @@ public class RawPacket
         this.buffer = newBuffer;
         this.length = payloadOffsetForNewBuff + length
                 - payloadOffsetForOldBuff - offset;
+        invalidateHeaderExtensions();
     }
 
     /**
@@ -1049,6 +932,7 @@ public class RawPacket
     public void setLength(int length)
     {
         this.length = length;
+        invalidateHeaderExtensions();
     }
 
     /**
@@ -1075,6 +959,7 @@ public class RawPacket
     public void setOffset(int offset)
     {
         this.offset = offset;
+        invalidateHeaderExtensions();
     }
 
     /**
@@ -1310,6 +1310,24 @@ public class VideoMediaStreamImpl
         return new CachingTransformer();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected SimulcastEngine createSimulcastEngine()
+    {
+        return new SimulcastEngine(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected TemporalLayerFilteringEngine createTemporalLayerFilteringEngine()
+    {
+        return new TemporalLayerFilteringEngine(this);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -16,11 +16,14 @@
 package org.jitsi.impl.neomedia.codec;
 
 import java.io.*;
+import java.net.*;
 import java.util.*;
 
 import javax.media.*;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -32,11 +35,45 @@ import org.jitsi.util.*;
  */
 public class FMJPlugInConfiguration
 {
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * property which specifies the (absolute or relative to the home
+     * directory) path of the file in which the supported formats of the
+     * custom codecs are cached across restarts so that the codecs do not have
+     * to be loaded and instantiated in order to be registered. The cache is
+     * disabled by default unless libjitsi runs in headless mode (in which case
+     * {@link #DEFAULT_CODEC_REGISTRY_CACHE} is used).
+     */
+    public static final String CODEC_REGISTRY_CACHE_PNAME
+        = FMJPlugInConfiguration.class.getName() + ".CODEC_REGISTRY_CACHE";
+
     /**
      * Whether the custom codecs have been registered with FMJ.
      */
     private static boolean codecsRegistered = false;
 
+    /**
+     * The names of the classes other than <tt>Format</tt>s (and arrays of
+     * either) which may be read from the cache of the formats of the custom
+     * codecs i.e. the <tt>Map</tt>s of the cache and of the format parameters
+     * of <tt>ParameterizedVideoFormat</tt>, the sizes of
+     * <tt>VideoFormat</tt>s and the data types of the <tt>Format</tt>s which
+     * are not arrays of primitives.
+     */
+    private static final Set<String> CODEC_REGISTRY_CACHE_CLASSES
+        = new HashSet<String>(
+                Arrays.asList(
+                        "java.awt.Dimension",
+                        "java.util.Collections$EmptyMap",
+                        "java.util.HashMap",
+                        "org.jitsi.impl.neomedia.codec.video.AVFrame"));
+
+    /**
+     * The default value of {@link #CODEC_REGISTRY_CACHE_PNAME} in headless
+     * mode.
+     */
+    private static final String DEFAULT_CODEC_REGISTRY_CACHE = ".fmj.codecs";
+
     /**
      * Whether the custom multiplexers have been registered with FMJ.
      */
@@ -55,6 +92,7 @@ public class FMJPlugInConfiguration
                 ? "org.jitsi.impl.neomedia.codec.video.AndroidDecoder"
                 : null,
             "org.jitsi.impl.neomedia.codec.audio.alaw.DePacketizer",
+            "org.jitsi.impl.neomedia.codec.audio.alaw.JavaDecoder",
             "org.jitsi.impl.neomedia.codec.audio.alaw.JavaEncoder",
             "org.jitsi.impl.neomedia.codec.audio.alaw.Packetizer",
             "org.jitsi.impl.neomedia.codec.audio.ulaw.JavaDecoder",
@@ -136,6 +174,175 @@ public class FMJPlugInConfiguration
      */
     private static boolean packagesRegistered = false;
 
+    /**
+     * Gets the file in which the supported formats of the custom codecs are
+     * cached across restarts.
+     *
+     * @return the file in which the supported formats of the custom codecs
+     * are cached across restarts or <tt>null</tt> if the cache is disabled
+     */
+    private static File getCodecRegistryCache()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        String path
+            = ConfigUtils.getString(
+                    cfg,
+                    CODEC_REGISTRY_CACHE_PNAME,
+                    MediaServiceImpl.isHeadless()
+                        ? DEFAULT_CODEC_REGISTRY_CACHE
+                        : null);
+
+        return
+            (path == null || path.length() == 0)
+                ? null
+                : ConfigUtils.getAbsoluteFile(path, cfg);
+    }
+
+    /**
+     * Gets the key which identifies the set (and the implementations) of the
+     * custom codecs in the cache of their formats. The cache is invalidated
+     * when the list of the custom codecs changes or libjitsi is upgraded or
+     * rebuilt.
+     *
+     * @return the key which identifies the set of the custom codecs in the
+     * cache of their formats
+     */
+    private static String getCodecRegistryCacheKey()
+    {
+        StringBuilder key = new StringBuilder();
+
+        for (String className : CUSTOM_CODECS)
+        {
+            if (className != null)
+                key.append(className).append(',');
+        }
+
+        // The formats may differ between versions of libjitsi.
+        Package pkg = FMJPlugInConfiguration.class.getPackage();
+        String version = (pkg == null) ? null : pkg.getImplementationVersion();
+
+        key.append(version).append(',');
+
+        // A snapshot version may be rebuilt without changing its version.
+        long lastModified = 0;
+
+        try
+        {
+            URL location
+                = FMJPlugInConfiguration.class.getProtectionDomain()
+                    .getCodeSource().getLocation();
+
+            if (location != null)
+            {
+                key.append(location).append(',');
+                if ("file".equals(location.getProtocol()))
+                    lastModified = new File(location.toURI()).lastModified();
+            }
+        }
+        catch (Exception ex)
+        {
+            // The key will identify the list of the custom codecs and the
+            // version of libjitsi only.
+        }
+        key.append(lastModified);
+        return key.toString();
+    }
+
+    /**
+     * Reads the supported formats of the custom codecs from a specific cache
+     * file.
+     *
+     * @param cache the file to read the formats from
+     * @return the supported input (at index <tt>0</tt>) and output (at index
+     * <tt>1</tt>) formats of the custom codecs by class name or <tt>null</tt>
+     * if <tt>cache</tt> does not exist or does not describe the current custom
+     * codecs
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Format[][]> readCodecRegistryCache(File cache)
+    {
+        if (!cache.isFile())
+            return null;
+
+        ObjectInputStream in = null;
+
+        try
+        {
+            in
+                = new ObjectInputStream(
+                        new BufferedInputStream(new FileInputStream(cache)))
+                {
+                    @Override
+                    protected Class<?> resolveClass(ObjectStreamClass desc)
+                        throws ClassNotFoundException,
+                               IOException
+                    {
+                        // Formats are all that is expected in the cache.
+                        String name = desc.getName();
+                        int dimensions = 0;
+
+                        while (name.charAt(dimensions) == '[')
+                            dimensions++;
+
+                        String componentName = name.substring(dimensions);
+
+                        if (dimensions != 0)
+                        {
+                            // An array of primitives such as a data type.
+                            if (componentName.length() == 1)
+                                return super.resolveClass(desc);
+                            // Strip the L and ; of an array of objects.
+                            componentName
+                                = componentName.substring(
+                                        1,
+                                        componentName.length() - 1);
+                        }
+                        if (CODEC_REGISTRY_CACHE_CLASSES.contains(
+                                componentName))
+                        {
+                            return super.resolveClass(desc);
+                        }
+
+                        /*
+                         * ObjectInputStream loads the class without
+                         * initializing it so it is safe to check whether it
+                         * is a Format before the deserialization proceeds.
+                         */
+                        Class<?> clazz = super.resolveClass(desc);
+                        Class<?> componentType = clazz;
+
+                        while (componentType.isArray())
+                            componentType = componentType.getComponentType();
+                        if (Format.class.isAssignableFrom(componentType))
+                            return clazz;
+                        throw new InvalidClassException(name);
+                    }
+                };
+
+            if (getCodecRegistryCacheKey().equals(in.readObject()))
+                return (Map<String, Format[][]>) in.readObject();
+        }
+        catch (Exception ex)
+        {
+            logger.warn("Failed to read codec registry cache " + cache, ex);
+        }
+        finally
+        {
+            if (in != null)
+            {
+                try
+                {
+                    in.close();
+                }
+                catch (IOException ioe)
+                {
+                    // Ignore it, the cache has been read/written already.
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Register in JMF the custom codecs we provide
      */
@@ -144,6 +351,19 @@ public class FMJPlugInConfiguration
         if(codecsRegistered)
             return;
 
+        // The supported formats of the custom codecs may have been cached by a
+        // previous run in order to not load and instantiate them now.
+        File codecRegistryCache = getCodecRegistryCache();
+        Map<String, Format[][]> cachedCodecFormats
+            = (codecRegistryCache == null)
+                ? null
+                : readCodecRegistryCache(codecRegistryCache);
+        // The cache describes all custom codecs, including the ones which
+        // have been registered with FMJ (and committed) by a previous run.
+        Map<String, Format[][]> codecFormats
+            = new HashMap<String, Format[][]>();
+        boolean writeCodecRegistryCache = false;
+
         // Register the custom codecs which haven't already been registered.
         @SuppressWarnings("unchecked")
         Collection<String> registeredPlugins
@@ -220,6 +440,31 @@ public class FMJPlugInConfiguration
                     logger.debug(
                             "Codec " + className + " is already registered");
                 }
+
+                Format[][] formats
+                    = (cachedCodecFormats == null)
+                        ? null
+                        : cachedCodecFormats.get(className);
+
+                if (formats == null)
+                {
+                    formats
+                        = new Format[][]
+                        {
+                            PlugInManager.getSupportedInputFormats(
+                                    className,
+                                    PlugInManager.CODEC),
+                            PlugInManager.getSupportedOutputFormats(
+                                    className,
+                                    PlugInManager.CODEC)
+                        };
+                    if (formats[0] != null && formats[1] != null)
+                        writeCodecRegistryCache = true;
+                    else
+                        formats = null;
+                }
+                if (formats != null)
+                    codecFormats.put(className, formats);
             }
             else
             {
@@ -230,15 +475,33 @@ public class FMJPlugInConfiguration
 
                 try
                 {
-                    Codec codec
-                        = (Codec) Class.forName(className).newInstance();
+                    Format[][] formats
+                        = (cachedCodecFormats == null)
+                            ? null
+                            : cachedCodecFormats.get(className);
+
+                    if (formats == null)
+                    {
+                        Codec codec
+                            = (Codec) Class.forName(className).newInstance();
+
+                        formats
+                            = new Format[][]
+                            {
+                                codec.getSupportedInputFormats(),
+                                codec.getSupportedOutputFormats(null)
+                            };
+                        writeCodecRegistryCache = true;
+                    }
 
                     registered =
                             PlugInManager.addPlugIn(
                                     className,
-                                    codec.getSupportedInputFormats(),
-                                    codec.getSupportedOutputFormats(null),
+                                    formats[0],
+                                    formats[1],
                                     PlugInManager.CODEC);
+                    if (registered)
+                        codecFormats.put(className, formats);
                 }
                 catch (Throwable ex)
                 {
@@ -309,6 +572,9 @@ public class FMJPlugInConfiguration
             }
         }
 
+        if (writeCodecRegistryCache && (codecRegistryCache != null))
+            writeCodecRegistryCache(codecRegistryCache, codecFormats);
+
         codecsRegistered = true;
     }
 
@@ -440,4 +706,64 @@ public class FMJPlugInConfiguration
 
         multiplexersRegistered = true;
     }
+
+    /**
+     * Writes the supported formats of the custom codecs into a specific cache
+     * file.
+     *
+     * @param cache the file to write the formats into
+     * @param codecFormats the supported input (at index <tt>0</tt>) and output
+     * (at index <tt>1</tt>) formats of the custom codecs by class name
+     */
+    private static void writeCodecRegistryCache(
+            File cache,
+            Map<String, Format[][]> codecFormats)
+    {
+        File parent = cache.getParentFile();
+
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+        {
+            logger.warn("Failed to create directory " + parent);
+            return;
+        }
+
+        // Write into a temporary file first so that a concurrent or failed
+        // write does not leave a corrupt cache behind.
+        File tmp = new File(cache.getPath() + ".tmp");
+        ObjectOutputStream out = null;
+        boolean written = false;
+
+        try
+        {
+            out
+                = new ObjectOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeObject(getCodecRegistryCacheKey());
+            out.writeObject(codecFormats);
+            out.close();
+            out = null;
+            written = (cache.delete() || !cache.exists()) && tmp.renameTo(cache);
+        }
+        catch (IOException ioe)
+        {
+            // For example, a Format which is not Serializable.
+            logger.warn("Failed to write codec registry cache " + cache, ioe);
+        }
+        finally
+        {
+            if (out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch (IOException ioe)
+                {
+                    // Ignore it, the cache has been read/written already.
+                }
+            }
+            if (!written)
+                tmp.delete();
+        }
+    }
 }
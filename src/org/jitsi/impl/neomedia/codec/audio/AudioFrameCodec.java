@@ -0,0 +1,89 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio;
+
+/**
+ * Represents the state of a frame-based audio codec for a single channel (i.e.
+ * one direction of one call) which encodes and decodes whole frames directly
+ * between byte arrays without going through the FMJ <tt>Codec</tt>,
+ * <tt>Buffer</tt> and <tt>Format</tt> machinery. The linear PCM side is always
+ * signed 16-bit little-endian mono at {@link #getSampleRate()}.
+ * <p>
+ * Implementations are not thread-safe: a single instance is to be used by at
+ * most one thread at a time.
+ * </p>
+ */
+public interface AudioFrameCodec
+{
+    /**
+     * Decodes a single frame.
+     *
+     * @param payload the encoded frame
+     * @param payloadOffset the offset in <tt>payload</tt> at which the encoded
+     * frame starts. There must be at least {@link #getPayloadLength()} bytes
+     * available.
+     * @param pcm the array into which the decoded samples are to be written
+     * @param pcmOffset the offset in <tt>pcm</tt> at which the decoded samples
+     * are to be written
+     * @return the number of bytes written into <tt>pcm</tt>
+     */
+    public int decode(
+            byte[] payload, int payloadOffset,
+            byte[] pcm, int pcmOffset);
+
+    /**
+     * Encodes a single frame.
+     *
+     * @param pcm the samples to encode
+     * @param pcmOffset the offset in <tt>pcm</tt> at which the samples start.
+     * There must be at least <tt>2 * {@link #getFrameSizeInSamples()}</tt>
+     * bytes available.
+     * @param payload the array into which the encoded frame is to be written
+     * @param payloadOffset the offset in <tt>payload</tt> at which the encoded
+     * frame is to be written
+     * @return the number of bytes written into <tt>payload</tt>
+     */
+    public int encode(
+            byte[] pcm, int pcmOffset,
+            byte[] payload, int payloadOffset);
+
+    /**
+     * Gets the number of samples in a frame of this codec.
+     *
+     * @return the number of samples in a frame of this codec
+     */
+    public int getFrameSizeInSamples();
+
+    /**
+     * Gets the number of bytes of an encoded frame of this codec.
+     *
+     * @return the number of bytes of an encoded frame of this codec
+     */
+    public int getPayloadLength();
+
+    /**
+     * Gets the sample rate in Hz of the linear PCM side of this codec.
+     *
+     * @return the sample rate in Hz of the linear PCM side of this codec
+     */
+    public int getSampleRate();
+
+    /**
+     * Brings this instance back into the state it was in right after its
+     * initialization so that it may be reused for another channel.
+     */
+    public void reset();
+}
@@ -0,0 +1,698 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.impl.neomedia.codec.audio.g729.*;
+import org.jitsi.impl.neomedia.codec.audio.ilbc.*;
+import org.jitsi.util.*;
+
+/**
+ * Transcodes the audio of many channels at once using the pure-Java codec
+ * implementations directly i.e. without building an FMJ <tt>Processor</tt>
+ * per channel and without <tt>Buffer</tt>/<tt>Format</tt> negotiation.
+ * <p>
+ * A channel is opened with {@link #openChannel(Codec, Codec)}, fed one
+ * payload per call through {@link Channel#setInput(byte[], int, int)} and
+ * processed together with the other channels by {@link #process(Channel[],
+ * int)} which spreads the channels of the batch over a pool of worker threads.
+ * The codec states of closed channels are kept in a pool and reused by
+ * channels opened later on.
+ * </p>
+ * <p>
+ * All codecs supported at this time are narrowband, the linear PCM between
+ * them is signed 16-bit little-endian mono at 8 kHz.
+ * </p>
+ */
+public class BatchTranscoder
+{
+    /**
+     * The codecs supported by <tt>BatchTranscoder</tt>.
+     */
+    public enum Codec
+    {
+        /**
+         * G.729 with 10 ms frames of 10 bytes each.
+         */
+        G729,
+
+        /**
+         * iLBC in 20 ms mode.
+         */
+        ILBC_20,
+
+        /**
+         * iLBC in 30 ms mode.
+         */
+        ILBC_30,
+
+        /**
+         * Signed 16-bit little-endian linear PCM at 8 kHz i.e. no encoding.
+         */
+        LINEAR
+    }
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>BatchTranscoder</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(BatchTranscoder.class);
+
+    /**
+     * The minimum number of channels to be processed by a single task of a
+     * batch. Smaller batches are not worth the hand-off to another thread.
+     */
+    private static final int MIN_CHANNELS_PER_TASK = 8;
+
+    /**
+     * Initializes a new {@link AudioFrameCodec} for a specific {@link Codec}.
+     *
+     * @param codec the <tt>Codec</tt> to initialize a new
+     * <tt>AudioFrameCodec</tt> for
+     * @return a new <tt>AudioFrameCodec</tt> for <tt>codec</tt>
+     */
+    private static AudioFrameCodec createFrameCodec(Codec codec)
+    {
+        switch (codec)
+        {
+        case G729:
+            return new G729FrameCodec();
+        case ILBC_20:
+            return new ILBCFrameCodec(20);
+        case ILBC_30:
+            return new ILBCFrameCodec(30);
+        default:
+            throw new IllegalArgumentException("codec");
+        }
+    }
+
+    /**
+     * Processes a range of the channels of a batch on the current thread.
+     *
+     * @param channels the channels of the batch
+     * @param from the index of the first channel to process
+     * @param to the index after the last channel to process
+     */
+    private static void process(Channel[] channels, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            Channel channel = channels[i];
+
+            try
+            {
+                channel.process();
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+
+                channel.error = t;
+                logger.error("Failed to transcode channel " + channel, t);
+            }
+        }
+    }
+
+    /**
+     * The <tt>ExecutorService</tt> which executes the tasks of a batch other
+     * than the one executed on the thread which invoked
+     * {@link #process(Channel[], int)}.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The <tt>AudioFrameCodec</tt>s of closed channels available for reuse
+     * per <tt>Codec</tt>.
+     */
+    private final Map<Codec, Queue<AudioFrameCodec>> frameCodecPools
+        = new EnumMap<Codec, Queue<AudioFrameCodec>>(Codec.class);
+
+    /**
+     * The indicator which determines whether {@link #executor} was created
+     * by this instance and is to be shut down by {@link #close()}.
+     */
+    private final boolean ownsExecutor;
+
+    /**
+     * The maximum number of threads which process a batch at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * Initializes a new <tt>BatchTranscoder</tt> which processes batches on
+     * as many threads as there are available processors.
+     */
+    public BatchTranscoder()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes a new <tt>BatchTranscoder</tt> which processes batches on
+     * up to a specific number of threads.
+     *
+     * @param parallelism the maximum number of threads to process a batch on
+     */
+    public BatchTranscoder(int parallelism)
+    {
+        this(
+                (parallelism > 1)
+                    ? ExecutorUtils.newCachedThreadPool(
+                            true,
+                            BatchTranscoder.class.getSimpleName())
+                    : null,
+                parallelism,
+                true);
+    }
+
+    /**
+     * Initializes a new <tt>BatchTranscoder</tt> which processes batches on
+     * up to a specific number of threads of a specific
+     * <tt>ExecutorService</tt>.
+     *
+     * @param executor the <tt>ExecutorService</tt> to process batches on. It
+     * is not shut down by {@link #close()}.
+     * @param parallelism the maximum number of threads to process a batch on
+     */
+    public BatchTranscoder(ExecutorService executor, int parallelism)
+    {
+        this(executor, parallelism, false);
+    }
+
+    /**
+     * Initializes a new <tt>BatchTranscoder</tt> instance.
+     *
+     * @param executor the <tt>ExecutorService</tt> to process batches on or
+     * <tt>null</tt> to process them on the invoking thread only
+     * @param parallelism the maximum number of threads to process a batch on
+     * @param ownsExecutor <tt>true</tt> if <tt>executor</tt> is to be shut
+     * down by {@link #close()}
+     */
+    private BatchTranscoder(
+            ExecutorService executor,
+            int parallelism,
+            boolean ownsExecutor)
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism");
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.ownsExecutor = ownsExecutor;
+
+        for (Codec codec : Codec.values())
+        {
+            if (codec != Codec.LINEAR)
+            {
+                frameCodecPools.put(
+                        codec,
+                        new ConcurrentLinkedQueue<AudioFrameCodec>());
+            }
+        }
+    }
+
+    /**
+     * Gets an <tt>AudioFrameCodec</tt> for a specific <tt>Codec</tt> from the
+     * pool or initializes a new one if the pool is empty.
+     *
+     * @param codec the <tt>Codec</tt> to get an <tt>AudioFrameCodec</tt> for
+     * @return an <tt>AudioFrameCodec</tt> for <tt>codec</tt> or <tt>null</tt>
+     * if <tt>codec</tt> is {@link Codec#LINEAR}
+     */
+    private AudioFrameCodec acquireFrameCodec(Codec codec)
+    {
+        if (codec == Codec.LINEAR)
+            return null;
+
+        AudioFrameCodec frameCodec = frameCodecPools.get(codec).poll();
+
+        return (frameCodec == null) ? createFrameCodec(codec) : frameCodec;
+    }
+
+    /**
+     * Releases the resources acquired by this instance. Closing a
+     * <tt>BatchTranscoder</tt> does not close its open channels.
+     */
+    public void close()
+    {
+        if (ownsExecutor && (executor != null))
+            executor.shutdown();
+        for (Queue<AudioFrameCodec> pool : frameCodecPools.values())
+            pool.clear();
+    }
+
+    /**
+     * Closes a specific channel and returns its codec states to the pool of
+     * this instance.
+     *
+     * @param channel the channel to close
+     */
+    public void closeChannel(Channel channel)
+    {
+        releaseFrameCodec(channel.source, channel.decoder);
+        channel.decoder = null;
+        releaseFrameCodec(channel.target, channel.encoder);
+        channel.encoder = null;
+
+        channel.pcmLength = 0;
+        channel.in = null;
+        channel.out = null;
+        channel.error = null;
+    }
+
+    /**
+     * Opens a new channel which transcodes from a specific <tt>Codec</tt> to
+     * a specific <tt>Codec</tt>.
+     *
+     * @param source the <tt>Codec</tt> of the input of the new channel
+     * @param target the <tt>Codec</tt> of the output of the new channel
+     * @return a new channel which transcodes from <tt>source</tt> to
+     * <tt>target</tt>
+     */
+    public Channel openChannel(Codec source, Codec target)
+    {
+        if (source == null)
+            throw new NullPointerException("source");
+        if (target == null)
+            throw new NullPointerException("target");
+
+        Channel channel = new Channel(source, target);
+
+        channel.decoder = acquireFrameCodec(source);
+        channel.encoder = acquireFrameCodec(target);
+        return channel;
+    }
+
+    /**
+     * Processes the input of a batch of channels. The batch is split into up
+     * to {@link #parallelism} tasks one of which is executed on the current
+     * thread. Returns when all channels of the batch have been processed. A
+     * failure to process a channel is reported by {@link Channel#getError()}
+     * and does not affect the other channels.
+     *
+     * @param channels the channels to process
+     * @param count the number of channels at the beginning of
+     * <tt>channels</tt> to process
+     * @throws InterruptedException if the current thread is interrupted while
+     * waiting for the other threads to process their parts of the batch
+     */
+    public void process(final Channel[] channels, int count)
+        throws InterruptedException
+    {
+        int taskCount
+            = Math.min(
+                    parallelism,
+                    (count + MIN_CHANNELS_PER_TASK - 1)
+                        / MIN_CHANNELS_PER_TASK);
+
+        if ((taskCount <= 1) || (executor == null))
+        {
+            process(channels, 0, count);
+            return;
+        }
+
+        int channelsPerTask = (count + taskCount - 1) / taskCount;
+
+        /*
+         * The rounding up of channelsPerTask may leave fewer ranges of
+         * channels than taskCount e.g. 81 channels on 10 threads are split
+         * into 9 ranges of 9 channels.
+         */
+        taskCount = (count + channelsPerTask - 1) / channelsPerTask;
+
+        final CountDownLatch latch = new CountDownLatch(taskCount - 1);
+
+        for (int from = channelsPerTask; from < count; from += channelsPerTask)
+        {
+            final int taskFrom = from;
+            final int taskTo = Math.min(count, from + channelsPerTask);
+            Runnable task
+                = new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            process(channels, taskFrom, taskTo);
+                        }
+                        finally
+                        {
+                            latch.countDown();
+                        }
+                    }
+                };
+
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException ree)
+            {
+                task.run();
+            }
+        }
+        process(channels, 0, Math.min(count, channelsPerTask));
+        latch.await();
+    }
+
+    /**
+     * Resets a specific <tt>AudioFrameCodec</tt> and returns it to the pool.
+     *
+     * @param codec the <tt>Codec</tt> of <tt>frameCodec</tt>
+     * @param frameCodec the <tt>AudioFrameCodec</tt> to return to the pool
+     */
+    private void releaseFrameCodec(Codec codec, AudioFrameCodec frameCodec)
+    {
+        if (frameCodec != null)
+        {
+            frameCodec.reset();
+            frameCodecPools.get(codec).offer(frameCodec);
+        }
+    }
+
+    /**
+     * Represents one direction of a call transcoded by a
+     * <tt>BatchTranscoder</tt>. A channel buffers the decoded samples which
+     * do not fill a whole frame of its target <tt>Codec</tt> until they do.
+     * A <tt>Channel</tt> is not thread-safe and is to be used with a single
+     * batch at a time.
+     */
+    public static class Channel
+    {
+        /**
+         * The <tt>AudioFrameCodec</tt> which decodes the input of this
+         * channel or <tt>null</tt> if the input is linear PCM.
+         */
+        private AudioFrameCodec decoder;
+
+        /**
+         * The <tt>AudioFrameCodec</tt> which encodes the output of this
+         * channel or <tt>null</tt> if the output is linear PCM.
+         */
+        private AudioFrameCodec encoder;
+
+        /**
+         * The failure of the last processing of this channel or
+         * <tt>null</tt> if it succeeded.
+         */
+        private Throwable error;
+
+        /**
+         * The array which holds the input to be processed by the next batch
+         * or <tt>null</tt> if there is none.
+         */
+        private byte[] in;
+
+        /**
+         * The number of bytes of input in {@link #in}.
+         */
+        private int inLength;
+
+        /**
+         * The offset in {@link #in} at which the input starts.
+         */
+        private int inOffset;
+
+        /**
+         * The array into which the output of this channel is written.
+         */
+        private byte[] out;
+
+        /**
+         * The number of bytes of output written into {@link #out} by the last
+         * processing of this channel.
+         */
+        private int outLength;
+
+        /**
+         * The offset in {@link #out} at which the output starts.
+         */
+        private int outOffset;
+
+        /**
+         * The decoded samples which have not been encoded yet.
+         */
+        private byte[] pcm = new byte[0];
+
+        /**
+         * The number of bytes in {@link #pcm}.
+         */
+        private int pcmLength;
+
+        /**
+         * The <tt>Codec</tt> of the input of this channel.
+         */
+        private final Codec source;
+
+        /**
+         * The <tt>Codec</tt> of the output of this channel.
+         */
+        private final Codec target;
+
+        /**
+         * Initializes a new <tt>Channel</tt> instance.
+         *
+         * @param source the <tt>Codec</tt> of the input of the new instance
+         * @param target the <tt>Codec</tt> of the output of the new instance
+         */
+        private Channel(Codec source, Codec target)
+        {
+            this.source = source;
+            this.target = target;
+        }
+
+        /**
+         * Makes sure that {@link #out} has room for a specific number of
+         * bytes at {@link #outOffset}. If it does not, a new array is
+         * allocated.
+         *
+         * @param length the number of bytes to make room for
+         */
+        private void ensureOutputCapacity(int length)
+        {
+            if ((out == null) || (out.length < outOffset + length))
+            {
+                out = new byte[length];
+                outOffset = 0;
+            }
+        }
+
+        /**
+         * Makes sure that {@link #pcm} has room for a specific number of
+         * bytes while retaining its first {@link #pcmLength} bytes.
+         *
+         * @param length the number of bytes to make room for
+         */
+        private void ensurePCMCapacity(int length)
+        {
+            if (pcm.length < length)
+                pcm = Arrays.copyOf(pcm, length);
+        }
+
+        /**
+         * Gets the failure of the last processing of this channel.
+         *
+         * @return the failure of the last processing of this channel or
+         * <tt>null</tt> if it succeeded
+         */
+        public Throwable getError()
+        {
+            return error;
+        }
+
+        /**
+         * Gets the array which holds the output of the last processing of
+         * this channel. It is the array set with
+         * {@link #setOutput(byte[], int)} unless that array was too small, in
+         * which case a new array was allocated.
+         *
+         * @return the array which holds the output of the last processing of
+         * this channel
+         */
+        public byte[] getOutput()
+        {
+            return out;
+        }
+
+        /**
+         * Gets the number of bytes of output produced by the last processing
+         * of this channel. It may be zero if the input did not complete a
+         * frame of the target <tt>Codec</tt>.
+         *
+         * @return the number of bytes of output produced by the last
+         * processing of this channel
+         */
+        public int getOutputLength()
+        {
+            return outLength;
+        }
+
+        /**
+         * Gets the offset in {@link #getOutput()} at which the output of the
+         * last processing of this channel starts.
+         *
+         * @return the offset in <tt>getOutput()</tt> at which the output of
+         * the last processing of this channel starts
+         */
+        public int getOutputOffset()
+        {
+            return outOffset;
+        }
+
+        /**
+         * Gets the <tt>Codec</tt> of the input of this channel.
+         *
+         * @return the <tt>Codec</tt> of the input of this channel
+         */
+        public Codec getSource()
+        {
+            return source;
+        }
+
+        /**
+         * Gets the <tt>Codec</tt> of the output of this channel.
+         *
+         * @return the <tt>Codec</tt> of the output of this channel
+         */
+        public Codec getTarget()
+        {
+            return target;
+        }
+
+        /**
+         * Decodes the input set on this channel and encodes as many whole
+         * frames as possible into the output.
+         */
+        private void process()
+        {
+            error = null;
+            outLength = 0;
+
+            // Decode the input.
+            if (inLength > 0)
+            {
+                if (decoder == null)
+                {
+                    int length = inLength & ~1;
+
+                    ensurePCMCapacity(pcmLength + length);
+                    System.arraycopy(in, inOffset, pcm, pcmLength, length);
+                    pcmLength += length;
+                }
+                else
+                {
+                    int payloadLength = decoder.getPayloadLength();
+                    int frameCount = inLength / payloadLength;
+
+                    ensurePCMCapacity(
+                            pcmLength
+                                + frameCount
+                                    * 2 * decoder.getFrameSizeInSamples());
+                    for (int i = 0, o = inOffset;
+                            i < frameCount;
+                            i++, o += payloadLength)
+                    {
+                        pcmLength += decoder.decode(in, o, pcm, pcmLength);
+                    }
+                }
+                in = null;
+                inLength = 0;
+            }
+
+            // Encode the output.
+            if (encoder == null)
+            {
+                ensureOutputCapacity(pcmLength);
+                System.arraycopy(pcm, 0, out, outOffset, pcmLength);
+                outLength = pcmLength;
+                pcmLength = 0;
+            }
+            else
+            {
+                int frameLength = 2 * encoder.getFrameSizeInSamples();
+                int frameCount = pcmLength / frameLength;
+
+                if (frameCount > 0)
+                {
+                    ensureOutputCapacity(
+                            frameCount * encoder.getPayloadLength());
+
+                    int pcmOffset = 0;
+
+                    for (int i = 0; i < frameCount; i++)
+                    {
+                        outLength
+                            += encoder.encode(
+                                    pcm, pcmOffset,
+                                    out, outOffset + outLength);
+                        pcmOffset += frameLength;
+                    }
+                    pcmLength -= pcmOffset;
+                    if (pcmLength > 0)
+                        System.arraycopy(pcm, pcmOffset, pcm, 0, pcmLength);
+                }
+            }
+        }
+
+        /**
+         * Sets the input to be processed by the next batch this channel is
+         * part of. The input is a whole number of frames of the source
+         * <tt>Codec</tt> e.g. the payload of an RTP packet. The array is not
+         * copied and must not be modified until the batch completes.
+         *
+         * @param in the array which holds the input
+         * @param offset the offset in <tt>in</tt> at which the input starts
+         * @param length the number of bytes of input
+         */
+        public void setInput(byte[] in, int offset, int length)
+        {
+            this.in = in;
+            this.inOffset = offset;
+            this.inLength = length;
+        }
+
+        /**
+         * Sets the array into which the next processing of this channel is to
+         * write its output. If the array turns out to be too small, a new one
+         * is allocated instead.
+         *
+         * @param out the array into which the output is to be written
+         * @param offset the offset in <tt>out</tt> at which the output is to
+         * be written
+         */
+        public void setOutput(byte[] out, int offset)
+        {
+            this.out = out;
+            this.outOffset = offset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            return
+                getClass().getSimpleName() + "[" + source + "->" + target
+                    + "]";
+        }
+    }
+}
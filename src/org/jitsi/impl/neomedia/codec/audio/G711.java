@@ -0,0 +1,516 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio;
+
+import org.jitsi.impl.neomedia.*;
+
+/**
+ * Implements table-driven G.711 &micro;-law and A-law compression and
+ * expansion, and the direct conversion between &micro;-law and A-law without
+ * going through linear PCM. All tables are computed once when the class is
+ * initialized so every conversion is a single array lookup per sample.
+ * <p>
+ * The &micro;-law to A-law (and A-law to &micro;-law) tables are computed by
+ * expanding every code and compressing the result again i.e. they produce
+ * exactly what the decode-to-PCM-then-re-encode path produces.
+ * </p>
+ * <p>
+ * Linear PCM is signed 16-bit. The methods which operate on arrays of bytes
+ * read and write it in little endian unless specified otherwise.
+ * </p>
+ */
+public class G711
+{
+    /**
+     * The A-law code for every 16-bit linear PCM sample indexed by the sample
+     * as an unsigned 16-bit value.
+     */
+    private static final byte[] LINEAR_TO_ALAW = new byte[1 << 16];
+
+    /**
+     * The &micro;-law code for every 16-bit linear PCM sample indexed by the
+     * sample as an unsigned 16-bit value.
+     */
+    private static final byte[] LINEAR_TO_ULAW = new byte[1 << 16];
+
+    /**
+     * The 16-bit linear PCM sample for every A-law code.
+     */
+    private static final short[] ALAW_TO_LINEAR = new short[256];
+
+    /**
+     * The &micro;-law code for every A-law code.
+     */
+    private static final byte[] ALAW_TO_ULAW = new byte[256];
+
+    /**
+     * The 16-bit linear PCM sample for every &micro;-law code.
+     */
+    private static final short[] ULAW_TO_LINEAR = new short[256];
+
+    /**
+     * The A-law code for every &micro;-law code.
+     */
+    private static final byte[] ULAW_TO_ALAW = new byte[256];
+
+    static
+    {
+        for (int i = 0; i < 256; i++)
+        {
+            ALAW_TO_LINEAR[i] = expandALaw(i);
+            ULAW_TO_LINEAR[i] = expandULaw(i);
+        }
+        for (int i = Short.MIN_VALUE; i <= Short.MAX_VALUE; i++)
+        {
+            LINEAR_TO_ALAW[i & 0xFFFF] = compressALaw(i);
+            LINEAR_TO_ULAW[i & 0xFFFF] = compressULaw(i);
+        }
+        for (int i = 0; i < 256; i++)
+        {
+            ALAW_TO_ULAW[i] = LINEAR_TO_ULAW[ALAW_TO_LINEAR[i] & 0xFFFF];
+            ULAW_TO_ALAW[i] = LINEAR_TO_ALAW[ULAW_TO_LINEAR[i] & 0xFFFF];
+        }
+    }
+
+    /**
+     * Expands a specific A-law code into a 16-bit linear PCM sample.
+     *
+     * @param alaw the A-law code to expand
+     * @return the 16-bit linear PCM sample represented by <tt>alaw</tt>
+     */
+    public static short alaw2linear(byte alaw)
+    {
+        return ALAW_TO_LINEAR[alaw & 0xFF];
+    }
+
+    /**
+     * Expands A-law codes into 16-bit little endian linear PCM.
+     *
+     * @param in the A-law codes to expand
+     * @param inOffset the offset in <tt>in</tt> at which the A-law codes start
+     * @param inLength the number of A-law codes to expand
+     * @param out the array into which the linear PCM is to be written. There
+     * must be at least <tt>2 * inLength</tt> bytes available starting at
+     * <tt>outOffset</tt>.
+     * @param outOffset the offset in <tt>out</tt> at which the linear PCM is
+     * to be written
+     */
+    public static void alaw2linear(
+            byte[] in, int inOffset, int inLength,
+            byte[] out, int outOffset)
+    {
+        expand(ALAW_TO_LINEAR, in, inOffset, inLength, out, outOffset);
+    }
+
+    /**
+     * Converts a specific A-law code into a &micro;-law code.
+     *
+     * @param alaw the A-law code to convert
+     * @return the &micro;-law code for <tt>alaw</tt>
+     */
+    public static byte alaw2ulaw(byte alaw)
+    {
+        return ALAW_TO_ULAW[alaw & 0xFF];
+    }
+
+    /**
+     * Converts A-law codes into &micro;-law codes. <tt>in</tt> and
+     * <tt>out</tt> may be the same array (and the offsets the same) in which
+     * case the conversion is performed in place.
+     *
+     * @param in the A-law codes to convert
+     * @param inOffset the offset in <tt>in</tt> at which the A-law codes start
+     * @param length the number of codes to convert
+     * @param out the array into which the &micro;-law codes are to be written
+     * @param outOffset the offset in <tt>out</tt> at which the &micro;-law
+     * codes are to be written
+     */
+    public static void alaw2ulaw(
+            byte[] in, int inOffset, int length,
+            byte[] out, int outOffset)
+    {
+        map(ALAW_TO_ULAW, in, inOffset, length, out, outOffset);
+    }
+
+    /**
+     * Converts the payload of a specific RTP packet from A-law to
+     * &micro;-law in place. The RTP padding, if any, is left intact. The RTP
+     * payload type is not modified because its value is specific to the
+     * session in which the packet is to be sent.
+     *
+     * @param pkt the RTP packet the payload of which is to be converted
+     */
+    public static void alaw2ulaw(RawPacket pkt)
+    {
+        map(ALAW_TO_ULAW, pkt);
+    }
+
+    /**
+     * Compresses a 16-bit linear PCM sample into an A-law code.
+     *
+     * @param pcm A 16-bit linear PCM sample. Only the least significant 16
+     * bits are considered.
+     * @return the A-law code for <tt>pcm</tt>
+     */
+    public static byte linear2alaw(int pcm)
+    {
+        return LINEAR_TO_ALAW[pcm & 0xFFFF];
+    }
+
+    /**
+     * Compresses 16-bit linear PCM into A-law codes.
+     *
+     * @param in the linear PCM to compress
+     * @param inOffset the offset in <tt>in</tt> at which the linear PCM starts
+     * @param inLength the number of bytes of linear PCM to compress
+     * @param bigEndian <tt>true</tt> if the linear PCM is in big endian;
+     * otherwise, <tt>false</tt>
+     * @param out the array into which the A-law codes are to be written.
+     * There must be at least <tt>inLength / 2</tt> bytes available starting at
+     * <tt>outOffset</tt>.
+     * @param outOffset the offset in <tt>out</tt> at which the A-law codes are
+     * to be written
+     */
+    public static void linear2alaw(
+            byte[] in, int inOffset, int inLength, boolean bigEndian,
+            byte[] out, int outOffset)
+    {
+        compress(
+                LINEAR_TO_ALAW,
+                in, inOffset, inLength, bigEndian,
+                out, outOffset);
+    }
+
+    /**
+     * Compresses a 16-bit linear PCM sample into a &micro;-law code.
+     *
+     * @param pcm A 16-bit linear PCM sample. Only the least significant 16
+     * bits are considered.
+     * @return the &micro;-law code for <tt>pcm</tt>
+     */
+    public static byte linear2ulaw(int pcm)
+    {
+        return LINEAR_TO_ULAW[pcm & 0xFFFF];
+    }
+
+    /**
+     * Compresses 16-bit linear PCM into &micro;-law codes.
+     *
+     * @param in the linear PCM to compress
+     * @param inOffset the offset in <tt>in</tt> at which the linear PCM starts
+     * @param inLength the number of bytes of linear PCM to compress
+     * @param bigEndian <tt>true</tt> if the linear PCM is in big endian;
+     * otherwise, <tt>false</tt>
+     * @param out the array into which the &micro;-law codes are to be written.
+     * There must be at least <tt>inLength / 2</tt> bytes available starting at
+     * <tt>outOffset</tt>.
+     * @param outOffset the offset in <tt>out</tt> at which the &micro;-law
+     * codes are to be written
+     */
+    public static void linear2ulaw(
+            byte[] in, int inOffset, int inLength, boolean bigEndian,
+            byte[] out, int outOffset)
+    {
+        compress(
+                LINEAR_TO_ULAW,
+                in, inOffset, inLength, bigEndian,
+                out, outOffset);
+    }
+
+    /**
+     * Expands a specific &micro;-law code into a 16-bit linear PCM sample.
+     *
+     * @param ulaw the &micro;-law code to expand
+     * @return the 16-bit linear PCM sample represented by <tt>ulaw</tt>
+     */
+    public static short ulaw2linear(byte ulaw)
+    {
+        return ULAW_TO_LINEAR[ulaw & 0xFF];
+    }
+
+    /**
+     * Expands &micro;-law codes into 16-bit little endian linear PCM.
+     *
+     * @param in the &micro;-law codes to expand
+     * @param inOffset the offset in <tt>in</tt> at which the &micro;-law codes
+     * start
+     * @param inLength the number of &micro;-law codes to expand
+     * @param out the array into which the linear PCM is to be written. There
+     * must be at least <tt>2 * inLength</tt> bytes available starting at
+     * <tt>outOffset</tt>.
+     * @param outOffset the offset in <tt>out</tt> at which the linear PCM is
+     * to be written
+     */
+    public static void ulaw2linear(
+            byte[] in, int inOffset, int inLength,
+            byte[] out, int outOffset)
+    {
+        expand(ULAW_TO_LINEAR, in, inOffset, inLength, out, outOffset);
+    }
+
+    /**
+     * Converts a specific &micro;-law code into an A-law code.
+     *
+     * @param ulaw the &micro;-law code to convert
+     * @return the A-law code for <tt>ulaw</tt>
+     */
+    public static byte ulaw2alaw(byte ulaw)
+    {
+        return ULAW_TO_ALAW[ulaw & 0xFF];
+    }
+
+    /**
+     * Converts &micro;-law codes into A-law codes. <tt>in</tt> and
+     * <tt>out</tt> may be the same array (and the offsets the same) in which
+     * case the conversion is performed in place.
+     *
+     * @param in the &micro;-law codes to convert
+     * @param inOffset the offset in <tt>in</tt> at which the &micro;-law codes
+     * start
+     * @param length the number of codes to convert
+     * @param out the array into which the A-law codes are to be written
+     * @param outOffset the offset in <tt>out</tt> at which the A-law codes are
+     * to be written
+     */
+    public static void ulaw2alaw(
+            byte[] in, int inOffset, int length,
+            byte[] out, int outOffset)
+    {
+        map(ULAW_TO_ALAW, in, inOffset, length, out, outOffset);
+    }
+
+    /**
+     * Converts the payload of a specific RTP packet from &micro;-law to A-law
+     * in place. The RTP padding, if any, is left intact. The RTP payload type
+     * is not modified because its value is specific to the session in which
+     * the packet is to be sent.
+     *
+     * @param pkt the RTP packet the payload of which is to be converted
+     */
+    public static void ulaw2alaw(RawPacket pkt)
+    {
+        map(ULAW_TO_ALAW, pkt);
+    }
+
+    /**
+     * Compresses a 16-bit linear PCM sample into an A-law code. Used to
+     * initialize {@link #LINEAR_TO_ALAW} only.
+     *
+     * @param pcm a 16-bit signed linear PCM sample
+     * @return the A-law code for <tt>pcm</tt>
+     */
+    private static byte compressALaw(int pcm)
+    {
+        // Get the sign bit. Shift it for later use without further
+        // modification.
+        int sign = (pcm & 0x8000) >> 8;
+
+        // If the number is negative, make it positive (now it's a magnitude).
+        if (sign != 0)
+            pcm = -pcm;
+        // The magnitude must fit in 15 bits to avoid overflow.
+        if (pcm > 0x7FFF)
+            pcm = 0x7FFF;
+
+        // Find the first 1 after the sign bit. The exponent is 0 if the 1 is
+        // not found in bits 2 through 8.
+        int exponent = 7;
+
+        for (int expMask = 0x4000;
+                (pcm & expMask) == 0 && exponent > 0;
+                exponent--, expMask >>= 1);
+
+        // The mantissa is the four bits after the 1 just found (or the bits 9
+        // through 12 if the exponent is 0).
+        int mantissa = (pcm >> ((exponent == 0) ? 4 : (exponent + 3))) & 0x0F;
+
+        // The A-law byte bit arrangement is SEEEMMMM (Sign, Exponent and
+        // Mantissa). Flip every other bit and the sign bit.
+        return (byte) ((sign | (exponent << 4) | mantissa) ^ 0xD5);
+    }
+
+    /**
+     * Compresses a 16-bit linear PCM sample into a &micro;-law code. Used to
+     * initialize {@link #LINEAR_TO_ULAW} only.
+     *
+     * @param pcm a 16-bit signed linear PCM sample
+     * @return the &micro;-law code for <tt>pcm</tt>
+     */
+    private static byte compressULaw(int pcm)
+    {
+        int sign;
+
+        if (pcm >= 0)
+        {
+            sign = 0x80;
+        }
+        else
+        {
+            pcm = -pcm;
+            sign = 0x00;
+        }
+
+        // Add the bias and drop the three least significant bits.
+        pcm = (132 + pcm) >> 3;
+
+        // Find the segment.
+        int segment = 7;
+
+        for (int segMask = 0x20; segMask <= pcm && segment > 0; segMask <<= 1)
+            segment--;
+
+        return
+            (byte)
+                ((pcm >= 0x1000)
+                    ? sign
+                    : (sign
+                            | (segment << 4)
+                            | (31 - (pcm >> (7 - segment)))));
+    }
+
+    /**
+     * Compresses 16-bit linear PCM into 8-bit codes using a specific table.
+     */
+    private static void compress(
+            byte[] table,
+            byte[] in, int inOffset, int inLength, boolean bigEndian,
+            byte[] out, int outOffset)
+    {
+        int inEnd = inOffset + (inLength & ~1);
+        int msbOffset, lsbOffset;
+
+        if (bigEndian)
+        {
+            msbOffset = 0;
+            lsbOffset = 1;
+        }
+        else
+        {
+            msbOffset = 1;
+            lsbOffset = 0;
+        }
+        for (int i = inOffset; i < inEnd; i += 2)
+        {
+            out[outOffset++]
+                = table[
+                        ((in[i + msbOffset] & 0xFF) << 8)
+                            | (in[i + lsbOffset] & 0xFF)];
+        }
+    }
+
+    /**
+     * Expands 8-bit codes into 16-bit little endian linear PCM using a
+     * specific table.
+     */
+    private static void expand(
+            short[] table,
+            byte[] in, int inOffset, int inLength,
+            byte[] out, int outOffset)
+    {
+        int inEnd = inOffset + inLength;
+
+        for (int i = inOffset; i < inEnd; i++)
+        {
+            short s = table[in[i] & 0xFF];
+
+            out[outOffset++] = (byte) s;
+            out[outOffset++] = (byte) (s >> 8);
+        }
+    }
+
+    /**
+     * Expands a specific A-law code into a 16-bit linear PCM sample. Used to
+     * initialize {@link #ALAW_TO_LINEAR} only.
+     *
+     * @param alaw the A-law code to expand
+     * @return the 16-bit linear PCM sample represented by <tt>alaw</tt>
+     */
+    private static short expandALaw(int alaw)
+    {
+        alaw ^= 0x55;
+
+        int t = (alaw & 0x0F) << 4;
+        int segment = (alaw & 0x70) >> 4;
+
+        switch (segment)
+        {
+        case 0:
+            t += 8;
+            break;
+        case 1:
+            t += 0x108;
+            break;
+        default:
+            t += 0x108;
+            t <<= segment - 1;
+            break;
+        }
+        return (short) (((alaw & 0x80) != 0) ? t : -t);
+    }
+
+    /**
+     * Expands a specific &micro;-law code into a 16-bit linear PCM sample.
+     * Used to initialize {@link #ULAW_TO_LINEAR} only.
+     *
+     * @param ulaw the &micro;-law code to expand
+     * @return the 16-bit linear PCM sample represented by <tt>ulaw</tt>
+     */
+    private static short expandULaw(int ulaw)
+    {
+        ulaw = ~ulaw;
+
+        int mantissa = ((ulaw & 0x0F) << 3) + 0x84;
+        int segment = (ulaw & 0x70) >> 4;
+        int value = (mantissa << segment) - 0x84;
+
+        return (short) (((ulaw & 0x80) != 0) ? -value : value);
+    }
+
+    /**
+     * Maps 8-bit codes using a specific 256-entry table.
+     */
+    private static void map(
+            byte[] table,
+            byte[] in, int inOffset, int length,
+            byte[] out, int outOffset)
+    {
+        int inEnd = inOffset + length;
+
+        for (int i = inOffset; i < inEnd; i++)
+            out[outOffset++] = table[in[i] & 0xFF];
+    }
+
+    /**
+     * Maps the payload of a specific RTP packet in place using a specific
+     * 256-entry table.
+     */
+    private static void map(byte[] table, RawPacket pkt)
+    {
+        byte[] buf = pkt.getBuffer();
+        int off = pkt.getPayloadOffset();
+        int len = pkt.getPayloadLength() - pkt.getPaddingSize();
+
+        if (len > 0)
+            map(table, buf, off, len, buf, off);
+    }
+
+    /**
+     * Prevents the initialization of new <tt>G711</tt> instances.
+     */
+    private G711()
+    {
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.alaw;
+
+import javax.media.*;
+import javax.media.format.*;
+
+import org.jitsi.impl.neomedia.codec.audio.*;
+
+/**
+ * The ALAW Decoder. The expansion is table-driven by {@link G711}.
+ */
+public class JavaDecoder
+    extends com.ibm.media.codec.audio.AudioCodec
+{
+    /**
+     * Constructs the decoder and init the supported formats.
+     */
+    public JavaDecoder()
+    {
+        supportedInputFormats
+            = new AudioFormat[] { new AudioFormat(AudioFormat.ALAW) };
+        defaultOutputFormats
+            = new AudioFormat[] { new AudioFormat(AudioFormat.LINEAR) };
+        PLUGIN_NAME = "A-Law Decoder";
+    }
+
+    /**
+     * Returns the output formats according to the input.
+     * @param in the input format.
+     * @return the possible output formats.
+     */
+    @Override
+    protected Format[] getMatchingOutputFormats(Format in)
+    {
+        AudioFormat af = (AudioFormat) in;
+
+        supportedOutputFormats
+            = new AudioFormat[]
+            {
+                new AudioFormat(
+                        AudioFormat.LINEAR,
+                        af.getSampleRate(),
+                        16,
+                        af.getChannels(),
+                        AudioFormat.LITTLE_ENDIAN,
+                        AudioFormat.SIGNED)
+            };
+        return supportedOutputFormats;
+    }
+
+    /**
+     * No resources to be opened.
+     */
+    @Override
+    public void open()
+    {}
+
+    /**
+     * No resources used to be cleared.
+     */
+    @Override
+    public void close()
+    {}
+
+    /**
+     * Decodes the input buffer passing it to the output one
+     * @param inputBuffer Buffer
+     * @param outputBuffer Buffer
+     * @return int
+     */
+    public int process(Buffer inputBuffer, Buffer outputBuffer)
+    {
+        if (!checkInputBuffer(inputBuffer))
+            return BUFFER_PROCESSED_FAILED;
+        if (isEOM(inputBuffer))
+        {
+            propagateEOM(outputBuffer);
+            return BUFFER_PROCESSED_OK;
+        }
+
+        int inLength = inputBuffer.getLength();
+        int outLength = 2 * inLength;
+        byte[] inData = (byte[]) inputBuffer.getData();
+        byte[] outData = validateByteArraySize(outputBuffer, outLength);
+
+        G711.alaw2linear(
+                inData, inputBuffer.getOffset(), inLength,
+                outData, 0);
+
+        updateOutput(outputBuffer, outputFormat, outLength, 0);
+        return BUFFER_PROCESSED_OK;
+    }
+}
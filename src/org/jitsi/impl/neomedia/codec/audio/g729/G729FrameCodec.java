@@ -0,0 +1,139 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.g729;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.codec.audio.*;
+
+/**
+ * Implements {@link AudioFrameCodec} on top of the pure-Java G.729 encoder
+ * and decoder used by {@link JavaEncoder} and {@link JavaDecoder}. The
+ * encoder and decoder states are created on first use so that an instance
+ * which only encodes (or only decodes) does not carry the state of the other
+ * direction.
+ */
+public class G729FrameCodec
+    implements AudioFrameCodec
+{
+    /**
+     * The number of samples in a G.729 frame (of 10 ms).
+     */
+    private static final int L_FRAME = Ld8k.L_FRAME;
+
+    /**
+     * The number of bytes of an encoded G.729 frame i.e. one bit per sample.
+     */
+    private static final int PAYLOAD_LENGTH = L_FRAME / 8;
+
+    /**
+     * The G.729 encoder of this instance or <tt>null</tt> if this instance
+     * has not encoded since it was initialized or reset.
+     */
+    private Coder coder;
+
+    /**
+     * The G.729 decoder of this instance or <tt>null</tt> if this instance
+     * has not decoded since it was initialized or reset.
+     */
+    private Decoder decoder;
+
+    /**
+     * The bits of an encoded frame in the serial format of the reference
+     * implementation i.e. one <tt>short</tt> per bit after a sync and a size
+     * word.
+     */
+    private final short[] serial = new short[Ld8k.SERIAL_SIZE];
+
+    /**
+     * The samples of a frame which is being encoded or decoded.
+     */
+    private final short[] sp16 = new short[L_FRAME];
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int decode(
+            byte[] payload, int payloadOffset,
+            byte[] pcm, int pcmOffset)
+    {
+        if (decoder == null)
+            decoder = new Decoder();
+
+        JavaDecoder.depacketize(payload, payloadOffset, serial);
+        decoder.process(serial, sp16);
+        JavaDecoder.writeShorts(sp16, pcm, pcmOffset);
+        return 2 * L_FRAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int encode(
+            byte[] pcm, int pcmOffset,
+            byte[] payload, int payloadOffset)
+    {
+        if (coder == null)
+            coder = new Coder();
+
+        for (int i = 0; i < L_FRAME; i++, pcmOffset += 2)
+            sp16[i] = ArrayIOUtils.readShort(pcm, pcmOffset);
+        coder.process(sp16, serial);
+        JavaEncoder.packetize(serial, payload, payloadOffset);
+        return PAYLOAD_LENGTH;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFrameSizeInSamples()
+    {
+        return L_FRAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return PAYLOAD_LENGTH;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSampleRate()
+    {
+        return 8000;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The G.729 encoder and decoder do not support resetting in place so they
+     * are released and created anew on next use.
+     */
+    @Override
+    public void reset()
+    {
+        coder = null;
+        decoder = null;
+    }
+}
@@ -85,7 +85,7 @@ public class JavaDecoder
                     };
     }
 
-    private void depacketize(byte[] inFrame, int inFrameOffset, short[] serial)
+    static void depacketize(byte[] inFrame, int inFrameOffset, short[] serial)
     {
         serial[0] = SYNC_WORD;
         serial[1] = SIZE_WORD;
@@ -175,7 +175,7 @@ public class JavaDecoder
         return BUFFER_PROCESSED_OK;
     }
 
-    private static void writeShorts(short[] in, byte[] out, int outOffset)
+    static void writeShorts(short[] in, byte[] out, int outOffset)
     {
         for (int i = 0, o = outOffset; i < in.length; i++, o += 2)
             ArrayIOUtils.writeShort(in[i], out, o);
@@ -281,7 +281,7 @@ public class JavaEncoder
         return ret;
     }
 
-    private void packetize(short[] serial, byte[] outFrame, int outFrameOffset)
+    static void packetize(short[] serial, byte[] outFrame, int outFrameOffset)
     {
         Arrays.fill(
                 outFrame, outFrameOffset, outFrameOffset + L_FRAME / 8,
@@ -300,7 +300,7 @@ public class JavaEncoder
         }
     }
 
-    private static int readShorts(
+    static int readShorts(
             byte[] in, int inOffset,
             short[] out, int outOffset, int outLength)
     {
@@ -0,0 +1,158 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.ilbc;
+
+import org.jitsi.impl.neomedia.codec.audio.*;
+
+/**
+ * Implements {@link AudioFrameCodec} on top of the pure-Java iLBC encoder and
+ * decoder used by {@link JavaEncoder} and {@link JavaDecoder}. The encoder
+ * and decoder states are created on first use so that an instance which only
+ * encodes (or only decodes) does not carry the state of the other direction.
+ */
+public class ILBCFrameCodec
+    implements AudioFrameCodec
+{
+    /**
+     * The iLBC decoder of this instance or <tt>null</tt> if this instance has
+     * not decoded since it was initialized or reset.
+     */
+    private ilbc_decoder dec;
+
+    /**
+     * The iLBC encoder of this instance or <tt>null</tt> if this instance has
+     * not encoded since it was initialized or reset.
+     */
+    private ilbc_encoder enc;
+
+    /**
+     * The number of samples in a frame in the mode of this instance.
+     */
+    private final int frameSizeInSamples;
+
+    /**
+     * The iLBC mode of this instance i.e. the frame duration in milliseconds.
+     */
+    private final int mode;
+
+    /**
+     * The number of bytes of an encoded frame in the mode of this instance.
+     */
+    private final int payloadLength;
+
+    /**
+     * Initializes a new <tt>ILBCFrameCodec</tt> instance.
+     *
+     * @param mode the iLBC mode i.e. 20 or 30 (milliseconds)
+     */
+    public ILBCFrameCodec(int mode)
+    {
+        switch (mode)
+        {
+        case 20:
+            frameSizeInSamples = ilbc_constants.BLOCKL_20MS;
+            payloadLength = ilbc_constants.NO_OF_BYTES_20MS;
+            break;
+        case 30:
+            frameSizeInSamples = ilbc_constants.BLOCKL_30MS;
+            payloadLength = ilbc_constants.NO_OF_BYTES_30MS;
+            break;
+        default:
+            throw new IllegalArgumentException("mode");
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int decode(
+            byte[] payload, int payloadOffset,
+            byte[] pcm, int pcmOffset)
+    {
+        if (dec == null)
+            dec = new ilbc_decoder(mode, 1);
+
+        dec.decode(pcm, pcmOffset, payload, payloadOffset, (short) 1);
+        return 2 * frameSizeInSamples;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int encode(
+            byte[] pcm, int pcmOffset,
+            byte[] payload, int payloadOffset)
+    {
+        if (enc == null)
+            enc = new ilbc_encoder(mode);
+
+        return enc.encode(payload, payloadOffset, pcm, pcmOffset);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFrameSizeInSamples()
+    {
+        return frameSizeInSamples;
+    }
+
+    /**
+     * Gets the iLBC mode of this instance i.e. the frame duration in
+     * milliseconds.
+     *
+     * @return the iLBC mode of this instance
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPayloadLength()
+    {
+        return payloadLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSampleRate()
+    {
+        return 8000;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The iLBC encoder and decoder do not support resetting in place so they
+     * are released and created anew on next use.
+     */
+    @Override
+    public void reset()
+    {
+        dec = null;
+        enc = null;
+    }
+}
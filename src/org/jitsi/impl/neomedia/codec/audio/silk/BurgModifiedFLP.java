@@ -15,6 +15,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  * Calculates the reflection coefficients from the input vector
  * Input vector contains nb_subfr sub vectors of length L_sub + D
@@ -35,6 +37,7 @@ public class BurgModifiedFLP
      * @param nb_subfr number of subframes stacked in x.
      * @param WhiteNoiseFrac fraction added to zero-lag autocorrelation.
      * @param D order.
+     * @param ws scratch memory.
      * @return
      */
     static float SKP_Silk_burg_modified_FLP(     /* O    returns residual energy                                         */
@@ -44,18 +47,24 @@ public class BurgModifiedFLP
             final int   subfr_length,       /* I    input signal subframe length (including D preceeding samples)   */
             final int   nb_subfr,           /* I    number of subframes stacked in x                                */
             final float WhiteNoiseFrac,     /* I    fraction added to zero-lag autocorrelation                      */
-            final int   D                   /* I    order                                                           */
+            final int   D,                  /* I    order                                                           */
+            SKP_Silk_encoder_workspace ws   /* I/O  Scratch memory                                                  */
     )
     {
         int         k, n, s;
         double          C0, num, nrg_f, nrg_b, rc, Atmp, tmp1, tmp2;
         float []x_ptr;
         int x_ptr_offset;
-        double          C_first_row[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ],
-                        C_last_row[]  = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
-        double          CAf[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ],
-                        CAb[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
-        double          Af[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+        double          C_first_row[] = ws.burg_C_first_row,
+                        C_last_row[]  = ws.burg_C_last_row;
+        double          CAf[] = ws.burg_CAf,
+                        CAb[] = ws.burg_CAb;
+        double          Af[] = ws.burg_Af;
+
+        Arrays.fill( C_first_row, 0 );
+        Arrays.fill( CAf, 0 );
+        Arrays.fill( CAb, 0 );
+        Arrays.fill( Af, 0 );
 
         assert( subfr_length * nb_subfr <= MAX_FRAME_SIZE );
         assert( nb_subfr <= MAX_NB_SUBFR );
@@ -25,6 +25,22 @@ import static org.jitsi.impl.neomedia.codec.audio.silk.Macros.*;
  */
 public class CodeSigns
 {
+    /**
+     * The three-entry sign CDFs, one for each entry of
+     * <tt>TablesSign.SKP_Silk_sign_CDF</tt>, built once so that coding the
+     * signs of a frame does not allocate.
+     */
+    private static final int[][] SIGN_CDFS
+        = new int[ TablesSign.SKP_Silk_sign_CDF.length ][];
+
+    static
+    {
+        for( int i = 0; i < SIGN_CDFS.length; i++ )
+        {
+            SIGN_CDFS[ i ] = new int[] { 0, TablesSign.SKP_Silk_sign_CDF[ i ], 65535 };
+        }
+    }
+
     /* shifting avoids if-statement */
 //    #define SKP_enc_map(a)                  ( SKP_RSHIFT( (a), 15 ) + 1 )
     static int SKP_enc_map(int a)
@@ -58,12 +74,10 @@ public class CodeSigns
     {
         int i;
         int inData;
-        int[] cdf = new int[3];
+        final int[] cdf;
 
         i = SKP_SMULBB( N_RATE_LEVELS - 1, ( sigtype << 1 ) + QuantOffsetType ) + RateLevelIndex;
-        cdf[ 0 ] = 0;
-        cdf[ 1 ] = TablesSign.SKP_Silk_sign_CDF[ i ];
-        cdf[ 2 ] = 65535;
+        cdf = SIGN_CDFS[ i ];
 
         for( i = 0; i < length; i++ )
         {
@@ -95,23 +109,22 @@ public class CodeSigns
         )
     {
         int i;
-        int data;
-        int data_ptr[] = new int[1];
-        int[] cdf = new int[3];
+        int data, abs_q;
+        final int[] cdf;
 
         i = SKP_SMULBB( N_RATE_LEVELS - 1, ( sigtype << 1 ) + QuantOffsetType ) + RateLevelIndex;
-        cdf[ 0 ] = 0;
-        cdf[ 1 ] = TablesSign.SKP_Silk_sign_CDF[ i ];
-        cdf[ 2 ] = 65535;
+        cdf = SIGN_CDFS[ i ];
 
         for( i = 0; i < length; i++ ) {
-            if( q[ i ] > 0 ) {
-                RangeCoder.SKP_Silk_range_decoder( data_ptr, 0, sRC, cdf, 0, 1 );
-                data = data_ptr[0];
+            abs_q = q[ i ];
+            if( abs_q > 0 ) {
+                /* decode the sign in place, q[ i ] is restored below */
+                RangeCoder.SKP_Silk_range_decoder( q, i, sRC, cdf, 0, 1 );
+                data = q[ i ];
                 /* attach sign */
                 /* implementation with shift, subtraction, multiplication */
 //                q[ i ] *= SKP_dec_map( data );
-                q[ i ] *= (data<<1) - 1;
+                q[ i ] = abs_q * ( (data<<1) - 1 );
             }
         }
     }
@@ -99,7 +99,7 @@ public class DecAPI
         prev_fs_kHz = psDec.fs_kHz;
 
         /* Call decoder for one frame */
-        int[] used_bytes_ptr =new int[1];
+        int[] used_bytes_ptr = psDec.sWorkspace.used_bytes;
         ret += DecodeFrame.SKP_Silk_decode_frame( psDec, samplesOut, samplesOut_offset, nSamplesOut, inData, inData_offset,
                 nBytesIn, lostFlag, used_bytes_ptr );
         used_bytes = used_bytes_ptr[0];
@@ -140,7 +140,7 @@ public class DecAPI
 
         /* Resample if needed */
         if( psDec.fs_kHz * 1000 != decControl.API_sampleRate ) {
-            short[] samplesOut_tmp = new short[MAX_API_FS_KHZ * FRAME_LENGTH_MS];
+            short[] samplesOut_tmp = psDec.sWorkspace.samplesOut_tmp;
             SKP_assert( psDec.fs_kHz <= MAX_API_FS_KHZ );
 
             /* Copy to a tmp buffer as the resampling writes to samplesOut */
@@ -52,9 +52,11 @@ public class DecodeFrame
         int[]                         decBytes           /* O    Used bytes to decode this frame             */
     )
     {
-        SKP_Silk_decoder_control sDecCtrl = new SKP_Silk_decoder_control();
+        SKP_Silk_decoder_control sDecCtrl = psDec.sWorkspace.sDecCtrl;
         int         L, fs_Khz_old, LPC_order_old, ret = 0;
-        int[]         Pulses = new int[ MAX_FRAME_LENGTH ];
+        int[]         Pulses = psDec.sWorkspace.Pulses;
+
+        sDecCtrl.memZero();
 
 
         L = psDec.frame_length;
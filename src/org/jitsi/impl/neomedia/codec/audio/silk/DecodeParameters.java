@@ -43,12 +43,13 @@ public class DecodeParameters
         )
     {
         int   i, k, Ix, fs_kHz_dec, nBytesUsed;
-        int[] Ix_ptr = new int[1];
-        int[]   Ixs = new int[ NB_SUBFR ];
-        int[]   GainsIndices = new int[ NB_SUBFR ];
-        int[]   NLSFIndices = new int[ NLSF_MSVQ_MAX_CB_STAGES ];
-        int[]   pNLSF_Q15 = new int[ MAX_LPC_ORDER ];
-        int []  pNLSF0_Q15 = new int[ MAX_LPC_ORDER ];
+        SKP_Silk_decoder_workspace ws = psDec.sWorkspace;
+        int[] Ix_ptr = ws.Ix_ptr;
+        int[]   Ixs = ws.Ixs;
+        int[]   GainsIndices = ws.GainsIndices;
+        int[]   NLSFIndices = ws.NLSFIndices;
+        int[]   pNLSF_Q15 = ws.pNLSF_Q15;
+        int []  pNLSF0_Q15 = ws.pNLSF0_Q15;
 
         short[] cbk_ptr_Q14;
         SKP_Silk_NLSF_CB_struct psNLSF_CB = null;
@@ -106,10 +107,9 @@ public class DecodeParameters
         }
 
         /* Dequant Gains */
-        int LastGainIndex_ptr[] = new int[1];
-        LastGainIndex_ptr[0] = psDec.LastGainIndex;
-        GainQuant.SKP_Silk_gains_dequant( psDecCtrl.Gains_Q16, GainsIndices, LastGainIndex_ptr, psDec.nFramesDecoded );
-        psDec.LastGainIndex = LastGainIndex_ptr[0];
+        Ix_ptr[0] = psDec.LastGainIndex;
+        GainQuant.SKP_Silk_gains_dequant( psDecCtrl.Gains_Q16, GainsIndices, Ix_ptr, psDec.nFramesDecoded );
+        psDec.LastGainIndex = Ix_ptr[0];
 
         /****************/
         /* Decode NLSFs */
@@ -128,12 +128,9 @@ public class DecodeParameters
         /************************************/
         /* Decode NLSF interpolation factor */
         /************************************/
-        int[] NLSFInterpCoef_Q2_ptr = new int[1];
-        NLSFInterpCoef_Q2_ptr[0] = psDecCtrl.NLSFInterpCoef_Q2;
-
-        RangeCoder.SKP_Silk_range_decoder( NLSFInterpCoef_Q2_ptr, 0, psRC, TablesOther.SKP_Silk_NLSF_interpolation_factor_CDF, 0,
+        RangeCoder.SKP_Silk_range_decoder( Ix_ptr, 0, psRC, TablesOther.SKP_Silk_NLSF_interpolation_factor_CDF, 0,
                 TablesOther.SKP_Silk_NLSF_interpolation_factor_offset );
-        psDecCtrl.NLSFInterpCoef_Q2 = NLSFInterpCoef_Q2_ptr[0];
+        psDecCtrl.NLSFInterpCoef_Q2 = Ix_ptr[0];
 
         /* If just reset, e.g., because internal Fs changed, do not allow interpolation */
         /* improves the case of packet loss in the first frame after a switch           */
@@ -143,7 +140,7 @@ public class DecodeParameters
 
         if( fullDecoding !=0) {
             /* Convert NLSF parameters to AR prediction filter coefficients */
-            NLSF2AStable.SKP_Silk_NLSF2A_stable( psDecCtrl.PredCoef_Q12[ 1 ], pNLSF_Q15, psDec.LPC_order );
+            NLSF2AStable.SKP_Silk_NLSF2A_stable( psDecCtrl.PredCoef_Q12[ 1 ], pNLSF_Q15, psDec.LPC_order, ws );
             if( psDecCtrl.NLSFInterpCoef_Q2 < 4 ) {
                 /* Calculation of the interpolated NLSF0 vector from the interpolation factor, */
                 /* the previous NLSF1, and the current NLSF1                                   */
@@ -153,7 +150,7 @@ public class DecodeParameters
                 }
 
                 /* Convert NLSF parameters to AR prediction filter coefficients */
-                NLSF2AStable.SKP_Silk_NLSF2A_stable( psDecCtrl.PredCoef_Q12[ 0 ], pNLSF0_Q15, psDec.LPC_order );
+                NLSF2AStable.SKP_Silk_NLSF2A_stable( psDecCtrl.PredCoef_Q12[ 0 ], pNLSF0_Q15, psDec.LPC_order, ws );
             } else {
                 /* Copy LPC coefficients for first half from second half */
                 System.arraycopy(psDecCtrl.PredCoef_Q12[1], 0, psDecCtrl.PredCoef_Q12[0], 0, psDec.LPC_order);
@@ -200,12 +197,9 @@ public class DecodeParameters
             /* Decode LTP gains */
             /********************/
             /* Decode PERIndex value */
-            int PERIndex_ptr[] = new int[1];
-            PERIndex_ptr[0] =  psDecCtrl.PERIndex;
-
-            RangeCoder.SKP_Silk_range_decoder( PERIndex_ptr, 0,  psRC, TablesLTP.SKP_Silk_LTP_per_index_CDF, 0,
+            RangeCoder.SKP_Silk_range_decoder( Ix_ptr, 0,  psRC, TablesLTP.SKP_Silk_LTP_per_index_CDF, 0,
                     TablesLTP.SKP_Silk_LTP_per_index_CDF_offset );
-            psDecCtrl.PERIndex = PERIndex_ptr[0];
+            psDecCtrl.PERIndex = Ix_ptr[0];
 
             /* Decode Codebook Index */
             cbk_ptr_Q14 = TablesLTP.SKP_Silk_LTP_vq_ptrs_Q14[ psDecCtrl.PERIndex ]; // set pointer to start of codebook
@@ -241,30 +235,25 @@ public class DecodeParameters
         /*********************************************/
         /* Decode quantization indices of excitation */
         /*********************************************/
-        DecodePulses.SKP_Silk_decode_pulses( psRC, psDecCtrl, q, psDec.frame_length );
+        DecodePulses.SKP_Silk_decode_pulses( psRC, psDecCtrl, q, psDec.frame_length, ws );
 
         /*********************************************/
         /* Decode VAD flag                           */
         /*********************************************/
-        int[] vadFlag_ptr = new int[1];
-        vadFlag_ptr[0] = psDec.vadFlag;
-        RangeCoder.SKP_Silk_range_decoder( vadFlag_ptr, 0, psRC, TablesOther.SKP_Silk_vadflag_CDF, 0, TablesOther.SKP_Silk_vadflag_offset );
-        psDec.vadFlag = vadFlag_ptr[0];
+        RangeCoder.SKP_Silk_range_decoder( Ix_ptr, 0, psRC, TablesOther.SKP_Silk_vadflag_CDF, 0, TablesOther.SKP_Silk_vadflag_offset );
+        psDec.vadFlag = Ix_ptr[0];
 
         /**************************************/
         /* Decode Frame termination indicator */
         /**************************************/
-        int[] FrameTermination_ptr = new int[1];
-        FrameTermination_ptr[0] = psDec.FrameTermination;
-        RangeCoder.SKP_Silk_range_decoder( FrameTermination_ptr, 0, psRC, TablesOther.SKP_Silk_FrameTermination_CDF, 0, TablesOther.SKP_Silk_FrameTermination_offset );
-        psDec.FrameTermination = FrameTermination_ptr[0];
+        RangeCoder.SKP_Silk_range_decoder( Ix_ptr, 0, psRC, TablesOther.SKP_Silk_FrameTermination_CDF, 0, TablesOther.SKP_Silk_FrameTermination_offset );
+        psDec.FrameTermination = Ix_ptr[0];
 
         /****************************************/
         /* get number of bytes used so far      */
         /****************************************/
-        int nBytesUsed_ptr[] = new int[1];
-        RangeCoder.SKP_Silk_range_coder_get_length( psRC, nBytesUsed_ptr );
-        nBytesUsed = nBytesUsed_ptr[0];
+        RangeCoder.SKP_Silk_range_coder_get_length( psRC, Ix_ptr );
+        nBytesUsed = Ix_ptr[0];
 
         psDec.nBytesLeft = psRC.bufferLength - nBytesUsed;
         if( psDec.nBytesLeft < 0 ) {
@@ -34,17 +34,19 @@ public class DecodePulses
      * @param psDecCtrl Decoder control.
      * @param q Excitation signal.
      * @param frame_length Frame length (preliminary).
+     * @param ws scratch memory.
      */
     static void SKP_Silk_decode_pulses(
             SKP_Silk_range_coder_state      psRC,              /* I/O  Range coder state                           */
             SKP_Silk_decoder_control        psDecCtrl,         /* I/O  Decoder control                             */
             int                             q[],               /* O    Excitation signal                           */
-            final int                       frame_length       /* I    Frame length (preliminary)                  */
+            final int                       frame_length,      /* I    Frame length (preliminary)                  */
+            SKP_Silk_decoder_workspace      ws                 /* I/O  Scratch memory                              */
     )
     {
         int   i, j, k, iter, abs_q, nLS, bit;
-        int[]   sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
-        int[]   nLshifts = new int[ MAX_NB_SHELL_BLOCKS ];
+        int[]   sum_pulses = ws.sum_pulses;
+        int[]   nLshifts = ws.nLshifts;
         int[]   pulses_ptr;
         int     pulses_ptr_offset;
         int[]   cdf_ptr;
@@ -52,7 +54,7 @@ public class DecodePulses
         /*********************/
         /* Decode rate level */
         /*********************/
-        int RateLevelIndex_ptr[] = new int[1];
+        int RateLevelIndex_ptr[] = ws.Ix_ptr;
         RateLevelIndex_ptr[0] = psDecCtrl.RateLevelIndex;
         RangeCoder.SKP_Silk_range_decoder( RateLevelIndex_ptr, 0, psRC,
                 TablesPulsesPerBlock.SKP_Silk_rate_levels_CDF[ psDecCtrl.sigtype ], 0, TablesPulsesPerBlock.SKP_Silk_rate_levels_CDF_offset );
@@ -83,7 +85,7 @@ public class DecodePulses
         /***************************************************/
         for( i = 0; i < iter; i++ ) {
             if( sum_pulses[ i ] > 0 ) {
-                ShellCoder.SKP_Silk_shell_decoder( q, SKP_SMULBB( i, SHELL_CODEC_FRAME_LENGTH ), psRC, sum_pulses[ i ] );
+                ShellCoder.SKP_Silk_shell_decoder( q, SKP_SMULBB( i, SHELL_CODEC_FRAME_LENGTH ), psRC, sum_pulses[ i ], ws );
             } else {
                 Arrays.fill(q, (SKP_SMULBB(i, SHELL_CODEC_FRAME_LENGTH)),
                         ((SKP_SMULBB(i, SHELL_CODEC_FRAME_LENGTH)) + SHELL_CODEC_FRAME_LENGTH), 0);
@@ -103,7 +105,7 @@ public class DecodePulses
                     abs_q = pulses_ptr[pulses_ptr_offset + k];
                     for( j = 0; j < nLS; j++ ) {
                         abs_q = abs_q << 1;
-                        int bit_ptr[] = new int[1];
+                        int bit_ptr[] = ws.Ix_ptr;
                         RangeCoder.SKP_Silk_range_decoder( bit_ptr, 0, psRC, TablesOther.SKP_Silk_lsb_CDF, 0, 1 );
                         bit = bit_ptr[0];
                         abs_q += bit;
@@ -32,17 +32,19 @@ public class DetectSWBInput
      * @param samplesIn input to encoder
      * @param samplesIn_offset offset of valid data.
      * @param nSamplesIn length of input
+     * @param ws scratch memory
      */
     static void SKP_Silk_detect_SWB_input(
             SKP_Silk_detect_SWB_state   psSWBdetect,   /* (I/O) encoder state  */
             short[]             samplesIn,    /* (I) input to encoder */
             int samplesIn_offset,
-            int                     nSamplesIn      /* (I) length of input */
+            int                     nSamplesIn,     /* (I) length of input */
+            SKP_Silk_encoder_workspace ws           /* I/O  Scratch memory */
         )
         {
-            int     HP_8_kHz_len, i, shift[] = new int[1];
-            short[]   in_HP_8_kHz = new short[ MAX_FRAME_LENGTH ];
-            int[]   energy_32 = new int[1];
+            int     HP_8_kHz_len, i, shift[] = ws.SWB_shift;
+            short[]   in_HP_8_kHz = ws.in_HP_8_kHz;
+            int[]   energy_32 = ws.SWB_energy_32;
 
             /* High pass filter with cutoff at 8 khz */
             HP_8_kHz_len = Math.min( nSamplesIn, MAX_FRAME_LENGTH );
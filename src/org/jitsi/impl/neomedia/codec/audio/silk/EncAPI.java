@@ -179,7 +179,7 @@ public class EncAPI
         /* Detect energy above 8 kHz */
         if( Math.min( API_fs_Hz, 1000 * max_internal_fs_kHz ) == 24000 && psEnc.sCmn.sSWBdetect.SWB_detected == 0 && psEnc.sCmn.sSWBdetect.WB_detected == 0 )
         {
-            DetectSWBInput.SKP_Silk_detect_SWB_input( psEnc.sCmn.sSWBdetect, samplesIn,samplesIn_offset, nSamplesIn );
+            DetectSWBInput.SKP_Silk_detect_SWB_input( psEnc.sCmn.sSWBdetect, samplesIn,samplesIn_offset, nSamplesIn, psEnc.sCmn.sWorkspace );
         }
 
         /* Input buffering/resampling and encoding */
@@ -270,7 +270,7 @@ public class EncAPI
                 {
                     /* No payload obtained so far */
                     MaxBytesOut = nBytesOut[0];
-                    short MaxBytesOut_ptr[] = new short[1];
+                    short MaxBytesOut_ptr[] = psEnc.sCmn.sWorkspace.MaxBytesOut_ptr;
                     MaxBytesOut_ptr[0] = MaxBytesOut;
 //                    if( ( ret = Silk_encode_frame_FLP.SKP_Silk_encode_frame_FLP( psEnc, outData, outData_offset,
 //                            MaxBytesOut_ptr, psEnc.sCmn.inputBuf, psEnc.sCmn.inputBufIx ) ) != 0 )
@@ -52,22 +52,32 @@ public class EncodeFrameFLP
               int                       pIn_offset
     )
     {
-        SKP_Silk_encoder_control_FLP sEncCtrl = new SKP_Silk_encoder_control_FLP();
-        int     k, nBytes[] = new int[1], ret = 0;
+        /* Scratch memory is owned by the encoder state so that no allocations take place per frame */
+        SKP_Silk_encoder_workspace ws = psEnc.sCmn.sWorkspace;
+        SKP_Silk_encoder_control_FLP sEncCtrl = ws.sEncCtrl;
+        int     k, nBytes[] = ws.nBytes, ret = 0;
         float[]   x_frame, res_pitch_frame;
         int x_frame_offset, res_pitch_frame_offset;
-        short[]   pIn_HP = new short[    MAX_FRAME_LENGTH ];
-        short[]   pIn_HP_LP = new short[ MAX_FRAME_LENGTH ];
-        float[]   xfw = new float[       MAX_FRAME_LENGTH ];
-        float[]   res_pitch = new float[ 2 * MAX_FRAME_LENGTH + LA_PITCH_MAX ];
+        short[]   pIn_HP = ws.pIn_HP;
+        short[]   pIn_HP_LP = ws.pIn_HP_LP;
+        float[]   xfw = ws.xfw;
+        float[]   res_pitch = ws.res_pitch;
         int     LBRR_idx, frame_terminator;
 
         /* Low bitrate redundancy parameters */
-        byte[] LBRRpayload = new byte[MAX_ARITHM_BYTES];
-        short[]   nBytesLBRR = new short[1];
+        byte[] LBRRpayload = ws.LBRRpayload;
+        short[]   nBytesLBRR = ws.nBytesLBRR;
 
         int[] FrameTermination_CDF;
 
+        sEncCtrl.memZero();
+        nBytes[0] = 0;
+        Arrays.fill(pIn_HP, (short)0);
+        Arrays.fill(pIn_HP_LP, (short)0);
+        Arrays.fill(xfw, 0);
+        Arrays.fill(res_pitch, 0);
+        Arrays.fill(LBRRpayload, (byte)0);
+
 
         sEncCtrl.sCmn.Seed = psEnc.sCmn.frameCounter++ & 3;
         /**************************************************************/
@@ -152,7 +162,7 @@ public class EncodeFrameFLP
 /*TEST END****************************************************************************/
         if (SWITCH_TRANSITION_FILTERING != 0) {
             /* Ensure smooth bandwidth transitions */
-            LPVariableCutoff.SKP_Silk_LP_variable_cutoff( psEnc.sCmn.sLP, pIn_HP_LP, 0, pIn_HP, 0, psEnc.sCmn.frame_length );
+            LPVariableCutoff.SKP_Silk_LP_variable_cutoff( psEnc.sCmn.sLP, pIn_HP_LP, 0, pIn_HP, 0, psEnc.sCmn.frame_length, ws );
         } else {
             System.arraycopy(pIn_HP, 0, pIn_HP_LP, 0, psEnc.sCmn.frame_length);
         }
@@ -585,10 +595,11 @@ public class EncodeFrameFLP
               float                     xfw[]               /* I    Input signal                            */
     )
     {
-        int[]   Gains_Q16 = new int[ NB_SUBFR ];
-        int     k, TempGainsIndices[] = new int[ NB_SUBFR ], frame_terminator;
-        int     nBytes[] = new int[1], nFramesInPayloadBuf;
-        float   TempGains[] = new float[ NB_SUBFR ];
+        SKP_Silk_encoder_workspace ws = psEnc.sCmn.sWorkspace;
+        int[]   Gains_Q16 = ws.LBRR_Gains_Q16;
+        int     k, TempGainsIndices[] = ws.LBRR_TempGainsIndices, frame_terminator;
+        int     nBytes[] = ws.LBRR_nBytes, nFramesInPayloadBuf;
+        float   TempGains[] = ws.LBRR_TempGains;
         int     typeOffset, LTP_scaleIndex, Rate_only_parameters = 0;
         /* Control use of inband LBRR */
         ControlCodecFLP.SKP_Silk_LBRR_ctrl_FLP( psEnc, psEncCtrl.sCmn );
@@ -618,7 +629,7 @@ public class EncodeFrameFLP
                 if( psEnc.sCmn.nFramesInPayloadBuf == 0 ) {
                     /* First frame in packet copy everything */
 //TODO:use clone rather than memory copy.
-                    psEnc.sNSQ_LBRR = (SKP_Silk_nsq_state) psEnc.sNSQ.clone();
+                    psEnc.sNSQ_LBRR.copyFrom(psEnc.sNSQ);
 
                     psEnc.sCmn.LBRRprevLastGainIndex = psEnc.sShape.LastGainIndex;
                     /* Increase Gains to get target LBRR rate */
@@ -626,7 +637,7 @@ public class EncodeFrameFLP
                     psEncCtrl.sCmn.GainsIndices[ 0 ]  = SigProcFIX.SKP_LIMIT( psEncCtrl.sCmn.GainsIndices[ 0 ], 0, N_LEVELS_QGAIN - 1 );
                 }
                 /* Decode to get Gains in sync with decoder */
-                int LBRRprevLastGainIndex_ptr[] = new int[1];
+                int LBRRprevLastGainIndex_ptr[] = ws.LBRR_prevLastGainIndex_ptr;
                 LBRRprevLastGainIndex_ptr[0] = psEnc.sCmn.LBRRprevLastGainIndex;
                 GainQuant.SKP_Silk_gains_dequant( Gains_Q16, psEncCtrl.sCmn.GainsIndices,
                     LBRRprevLastGainIndex_ptr, psEnc.sCmn.nFramesInPayloadBuf );
@@ -60,21 +60,23 @@ public class EncodePulses
      * @param QuantOffsetType QuantOffsetType
      * @param q quantization
      * @param frame_length Frame length
+     * @param ws scratch memory
      */
     static void SKP_Silk_encode_pulses(
             SKP_Silk_range_coder_state  psRC,           /* I/O  Range coder state               */
             final int                   sigtype,        /* I    Sigtype                         */
             final int                   QuantOffsetType,/* I    QuantOffsetType                 */
             final byte                  q[],            /* I    quantization indices            */
-            final int                   frame_length    /* I    Frame length                    */
+            final int                   frame_length,   /* I    Frame length                    */
+            SKP_Silk_encoder_workspace  ws              /* I/O  Scratch memory                  */
     )
     {
         int   i, k, j, iter, bit, nLS, scale_down, RateLevelIndex = 0;
         int abs_q, minSumBits_Q6, sumBits_Q6;
-        int[]   abs_pulses = new int[ MAX_FRAME_LENGTH ];
-        int[]   sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
-        int[]   nRshifts   = new int[ MAX_NB_SHELL_BLOCKS ];
-        int[]   pulses_comb = new int[ 8 ];
+        int[]   abs_pulses = ws.abs_pulses;
+        int[]   sum_pulses = ws.sum_pulses;
+        int[]   nRshifts   = ws.nRshifts;
+        int[]   pulses_comb = ws.pulses_comb;
         int   []abs_pulses_ptr;
         int abs_pulses_ptr_offset;
         byte []pulses_ptr;
@@ -182,7 +184,7 @@ public class EncodePulses
         /******************/
         for( i = 0; i < iter; i++ ) {
             if( sum_pulses[ i ] > 0 ) {
-                ShellCoder.SKP_Silk_shell_encoder( psRC, abs_pulses, i * SHELL_CODEC_FRAME_LENGTH);
+                ShellCoder.SKP_Silk_shell_encoder( psRC, abs_pulses, i * SHELL_CODEC_FRAME_LENGTH, ws );
             }
         }
 
@@ -32,6 +32,7 @@ public class FindLPCFLP
      * @param LPC_order LPC order.
      * @param x Input signal.
      * @param subfr_length Subframe length incl preceeding samples.
+     * @param ws scratch memory.
      */
     static void SKP_Silk_find_LPC_FLP(
               float                 NLSF[],             /* O    NLSFs                                   */
@@ -40,42 +41,43 @@ public class FindLPCFLP
         final int                   useInterpNLSFs,     /* I    Flag                                    */
         final int                   LPC_order,          /* I    LPC order                               */
         final float                 x[],                /* I    Input signal                            */
-        final int                   subfr_length        /* I    Subframe length incl preceeding samples */
+        final int                   subfr_length,       /* I    Subframe length incl preceeding samples */
+        SKP_Silk_encoder_workspace  ws                  /* I/O  Scratch memory                          */
     )
     {
         int     k;
-        float[]   a = new float[ MAX_LPC_ORDER ];
+        float[]   a = ws.find_LPC_a;
 
         /* Used only for NLSF interpolation */
         double      res_nrg, res_nrg_2nd, res_nrg_interp;
-        float   a_tmp[] = new float[ MAX_LPC_ORDER ], NLSF0[] = new float[ MAX_LPC_ORDER ];
-        float   LPC_res[] = new float[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
+        float   a_tmp[] = ws.find_LPC_a_tmp, NLSF0[] = ws.find_LPC_NLSF0;
+        float   LPC_res[] = ws.LPC_res;
 
         /* Default: No interpolation */
         interpIndex[0] = 4;
 
         /* Burg AR analysis for the full frame */
         res_nrg = BurgModifiedFLP.SKP_Silk_burg_modified_FLP( a, x, 0, subfr_length, NB_SUBFR,
-                DefineFLP.FIND_LPC_COND_FAC, LPC_order );
+                DefineFLP.FIND_LPC_COND_FAC, LPC_order, ws );
 
         if( useInterpNLSFs == 1 ) {
 
             /* Optimal solution for last 10 ms; subtract residual energy here, as that's easier than        */
             /* adding it to the residual energy of the first 10 ms in each iteration of the search below    */
             res_nrg -= BurgModifiedFLP.SKP_Silk_burg_modified_FLP( a_tmp, x, ( NB_SUBFR / 2 ) * subfr_length,
-                subfr_length, NB_SUBFR / 2, DefineFLP.FIND_LPC_COND_FAC, LPC_order );
+                subfr_length, NB_SUBFR / 2, DefineFLP.FIND_LPC_COND_FAC, LPC_order, ws );
 
             /* Convert to NLSFs */
-            WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a_tmp, LPC_order );
+            WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a_tmp, LPC_order, ws );
 
             /* Search over interpolation indices to find the one with lowest residual energy */
             res_nrg_2nd = Float.MAX_VALUE;
             for( k = 3; k >= 0; k-- ) {
                 /* Interpolate NLSFs for first half */
-                WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( NLSF0, prev_NLSFq, NLSF, 0.25f * k, LPC_order );
+                WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( NLSF0, prev_NLSFq, NLSF, 0.25f * k, LPC_order, ws );
 
                 /* Convert to LPC for residual energy evaluation */
-                WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( a_tmp, NLSF0, LPC_order );
+                WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( a_tmp, NLSF0, LPC_order, ws );
 
                 /* Calculate residual energy with LSF interpolation */
                 LPCAnalysisFilterFLP.SKP_Silk_LPC_analysis_filter_FLP( LPC_res, a_tmp, x, 0, 2 * subfr_length, LPC_order );
@@ -98,7 +100,7 @@ public class FindLPCFLP
 
         if( interpIndex[0] == 4 ) {
             /* NLSF interpolation is currently inactive, calculate NLSFs from full frame AR coefficients */
-            WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a, LPC_order );
+            WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a, LPC_order, ws );
         }
     }
 }
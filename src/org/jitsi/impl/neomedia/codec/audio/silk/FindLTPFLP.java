@@ -36,6 +36,7 @@ public class FindLTPFLP
      * @param Wght Weights.
      * @param subfr_length Subframe length.
      * @param mem_offset Number of samples in LTP memory.
+     * @param ws scratch memory.
      */
     static void SKP_Silk_find_LTP_FLP(
         float b[],                      /* O    LTP coefs                               */
@@ -47,15 +48,16 @@ public class FindLTPFLP
         final int   lag[   ],           /* I    LTP lags                                */
         final float Wght[  ],           /* I    Weights                                 */
         final int   subfr_length,       /* I    Subframe length                         */
-        final int   mem_offset          /* I    Number of samples in LTP memory         */
+        final int   mem_offset,         /* I    Number of samples in LTP memory         */
+        SKP_Silk_encoder_workspace ws   /* I/O  Scratch memory                          */
     )
     {
         int i,k;
         float b_ptr[], temp, WLTP_ptr[];
         float LPC_res_nrg, LPC_LTP_res_nrg;
-        float d[] = new float[NB_SUBFR], m, g, delta_b[]=new float[LTP_ORDER];
-        float w[] = new float[NB_SUBFR], nrg[] = new float[NB_SUBFR], regu;
-        float Rr[] = new float[LTP_ORDER], rr[] = new float[NB_SUBFR];
+        float d[] = ws.find_LTP_d, m, g, delta_b[] = ws.find_LTP_delta_b;
+        float w[] = ws.find_LTP_w, nrg[] = ws.find_LTP_nrg, regu;
+        float Rr[] = ws.find_LTP_Rr, rr[] = ws.find_LTP_rr;
         float r_ptr[], lag_ptr[];
         int r_ptr_offset, lag_ptr_offset;
 
@@ -83,7 +85,7 @@ public class FindLTPFLP
             regu = DefineFLP.LTP_DAMPING * ( rr[ k ] + 1.0f );
 
             RegularizeCorrelationsFLP.SKP_Silk_regularize_correlations_FLP(WLTP_ptr, WLTP_ptr_offset, rr, k, regu, LTP_ORDER);
-            SolveLSFLP.SKP_Silk_solve_LDL_FLP( WLTP_ptr, WLTP_ptr_offset, LTP_ORDER, Rr, b_ptr, b_ptr_offset );
+            SolveLSFLP.SKP_Silk_solve_LDL_FLP( WLTP_ptr, WLTP_ptr_offset, LTP_ORDER, Rr, b_ptr, b_ptr_offset, ws );
 
             /* Calculate residual energy */
             nrg[ k ] = ResidualEnergyFLP.SKP_Silk_residual_energy_covar_FLP( b_ptr, b_ptr_offset,
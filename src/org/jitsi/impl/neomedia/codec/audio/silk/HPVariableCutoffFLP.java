@@ -47,7 +47,7 @@ public class HPVariableCutoffFLP
     )
     {
         float pitch_freq_Hz, pitch_freq_log, quality, delta_freq, smth_coef, Fc, r;
-        int[] B_Q28 = new int[ 3 ], A_Q28 = new int[ 2 ];
+        int[] B_Q28 = psEnc.sCmn.sWorkspace.HP_B_Q28, A_Q28 = psEnc.sCmn.sWorkspace.HP_A_Q28;
 
         /*********************************************/
         /* Estimate low end of pitch frequency range */
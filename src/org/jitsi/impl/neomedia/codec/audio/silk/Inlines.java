@@ -68,17 +68,18 @@ public class Inlines
      */
     static int SKP_Silk_SQRT_APPROX(int x)
     {
-        int y;
-        int[] lz = new int[1], frac_Q7 = new int[1];
+        int y, lz, frac_Q7;
 
         if( x <= 0 )
         {
             return 0;
         }
 
-        SKP_Silk_CLZ_FRAC(x, lz, frac_Q7);
+        /* Inlined SKP_Silk_CLZ_FRAC to avoid allocating its output parameters */
+        lz = Integer.numberOfLeadingZeros(x);
+        frac_Q7 = SigProcFIX.SKP_ROR32(x, 24 - lz) & 0x7f;
 
-        if( (lz[0] & 1) != 0 )
+        if( (lz & 1) != 0 )
         {
             y = 32768;
         }
@@ -88,10 +89,10 @@ public class Inlines
         }
 
         /* get scaling right */
-        y >>= (lz[0]>>1);
+        y >>= (lz>>1);
 
         /* increment using fractional part of input */
-        y = SKP_SMLAWB(y, y, SKP_SMULBB(213, frac_Q7[0]));
+        y = SKP_SMLAWB(y, y, SKP_SMULBB(213, frac_Q7));
 
         return y;
     }
@@ -30,15 +30,17 @@ public class K2aFLP
      * @param A prediction coefficients [order].
      * @param rc reflection coefficients [order].
      * @param order prediction order.
+     * @param ws scratch memory.
      */
     static void SKP_Silk_k2a_FLP(
         float[]       A,                 /* O:   prediction coefficients [order]             */
         float[] rc,                /* I:   reflection coefficients [order]             */
-        int       order               /* I:   prediction order                            */
+        int       order,              /* I:   prediction order                            */
+        SKP_Silk_encoder_workspace ws /* I/O  Scratch memory                              */
     )
     {
         int   k, n;
-        float[] Atmp = new float[SigProcFIX.SKP_Silk_MAX_ORDER_LPC];
+        float[] Atmp = ws.k2a_Atmp;
 
         for( k = 0; k < order; k++ )
         {
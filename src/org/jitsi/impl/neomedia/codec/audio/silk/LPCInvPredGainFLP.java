@@ -34,18 +34,20 @@ public class LPCInvPredGainFLP
      * @param A prediction coefficients [order]
      * @param A_offset offset of valid data.
      * @param order prediction order
+     * @param ws scratch memory
      * @return returns 1 if unstable, otherwise 0
      */
     static int SKP_Silk_LPC_inverse_pred_gain_FLP(   /* O:   returns 1 if unstable, otherwise 0      */
         float[]       invGain,               /* O:   inverse prediction gain, energy domain  */
         float[]       A,                     /* I:   prediction coefficients [order]         */
         int A_offset,
-        int           order                  /* I:   prediction order                        */
+        int           order,                 /* I:   prediction order                        */
+        SKP_Silk_encoder_workspace ws        /* I/O  Scratch memory                          */
     )
     {
         int   k, n;
         double    rc, rc_mult1, rc_mult2;
-        float[][] Atmp = new float[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+        float[][] Atmp = ws.LPC_inverse_pred_gain_FLP_Atmp;
         float[] Aold, Anew;
 
         Anew = Atmp[ order & 1 ];
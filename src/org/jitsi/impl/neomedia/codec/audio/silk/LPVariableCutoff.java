@@ -138,6 +138,7 @@ public class LPVariableCutoff
      * @param in Input signal
      * @param in_offset offset of valid data.
      * @param frame_length Frame length
+     * @param ws scratch memory
      */
     @SuppressWarnings("unused")
     static void SKP_Silk_LP_variable_cutoff(
@@ -146,10 +147,11 @@ public class LPVariableCutoff
         int out_offset,
         short[]                         in,            /* I    Input signal                        */
         int in_offset,
-        final int                       frame_length    /* I    Frame length                        */
+        final int                       frame_length,   /* I    Frame length                        */
+        SKP_Silk_encoder_workspace      ws              /* I/O  Scratch memory                      */
     )
     {
-        int[]   B_Q28 = new int[ TRANSITION_NB ], A_Q28 = new int[ TRANSITION_NA ];
+        int[]   B_Q28 = ws.LP_B_Q28, A_Q28 = ws.LP_A_Q28;
         int fac_Q16 = 0;
         int     ind = 0;
 
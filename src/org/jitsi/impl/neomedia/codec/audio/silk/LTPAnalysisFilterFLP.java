@@ -29,6 +29,7 @@ public class LTPAnalysisFilterFLP
      * @param invGains Inverse quantization gains
      * @param subfr_length Length of each subframe
      * @param pre_length Preceeding samples for each subframe.
+     * @param ws scratch memory.
      */
     static void SKP_Silk_LTP_analysis_filter_FLP(
               float         []LTP_res,                   /* O    LTP res NB_SUBFR*(pre_lgth+subfr_lngth) */
@@ -38,14 +39,15 @@ public class LTPAnalysisFilterFLP
         final int           pitchL[],                    /* I    Pitch lags                              */
         final float         invGains[],                  /* I    Inverse quantization gains              */
         final int           subfr_length,                /* I    Length of each subframe                 */
-        final int           pre_length                   /* I    Preceeding samples for each subframe    */
+        final int           pre_length,                  /* I    Preceeding samples for each subframe    */
+        SKP_Silk_encoder_workspace ws                    /* I/O  Scratch memory                          */
     )
     {
         final float []x_ptr;
         float [] x_lag_ptr;
         int x_ptr_offset, x_lag_ptr_offset;
 
-        float   Btmp[] = new float[ LTP_ORDER ];
+        float   Btmp[] = ws.LTP_analysis_Btmp;
         float   []LTP_res_ptr;
         int     LTP_res_ptr_offset;
         float   inv_gain;
@@ -67,24 +67,26 @@ public class NLSF2A
      * @param a monic whitening filter coefficients in Q12,  [d].
      * @param NLSF normalized line spectral frequencies in Q15, [d].
      * @param d filter order (should be even).
+     * @param ws scratch memory.
      */
     static void SKP_Silk_NLSF2A(
             short       []a,               /* o    monic whitening filter coefficients in Q12,  [d]    */
             int         []NLSF,           /* i    normalized line spectral frequencies in Q15, [d]    */
-            final int   d                /* i    filter order (should be even)                       */
+            final int   d,               /* i    filter order (should be even)                       */
+            SKP_Silk_workspace ws        /* i/o  scratch memory                                      */
         )
     {
         int k, i, dd;
-        int[] cos_LSF_Q20=new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC];
+        int[] cos_LSF_Q20 = ws.NLSF2A_cos_LSF_Q20;
 
-        int[] P = new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC/2+1];
-        int[] Q = new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC/2+1];
+        int[] P = ws.NLSF2A_P;
+        int[] Q = ws.NLSF2A_Q;
 
         int Ptmp, Qtmp;
         int f_int;
         int f_frac;
         int cos_val, delta;
-        int[] a_int32 = new int[SigProcFIX.SKP_Silk_MAX_ORDER_LPC];
+        int[] a_int32 = ws.NLSF2A_a_int32;
 
         int maxabs, absval, idx=0, sc_Q16;
 
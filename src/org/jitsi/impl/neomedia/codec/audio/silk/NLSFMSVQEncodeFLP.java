@@ -38,6 +38,7 @@ public class NLSFMSVQEncodeFLP
      * @param NLSF_MSVQ_Survivors  Max survivors from each stage
      * @param LPC_order LPC order
      * @param deactivate_fluc_red Deactivate fluctuation reduction
+     * @param ws scratch memory
      */
     @SuppressWarnings("unused")
     static void SKP_Silk_NLSF_MSVQ_encode_FLP(
@@ -50,42 +51,30 @@ public class NLSFMSVQEncodeFLP
         final float                 NLSF_mu_fluc_red,   /* I    Fluctuation reduction error weight      */
         final int                   NLSF_MSVQ_Survivors,/* I    Max survivors from each stage           */
         final int                   LPC_order,          /* I    LPC order                               */
-        final int                   deactivate_fluc_red /* I    Deactivate fluctuation reduction        */
+        final int                   deactivate_fluc_red, /* I    Deactivate fluctuation reduction        */
+        SKP_Silk_encoder_workspace  ws                   /* I/O  Scratch memory                          */
     )
     {
         int     i, s, k, cur_survivors, prev_survivors, input_index, cb_index, bestIndex;
         float   se, wsse, rateDistThreshold, bestRateDist;
-        float   pNLSF_in[] = new float[ MAX_LPC_ORDER ];
-
-        float   pRateDist[];
-        float   pRate[];
-        float   pRate_new[];
-        int     pTempIndices[];
-        int     pPath[];
-        int     pPath_new[];
-        float   pRes[];
-        float   pRes_new[];
-        if(LOW_COMPLEXITY_ONLY)
-        {
-            pRateDist =    new float[NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED_LC_MODE()];
-            pRate =        new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pRate_new =    new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pTempIndices = new int[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pPath =        new int[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * NLSF_MSVQ_MAX_CB_STAGES];
-            pPath_new =    new int[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * NLSF_MSVQ_MAX_CB_STAGES];
-            pRes =         new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * MAX_LPC_ORDER ];
-            pRes_new =     new float[MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * MAX_LPC_ORDER ];
-        }else
-        {
-            pRateDist =    new float[NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED() ];
-            pRate =        new float[MAX_NLSF_MSVQ_SURVIVORS ];
-            pRate_new =    new float[MAX_NLSF_MSVQ_SURVIVORS ];
-            pTempIndices = new int[MAX_NLSF_MSVQ_SURVIVORS ];
-            pPath =        new int[MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
-            pPath_new =    new int[MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
-            pRes =         new float[MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
-            pRes_new =     new float[MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
-        }
+        float   pNLSF_in[] = ws.MSVQ_pNLSF_in;
+
+        /* The workspace buffers are sized for the regular (not low complexity) mode */
+        float   pRateDist[] = ws.MSVQ_pRateDist;
+        float   pRate[] = ws.MSVQ_pRate;
+        float   pRate_new[] = ws.MSVQ_pRate_new;
+        int     pTempIndices[] = ws.MSVQ_pTempIndices;
+        int     pPath[] = ws.MSVQ_pPath;
+        int     pPath_new[] = ws.MSVQ_pPath_new;
+        float   pRes[] = ws.MSVQ_pRes;
+        float   pRes_new[] = ws.MSVQ_pRes_new;
+
+        Arrays.fill( pRate_new, 0 );
+        Arrays.fill( pTempIndices, 0 );
+        Arrays.fill( pPath, 0 );
+        Arrays.fill( pPath_new, 0 );
+        Arrays.fill( pRes, 0 );
+        Arrays.fill( pRes_new, 0 );
 
         float[] pConstFloat;int pConstFloat_offset;
         float[] pFloat; int pFloat_offset;
@@ -218,7 +207,7 @@ public class NLSFMSVQEncodeFLP
                 for( s = 0; s < cur_survivors; s++ ) {
                     /* Decode survivor to compare with previous quantized NLSF vector */
                     NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( pNLSF, psNLSF_CB_FLP,
-                            pPath_new, s * psNLSF_CB_FLP.nStages, LPC_order );
+                            pPath_new, s * psNLSF_CB_FLP.nStages, LPC_order, ws );
 
                     /* Compare decoded NLSF vector with the previously quantized vector */
                     wsse = 0;
@@ -248,6 +237,6 @@ public class NLSFMSVQEncodeFLP
         System.arraycopy(pPath_new, bestIndex * psNLSF_CB_FLP.nStages, NLSFIndices, 0, psNLSF_CB_FLP.nStages);
 
         /* Decode and stabilize the best survivor */
-        NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( pNLSF, psNLSF_CB_FLP, NLSFIndices, 0, LPC_order );
+        NLSFMSVQDecodeFLP.SKP_Silk_NLSF_MSVQ_decode_FLP( pNLSF, psNLSF_CB_FLP, NLSFIndices, 0, LPC_order, ws );
     }
 }
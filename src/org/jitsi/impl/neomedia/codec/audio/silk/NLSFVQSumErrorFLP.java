@@ -46,13 +46,11 @@ public class NLSFVQSumErrorFLP
     {
         int     i, n;
         float   diff, sum_error;
-        float   Wcpy[] = new float[ MAX_LPC_ORDER ];
+        /* Read the weights in place rather than copying them to a local array */
+        final float[] Wcpy = w;
         float[] cb_vec;
         int cb_vec_offset;
 
-        /* Copy to local stack */
-        System.arraycopy(w, 0, Wcpy, 0, LPC_order);
-
 //TODO:
         float[] err_tmp = err;
         int     err_tmp_offset = 0;
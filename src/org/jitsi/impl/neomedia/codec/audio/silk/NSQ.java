@@ -69,12 +69,13 @@ public class NSQ
         int           A_Q12_offset, B_Q14_offset, AR_shp_Q13_offset;
         short   []pxq;
         int     pxq_offset;
-        int     sLTP_Q16[] = new int[ 2 * MAX_FRAME_LENGTH ];
-        short   sLTP[] = new short[ 2 * MAX_FRAME_LENGTH ];
+        SKP_Silk_encoder_workspace ws = psEncC.sWorkspace;
+        int     sLTP_Q16[] = ws.NSQ_sLTP_Q16;
+        short   sLTP[] = ws.NSQ_sLTP;
         int     HarmShapeFIRPacked_Q14;
         int     offset_Q10;
-        int     FiltState[] = new int[ MAX_LPC_ORDER ];
-        int     x_sc_Q10[] = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
+        int     FiltState[] = ws.NSQ_FiltState;
+        int     x_sc_Q10[] = ws.NSQ_x_sc_Q10;
 
         subfr_length = psEncC.frame_length / NB_SUBFR;
 
@@ -97,11 +98,10 @@ public class NSQ
         NSQ.sLTP_buf_idx     = psEncC.frame_length;
         pxq                  = NSQ.xq;
         pxq_offset           = psEncC.frame_length;
-//TODO: use a local copy of the parameter short x[], which is supposed to be input;
-        short[] x_tmp = x.clone();
+        /* x is only read and q is only written, so both are used in place */
+        short[] x_tmp = x;
         int     x_tmp_offset = 0;
-//TODO: use a local copy of the parameter byte[] q, which is supposed to be output;
-        byte[]  q_tmp = q.clone();
+        byte[]  q_tmp = q;
         int     q_tmp_offset = 0;
 
         for( k = 0; k < NB_SUBFR; k++ ) {
@@ -162,8 +162,6 @@ public class NSQ
         System.arraycopy(NSQ.xq, psEncC.frame_length, NSQ.xq, 0, psEncC.frame_length);
         System.arraycopy(NSQ.sLTP_shp_Q10, psEncC.frame_length, NSQ.sLTP_shp_Q10, 0, psEncC.frame_length);
 
-//TODO: copy back the q_tmp to the output parameter q;
-        System.arraycopy(q_tmp, 0, q, 0, q.length);
     }
 
     /**
@@ -77,6 +77,22 @@ class NSQ_sample_struct implements Cloneable
         }
         return clone;
     }
+
+    /**
+     * Copies all fields of <tt>src</tt> into this instance, the equivalent of
+     * the <tt>SKP_memcpy</tt> of the struct in the C code.
+     *
+     * @param src the sample state to copy from
+     */
+    void copyFrom(NSQ_sample_struct src)
+    {
+        this.Q_Q10 = src.Q_Q10;
+        this.RD_Q10 = src.RD_Q10;
+        this.xq_Q14 = src.xq_Q14;
+        this.LF_AR_Q12 = src.LF_AR_Q12;
+        this.sLTP_shp_Q10 = src.sLTP_shp_Q10;
+        this.LPC_exc_Q16 = src.LPC_exc_Q16;
+    }
 }
 
 /**
@@ -111,22 +127,14 @@ public class NSQDelDec
         int           A_Q12_offset, B_Q14_offset, AR_shp_Q13_offset;
         short[] pxq;
         int     pxq_offset;
-        int   sLTP_Q16[] = new int[ 2 * MAX_FRAME_LENGTH ];
-        short   sLTP[] = new short[ 2 * MAX_FRAME_LENGTH ];
+        SKP_Silk_encoder_workspace ws = psEncC.sWorkspace;
+        int   sLTP_Q16[] = ws.NSQ_sLTP_Q16;
+        short   sLTP[] = ws.NSQ_sLTP;
         int   HarmShapeFIRPacked_Q14;
         int     offset_Q10;
-        int   FiltState[] = new int[ MAX_LPC_ORDER ], RDmin_Q10;
-        int   x_sc_Q10[] = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
-        NSQDelDecStruct psDelDec[] = new NSQDelDecStruct[ DEL_DEC_STATES_MAX ];
-        /*
-         * psDelDec is an array of references, which has to be created manually.
-         */
-        {
-            for(int psDelDecIni_i=0; psDelDecIni_i<DEL_DEC_STATES_MAX; psDelDecIni_i++)
-            {
-                psDelDec[psDelDecIni_i] = new NSQDelDecStruct();
-            }
-        }
+        int   FiltState[] = ws.NSQ_FiltState, RDmin_Q10;
+        int   x_sc_Q10[] = ws.NSQ_x_sc_Q10;
+        NSQDelDecStruct psDelDec[] = ws.psDelDec;
         NSQDelDecStruct psDD;
 
         subfr_length = psEncC.frame_length / NB_SUBFR;
@@ -136,11 +144,10 @@ public class NSQDelDec
 
         assert( NSQ.prev_inv_gain_Q16 != 0 );
 
-      //TODO: use a local copy of the parameter short x[], which is supposed to be input;
-        short[] x_tmp = x.clone();
+        /* x is only read and q is only written, so both are used in place */
+        short[] x_tmp = x;
         int     x_tmp_offset = 0;
-//TODO: use a local copy of the parameter byte[] q, which is supposed to be output;
-        byte[]  q_tmp = q.clone();
+        byte[]  q_tmp = q;
         int     q_tmp_offset = 0;
 
         /* Initialize delayed decision states */
@@ -262,12 +269,12 @@ public class NSQDelDec
                 subfr_length, sLTP, sLTP_Q16, k, psEncC.nStatesDelayedDecision, smpl_buf_idx,
                 LTP_scale_Q14, Gains_Q16, psEncCtrlC.pitchL );
 
-            int smpl_buf_idx_ptr[] = new int[1];
+            int smpl_buf_idx_ptr[] = ws.smpl_buf_idx_ptr;
             smpl_buf_idx_ptr[0] = smpl_buf_idx;
             SKP_Silk_noise_shape_quantizer_del_dec( NSQ, psDelDec, psEncCtrlC.sigtype, x_sc_Q10, q_tmp, q_tmp_offset, pxq, pxq_offset,
                     sLTP_Q16, A_Q12, A_Q12_offset, B_Q14, B_Q14_offset, AR_shp_Q13, AR_shp_Q13_offset, lag, HarmShapeFIRPacked_Q14, Tilt_Q14[ k ],
                     LF_shp_Q14[ k ], Gains_Q16[ k ], Lambda_Q10, offset_Q10, psEncC.subfr_length, subfr++, psEncC.shapingLPCOrder, psEncC.predictLPCOrder,
-                psEncC.nStatesDelayedDecision, smpl_buf_idx_ptr, decisionDelay );
+                psEncC.nStatesDelayedDecision, smpl_buf_idx_ptr, decisionDelay, ws );
             smpl_buf_idx = smpl_buf_idx_ptr[0];
 
             x_tmp_offset   += psEncC.subfr_length;
@@ -311,8 +318,6 @@ public class NSQDelDec
 //        SKP_memcpy( NSQ.sLTP_shp_Q10, &NSQ.sLTP_shp_Q10[ psEncC.frame_length ], psEncC.frame_length * sizeof( SKP_int32 ) );
         System.arraycopy(NSQ.xq, psEncC.frame_length, NSQ.xq, 0, psEncC.frame_length);
         System.arraycopy(NSQ.sLTP_shp_Q10, psEncC.frame_length, NSQ.sLTP_shp_Q10, 0, psEncC.frame_length);
-//TODO: copy back the q_tmp to the output parameter q;
-        System.arraycopy(q_tmp, 0, q, 0, q.length);
     }
 
     /**
@@ -346,6 +351,7 @@ public class NSQDelDec
      * @param nStatesDelayedDecision Number of states in decision tree
      * @param smpl_buf_idx Index to newest samples in buffers
      * @param decisionDelay
+     * @param ws scratch memory
      */
     static void SKP_Silk_noise_shape_quantizer_del_dec(
         SKP_Silk_nsq_state  NSQ,                   /* I/O  NSQ state                           */
@@ -376,7 +382,8 @@ public class NSQDelDec
         int                 predictLPCOrder,        /* I    Prediction LPC filter order         */
         int                 nStatesDelayedDecision, /* I    Number of states in decision tree   */
         int                 []smpl_buf_idx,          /* I    Index to newest samples in buffers  */
-        int                 decisionDelay           /* I                                        */
+        int                 decisionDelay,          /* I                                        */
+        SKP_Silk_encoder_workspace ws               /* I/O  Scratch memory                      */
     )
     {
         int     i, j, k, Winner_ind, RDmin_ind, RDmax_ind, last_smple_idx;
@@ -391,19 +398,7 @@ public class NSQDelDec
         int   pred_lag_ptr[], shp_lag_ptr[];
         int   pred_lag_ptr_offset, shp_lag_ptr_offset;
         int   []psLPC_Q14; int psLPC_Q14_offset;
-        NSQ_sample_struct  psSampleState[][] = new NSQ_sample_struct[ DEL_DEC_STATES_MAX ][ 2 ];
-        /*
-         * psSampleState is an two-dimension array of reference, which should be created manually.
-         */
-        {
-            for(int Ini_i=0; Ini_i<DEL_DEC_STATES_MAX; Ini_i++)
-            {
-                for(int Ini_j=0; Ini_j<2; Ini_j++)
-                {
-                    psSampleState[Ini_i][Ini_j] = new NSQ_sample_struct();
-                }
-            }
-        }
+        NSQ_sample_struct  psSampleState[][] = ws.psSampleState;
         NSQDelDecStruct psDD;
         NSQ_sample_struct[]  psSS;
 
@@ -636,9 +631,8 @@ public class NSQDelDec
             if( RDmin_Q10 < RDmax_Q10 ) {
 //                SKP_Silk_copy_del_dec_state( &psDelDec[ RDmax_ind ], &psDelDec[ RDmin_ind ], i );
                 SKP_Silk_copy_del_dec_state( psDelDec[ RDmax_ind ], psDelDec[ RDmin_ind ], i );
-//TODO:how to copy a struct ???
 //                SKP_memcpy( &psSampleState[ RDmax_ind ][ 0 ], &psSampleState[ RDmin_ind ][ 1 ], sizeof( NSQ_sample_struct ) );
-                psSampleState[ RDmax_ind ][ 0 ] = (NSQ_sample_struct) psSampleState[ RDmin_ind ][ 1 ].clone();
+                psSampleState[ RDmax_ind ][ 0 ].copyFrom( psSampleState[ RDmin_ind ][ 1 ] );
             }
 
             /* Write samples from winner to output and long-term filter states */
@@ -198,25 +198,26 @@ public class PLC
     )
     {
         int   i, j, k;
+        SKP_Silk_decoder_workspace ws = psDec.sWorkspace;
         short[] B_Q14;
-        short[] exc_buf = new short[MAX_FRAME_LENGTH];
+        short[] exc_buf = ws.exc_buf;
         short[] exc_buf_ptr;
         int     exc_buf_ptr_offset;
 
         short rand_scale_Q14;
-        short[] A_Q12_tmp = new short[MAX_LPC_ORDER];
+        short[] A_Q12_tmp = ws.A_Q12_tmp;
 
         int rand_seed, harm_Gain_Q15, rand_Gain_Q15;
         int   lag, idx, sLTP_buf_idx, shift1, shift2;
-        int[] shift_ptr = new int[1];
+        int[] shift_ptr = ws.shift_ptr;
 
         int energy1, energy2;
-        int[] energy_ptr = new int[1];
+        int[] energy_ptr = ws.energy_ptr;
 
         int[]  rand_ptr, pred_lag_ptr;
         int    rand_ptr_offset, pred_lag_ptr_offset;
 
-        int[] sig_Q10 = new int[MAX_FRAME_LENGTH];
+        int[] sig_Q10 = ws.sig_Q10;
         int[] sig_Q10_ptr;
         int   sig_Q10_ptr_offset;
 
@@ -287,9 +288,9 @@ public class PLC
             /* Reduce random noise for unvoiced frames with high LPC gain */
             if( psDec.prev_sigtype == SIG_TYPE_UNVOICED ) {
                 int invGain_Q30, down_scale_Q30;
-                int invGain_Q30_ptr[] = new int[1];
+                int invGain_Q30_ptr[] = ws.invGain_Q30;
 
-                LPCInvPredGain.SKP_Silk_LPC_inverse_pred_gain( invGain_Q30_ptr, psPLC.prevLPC_Q12, psDec.LPC_order );
+                LPCInvPredGain.SKP_Silk_LPC_inverse_pred_gain( invGain_Q30_ptr, psPLC.prevLPC_Q12, psDec.LPC_order, ws );
                 invGain_Q30 = invGain_Q30_ptr[0];
 
                 down_scale_Q30 = Math.min( ( ( 1 << 30 ) >> LOG2_INV_LPC_GAIN_HIGH_THRES ), invGain_Q30 );
@@ -426,8 +427,8 @@ public class PLC
 
         if( psDec.lossCnt != 0) {
             /* Calculate energy in concealed residual */
-            int[] energy_ptr = new int[1];
-            int[] energy_shift_ptr = new int[1];
+            int[] energy_ptr = psDec.sWorkspace.energy_ptr;
+            int[] energy_shift_ptr = psDec.sWorkspace.shift_ptr;
             SumSqrShift.SKP_Silk_sum_sqr_shift( energy_ptr, energy_shift_ptr, signal, signal_offset, length );
             psPLC.conc_energy = energy_ptr[0];
             psPLC.conc_energy_shift = energy_shift_ptr[0];
@@ -435,8 +436,8 @@ public class PLC
             psPLC.last_frame_lost = 1;
         } else {
             if( psDec.sPLC.last_frame_lost != 0 ) {
-                int[] energy_ptr = new int[1];
-                int[] energy_shift_ptr = new int[1];
+                int[] energy_ptr = psDec.sWorkspace.energy_ptr;
+                int[] energy_shift_ptr = psDec.sWorkspace.shift_ptr;
 
                 /* Calculate residual in decoded signal if last frame was lost */
                 SumSqrShift.SKP_Silk_sum_sqr_shift( energy_ptr, energy_shift_ptr, signal, signal_offset, length );
@@ -50,6 +50,7 @@ public class PitchAnalysisCoreFLP
      * @param search_thres2 final threshold for lag candidates 0 - 1
      * @param Fs_kHz sample frequency (kHz)
      * @param complexity Complexity setting, 0-2, where 2 is highest
+     * @param ws scratch memory
      * @return voicing estimate: 0 voiced, 1 unvoiced
      */
     static int SKP_Silk_pitch_analysis_core_FLP( /* O voicing estimate: 0 voiced, 1 unvoiced                 */
@@ -62,29 +63,30 @@ public class PitchAnalysisCoreFLP
         final float search_thres1,      /* I first stage threshold for lag candidates 0 - 1                 */
         final float search_thres2,      /* I final threshold for lag candidates 0 - 1                       */
         final int   Fs_kHz,             /* I sample frequency (kHz)                                         */
-        final int   complexity          /* I Complexity setting, 0-2, where 2 is highest                    */
+        final int   complexity,         /* I Complexity setting, 0-2, where 2 is highest                    */
+        SKP_Silk_encoder_workspace ws   /* I/O  Scratch memory                                              */
     )
     {
-        float[] signal_8kHz = new float[ PITCH_EST_FRAME_LENGTH_MS * 8 ];
-        float[] signal_4kHz = new float[ PITCH_EST_FRAME_LENGTH_MS * 4 ];
-        float[] scratch_mem = new float[ PITCH_EST_MAX_FRAME_LENGTH * 3 ];
-        float[] filt_state = new float[ PITCH_EST_MAX_DECIMATE_STATE_LENGTH ];
+        float[] signal_8kHz = ws.pitch_signal_8kHz;
+        float[] signal_4kHz = ws.pitch_signal_4kHz;
+        float[] scratch_mem = ws.pitch_scratch_mem;
+        float[] filt_state = ws.pitch_filt_state;
         int   i, k, d, j;
         float threshold, contour_bias;
-        float[][] C = new float[PITCH_EST_NB_SUBFR][(PITCH_EST_MAX_LAG >> 1) + 5]; /* use to be +2 but then valgrind reported errors for SWB */
-        float[] CC = new float[PITCH_EST_NB_CBKS_STAGE2_EXT];
+        float[][] C = ws.pitch_C; /* use to be +2 but then valgrind reported errors for SWB */
+        float[] CC = ws.pitch_CC;
         float[] target_ptr, basis_ptr;
         int target_ptr_offset, basis_ptr_offset;
         double    cross_corr, normalizer, energy, energy_tmp;
-        int[]   d_srch = new int[PITCH_EST_D_SRCH_LENGTH];
-        short[] d_comp = new short[(PITCH_EST_MAX_LAG >> 1) + 5];
+        int[]   d_srch = ws.pitch_d_srch;
+        short[] d_comp = ws.pitch_d_comp;
         int   length_d_srch, length_d_comp;
         float Cmax, CCmax, CCmax_b, CCmax_new_b, CCmax_new;
         int   CBimax, CBimax_new, lag, start_lag, end_lag, lag_new;
         int   cbk_offset, cbk_size;
         float lag_log2, prevLag_log2, delta_lag_log2_sqr;
-        float[][][] energies_st3 = new float[ PITCH_EST_NB_SUBFR ][ PITCH_EST_NB_CBKS_STAGE3_MAX ][ PITCH_EST_NB_STAGE3_LAGS ];
-        float[][][] cross_corr_st3 = new float[ PITCH_EST_NB_SUBFR ][ PITCH_EST_NB_CBKS_STAGE3_MAX ][ PITCH_EST_NB_STAGE3_LAGS ];
+        float[][][] energies_st3 = ws.pitch_energies_st3;
+        float[][][] cross_corr_st3 = ws.pitch_cross_corr_st3;
 
         int diff, lag_counter;
         int frame_length, frame_length_8kHz, frame_length_4kHz;
@@ -125,15 +127,15 @@ public class PitchAnalysisCoreFLP
         /* Resample from input sampled at Fs_kHz to 8 kHz */
         if( Fs_kHz == 12 )
         {
-            short[] signal_12 = new short[ 12 * PITCH_EST_FRAME_LENGTH_MS ];
-            short[] signal_8 = new short[   8 * PITCH_EST_FRAME_LENGTH_MS ];
-            int[] R23 = new int[ 6 ];
+            short[] signal_12 = ws.pitch_signal_12;
+            short[] signal_8 = ws.pitch_signal_8;
+            int[] R23 = ws.pitch_R23;
 
             /* Resample to 12 -> 8 khz */
             for(int i_djinn=0; i_djinn<6; i_djinn++)
                 R23[i_djinn] = 0;
             SigProcFLP.SKP_float2short_array( signal_12,0, signal,0, PITCH_EST_FRAME_LENGTH_MS * 12);
-            ResamplerDown23.SKP_Silk_resampler_down2_3( R23,0, signal_8,0, signal_12,0, PITCH_EST_FRAME_LENGTH_MS * 12 );
+            ResamplerDown23.SKP_Silk_resampler_down2_3( R23,0, signal_8,0, signal_12,0, PITCH_EST_FRAME_LENGTH_MS * 12, ws );
             SigProcFLP.SKP_short2float_array( signal_8kHz,0, signal_8,0, frame_length_8kHz );
         }
         else if( Fs_kHz == 16 )
@@ -159,15 +161,15 @@ public class PitchAnalysisCoreFLP
         }
         else if( Fs_kHz == 24 )
         {
-            short[] signal_24 = new short[ PITCH_EST_MAX_FRAME_LENGTH ];
-            short[] signal_8 = new short[ 8 * PITCH_EST_FRAME_LENGTH_MS ];
-            int[] filt_state_fix = new int[ 8 ];
+            short[] signal_24 = ws.pitch_signal_24;
+            short[] signal_8 = ws.pitch_signal_8;
+            int[] filt_state_fix = ws.pitch_filt_state_fix;
 
             /* Resample to 24 -> 8 khz */
             SigProcFLP.SKP_float2short_array( signal_24,0, signal,0, 24 * PITCH_EST_FRAME_LENGTH_MS );
             for(int i_djinn=0; i_djinn<8; i_djinn++)
                 filt_state_fix[i_djinn] = 0;
-            ResamplerDown3.SKP_Silk_resampler_down3( filt_state_fix,0, signal_8,0, signal_24,0, 24 * PITCH_EST_FRAME_LENGTH_MS );
+            ResamplerDown3.SKP_Silk_resampler_down3( filt_state_fix,0, signal_8,0, signal_24,0, 24 * PITCH_EST_FRAME_LENGTH_MS, ws );
             SigProcFLP.SKP_short2float_array( signal_8kHz,0, signal_8,0, frame_length_8kHz );
         }
         else
@@ -496,8 +498,8 @@ public class PitchAnalysisCoreFLP
             CCmax = -1000.0f;
 
             /* Calculate the correlations and energies needed in stage 3 */
-            SKP_P_Ana_calc_corr_st3( cross_corr_st3, signal,0, start_lag, sf_length, complexity );
-            SKP_P_Ana_calc_energy_st3( energies_st3, signal,0, start_lag, sf_length, complexity );
+            SKP_P_Ana_calc_corr_st3( cross_corr_st3, signal,0, start_lag, sf_length, complexity, ws );
+            SKP_P_Ana_calc_energy_st3( energies_st3, signal,0, start_lag, sf_length, complexity, ws );
 
             lag_counter = 0;
             assert( lag == SigProcFIX.SKP_SAT16( lag ) );
@@ -573,6 +575,7 @@ public class PitchAnalysisCoreFLP
      * @param start_lag start lag.
      * @param sf_length sub frame length.
      * @param complexity Complexity setting.
+     * @param ws scratch memory.
      */
     static void SKP_P_Ana_calc_corr_st3
     (
@@ -581,7 +584,8 @@ public class PitchAnalysisCoreFLP
         int signal_offset,
         int start_lag,                  /* I start lag                                                      */
         int sf_length,                  /* I sub frame length                                               */
-        int complexity                  /* I Complexity setting                                             */
+        int complexity,                 /* I Complexity setting                                             */
+        SKP_Silk_encoder_workspace ws   /* I/O  Scratch memory                                              */
     )
         /***********************************************************************
          Calculates the correlations used in stage 3 search. In order to cover
@@ -601,7 +605,7 @@ public class PitchAnalysisCoreFLP
         int target_ptr_offset, basis_ptr_offset;
         int     i, j, k, lag_counter;
         int     cbk_offset, cbk_size, delta, idx;
-        float[]   scratch_mem = new float[ SCRATCH_SIZE ];
+        float[]   scratch_mem = ws.pitch_st3_scratch_mem;
 
         assert( complexity >= SigProcFIX.SKP_Silk_PITCH_EST_MIN_COMPLEX );
         assert( complexity <= SigProcFIX.SKP_Silk_PITCH_EST_MAX_COMPLEX );
@@ -649,6 +653,7 @@ public class PitchAnalysisCoreFLP
      * @param start_lag start lag.
      * @param sf_length sub frame length.
      * @param complexity Complexity setting.
+     * @param ws scratch memory.
      */
     static void SKP_P_Ana_calc_energy_st3
     (
@@ -657,7 +662,8 @@ public class PitchAnalysisCoreFLP
         int signal_offset,
         int start_lag,                  /* I start lag                                                      */
         int sf_length,                  /* I sub frame length                                               */
-        int complexity                  /* I Complexity setting                                             */
+        int complexity,                 /* I Complexity setting                                             */
+        SKP_Silk_encoder_workspace ws   /* I/O  Scratch memory                                              */
     )
     /****************************************************************
     Calculate the energies for first two subframes. The energies are
@@ -669,7 +675,7 @@ public class PitchAnalysisCoreFLP
         double      energy;
         int     k, i, j, lag_counter;
         int     cbk_offset, cbk_size, delta, idx;
-        float[]   scratch_mem = new float[ SCRATCH_SIZE ];
+        float[]   scratch_mem = ws.pitch_st3_scratch_mem;
 
         assert( complexity >= SigProcFIX.SKP_Silk_PITCH_EST_MIN_COMPLEX );
         assert( complexity <= SigProcFIX.SKP_Silk_PITCH_EST_MAX_COMPLEX );
@@ -42,17 +42,18 @@ public class PrefilterFLP
     )
     {
         SKP_Silk_prefilter_state_FLP P = psEnc.sPrefilt;
+        SKP_Silk_encoder_workspace ws = psEnc.sCmn.sWorkspace;
         int   j, k, lag;
         float HarmShapeGain, Tilt, LF_MA_shp, LF_AR_shp;
-        float[] B = new float[ 2 ];
-        float[] AR1_shp = new float[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
+        float[] B = ws.prefilt_B;
+        float[] AR1_shp = ws.prefilt_AR1_shp;
         float[] px;
         int px_offset;
         float[] pxw, pst_res;
         int pxw_offset;
         int pst_res_offset;
-        float[] HarmShapeFIR = new float[ 3 ];
-        float[] st_res = new float[ MAX_FRAME_LENGTH / NB_SUBFR + MAX_LPC_ORDER ];
+        float[] HarmShapeFIR = ws.prefilt_HarmShapeFIR;
+        float[] st_res = ws.prefilt_st_res;
 
         /* Setup pointers */
         px  = x;
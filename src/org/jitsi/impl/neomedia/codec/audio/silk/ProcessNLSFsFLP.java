@@ -37,14 +37,15 @@ public class ProcessNLSFsFLP
     )
     {
         boolean     doInterpolate;
-        float   pNLSFW[] = new float[ MAX_LPC_ORDER ];
+        SKP_Silk_encoder_workspace ws = psEnc.sCmn.sWorkspace;
+        float   pNLSFW[] = ws.pNLSFW;
         float   NLSF_mu, NLSF_mu_fluc_red, i_sqr, NLSF_interpolation_factor = 0.0f;
         final SKP_Silk_NLSF_CB_FLP psNLSF_CB_FLP;
 
 
         /* Used only for NLSF interpolation */
-        float   pNLSF0_temp[] = new float[  MAX_LPC_ORDER ];
-        float   pNLSFW0_temp[] = new float[ MAX_LPC_ORDER ];
+        float   pNLSF0_temp[] = ws.pNLSF0_temp;
+        float   pNLSFW0_temp[] = ws.pNLSFW0_temp;
         int     i;
 
         assert( psEncCtrl.sCmn.sigtype == SIG_TYPE_VOICED || psEncCtrl.sCmn.sigtype == SIG_TYPE_UNVOICED );
@@ -70,7 +71,7 @@ public class ProcessNLSFsFLP
             /* Calculate the interpolated NLSF vector for the first half */
             NLSF_interpolation_factor = 0.25f * psEncCtrl.sCmn.NLSFInterpCoef_Q2;
             WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( pNLSF0_temp, psEnc.sPred.prev_NLSFq, pNLSF,
-                NLSF_interpolation_factor, psEnc.sCmn.predictLPCOrder );
+                NLSF_interpolation_factor, psEnc.sCmn.predictLPCOrder, ws );
 
             /* Calculate first half NLSF weights for the interpolated NLSFs */
             NLSFVQWeightsLaroiaFLP.SKP_Silk_NLSF_VQ_weights_laroia_FLP( pNLSFW0_temp, pNLSF0_temp, psEnc.sCmn.predictLPCOrder );
@@ -88,18 +89,18 @@ public class ProcessNLSFsFLP
         /* Quantize NLSF parameters given the trained NLSF codebooks */
         NLSFMSVQEncodeFLP.SKP_Silk_NLSF_MSVQ_encode_FLP( psEncCtrl.sCmn.NLSFIndices, pNLSF, psNLSF_CB_FLP, psEnc.sPred.prev_NLSFq,
                 pNLSFW, NLSF_mu, NLSF_mu_fluc_red, psEnc.sCmn.NLSF_MSVQ_Survivors,
-                psEnc.sCmn.predictLPCOrder, psEnc.sCmn.first_frame_after_reset );
+                psEnc.sCmn.predictLPCOrder, psEnc.sCmn.first_frame_after_reset, ws );
 
         /* Convert quantized NLSFs back to LPC coefficients */
-        WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 1 ], pNLSF, psEnc.sCmn.predictLPCOrder );
+        WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 1 ], pNLSF, psEnc.sCmn.predictLPCOrder, ws );
 
         if( doInterpolate ) {
             /* Calculate the interpolated, quantized NLSF vector for the first half */
             WrappersFLP.SKP_Silk_interpolate_wrapper_FLP( pNLSF0_temp, psEnc.sPred.prev_NLSFq, pNLSF,
-                NLSF_interpolation_factor, psEnc.sCmn.predictLPCOrder );
+                NLSF_interpolation_factor, psEnc.sCmn.predictLPCOrder, ws );
 
             /* Convert back to LPC coefficients */
-            WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 0 ], pNLSF0_temp, psEnc.sCmn.predictLPCOrder );
+            WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 0 ], pNLSF0_temp, psEnc.sCmn.predictLPCOrder, ws );
 
         } else {
             /* Copy LPC coefficients for first half from second half */
@@ -32,6 +32,7 @@ public class QuantLTPGainsFLP
      * @param W Error weights
      * @param mu Mu value (R/D tradeoff)
      * @param lowComplexity Flag for low complexity
+     * @param ws scratch memory
      */
     static void SKP_Silk_quant_LTP_gains_FLP(
               float        B[],                                 /* I/O  (Un-)quantized LTP gains                */
@@ -39,7 +40,8 @@ public class QuantLTPGainsFLP
               int          []periodicity_index,                 /* O    Periodicity index                       */
               final float  W[],                                 /* I    Error weights                           */
               final float  mu,                                  /* I    Mu value (R/D tradeoff)                 */
-              final int    lowComplexity                        /* I    Flag for low complexity                 */
+              final int    lowComplexity,                       /* I    Flag for low complexity                 */
+              SKP_Silk_encoder_workspace ws                     /* I/O  Scratch memory                          */
     )
     {
 //        SKP_int             j, k, temp_idx[ NB_SUBFR ], cbk_size;
@@ -49,7 +51,7 @@ public class QuantLTPGainsFLP
 //        const SKP_float     *b_ptr, *W_ptr;
 //        SKP_float           rate_dist_subfr, rate_dist, min_rate_dist;
         int j,k,cbk_size;
-        int[] temp_idx = new int[NB_SUBFR];
+        int[] temp_idx = ws.quant_LTP_temp_idx;
         int[] cdf_ptr; int cdf_ptr_offset;
         short[] cl_ptr; int cl_ptr_offset;
         short[] cbk_ptr_Q14; int cbk_ptr_Q14_offset;
@@ -81,7 +83,7 @@ public class QuantLTPGainsFLP
             rate_dist = 0.0f;
             for( j = 0; j < NB_SUBFR; j++ ) {
 
-                float [] rate_dist_subfr_ptr = new float[1];
+                float [] rate_dist_subfr_ptr = ws.quant_LTP_rate_dist_subfr;
                 rate_dist_subfr_ptr[0] = rate_dist_subfr;
 
                 VQNearestNeighborFLP.SKP_Silk_VQ_WMat_EC_FLP(
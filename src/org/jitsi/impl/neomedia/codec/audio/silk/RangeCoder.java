@@ -369,7 +369,7 @@ public class RangeCoder
     /**
      * Determine length of bitstream.
      * @param psRC compressed data structure.
-     * @param nBytes number of BYTES in stream.
+     * @param nBytes number of BYTES in stream (may be <tt>null</tt>).
      * @return returns number of BITS in stream.
      */
     static int SKP_Silk_range_coder_get_length(                /* O    returns number of BITS in stream            */
@@ -382,7 +382,9 @@ public class RangeCoder
         /* Number of bits in stream */
         nBits = ( psRC.bufferIx << 3 ) + SKP_Silk_CLZ32((int) (psRC.range_Q16 - 1) ) - 14;
 
-        nBytes [0] = (( nBits + 7)>> 3 );
+        if( nBytes != null ) {
+            nBytes [0] = (( nBits + 7)>> 3 );
+        }
         /* Return number of bits in bitstream */
         return nBits;
     }
@@ -401,9 +403,8 @@ public class RangeCoder
         /* Lower limit of interval, shifted 8 bits to the right */
         base_Q24 = psRC.base_Q32 >>> 8;
 
-        int[] nBytes_ptr = new int[1];
-        bits_in_stream = SKP_Silk_range_coder_get_length( psRC, nBytes_ptr );
-        nBytes = nBytes_ptr[0];
+        bits_in_stream = SKP_Silk_range_coder_get_length( psRC, null );
+        nBytes = ( bits_in_stream + 7 ) >> 3;
 
         /* Number of additional bits (1..9) required to be stored to stream */
 //TODO:        bits_to_store = bits_in_stream - psRC.bufferIx << 3 ;
@@ -459,10 +460,9 @@ public class RangeCoder
     )
     {
         int bits_in_stream, nBytes, mask;
-        int nBytes_ptr[] = new int[1];
 
-        bits_in_stream = SKP_Silk_range_coder_get_length( psRC, nBytes_ptr );
-        nBytes = nBytes_ptr[0];
+        bits_in_stream = SKP_Silk_range_coder_get_length( psRC, null );
+        nBytes = ( bits_in_stream + 7 ) >> 3;
 
         /* Make sure not to read beyond buffer */
         if( nBytes - 1 >= psRC.bufferLength ) {
@@ -36,6 +36,7 @@ public class ResamplerDown3
      * @param in Input signal [ inLen ]
      * @param in_offset offset of valid data.
      * @param inLen Number of input samples
+     * @param ws scratch memory
      */
     static void SKP_Silk_resampler_down3(
         int[]                           S,         /* I/O: State vector [ 8 ]                  */
@@ -44,11 +45,12 @@ public class ResamplerDown3
         int out_offset,
         short[]                         in,        /* I:   Input signal [ inLen ]              */
         int in_offset,
-        int                             inLen      /* I:   Number of input samples             */
+        int                             inLen,     /* I:   Number of input samples             */
+        SKP_Silk_workspace              ws         /* I/O: Scratch memory                      */
     )
     {
         int nSamplesIn, counter, res_Q6;
-        int[] buf = new int[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ORDER_FIR ];
+        int[] buf = ws.resampler_down_buf;
         int buf_ptr;
 
         /* Copy buffered samples to start of buffer */
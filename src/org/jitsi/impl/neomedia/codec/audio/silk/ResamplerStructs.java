@@ -83,6 +83,17 @@ public class ResamplerStructs
     int       nPostUpsamplers;
     int magic_number;
 
+    /*
+     * Scratch buffers of SKP_Silk_resampler, SKP_Silk_resampler_private_down_FIR
+     * and SKP_Silk_resampler_private_IIR_FIR, kept with the state so that they
+     * are not allocated on every call. They carry no state between calls.
+     */
+    final short[] pre_post_in_buf = new short[ 480 ];
+    final short[] pre_post_out_buf = new short[ 480 ];
+    final short[] down_FIR_buf1 = new short[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN / 2 ];
+    final int[]   down_FIR_buf2 = new int[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_DOWN_ORDER_FIR ];
+    final short[] IIR_FIR_buf = new short[ 2 * ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_ORDER_FIR_144 ];
+
     /**
      * set all fields of the instance to zero.
      */
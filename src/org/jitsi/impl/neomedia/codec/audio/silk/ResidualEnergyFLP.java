@@ -106,6 +106,7 @@ public class ResidualEnergyFLP
      * @param gains Quantization gains
      * @param subfr_length Subframe length
      * @param LPC_order LPC order
+     * @param ws scratch memory
      */
     static void SKP_Silk_residual_energy_FLP(
               float nrgs[],                     /* O    Residual energy per subframe    */
@@ -113,12 +114,13 @@ public class ResidualEnergyFLP
         final float a[][ ],    /* I    AR coefs for each frame half    */
         final float gains[],                    /* I    Quantization gains              */
         final int   subfr_length,               /* I    Subframe length                 */
-        final int   LPC_order                   /* I    LPC order                       */
+        final int   LPC_order,                  /* I    LPC order                       */
+        SKP_Silk_encoder_workspace ws           /* I/O  Scratch memory                  */
     )
     {
         int         shift;
 //        SKP_float       *LPC_res_ptr, LPC_res[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
-        float       LPC_res_ptr[], LPC_res[] = new float[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
+        float       LPC_res_ptr[], LPC_res[] = ws.LPC_res;
 
 //        LPC_res_ptr = LPC_res + LPC_order;
         LPC_res_ptr = LPC_res;
@@ -29,17 +29,19 @@ public class SchurFLP
      * @param auto_corr autotcorreation sequence (length order+1)
      * @param auto_corr_offset offset of valid data.
      * @param order order
+     * @param ws scratch memory
      */
     static void SKP_Silk_schur_FLP(
             float       refl_coef[],        /* O    reflection coefficients (length order)      */
             int ref1_coef_offset,
             float auto_corr[],        /* I    autotcorreation sequence (length order+1)   */
             int auto_corr_offset,
-            int         order               /* I    order                                       */
+            int         order,              /* I    order                                       */
+            SKP_Silk_encoder_workspace ws   /* I/O  Scratch memory                              */
     )
     {
         int k, n;
-        float[][] C = new float[SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1][2];
+        float[][] C = ws.schur_C;
         float Ctmp1, Ctmp2, rc_tmp;
 
         /* copy correlations */
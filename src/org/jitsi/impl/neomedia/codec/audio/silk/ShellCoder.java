@@ -118,14 +118,16 @@ public class ShellCoder
      * @param sRC compressor data structure.
      * @param pulses0 data: nonnegative pulse amplitudes.
      * @param pulses0_offset valid data
+     * @param ws scratch memory.
      */
     static void SKP_Silk_shell_encoder(
         SKP_Silk_range_coder_state sRC,               /* I/O  compressor data structure                   */
         int[]                      pulses0,           /* I    data: nonnegative pulse amplitudes          */
-        int                        pulses0_offset
+        int                        pulses0_offset,
+        SKP_Silk_workspace         ws                 /* I/O  Scratch memory                              */
     )
     {
-        int[] pulses1 = new int[ 8 ], pulses2 = new int[ 4 ], pulses3 = new int[ 2 ], pulses4 = new int[ 1 ];
+        int[] pulses1 = ws.shell_pulses1, pulses2 = ws.shell_pulses2, pulses3 = ws.shell_pulses3, pulses4 = ws.shell_pulses4;
 
         /* this function operates on one shell code frame of 16 pulses */
         assert( SHELL_CODEC_FRAME_LENGTH == 16 );
@@ -165,15 +167,17 @@ public class ShellCoder
      * @param pulses0_offset offset of valid data.
      * @param sRC compressor data structure
      * @param pulses4 number of pulses per pulse-subframe
+     * @param ws scratch memory.
      */
     static void SKP_Silk_shell_decoder(
             int                         []pulses0,           /* O    data: nonnegative pulse amplitudes          */
             int                         pulses0_offset,
             SKP_Silk_range_coder_state  sRC,               /* I/O  compressor data structure                   */
-            final int                   pulses4             /* I    number of pulses per pulse-subframe         */
+            final int                   pulses4,            /* I    number of pulses per pulse-subframe         */
+            SKP_Silk_workspace          ws                  /* I/O  Scratch memory                              */
     )
     {
-        int[] pulses3 = new int[ 2 ], pulses2 = new int[ 4 ], pulses1 = new int[ 8 ];
+        int[] pulses3 = ws.shell_pulses3, pulses2 = ws.shell_pulses2, pulses1 = ws.shell_pulses1;
 
         /* this function operates on one shell code frame of 16 pulses */
         SKP_assert( SHELL_CODEC_FRAME_LENGTH == 16 );
@@ -0,0 +1,158 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.silk;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Measures the number of 20 ms frames per second which a single thread can
+ * encode and decode with the pure-Java SILK implementation, and the number of
+ * bytes allocated per frame.
+ * <p>
+ * Usage: <tt>SilkBenchmark [-rate &lt;Hz&gt;] [-complexity &lt;0-2&gt;]
+ * [-frames &lt;count&gt;]</tt>
+ * </p>
+ */
+public class SilkBenchmark
+{
+    public static void main(String[] args)
+        throws Exception
+    {
+        int sampleRate = 16000;
+        int complexity = 2;
+        int frames = 50 * 60;
+
+        for (int i = 0; i < args.length - 1; i++)
+        {
+            String arg = args[i];
+
+            if ("-rate".equalsIgnoreCase(arg))
+                sampleRate = Integer.parseInt(args[++i]);
+            else if ("-complexity".equalsIgnoreCase(arg))
+                complexity = Integer.parseInt(args[++i]);
+            else if ("-frames".equalsIgnoreCase(arg))
+                frames = Integer.parseInt(args[++i]);
+        }
+
+        int frameLength = sampleRate / 50;
+        short[][] input = new short[frames][frameLength];
+        Random random = new Random(0);
+        double phase = 0;
+
+        for (int f = 0; f < frames; f++)
+        {
+            for (int i = 0; i < frameLength; i++)
+            {
+                phase
+                    += 2 * Math.PI * (150 + 100 * Math.sin(f * 0.05))
+                        / sampleRate;
+                input[f][i]
+                    = (short)
+                        (6000 * Math.sin(phase)
+                            + 2000 * Math.sin(3 * phase)
+                            + 500 * random.nextGaussian());
+            }
+        }
+
+        SKP_Silk_encoder_state_FLP encoder = new SKP_Silk_encoder_state_FLP();
+        SKP_SILK_SDK_EncControlStruct encControl
+            = new SKP_SILK_SDK_EncControlStruct();
+
+        EncAPI.SKP_Silk_SDK_InitEncoder(encoder, encControl);
+        encControl.API_sampleRate = sampleRate;
+        encControl.maxInternalSampleRate = sampleRate;
+        encControl.packetSize = frameLength;
+        encControl.bitRate = 25000;
+        encControl.complexity = complexity;
+
+        SKP_Silk_decoder_state decoder = new SKP_Silk_decoder_state();
+        SKP_SILK_SDK_DecControlStruct decControl
+            = new SKP_SILK_SDK_DecControlStruct();
+
+        DecAPI.SKP_Silk_SDK_InitDecoder(decoder);
+        decControl.API_sampleRate = sampleRate;
+
+        byte[] payload = new byte[250];
+        short[] payloadLength = new short[1];
+        short[] output = new short[frameLength * 2];
+        short[] outputLength = new short[1];
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationMXBean
+            = (threadMXBean instanceof com.sun.management.ThreadMXBean)
+                ? (com.sun.management.ThreadMXBean) threadMXBean
+                : null;
+        long threadId = Thread.currentThread().getId();
+
+        // The first round warms up the JIT compiler.
+        for (int round = 0; round < 4; round++)
+        {
+            long encodeTime = 0;
+            long decodeTime = 0;
+            long encodeBytes = 0;
+            long decodeBytes = 0;
+
+            for (int f = 0; f < frames; f++)
+            {
+                long bytes0
+                    = (allocationMXBean == null)
+                        ? 0
+                        : allocationMXBean.getThreadAllocatedBytes(threadId);
+                long time0 = System.nanoTime();
+
+                payloadLength[0] = (short) payload.length;
+                EncAPI.SKP_Silk_SDK_Encode(
+                        encoder, encControl,
+                        input[f], 0, frameLength,
+                        payload, 0, payloadLength);
+
+                long time1 = System.nanoTime();
+                long bytes1
+                    = (allocationMXBean == null)
+                        ? 0
+                        : allocationMXBean.getThreadAllocatedBytes(threadId);
+
+                outputLength[0] = (short) output.length;
+                DecAPI.SKP_Silk_SDK_Decode(
+                        decoder, decControl,
+                        0,
+                        payload, 0, payloadLength[0],
+                        output, 0, outputLength);
+
+                long time2 = System.nanoTime();
+                long bytes2
+                    = (allocationMXBean == null)
+                        ? 0
+                        : allocationMXBean.getThreadAllocatedBytes(threadId);
+
+                encodeTime += time1 - time0;
+                decodeTime += time2 - time1;
+                encodeBytes += bytes1 - bytes0;
+                decodeBytes += bytes2 - bytes1;
+            }
+
+            System.err.println(
+                    "round " + round
+                        + ": encode " + (frames * 1000000000L / encodeTime)
+                        + " frames/s, " + (encodeBytes / frames)
+                        + " bytes/frame; decode "
+                        + (frames * 1000000000L / decodeTime)
+                        + " frames/s, " + (decodeBytes / frames)
+                        + " bytes/frame");
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class SolveLSFLP
      * @param b Pointer to b vector
      * @param x Pointer to x solution vector
      * @param x_offset offset of valid data.
+     * @param ws scratch memory.
      */
     static void SKP_Silk_solve_LDL_FLP(
               float                 []A,                 /* I/O  Symmetric square matrix, out: reg.      */
@@ -35,15 +36,16 @@ public class SolveLSFLP
         final int                   M,                  /* I    Size of matrix                          */
         final float                 []b,                 /* I    Pointer to b vector                     */
               float                 []x,                  /* O    Pointer to x solution vector            */
-              int                   x_offset
+              int                   x_offset,
+              SKP_Silk_encoder_workspace ws
     )
     {
         int i;
 //        float L[][] = new float[MAX_MATRIX_SIZE][MAX_MATRIX_SIZE];
 //TODO:change L from two dimension to one dimension.
-        float L_tmp[] = new float[MAX_MATRIX_SIZE*MAX_MATRIX_SIZE];
-        float T[] = new float[MAX_MATRIX_SIZE];
-        float Dinv[] = new float[MAX_MATRIX_SIZE];// inverse diagonal elements of D
+        float L_tmp[] = ws.LDL_L;
+        float T[] = ws.LDL_T;
+        float Dinv[] = ws.LDL_Dinv;// inverse diagonal elements of D
 
         assert( M <= MAX_MATRIX_SIZE );
 
@@ -52,7 +54,7 @@ public class SolveLSFLP
         where L is lower triangular with ones on diagonal
         ****************************************************/
 //        SKP_Silk_LDL_FLP( A, M, &L[ 0 ][ 0 ], Dinv );
-        SKP_Silk_LDL_FLP(A, A_offset, M, L_tmp, Dinv);
+        SKP_Silk_LDL_FLP(A, A_offset, M, L_tmp, Dinv, ws);
 
         /****************************************************
         * substitute D*(L^T) = T. ie:
@@ -161,13 +163,15 @@ public class SolveLSFLP
      * @param M Size of Matrix
      * @param L Pointer to Square Upper triangular Matrix
      * @param Dinv Pointer to vector holding the inverse diagonal elements of D
+     * @param ws scratch memory
      */
     static void SKP_Silk_LDL_FLP(
         float           []A,      /* (I/O) Pointer to Symetric Square Matrix */
         int             A_offset,
         int             M,       /* (I) Size of Matrix */
         float           []L,      /* (I/O) Pointer to Square Upper triangular Matrix */
-        float           []Dinv    /* (I/O) Pointer to vector holding the inverse diagonal elements of D */
+        float           []Dinv,   /* (I/O) Pointer to vector holding the inverse diagonal elements of D */
+        SKP_Silk_encoder_workspace ws /* I/O  Scratch memory                                            */
     )
     {
 /*        SKP_int i, j, k, loop_count, err = 1;
@@ -179,7 +183,7 @@ public class SolveLSFLP
         float ptr1[], ptr2[];
         int ptr1_offset, ptr2_offset;
         double temp, diag_min_value;
-        float v[] = new float[ MAX_MATRIX_SIZE ], D[] = new float[ MAX_MATRIX_SIZE ]; // temp arrays
+        float v[] = ws.LDL_v, D[] = ws.LDL_D; // temp arrays
 
         assert( M <= MAX_MATRIX_SIZE );
 
@@ -15,6 +15,7 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import static org.jitsi.impl.neomedia.codec.audio.silk.CommonPitchEstDefines.*;
 import static org.jitsi.impl.neomedia.codec.audio.silk.Define.*;
 
 import java.util.*;
@@ -65,6 +66,29 @@ class SKP_Silk_nsq_state implements Cloneable
         return clone;
     }
 
+    /**
+     * Copies the fields of a specific instance into this instance without
+     * allocating. Like {@link #clone()}, which it replaces on the encoding
+     * path, the buffers of the specified instance are shared rather than
+     * copied.
+     *
+     * @param other the instance to copy the fields of
+     */
+    public void copyFrom(SKP_Silk_nsq_state other)
+    {
+        this.xq = other.xq;
+        this.sLTP_shp_Q10 = other.sLTP_shp_Q10;
+        this.sLPC_Q14 = other.sLPC_Q14;
+        this.sAR2_Q14 = other.sAR2_Q14;
+        this.sLF_AR_shp_Q12 = other.sLF_AR_shp_Q12;
+        this.lagPrev = other.lagPrev;
+        this.sLTP_buf_idx = other.sLTP_buf_idx;
+        this.sLTP_shp_buf_idx = other.sLTP_shp_buf_idx;
+        this.rand_seed = other.rand_seed;
+        this.prev_inv_gain_Q16 = other.prev_inv_gain_Q16;
+        this.rewhite_flag = other.rewhite_flag;
+    }
+
     /**
      * set all fields of the instance to zero
      */
@@ -328,6 +352,8 @@ class SKP_Silk_encoder_state
     /* Buffers */
     byte[]                      q = new byte[ MAX_FRAME_LENGTH ];      /* pulse signal buffer */
     byte[]                      q_LBRR = new byte[ MAX_FRAME_LENGTH ]; /* pulse signal buffer */
+
+    final SKP_Silk_encoder_workspace sWorkspace = new SKP_Silk_encoder_workspace(); /* Scratch memory for encoding a frame */
 }
 
 /**
@@ -356,6 +382,27 @@ class SKP_Silk_encoder_control
     int[]   pitchL = new int[ NB_SUBFR ];
 
     int     LBRR_usage;                     /* Low bitrate redundancy usage                             */
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        this.lagIndex = 0;
+        this.contourIndex = 0;
+        this.PERIndex = 0;
+        Arrays.fill(this.LTPIndex, 0);
+        Arrays.fill(this.NLSFIndices, 0);
+        this.NLSFInterpCoef_Q2 = 0;
+        Arrays.fill(this.GainsIndices, 0);
+        this.Seed = 0;
+        this.LTP_scaleIndex = 0;
+        this.RateLevelIndex = 0;
+        this.QuantOffsetType = 0;
+        this.sigtype = 0;
+        Arrays.fill(this.pitchL, 0);
+        this.LBRR_usage = 0;
+    }
 }
 
 /**
@@ -447,6 +494,8 @@ class SKP_Silk_encoder_control
     SKP_Silk_PLC_struct sPLC = new SKP_Silk_PLC_struct();
     int         lossCnt;
     int         prev_sigtype;                               /* Previous sigtype                                                     */
+
+    final SKP_Silk_decoder_workspace sWorkspace = new SKP_Silk_decoder_workspace(); /* Scratch memory for decoding a frame */
 }
 
  /**
@@ -475,4 +524,321 @@ class SKP_Silk_decoder_control
     int             QuantOffsetType;
     int             sigtype;
     int             NLSFInterpCoef_Q2;
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        Arrays.fill(this.pitchL, 0);
+        Arrays.fill(this.Gains_Q16, 0);
+        this.Seed = 0;
+        Arrays.fill(this.dummy_int32PredCoef_Q12, 0);
+        Arrays.fill(this.PredCoef_Q12[0], (short)0);
+        Arrays.fill(this.PredCoef_Q12[1], (short)0);
+        Arrays.fill(this.LTPCoef_Q14, (short)0);
+        this.LTP_scale_Q14 = 0;
+
+        this.PERIndex = 0;
+        this.RateLevelIndex = 0;
+        this.QuantOffsetType = 0;
+        this.sigtype = 0;
+        this.NLSFInterpCoef_Q2 = 0;
+    }
+}
+
+/**
+ * Scratch memory of the signal processing functions which are shared by the
+ * encoder and the decoder. The buffers are allocated once per encoder or
+ * decoder state and reused for every frame so that encoding or decoding a
+ * frame does not allocate. They carry no information from one frame to the
+ * next.
+ */
+class SKP_Silk_workspace
+{
+    /* SKP_Silk_LPC_inverse_pred_gain */
+    final int[][]   LPC_inverse_pred_gain_Atmp_QA = new int[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    final int[]     invGain_Q30 = new int[ 1 ];
+
+    /* SKP_Silk_NLSF2A */
+    final int[]     NLSF2A_cos_LSF_Q20 = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    final int[]     NLSF2A_P = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
+    final int[]     NLSF2A_Q = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
+    final int[]     NLSF2A_a_int32 = new int[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_shell_encoder, SKP_Silk_shell_decoder */
+    final int[]     shell_pulses1 = new int[ 8 ];
+    final int[]     shell_pulses2 = new int[ 4 ];
+    final int[]     shell_pulses3 = new int[ 2 ];
+    final int[]     shell_pulses4 = new int[ 1 ];
+
+    /* SKP_Silk_resampler_down2_3, SKP_Silk_resampler_down3 */
+    final int[]     resampler_down_buf = new int[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + 4 ];
+}
+
+/**
+ * Scratch memory of the encoder.
+ */
+class SKP_Silk_encoder_workspace
+    extends SKP_Silk_workspace
+{
+    /* SKP_Silk_encode_frame_FLP */
+    final SKP_Silk_encoder_control_FLP sEncCtrl = new SKP_Silk_encoder_control_FLP();
+    final int[]     nBytes = new int[ 1 ];
+    final short[]   pIn_HP = new short[    MAX_FRAME_LENGTH ];
+    final short[]   pIn_HP_LP = new short[ MAX_FRAME_LENGTH ];
+    final float[]   xfw = new float[       MAX_FRAME_LENGTH ];
+    final float[]   res_pitch = new float[ 2 * MAX_FRAME_LENGTH + LA_PITCH_MAX ];
+    final byte[]    LBRRpayload = new byte[ MAX_ARITHM_BYTES ];
+    final short[]   nBytesLBRR = new short[ 1 ];
+
+    /* SKP_Silk_LBRR_encode_FLP */
+    final int[]     LBRR_Gains_Q16 = new int[ NB_SUBFR ];
+    final int[]     LBRR_TempGainsIndices = new int[ NB_SUBFR ];
+    final int[]     LBRR_nBytes = new int[ 1 ];
+    final float[]   LBRR_TempGains = new float[ NB_SUBFR ];
+    final int[]     LBRR_prevLastGainIndex_ptr = new int[ 1 ];
+
+    /* SKP_Silk_encode_pulses */
+    final int[]     abs_pulses = new int[ MAX_FRAME_LENGTH ];
+    final int[]     sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
+    final int[]     nRshifts = new int[ MAX_NB_SHELL_BLOCKS ];
+    final int[]     pulses_comb = new int[ 8 ];
+
+    /* SKP_Silk_A2NLSF */
+    final int[][]   A2NLSF_PQ = new int[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC / 2 + 1 ];
+
+    /* SKP_Silk_A2NLSF_FLP, SKP_Silk_NLSF2A_stable_FLP, SKP_Silk_NLSF_stabilize_FLP */
+    final int[]     NLSF_fix = new int[ MAX_LPC_ORDER ];
+    final int[]     a_fix_Q16 = new int[ MAX_LPC_ORDER ];
+    final short[]   a_fix_Q12 = new short[ MAX_LPC_ORDER ];
+    final int[]     ndelta_min_Q15 = new int[ MAX_LPC_ORDER + 1 ];
+
+    /* SKP_Silk_interpolate_wrapper_FLP */
+    final int[]     x0_int = new int[ MAX_LPC_ORDER ];
+    final int[]     x1_int = new int[ MAX_LPC_ORDER ];
+    final int[]     xi_int = new int[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_VAD_FLP */
+    final int[]     SA_Q8 = new int[ 1 ];
+    final int[]     SNR_dB_Q7 = new int[ 1 ];
+    final int[]     Tilt_Q15 = new int[ 1 ];
+    final int[]     Quality_Bands_Q15 = new int[ VAD_N_BANDS ];
+
+    /* SKP_Silk_NSQ_wrapper_FLP */
+    final short[]   x_16 = new short[ MAX_FRAME_LENGTH ];
+    final int[]     Gains_Q16 = new int[ NB_SUBFR ];
+    final short[][] PredCoef_Q12 = new short[ 2 ][ MAX_LPC_ORDER ];
+    final short[]   LTPCoef_Q14 = new short[ LTP_ORDER * NB_SUBFR ];
+    final short[]   AR2_Q13 = new short[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
+    final int[]     LF_shp_Q14 = new int[ NB_SUBFR ];
+    final int[]     Tilt_Q14 = new int[ NB_SUBFR ];
+    final int[]     HarmShapeGain_Q14 = new int[ NB_SUBFR ];
+    final short[]   PredCoef_Q12_dim1_tmp = new short[ 2 * MAX_LPC_ORDER ];
+
+    /* SKP_Silk_solve_LDL_FLP, SKP_Silk_LDL_FLP */
+    final float[]   LDL_L = new float[ MAX_MATRIX_SIZE * MAX_MATRIX_SIZE ];
+    final float[]   LDL_T = new float[ MAX_MATRIX_SIZE ];
+    final float[]   LDL_Dinv = new float[ MAX_MATRIX_SIZE ];
+    final float[]   LDL_v = new float[ MAX_MATRIX_SIZE ];
+    final float[]   LDL_D = new float[ MAX_MATRIX_SIZE ];
+
+    /* SKP_Silk_k2a_FLP */
+    final float[]   k2a_Atmp = new float[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_schur_FLP */
+    final float[][] schur_C = new float[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ][ 2 ];
+
+    /* SKP_Silk_find_LTP_FLP */
+    final float[]   find_LTP_d = new float[ NB_SUBFR ];
+    final float[]   find_LTP_delta_b = new float[ LTP_ORDER ];
+    final float[]   find_LTP_w = new float[ NB_SUBFR ];
+    final float[]   find_LTP_nrg = new float[ NB_SUBFR ];
+    final float[]   find_LTP_Rr = new float[ LTP_ORDER ];
+    final float[]   find_LTP_rr = new float[ NB_SUBFR ];
+
+    /* SKP_Silk_quant_LTP_gains_FLP */
+    final int[]     quant_LTP_temp_idx = new int[ NB_SUBFR ];
+    final float[]   quant_LTP_rate_dist_subfr = new float[ 1 ];
+
+    /* SKP_Silk_LTP_analysis_filter_FLP */
+    final float[]   LTP_analysis_Btmp = new float[ LTP_ORDER ];
+
+    /* SKP_Silk_find_LPC_FLP, SKP_Silk_residual_energy_FLP */
+    final float[]   LPC_res = new float[ ( MAX_FRAME_LENGTH + NB_SUBFR * MAX_LPC_ORDER ) / 2 ];
+    final float[]   find_LPC_a = new float[ MAX_LPC_ORDER ];
+    final float[]   find_LPC_a_tmp = new float[ MAX_LPC_ORDER ];
+    final float[]   find_LPC_NLSF0 = new float[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_burg_modified_FLP */
+    final double[]  burg_C_first_row = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    final double[]  burg_C_last_row = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    final double[]  burg_CAf = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
+    final double[]  burg_CAb = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
+    final double[]  burg_Af = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_LPC_inverse_pred_gain_FLP */
+    final float[][] LPC_inverse_pred_gain_FLP_Atmp = new float[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
+    /* SKP_Silk_NLSF_MSVQ_encode_FLP */
+    final float[]   MSVQ_pNLSF_in = new float[ MAX_LPC_ORDER ];
+    final float[]   MSVQ_pRateDist = new float[ NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED() ];
+    final float[]   MSVQ_pRate = new float[ MAX_NLSF_MSVQ_SURVIVORS ];
+    final float[]   MSVQ_pRate_new = new float[ MAX_NLSF_MSVQ_SURVIVORS ];
+    final int[]     MSVQ_pTempIndices = new int[ MAX_NLSF_MSVQ_SURVIVORS ];
+    final int[]     MSVQ_pPath = new int[ MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
+    final int[]     MSVQ_pPath_new = new int[ MAX_NLSF_MSVQ_SURVIVORS * NLSF_MSVQ_MAX_CB_STAGES ];
+    final float[]   MSVQ_pRes = new float[ MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
+    final float[]   MSVQ_pRes_new = new float[ MAX_NLSF_MSVQ_SURVIVORS * MAX_LPC_ORDER ];
+
+    /* SKP_Silk_find_pred_coefs_FLP */
+    final float[]   WLTP = new float[ NB_SUBFR * LTP_ORDER * LTP_ORDER ];
+    final float[]   invGains = new float[ NB_SUBFR ];
+    final float[]   Wght = new float[ NB_SUBFR ];
+    final float[]   NLSF = new float[ MAX_LPC_ORDER ];
+    final float[]   LPC_in_pre = new float[ NB_SUBFR * MAX_LPC_ORDER + MAX_FRAME_LENGTH ];
+    final float[]   LTPredCodGain_ptr = new float[ 1 ];
+    final int[]     PERIndex_ptr = new int[ 1 ];
+    final int[]     NLSFInterpCoef_Q2_ptr = new int[ 1 ];
+
+    /* SKP_Silk_process_NLSFs_FLP */
+    final float[]   pNLSFW = new float[ MAX_LPC_ORDER ];
+    final float[]   pNLSF0_temp = new float[ MAX_LPC_ORDER ];
+    final float[]   pNLSFW0_temp = new float[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_noise_shape_analysis_FLP, LPC_fit_int16 */
+    final float[]   x_windowed = new float[ SHAPE_LPC_WIN_MAX ];
+    final float[]   shape_auto_corr = new float[ SHAPE_LPC_ORDER_MAX + 1 ];
+    final float[]   invGain_FLP = new float[ 1 ];
+
+    /* SKP_Silk_find_pitch_lags_FLP */
+    final float[]   pitch_auto_corr = new float[ FIND_PITCH_LPC_ORDER_MAX + 1 ];
+    final float[]   pitch_A = new float[ FIND_PITCH_LPC_ORDER_MAX ];
+    final float[]   pitch_refl_coef = new float[ FIND_PITCH_LPC_ORDER_MAX ];
+    final float[]   pitch_Wsig = new float[ FIND_PITCH_LPC_WIN_MAX ];
+    final int[]     lagIndex_ptr = new int[ 1 ];
+    final int[]     contourIndex_ptr = new int[ 1 ];
+    final float[]   LTPCorr_ptr = new float[ 1 ];
+
+    /* SKP_Silk_pitch_analysis_core_FLP */
+    final float[]   pitch_signal_8kHz = new float[ PITCH_EST_FRAME_LENGTH_MS * 8 ];
+    final float[]   pitch_signal_4kHz = new float[ PITCH_EST_FRAME_LENGTH_MS * 4 ];
+    final float[]   pitch_scratch_mem = new float[ PITCH_EST_MAX_FRAME_LENGTH * 3 ];
+    final float[]   pitch_filt_state = new float[ PITCH_EST_MAX_DECIMATE_STATE_LENGTH ];
+    final float[][] pitch_C = new float[ PITCH_EST_NB_SUBFR ][ ( PITCH_EST_MAX_LAG >> 1 ) + 5 ];
+    final float[]   pitch_CC = new float[ PITCH_EST_NB_CBKS_STAGE2_EXT ];
+    final int[]     pitch_d_srch = new int[ PITCH_EST_D_SRCH_LENGTH ];
+    final short[]   pitch_d_comp = new short[ ( PITCH_EST_MAX_LAG >> 1 ) + 5 ];
+    final float[][][] pitch_energies_st3 = new float[ PITCH_EST_NB_SUBFR ][ PITCH_EST_NB_CBKS_STAGE3_MAX ][ PITCH_EST_NB_STAGE3_LAGS ];
+    final float[][][] pitch_cross_corr_st3 = new float[ PITCH_EST_NB_SUBFR ][ PITCH_EST_NB_CBKS_STAGE3_MAX ][ PITCH_EST_NB_STAGE3_LAGS ];
+    final short[]   pitch_signal_12 = new short[ 12 * PITCH_EST_FRAME_LENGTH_MS ];
+    final short[]   pitch_signal_8 = new short[ 8 * PITCH_EST_FRAME_LENGTH_MS ];
+    final short[]   pitch_signal_24 = new short[ PITCH_EST_MAX_FRAME_LENGTH ];
+    final int[]     pitch_R23 = new int[ 6 ];
+    final int[]     pitch_filt_state_fix = new int[ 8 ];
+
+    /* SKP_P_Ana_calc_corr_st3, SKP_P_Ana_calc_energy_st3 */
+    final float[]   pitch_st3_scratch_mem = new float[ PitchAnalysisCoreFLP.SCRATCH_SIZE ];
+
+    /* SKP_Silk_prefilter_FLP */
+    final float[]   prefilt_B = new float[ 2 ];
+    final float[]   prefilt_AR1_shp = new float[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
+    final float[]   prefilt_HarmShapeFIR = new float[ 3 ];
+    final float[]   prefilt_st_res = new float[ MAX_FRAME_LENGTH / NB_SUBFR + MAX_LPC_ORDER ];
+
+    /* SKP_Silk_process_gains_FLP */
+    final int[]     pGains_Q16 = new int[ NB_SUBFR ];
+    final int[]     LastGainIndex_ptr = new int[ 1 ];
+
+    /* SKP_Silk_HP_variable_cutoff_FLP */
+    final int[]     HP_B_Q28 = new int[ 3 ];
+    final int[]     HP_A_Q28 = new int[ 2 ];
+
+    /* SKP_Silk_LP_variable_cutoff */
+    final int[]     LP_B_Q28 = new int[ TRANSITION_NB ];
+    final int[]     LP_A_Q28 = new int[ TRANSITION_NA ];
+
+    /* SKP_Silk_VAD_GetSA_Q8 */
+    final int[]     VAD_scratch = new int[ 3 * MAX_FRAME_LENGTH / 2 ];
+    final short[][] VAD_X = new short[ VAD_N_BANDS ][ MAX_FRAME_LENGTH / 2 ];
+    final int[]     VAD_Xnrg = new int[ VAD_N_BANDS ];
+    final int[]     VAD_NrgToNoiseRatio_Q8 = new int[ VAD_N_BANDS ];
+
+    /* SKP_Silk_detect_SWB_input */
+    final int[]     SWB_shift = new int[ 1 ];
+    final short[]   in_HP_8_kHz = new short[ MAX_FRAME_LENGTH ];
+    final int[]     SWB_energy_32 = new int[ 1 ];
+
+    /* SKP_Silk_encode */
+    final short[]   MaxBytesOut_ptr = new short[ 1 ];
+
+    /* SKP_Silk_NSQ, SKP_Silk_NSQ_del_dec */
+    final int[]     NSQ_sLTP_Q16 = new int[ 2 * MAX_FRAME_LENGTH ];
+    final short[]   NSQ_sLTP = new short[ 2 * MAX_FRAME_LENGTH ];
+    final int[]     NSQ_FiltState = new int[ MAX_LPC_ORDER ];
+    final int[]     NSQ_x_sc_Q10 = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
+
+    /* SKP_Silk_NSQ_del_dec */
+    final NSQDelDecStruct[] psDelDec = new NSQDelDecStruct[ DEL_DEC_STATES_MAX ];
+    {
+        for( int i = 0; i < DEL_DEC_STATES_MAX; i++ )
+        {
+            psDelDec[ i ] = new NSQDelDecStruct();
+        }
+    }
+    final int[]     smpl_buf_idx_ptr = new int[ 1 ];
+
+    /* SKP_Silk_noise_shape_quantizer_del_dec */
+    final NSQ_sample_struct[][] psSampleState = new NSQ_sample_struct[ DEL_DEC_STATES_MAX ][ 2 ];
+    {
+        for( int i = 0; i < DEL_DEC_STATES_MAX; i++ )
+        {
+            psSampleState[ i ][ 0 ] = new NSQ_sample_struct();
+            psSampleState[ i ][ 1 ] = new NSQ_sample_struct();
+        }
+    }
+}
+
+/**
+ * Scratch memory of the decoder.
+ */
+class SKP_Silk_decoder_workspace
+    extends SKP_Silk_workspace
+{
+    /* SKP_Silk_decode_parameters */
+    final int[]     Ix_ptr = new int[ 1 ];
+    final int[]     Ixs = new int[ NB_SUBFR ];
+    final int[]     GainsIndices = new int[ NB_SUBFR ];
+    final int[]     NLSFIndices = new int[ NLSF_MSVQ_MAX_CB_STAGES ];
+    final int[]     pNLSF_Q15 = new int[ MAX_LPC_ORDER ];
+    final int[]     pNLSF0_Q15 = new int[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_decode_pulses */
+    final int[]     sum_pulses = new int[ MAX_NB_SHELL_BLOCKS ];
+    final int[]     nLshifts = new int[ MAX_NB_SHELL_BLOCKS ];
+
+    /* SKP_Silk_decode_frame */
+    final SKP_Silk_decoder_control sDecCtrl = new SKP_Silk_decoder_control();
+    final int[]     Pulses = new int[ MAX_FRAME_LENGTH ];
+
+    /* SKP_Silk_decode_core */
+    final short[]   A_Q12_tmp = new short[ MAX_LPC_ORDER ];
+    final short[]   sLTP = new short[ MAX_FRAME_LENGTH ];
+    final int[]     vec_Q10 = new int[ MAX_FRAME_LENGTH / NB_SUBFR ];
+    final int[]     FiltState = new int[ MAX_LPC_ORDER ];
+
+    /* SKP_Silk_PLC_conceal, SKP_Silk_PLC_glue_frames */
+    final short[]   exc_buf = new short[ MAX_FRAME_LENGTH ];
+    final int[]     shift_ptr = new int[ 1 ];
+    final int[]     energy_ptr = new int[ 1 ];
+    final int[]     sig_Q10 = new int[ MAX_FRAME_LENGTH ];
+
+    /* SKP_Silk_CNG */
+    final short[]   LPC_buf = new short[ MAX_LPC_ORDER ];
+    final short[]   CNG_sig = new short[ MAX_FRAME_LENGTH ];
+    final int[]     rand_seed_ptr = new int[ 1 ];
+
+    /* SKP_Silk_SDK_Decode */
+    final int[]     used_bytes = new int[ 1 ];
+    final short[]   samplesOut_tmp = new short[ MAX_API_FS_KHZ * FRAME_LENGTH_MS ];
 }
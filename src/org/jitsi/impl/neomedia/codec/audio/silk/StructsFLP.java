@@ -307,6 +307,54 @@ class SKP_Silk_encoder_control_FLP
     float[]                   input_quality_bands = new float[ VAD_N_BANDS ];
     float                   input_tilt;
     float[]                   ResNrg = new float[ NB_SUBFR ];                 /* Residual energy per subframe */
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        sCmn.memZero();
+
+        Arrays.fill(Gains, 0);
+        Arrays.fill(PredCoef[0], 0);
+        Arrays.fill(PredCoef[1], 0);
+        Arrays.fill(LTPCoef, 0);
+        LTP_scale = 0;
+
+        Arrays.fill(Gains_Q16, 0);
+        Arrays.fill(dummy_int32PredCoef_Q12, 0);
+        Arrays.fill(PredCoef_Q12[0], (short) 0);
+        Arrays.fill(PredCoef_Q12[1], (short) 0);
+        Arrays.fill(LTPCoef_Q14, (short) 0);
+        LTP_scale_Q14 = 0;
+
+        dummy_int32AR2_Q13 = 0;
+        Arrays.fill(AR2_Q13, (short) 0);
+        Arrays.fill(LF_shp_Q14, 0);
+        Arrays.fill(Tilt_Q14, 0);
+        Arrays.fill(HarmShapeGain_Q14, 0);
+        Lambda_Q10 = 0;
+
+        Arrays.fill(AR1, 0);
+        Arrays.fill(AR2, 0);
+        Arrays.fill(LF_MA_shp, 0);
+        Arrays.fill(LF_AR_shp, 0);
+        Arrays.fill(GainsPre, 0);
+        Arrays.fill(HarmBoost, 0);
+        Arrays.fill(Tilt, 0);
+        Arrays.fill(HarmShapeGain, 0);
+        Lambda = 0;
+        input_quality = 0;
+        coding_quality = 0;
+        pitch_freq_low_Hz = 0;
+        current_SNR_dB = 0;
+
+        sparseness = 0;
+        LTPredCodGain = 0;
+        Arrays.fill(input_quality_bands, 0);
+        input_tilt = 0;
+        Arrays.fill(ResNrg, 0);
+    }
 }
 
 interface NoiseShapingQuantizerFP
@@ -323,3 +371,4 @@ interface NoiseShapingQuantizerFP
 //                                      const SKP_int *, const SKP_int32 *, const SKP_int32 *, SKP_int, const SKP_int
 //  );
 }
+
@@ -77,6 +77,7 @@ public class VAD
      * @param pIn PCM input[framelength].
      * @param pIn_offset offset of valid data.
      * @param framelength Input frame length.
+     * @param ws scratch memory.
      * @return Return value, 0 if success.
      */
     static int SKP_Silk_VAD_GetSA_Q8(                                /* O    Return value, 0 if success      */
@@ -87,18 +88,19 @@ public class VAD
         int[]                         pTilt_Q15,                     /* O    current frame's frequency tilt  */
         short[]                       pIn,                           /* I    PCM input       [framelength]   */
         int                           pIn_offset,
-        int                           framelength                    /* I    Input frame length              */
+        int                           framelength,                   /* I    Input frame length              */
+        SKP_Silk_encoder_workspace    ws                             /* I/O  Scratch memory                  */
     )
     {
         int   SA_Q15, input_tilt;
-        int[] scratch = new int[ 3 * MAX_FRAME_LENGTH / 2 ];
+        int[] scratch = ws.VAD_scratch;
         int   decimated_framelength, dec_subframe_length, dec_subframe_offset, SNR_Q7, i, b, s;
         int sumSquared=0, smooth_coef_Q16;
         short HPstateTmp;
 
-        short[][] X = new short[ VAD_N_BANDS ][ MAX_FRAME_LENGTH / 2 ];
-        int[] Xnrg = new int[ VAD_N_BANDS ];
-        int[] NrgToNoiseRatio_Q8 = new int[ VAD_N_BANDS ];
+        short[][] X = ws.VAD_X;
+        int[] Xnrg = ws.VAD_Xnrg;
+        int[] NrgToNoiseRatio_Q8 = ws.VAD_NrgToNoiseRatio_Q8;
         int speech_nrg, x_tmp;
         int   ret = 0;
 
@@ -54,7 +54,7 @@ public class VQNearestNeighborFLP
 //        const SKP_int16 *cb_row;
         int k;
         float sum1;
-        float diff[] = new float[5];
+        float diff0, diff1, diff2, diff3, diff4;
         final short []cb_row;
         int cb_row_offset = 0;
 
@@ -67,40 +67,40 @@ public class VQNearestNeighborFLP
 
         for( k = 0; k < L; k++ ) {
             /* Calc difference between in vector and cbk vector */
-            diff[ 0 ] = in[ in_offset + 0 ] - cb_row[ 0 ] * DefineFLP.Q14_CONVERSION_FAC;
-            diff[ 1 ] = in[ in_offset + 1 ] - cb_row[ 1 ] * DefineFLP.Q14_CONVERSION_FAC;
-            diff[ 2 ] = in[ in_offset + 2 ] - cb_row[ 2 ] * DefineFLP.Q14_CONVERSION_FAC;
-            diff[ 3 ] = in[ in_offset + 3 ] - cb_row[ 3 ] * DefineFLP.Q14_CONVERSION_FAC;
-            diff[ 4 ] = in[ in_offset + 4 ] - cb_row[ 4 ] * DefineFLP.Q14_CONVERSION_FAC;
+            diff0 = in[ in_offset + 0 ] - cb_row[ 0 ] * DefineFLP.Q14_CONVERSION_FAC;
+            diff1 = in[ in_offset + 1 ] - cb_row[ 1 ] * DefineFLP.Q14_CONVERSION_FAC;
+            diff2 = in[ in_offset + 2 ] - cb_row[ 2 ] * DefineFLP.Q14_CONVERSION_FAC;
+            diff3 = in[ in_offset + 3 ] - cb_row[ 3 ] * DefineFLP.Q14_CONVERSION_FAC;
+            diff4 = in[ in_offset + 4 ] - cb_row[ 4 ] * DefineFLP.Q14_CONVERSION_FAC;
 
             /* Weighted rate */
             sum1 = mu * cl_Q6[ k ] / 64.0f;
 
             /* Add weighted quantization error, assuming W is symmetric */
             /* first row of W */
-            sum1 += diff[ 0 ] * ( W[ W_offset + 0 ] * diff[ 0 ] +
-                         2.0f * ( W[ W_offset + 1 ] * diff[ 1 ] +
-                                  W[ W_offset + 2 ] * diff[ 2 ] +
-                                  W[ W_offset + 3 ] * diff[ 3 ] +
-                                  W[ W_offset + 4 ] * diff[ 4 ] ) );
+            sum1 += diff0 * ( W[ W_offset + 0 ] * diff0 +
+                      2.0f * ( W[ W_offset + 1 ] * diff1 +
+                               W[ W_offset + 2 ] * diff2 +
+                               W[ W_offset + 3 ] * diff3 +
+                               W[ W_offset + 4 ] * diff4 ) );
 
             /* second row of W */
-            sum1 += diff[ 1 ] * ( W[ W_offset + 6 ] * diff[ 1 ] +
-                         2.0f * ( W[ W_offset + 7 ] * diff[ 2 ] +
-                                  W[ W_offset + 8 ] * diff[ 3 ] +
-                                  W[ W_offset + 9 ] * diff[ 4 ] ) );
+            sum1 += diff1 * ( W[ W_offset + 6 ] * diff1 +
+                      2.0f * ( W[ W_offset + 7 ] * diff2 +
+                               W[ W_offset + 8 ] * diff3 +
+                               W[ W_offset + 9 ] * diff4 ) );
 
             /* third row of W */
-            sum1 += diff[ 2 ] * ( W[ W_offset + 12 ] * diff[ 2 ] +
-                        2.0f *  ( W[ W_offset + 13 ] * diff[ 3 ] +
-                                  W[ W_offset + 14 ] * diff[ 4 ] ) );
+            sum1 += diff2 * ( W[ W_offset + 12 ] * diff2 +
+                     2.0f *  ( W[ W_offset + 13 ] * diff3 +
+                               W[ W_offset + 14 ] * diff4 ) );
 
             /* fourth row of W */
-            sum1 += diff[ 3 ] * ( W[ W_offset + 18 ] * diff[ 3 ] +
-                         2.0f * ( W[ W_offset + 19 ] * diff[ 4 ] ) );
+            sum1 += diff3 * ( W[ W_offset + 18 ] * diff3 +
+                      2.0f * ( W[ W_offset + 19 ] * diff4 ) );
 
             /* last row of W */
-            sum1 += diff[ 4 ] * ( W[ W_offset + 24 ] * diff[ 4 ] );
+            sum1 += diff4 * ( W[ W_offset + 24 ] * diff4 );
 
             /* find best */
             if( sum1 < rate_dist[0] ) {
@@ -33,18 +33,19 @@ public class WrappersFLP
     static void SKP_Silk_A2NLSF_FLP(
               float[]               pNLSF,             /* O    NLSF vector      [ LPC_order ]          */
               float[]               pAR,               /* I    LPC coefficients [ LPC_order ]          */
-        final int                   LPC_order          /* I    LPC order                               */
+        final int                   LPC_order,         /* I    LPC order                               */
+        SKP_Silk_encoder_workspace  ws                 /* I/O  Scratch memory                          */
     )
     {
         int   i;
-        int[]   NLSF_fix = new int[  MAX_LPC_ORDER ];
-        int[] a_fix_Q16 = new int[ MAX_LPC_ORDER ];
+        int[]   NLSF_fix = ws.NLSF_fix;
+        int[] a_fix_Q16 = ws.a_fix_Q16;
 
         for( i = 0; i < LPC_order; i++ )
         {
             a_fix_Q16[ i ] = SigProcFLP.SKP_float2int( pAR[ i ] * 65536.0f );
         }
-        A2NLSF.SKP_Silk_A2NLSF( NLSF_fix, a_fix_Q16, LPC_order );
+        A2NLSF.SKP_Silk_A2NLSF( NLSF_fix, a_fix_Q16, LPC_order, ws );
 
         for( i = 0; i < LPC_order; i++ )
         {
@@ -56,19 +57,20 @@ public class WrappersFLP
     static void SKP_Silk_NLSF2A_stable_FLP(
               float []                pAR,               /* O    LPC coefficients [ LPC_order ]          */
               float[]                 pNLSF,             /* I    NLSF vector      [ LPC_order ]          */
-        final int                     LPC_order          /* I    LPC order                               */
+        final int                     LPC_order,         /* I    LPC order                               */
+        SKP_Silk_encoder_workspace    ws                 /* I/O  Scratch memory                          */
     )
     {
         int   i;
-        int[]   NLSF_fix = new int[  MAX_LPC_ORDER ];
-        short[] a_fix_Q12 = new short[ MAX_LPC_ORDER ];
+        int[]   NLSF_fix = ws.NLSF_fix;
+        short[] a_fix_Q12 = ws.a_fix_Q12;
 
         for( i = 0; i < LPC_order; i++ )
         {
             NLSF_fix[ i ] = SigProcFLP.SKP_float2int( pNLSF[ i ] * 32768.0f );
         }
 
-        NLSF2AStable.SKP_Silk_NLSF2A_stable( a_fix_Q12, NLSF_fix, LPC_order );
+        NLSF2AStable.SKP_Silk_NLSF2A_stable( a_fix_Q12, NLSF_fix, LPC_order, ws );
 
         for( i = 0; i < LPC_order; i++ )
         {
@@ -81,11 +83,12 @@ public class WrappersFLP
     static void SKP_Silk_NLSF_stabilize_FLP(
               float[]                 pNLSF,             /* I/O  (Un)stable NLSF vector [ LPC_order ]    */
               float[]                 pNDelta_min,       /* I    Normalized delta min vector[LPC_order+1]*/
-        final int                     LPC_order          /* I    LPC order                               */
+        final int                     LPC_order,         /* I    LPC order                               */
+        SKP_Silk_encoder_workspace    ws                 /* I/O  Scratch memory                          */
     )
     {
         int   i;
-        int[]   NLSF_Q15 = new int[ MAX_LPC_ORDER ], ndelta_min_Q15 = new int[ MAX_LPC_ORDER + 1 ];
+        int[]   NLSF_Q15 = ws.NLSF_fix, ndelta_min_Q15 = ws.ndelta_min_Q15;
 
         for( i = 0; i < LPC_order; i++ )
         {
@@ -109,10 +112,11 @@ public class WrappersFLP
               float                 x0[],               /* I    First vector                            */
               float                 x1[],               /* I    Second vector                           */
         final float                 ifact,              /* I    Interp. factor, weight on second vector */
-        final int                   d                   /* I    Number of parameters                    */
+        final int                   d,                  /* I    Number of parameters                    */
+        SKP_Silk_encoder_workspace  ws                  /* I/O  Scratch memory                          */
     )
     {
-        int[] x0_int = new int[ MAX_LPC_ORDER ], x1_int = new int[ MAX_LPC_ORDER ], xi_int = new int[ MAX_LPC_ORDER ];
+        int[] x0_int = ws.x0_int, x1_int = ws.x1_int, xi_int = ws.xi_int;
         int ifact_Q2 = ( int )( ifact * 4.0f );
         int i;
 
@@ -143,11 +147,12 @@ public class WrappersFLP
     )
     {
         int i, ret;
-        int[] SA_Q8 = new int[1], SNR_dB_Q7 = new int[1], Tilt_Q15 = new int[1];
-        int[] Quality_Bands_Q15 = new int[ VAD_N_BANDS ];
+        SKP_Silk_encoder_workspace ws = psEnc.sCmn.sWorkspace;
+        int[] SA_Q8 = ws.SA_Q8, SNR_dB_Q7 = ws.SNR_dB_Q7, Tilt_Q15 = ws.Tilt_Q15;
+        int[] Quality_Bands_Q15 = ws.Quality_Bands_Q15;
 
         ret = VAD.SKP_Silk_VAD_GetSA_Q8( psEnc.sCmn.sVAD, SA_Q8, SNR_dB_Q7, Quality_Bands_Q15, Tilt_Q15,
-            pIn,pIn_offset, psEnc.sCmn.frame_length );
+            pIn,pIn_offset, psEnc.sCmn.frame_length, ws );
 
         psEnc.speech_activity = SA_Q8[0] / 256.0f;
         for( i = 0; i < VAD_N_BANDS; i++ )
@@ -174,20 +179,21 @@ public class WrappersFLP
     {
         int     i, j;
         float   tmp_float;
-        short[]   x_16 = new short[ MAX_FRAME_LENGTH ];
+        SKP_Silk_encoder_workspace ws = psEnc.sCmn.sWorkspace;
+        short[]   x_16 = ws.x_16;
         /* Prediction and coding parameters */
-        int[]   Gains_Q16 = new int[ NB_SUBFR ];
-        short[][] PredCoef_Q12 = new short[ 2 ][ MAX_LPC_ORDER ];
-        short[]   LTPCoef_Q14 = new short[ LTP_ORDER * NB_SUBFR ];
+        int[]   Gains_Q16 = ws.Gains_Q16;
+        short[][] PredCoef_Q12 = ws.PredCoef_Q12;
+        short[]   LTPCoef_Q14 = ws.LTPCoef_Q14;
         int     LTP_scale_Q14;
 
         /* Noise shaping parameters */
         /* Testing */
-        short[] AR2_Q13 = new short[ NB_SUBFR * SHAPE_LPC_ORDER_MAX ];
-        int[]   LF_shp_Q14 = new int[ NB_SUBFR ];         /* Packs two int16 coefficients per int32 value             */
+        short[] AR2_Q13 = ws.AR2_Q13;
+        int[]   LF_shp_Q14 = ws.LF_shp_Q14;         /* Packs two int16 coefficients per int32 value             */
         int     Lambda_Q10;
-        int[]     Tilt_Q14 = new int[ NB_SUBFR ];
-        int[]     HarmShapeGain_Q14 = new int[ NB_SUBFR ];
+        int[]     Tilt_Q14 = ws.Tilt_Q14;
+        int[]     HarmShapeGain_Q14 = ws.HarmShapeGain_Q14;
 
         /* Convert control struct to fix control struct */
         /* Noise shape parameters */
@@ -512,7 +518,7 @@ public class WrappersFLP
         /*TEST END************************************************************************/
 
         /* Call NSQ */
-        short[] PredCoef_Q12_dim1_tmp= new short[PredCoef_Q12.length * PredCoef_Q12[0].length];
+        short[] PredCoef_Q12_dim1_tmp= ws.PredCoef_Q12_dim1_tmp;
         int PredCoef_Q12_offset = 0;
         for(int PredCoef_Q12_i = 0; PredCoef_Q12_i < PredCoef_Q12.length; PredCoef_Q12_i++)
         {
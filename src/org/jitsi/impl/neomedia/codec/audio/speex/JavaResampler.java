@@ -0,0 +1,650 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio.speex;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Implements a pure-Java port of the polyphase sample rate converter of Speex
+ * (<tt>resample.c</tt>) operating on interleaved signed 16-bit little endian
+ * audio. It has the same quality levels (i.e. filter lengths, oversampling
+ * factors, bandwidths and Kaiser windows) as the native implementation but
+ * computes the windows exactly rather than interpolating precomputed window
+ * tables so its output is not bit-exact with the native one.
+ * <p>
+ * The filters depend on the input sample rate, the output sample rate and the
+ * quality only, are immutable and are shared by all instances. Processing
+ * does not allocate.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class JavaResampler
+{
+    /**
+     * The number of input samples per channel which are converted at a time.
+     */
+    private static final int BUFFER_SIZE = 160;
+
+    /**
+     * The filters shared by all <tt>JavaResampler</tt> instances by
+     * (input sample rate, output sample rate, quality).
+     */
+    private static final ConcurrentMap<Long, Filter> FILTERS
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The quality parameters of the Speex resampler: the base filter length,
+     * the oversampling factor of the interpolated filter, the bandwidth when
+     * downsampling, the bandwidth when upsampling and the beta of the Kaiser
+     * window.
+     */
+    private static final double[][] QUALITY_MAP
+        = {
+            {   8,  4, 0.830, 0.860,  6 },
+            {  16,  4, 0.850, 0.880,  6 },
+            {  32,  4, 0.882, 0.910,  6 },
+            {  48,  8, 0.895, 0.917,  8 },
+            {  64,  8, 0.921, 0.940,  8 },
+            {  80, 16, 0.922, 0.940, 10 },
+            {  96, 16, 0.940, 0.945, 10 },
+            { 128, 16, 0.950, 0.950, 10 },
+            { 160, 16, 0.960, 0.960, 10 },
+            { 192, 32, 0.968, 0.968, 12 },
+            { 256, 32, 0.975, 0.975, 12 }
+        };
+
+    /**
+     * The maximum quality supported by <tt>JavaResampler</tt>.
+     */
+    public static final int QUALITY_MAX = QUALITY_MAP.length - 1;
+
+    /**
+     * The minimum quality supported by <tt>JavaResampler</tt>.
+     */
+    public static final int QUALITY_MIN = 0;
+
+    /**
+     * Computes the cardinal sine windowed by a Kaiser window as
+     * <tt>resample.c</tt> does.
+     */
+    private static double sinc(double cutoff, double x, int n, double beta)
+    {
+        double ax = Math.abs(x);
+
+        if (ax < 1e-6)
+            return cutoff;
+        else if (ax > 0.5 * n)
+            return 0;
+
+        double xx = x * cutoff;
+        double w = 2 * ax / n;
+
+        return
+            cutoff * Math.sin(Math.PI * xx) / (Math.PI * xx)
+                * bessel0(beta * Math.sqrt(1 - w * w)) / bessel0(beta);
+    }
+
+    /**
+     * Computes the zeroth order modified Bessel function of the first kind.
+     */
+    private static double bessel0(double x)
+    {
+        double sum = 1;
+        double term = 1;
+        double y = x * x / 4;
+
+        for (int k = 1; term > 1e-12 * sum; k++)
+        {
+            term *= y / ((double) k * k);
+            sum += term;
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the (possibly cached) filter for a specific input sample rate,
+     * output sample rate and quality.
+     */
+    private static Filter getFilter(int inRate, int outRate, int quality)
+    {
+        Long key
+            = Long.valueOf(
+                    ((long) quality << 56)
+                        | ((long) inRate << 28)
+                        | outRate);
+        Filter filter = FILTERS.get(key);
+
+        if (filter == null)
+        {
+            filter = new Filter(inRate, outRate, quality);
+
+            Filter existing = FILTERS.putIfAbsent(key, filter);
+
+            if (existing != null)
+                filter = existing;
+        }
+        return filter;
+    }
+
+    /**
+     * The number of interleaved channels.
+     */
+    private final int channels;
+
+    /**
+     * The filter for the current input and output sample rates.
+     */
+    private Filter filter;
+
+    /**
+     * The input sample rate.
+     */
+    private int inRate;
+
+    /**
+     * The index in the history of each channel of the next input sample to be
+     * used.
+     */
+    private final int[] lastSample;
+
+    /**
+     * The history (i.e. the last <tt>filter.length - 1</tt> samples) followed
+     * by the input being converted of each channel.
+     */
+    private float[][] mem;
+
+    /**
+     * The output sample rate.
+     */
+    private int outRate;
+
+    /**
+     * The quality of this resampler.
+     */
+    private final int quality;
+
+    /**
+     * The fractional (in units of <tt>filter.den</tt>) position between input
+     * samples of each channel.
+     */
+    private final int[] sampFracNum;
+
+    /**
+     * Initializes a new <tt>JavaResampler</tt> instance.
+     *
+     * @param channels the number of interleaved channels
+     * @param inRate the input sample rate in Hz
+     * @param outRate the output sample rate in Hz
+     * @param quality the quality of the conversion between
+     * {@link #QUALITY_MIN} and {@link #QUALITY_MAX}
+     */
+    public JavaResampler(int channels, int inRate, int outRate, int quality)
+    {
+        if (channels < 1)
+            throw new IllegalArgumentException("channels");
+        if ((quality < QUALITY_MIN) || (quality > QUALITY_MAX))
+            throw new IllegalArgumentException("quality");
+
+        this.channels = channels;
+        this.quality = quality;
+
+        lastSample = new int[channels];
+        sampFracNum = new int[channels];
+
+        setRate(inRate, outRate);
+    }
+
+    /**
+     * Gets the number of interleaved channels of this resampler.
+     *
+     * @return the number of interleaved channels of this resampler
+     */
+    public int getChannels()
+    {
+        return channels;
+    }
+
+    /**
+     * Gets the input sample rate of this resampler.
+     *
+     * @return the input sample rate in Hz of this resampler
+     */
+    public int getInputSampleRate()
+    {
+        return inRate;
+    }
+
+    /**
+     * Gets the maximum number of samples per channel which
+     * {@link #processInterleaved(byte[], int, int, byte[], int, int)} may
+     * output for a specific number of input samples per channel.
+     *
+     * @param inSampleCount the number of input samples per channel
+     * @return the maximum number of samples per channel which may be output
+     * for <tt>inSampleCount</tt> input samples per channel
+     */
+    public int getMaxOutputSampleCount(int inSampleCount)
+    {
+        return (int) (((long) inSampleCount * outRate) / inRate) + 1;
+    }
+
+    /**
+     * Gets the output sample rate of this resampler.
+     *
+     * @return the output sample rate in Hz of this resampler
+     */
+    public int getOutputSampleRate()
+    {
+        return outRate;
+    }
+
+    /**
+     * Converts the sample rate of a channel.
+     *
+     * @return the number of samples of the channel written into <tt>out</tt>
+     */
+    private int process(
+            int channel,
+            byte[] in, int inOffset, int inLength,
+            byte[] out, int outOffset, int outLength)
+    {
+        Filter filter = this.filter;
+        float[] mem = this.mem[channel];
+        int filtOffs = filter.length - 1;
+        int xlen = mem.length - filtOffs;
+        int frameSize = 2 * channels;
+        int i = inOffset + 2 * channel;
+        int o = outOffset + 2 * channel;
+        int ilen = inLength;
+        int olen = outLength;
+
+        while ((ilen != 0) && (olen != 0))
+        {
+            int ichunk = (ilen > xlen) ? xlen : ilen;
+
+            for (int j = filtOffs, jEnd = filtOffs + ichunk;
+                    j < jEnd;
+                    j++, i += frameSize)
+            {
+                mem[j] = (short) ((in[i] & 0xFF) | (in[i + 1] << 8));
+            }
+
+            int ochunk
+                = filter.direct
+                    ? resampleDirect(channel, mem, ichunk, out, o, olen)
+                    : resampleInterpolate(channel, mem, ichunk, out, o, olen);
+
+            if (lastSample[channel] < ichunk)
+                ichunk = lastSample[channel];
+            lastSample[channel] -= ichunk;
+            System.arraycopy(mem, ichunk, mem, 0, filtOffs);
+
+            ilen -= ichunk;
+            olen -= ochunk;
+            o += ochunk * frameSize;
+        }
+        return outLength - olen;
+    }
+
+    /**
+     * Converts the sample rate of interleaved signed 16-bit little endian
+     * audio. If <tt>outSampleCount</tt> is less than
+     * {@link #getMaxOutputSampleCount(int)} for <tt>inSampleCount</tt>, the
+     * input which does not fit in the output may be dropped.
+     *
+     * @param in the input audio
+     * @param inOffset the offset in <tt>in</tt> at which the input starts
+     * @param inSampleCount the number of input samples per channel
+     * @param out the array into which the output is to be written
+     * @param outOffset the offset in <tt>out</tt> at which the output is to be
+     * written
+     * @param outSampleCount the maximum number of samples per channel to be
+     * written into <tt>out</tt>
+     * @return the number of samples per channel written into <tt>out</tt>
+     */
+    public int processInterleaved(
+            byte[] in, int inOffset, int inSampleCount,
+            byte[] out, int outOffset, int outSampleCount)
+    {
+        int written = 0;
+
+        for (int channel = 0; channel < channels; channel++)
+        {
+            written
+                = process(
+                        channel,
+                        in, inOffset, inSampleCount,
+                        out, outOffset, outSampleCount);
+        }
+        return written;
+    }
+
+    /**
+     * Implements <tt>resampler_basic_direct_single</tt> of
+     * <tt>resample.c</tt>.
+     */
+    private int resampleDirect(
+            int channel,
+            float[] in, int inLength,
+            byte[] out, int outOffset, int outLength)
+    {
+        Filter filter = this.filter;
+        float[] table = filter.table;
+        int n = filter.length;
+        int intAdvance = filter.intAdvance;
+        int fracAdvance = filter.fracAdvance;
+        int den = filter.den;
+        int frameSize = 2 * channels;
+        int lastSample = this.lastSample[channel];
+        int sampFracNum = this.sampFracNum[channel];
+        int outSample = 0;
+
+        while ((lastSample < inLength) && (outSample < outLength))
+        {
+            int t = sampFracNum * n;
+            float sum = 0;
+
+            for (int j = 0; j < n; j++)
+                sum += table[t + j] * in[lastSample + j];
+
+            writeSample(sum, out, outOffset);
+            outOffset += frameSize;
+            outSample++;
+
+            lastSample += intAdvance;
+            sampFracNum += fracAdvance;
+            if (sampFracNum >= den)
+            {
+                sampFracNum -= den;
+                lastSample++;
+            }
+        }
+
+        this.lastSample[channel] = lastSample;
+        this.sampFracNum[channel] = sampFracNum;
+        return outSample;
+    }
+
+    /**
+     * Implements <tt>resampler_basic_interpolate_single</tt> of
+     * <tt>resample.c</tt>.
+     */
+    private int resampleInterpolate(
+            int channel,
+            float[] in, int inLength,
+            byte[] out, int outOffset, int outLength)
+    {
+        Filter filter = this.filter;
+        float[] table = filter.table;
+        int n = filter.length;
+        int oversample = filter.oversample;
+        int intAdvance = filter.intAdvance;
+        int fracAdvance = filter.fracAdvance;
+        int den = filter.den;
+        int frameSize = 2 * channels;
+        int lastSample = this.lastSample[channel];
+        int sampFracNum = this.sampFracNum[channel];
+        int outSample = 0;
+
+        while ((lastSample < inLength) && (outSample < outLength))
+        {
+            int offset = sampFracNum * oversample / den;
+            float frac
+                = ((float) ((sampFracNum * oversample) % den)) / den;
+            float accum0 = 0, accum1 = 0, accum2 = 0, accum3 = 0;
+
+            for (int j = 0, t = 4 + oversample - offset; j < n; j++)
+            {
+                float currIn = in[lastSample + j];
+
+                accum0 += currIn * table[t - 2];
+                accum1 += currIn * table[t - 1];
+                accum2 += currIn * table[t];
+                accum3 += currIn * table[t + 1];
+                t += oversample;
+            }
+
+            float frac2 = frac * frac;
+            float frac3 = frac2 * frac;
+            float interp0 = -0.16667f * frac + 0.16667f * frac3;
+            float interp1 = frac + 0.5f * frac2 - 0.5f * frac3;
+            float interp3
+                = -0.33333f * frac + 0.5f * frac2 - 0.16667f * frac3;
+            float interp2 = 1f - interp0 - interp1 - interp3;
+
+            writeSample(
+                    interp0 * accum0
+                        + interp1 * accum1
+                        + interp2 * accum2
+                        + interp3 * accum3,
+                    out, outOffset);
+            outOffset += frameSize;
+            outSample++;
+
+            lastSample += intAdvance;
+            sampFracNum += fracAdvance;
+            if (sampFracNum >= den)
+            {
+                sampFracNum -= den;
+                lastSample++;
+            }
+        }
+
+        this.lastSample[channel] = lastSample;
+        this.sampFracNum[channel] = sampFracNum;
+        return outSample;
+    }
+
+    /**
+     * Clears the history of this resampler so that it may be used for an
+     * unrelated stream.
+     */
+    public void reset()
+    {
+        for (int channel = 0; channel < channels; channel++)
+        {
+            Arrays.fill(mem[channel], 0);
+            lastSample[channel] = 0;
+            sampFracNum[channel] = 0;
+        }
+    }
+
+    /**
+     * Sets the input and output sample rates of this resampler. The history is
+     * preserved unless the length of the filter changes.
+     *
+     * @param inRate the input sample rate in Hz
+     * @param outRate the output sample rate in Hz
+     */
+    public void setRate(int inRate, int outRate)
+    {
+        if ((inRate <= 0) || (inRate >= (1 << 28)))
+            throw new IllegalArgumentException("inRate");
+        if ((outRate <= 0) || (outRate >= (1 << 28)))
+            throw new IllegalArgumentException("outRate");
+        if ((this.inRate == inRate) && (this.outRate == outRate))
+            return;
+
+        Filter oldFilter = filter;
+        Filter newFilter = getFilter(inRate, outRate, quality);
+
+        this.inRate = inRate;
+        this.outRate = outRate;
+        filter = newFilter;
+
+        if ((oldFilter == null) || (oldFilter.length != newFilter.length))
+        {
+            mem = new float[channels][newFilter.length - 1 + BUFFER_SIZE];
+            for (int channel = 0; channel < channels; channel++)
+            {
+                lastSample[channel] = 0;
+                sampFracNum[channel] = 0;
+            }
+        }
+        else if (oldFilter.den != newFilter.den)
+        {
+            for (int channel = 0; channel < channels; channel++)
+            {
+                int sampFracNum
+                    = (int)
+                        (((long) this.sampFracNum[channel] * newFilter.den)
+                            / oldFilter.den);
+
+                if (sampFracNum >= newFilter.den)
+                    sampFracNum = newFilter.den - 1;
+                this.sampFracNum[channel] = sampFracNum;
+            }
+        }
+    }
+
+    /**
+     * Writes a sample as signed 16-bit little endian with saturation.
+     */
+    private static void writeSample(float x, byte[] out, int outOffset)
+    {
+        int s;
+
+        if (x < -32767.5f)
+            s = -32768;
+        else if (x > 32766.5f)
+            s = 32767;
+        else
+            s = (int) Math.floor(0.5f + x);
+
+        out[outOffset] = (byte) s;
+        out[outOffset + 1] = (byte) (s >> 8);
+    }
+
+    /**
+     * Represents the immutable polyphase filter for a specific input sample
+     * rate, output sample rate and quality. Implements
+     * <tt>update_filter</tt> of <tt>resample.c</tt>.
+     */
+    private static class Filter
+    {
+        /**
+         * The output sample rate divided by the greatest common divisor of the
+         * input and output sample rates.
+         */
+        final int den;
+
+        /**
+         * Whether {@link #table} holds a filter for every output phase (or an
+         * oversampled filter to interpolate from).
+         */
+        final boolean direct;
+
+        final int fracAdvance;
+
+        final int intAdvance;
+
+        /**
+         * The number of taps of the filter.
+         */
+        final int length;
+
+        final int oversample;
+
+        final float[] table;
+
+        Filter(int inRate, int outRate, int quality)
+        {
+            int gcd = inRate;
+
+            for (int b = outRate; b != 0;)
+            {
+                int r = gcd % b;
+
+                gcd = b;
+                b = r;
+            }
+
+            int num = inRate / gcd;
+            int den = outRate / gcd;
+            double[] q = QUALITY_MAP[quality];
+            int length = (int) q[0];
+            int oversample = (int) q[1];
+            double cutoff;
+
+            if (num > den)
+            {
+                // downsampling
+                cutoff = q[2] * den / num;
+                length = (int) ((long) length * num / den);
+                // Round up to make sure there is a multiple of 8.
+                length = ((length - 1) & ~0x7) + 8;
+                for (int m = 2; m <= 16; m <<= 1)
+                {
+                    if (m * den < num)
+                        oversample >>= 1;
+                }
+                if (oversample < 1)
+                    oversample = 1;
+            }
+            else
+            {
+                // upsampling
+                cutoff = q[3];
+            }
+
+            double beta = q[4];
+
+            // Choose the type of filter which requires the least memory.
+            direct = ((long) length * den <= (long) length * oversample + 8);
+            if (direct)
+            {
+                table = new float[length * den];
+                for (int i = 0; i < den; i++)
+                {
+                    for (int j = 0; j < length; j++)
+                    {
+                        table[i * length + j]
+                            = (float)
+                                sinc(
+                                        cutoff,
+                                        (j - length / 2 + 1)
+                                            - ((double) i) / den,
+                                        length,
+                                        beta);
+                    }
+                }
+            }
+            else
+            {
+                table = new float[oversample * length + 8];
+                for (int i = -4; i < oversample * length + 4; i++)
+                {
+                    table[i + 4]
+                        = (float)
+                            sinc(
+                                    cutoff,
+                                    ((double) i) / oversample - length / 2,
+                                    length,
+                                    beta);
+                }
+            }
+
+            this.den = den;
+            this.length = length;
+            this.oversample = oversample;
+            intAdvance = num / den;
+            fracAdvance = num % den;
+        }
+    }
+}
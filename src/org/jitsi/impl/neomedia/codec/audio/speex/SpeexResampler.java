@@ -23,15 +23,30 @@ import javax.media.format.*;
 import net.sf.fmj.media.*;
 
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.util.*;
 
 /**
- * Implements an audio resampler using Speex.
+ * Implements an audio resampler using Speex. If the native Speex library is
+ * not available, the pure-Java port {@link JavaResampler} is used instead.
  *
  * @author Lyubomir Marinov
  */
 public class SpeexResampler
     extends AbstractCodec2
 {
+    /**
+     * The <tt>Logger</tt> used by the <tt>SpeexResampler</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(SpeexResampler.class);
+
+    /**
+     * The indicator which determines whether the native Speex library is
+     * functional. If <tt>false</tt>, {@link JavaResampler} is used.
+     */
+    private static final boolean NATIVE;
+
     /**
      * The list of <tt>Format</tt>s of audio data supported as input and output
      * by <tt>SpeexResampler</tt> instances.
@@ -59,7 +74,24 @@ public class SpeexResampler
 
     static
     {
-        Speex.assertSpeexIsFunctional();
+        boolean nativeIsFunctional;
+
+        try
+        {
+            Speex.assertSpeexIsFunctional();
+            nativeIsFunctional = true;
+        }
+        catch (Throwable t)
+        {
+            if (t instanceof ThreadDeath)
+                throw (ThreadDeath) t;
+
+            nativeIsFunctional = false;
+            logger.info(
+                    "Native Speex is not functional, resampling in Java: "
+                        + t);
+        }
+        NATIVE = nativeIsFunctional;
 
         int supportedCount = SUPPORTED_SAMPLE_RATES.length;
 
@@ -126,6 +158,12 @@ public class SpeexResampler
      */
     private int inputSampleRate;
 
+    /**
+     * The pure-Java resampler used when the native Speex library is not
+     * functional.
+     */
+    private JavaResampler javaResampler;
+
     /**
      * The output sample rate configured in {@link #resampler}.
      */
@@ -158,6 +196,7 @@ public class SpeexResampler
             Speex.speex_resampler_destroy(resampler);
             resampler = 0;
         }
+        javaResampler = null;
     }
 
     /**
@@ -296,6 +335,14 @@ public class SpeexResampler
             if (outAudioFormat.getChannels() != channels)
                 return BUFFER_PROCESSED_FAILED;
 
+            if (!NATIVE)
+            {
+                return
+                    doProcessInJava(
+                            inBuffer, inAudioFormat, inSampleRate,
+                            outBuffer, outAudioFormat, outSampleRate);
+            }
+
             boolean channelsHaveChanged = (this.channels != channels);
 
             if (channelsHaveChanged
@@ -387,12 +434,108 @@ public class SpeexResampler
             outBuffer.setOffset(outOffset);
         }
 
+        copyMetadata(inBuffer, outBuffer);
+
+        return BUFFER_PROCESSED_OK;
+    }
+
+    /**
+     * Copies the metadata of a specific input <tt>Buffer</tt> into a specific
+     * output <tt>Buffer</tt>.
+     *
+     * @param inBuffer input <tt>Buffer</tt>
+     * @param outBuffer output <tt>Buffer</tt>
+     */
+    private static void copyMetadata(Buffer inBuffer, Buffer outBuffer)
+    {
         outBuffer.setDuration(inBuffer.getDuration());
         outBuffer.setEOM(inBuffer.isEOM());
         outBuffer.setFlags(inBuffer.getFlags());
         outBuffer.setHeader(inBuffer.getHeader());
         outBuffer.setSequenceNumber(inBuffer.getSequenceNumber());
         outBuffer.setTimeStamp(inBuffer.getTimeStamp());
+    }
+
+    /**
+     * Resamples audio from a specific input <tt>Buffer</tt> into a specific
+     * output <tt>Buffer</tt> using {@link JavaResampler}.
+     *
+     * @param inBuffer input <tt>Buffer</tt>
+     * @param inAudioFormat the format of <tt>inBuffer</tt>
+     * @param inSampleRate the sample rate of <tt>inBuffer</tt>
+     * @param outBuffer output <tt>Buffer</tt>
+     * @param outAudioFormat the format of <tt>outBuffer</tt>
+     * @param outSampleRate the sample rate of <tt>outBuffer</tt>
+     * @return <tt>BUFFER_PROCESSED_OK</tt> if <tt>inBuffer</tt> has been
+     * successfully processed
+     */
+    private int doProcessInJava(
+            Buffer inBuffer, AudioFormat inAudioFormat, int inSampleRate,
+            Buffer outBuffer, AudioFormat outAudioFormat, int outSampleRate)
+    {
+        if ((inSampleRate <= 0) || (outSampleRate <= 0))
+            return BUFFER_PROCESSED_FAILED;
+
+        int channels = inAudioFormat.getChannels();
+
+        if ((javaResampler == null)
+                || (javaResampler.getChannels() != channels))
+        {
+            javaResampler
+                = new JavaResampler(
+                        channels,
+                        inSampleRate,
+                        outSampleRate,
+                        Speex.SPEEX_RESAMPLER_QUALITY_VOIP);
+        }
+        else
+        {
+            javaResampler.setRate(inSampleRate, outSampleRate);
+        }
+
+        byte[] in = (byte[]) inBuffer.getData();
+        int inLength = inBuffer.getLength();
+        int frameSize = channels * (inAudioFormat.getSampleSizeInBits() / 8);
+        int inSampleCount = inLength / frameSize;
+        /*
+         * Make room for all output which may be produced so that the whole
+         * input is consumed.
+         */
+        int outSampleCount
+            = javaResampler.getMaxOutputSampleCount(inSampleCount);
+        int outOffset = outBuffer.getOffset();
+        byte[] out
+            = validateByteArraySize(
+                    outBuffer,
+                    outSampleCount * frameSize + outOffset,
+                    outOffset != 0);
+
+        if (inSampleCount == 0)
+        {
+            outSampleCount = 0;
+        }
+        else
+        {
+            int inOffset = inBuffer.getOffset();
+
+            outSampleCount
+                = javaResampler.processInterleaved(
+                        in, inOffset, inSampleCount,
+                        out, outOffset, outSampleCount);
+
+            int resampled = inSampleCount * frameSize;
+
+            inLength -= resampled;
+            if (inLength < 0)
+                inLength = 0;
+            inBuffer.setLength(inLength);
+            inBuffer.setOffset(inOffset + resampled);
+        }
+        outBuffer.setFormat(outAudioFormat);
+        outBuffer.setLength(outSampleCount * frameSize);
+        outBuffer.setOffset(outOffset);
+
+        copyMetadata(inBuffer, outBuffer);
 
         return BUFFER_PROCESSED_OK;
     }
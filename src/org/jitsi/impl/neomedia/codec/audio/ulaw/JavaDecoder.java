@@ -18,15 +18,13 @@ package org.jitsi.impl.neomedia.codec.audio.ulaw;
 import javax.media.*;
 import javax.media.format.*;
 
+import org.jitsi.impl.neomedia.codec.audio.*;
+
 import com.sun.media.controls.*;
 
 public class JavaDecoder
     extends com.ibm.media.codec.audio.AudioCodec
 {
-    static private final byte[] lutTableH = new byte[256];
-
-    static private final byte[] lutTableL = new byte[256];
-
     public JavaDecoder()
     {
         supportedInputFormats = new AudioFormat[]
@@ -64,30 +62,13 @@ public class JavaDecoder
         return supportedOutputFormats;
     }
 
-    private void initTables()
-    {
-        for (int i = 0; i < 256; i++)
-        {
-            int input = ~i;
-            int mantissa = ((input & 0xf) << 3) + 0x84;
-            int segment = (input & 0x70) >> 4;
-            int value = mantissa << segment;
-
-            value -= 0x84;
-
-            if ((input & 0x80) != 0)
-                value = -value;
-
-            lutTableL[i] = (byte) value;
-            lutTableH[i] = (byte) (value >> 8);
-        }
-    }
-
-    /** Initializes the codec. */
+    /**
+     * Initializes the codec. The expansion table is shared and initialized
+     * once by {@link G711}.
+     */
     @Override
     public void open()
     {
-        initTables();
     }
 
     /** Decodes the buffer */
@@ -107,14 +88,9 @@ public class JavaDecoder
         int inpLength = inputBuffer.getLength();
         int outLength = 2 * inpLength;
 
-        int inOffset = inputBuffer.getOffset();
-        int outOffset = outputBuffer.getOffset();
-        for (int i = 0; i < inpLength; i++)
-        {
-            int temp = inData[inOffset++] & 0xff;
-            outData[outOffset++] = lutTableL[temp];
-            outData[outOffset++] = lutTableH[temp];
-        }
+        G711.ulaw2linear(
+                inData, inputBuffer.getOffset(), inpLength,
+                outData, outputBuffer.getOffset());
 
         updateOutput(outputBuffer, outputFormat, outLength,
             outputBuffer.getOffset());
@@ -18,6 +18,8 @@ package org.jitsi.impl.neomedia.codec.audio.ulaw;
 import javax.media.*;
 import javax.media.format.*;
 
+import org.jitsi.impl.neomedia.codec.audio.*;
+
 public class JavaEncoder
     extends com.ibm.media.codec.audio.AudioCodec
 {
@@ -77,7 +79,17 @@ public class JavaEncoder
     private void convert(byte[] input, int inputOffset, int inputLength,
             byte[] outData, int outputOffset)
     {
-        int sample, signBit, inputSample;
+        // Signed 16-bit mono is by far the most common input so it gets
+        // compressed straight from the bytes.
+        if ((16 == inputSampleSize) && !downmix && (inputBias == 0))
+        {
+            G711.linear2ulaw(
+                    input, inputOffset, inputLength, lsbOffset == 1,
+                    outData, outputOffset);
+            return;
+        }
+
+        int inputSample;
         int i;
 
         for (i = inputOffset + msbOffset; i < (inputLength + inputOffset);)
@@ -107,35 +119,8 @@ public class JavaEncoder
                 }
             }
 
-            sample = ((short) (inputSample + inputBias));
-
-            if (sample >= 0)
-            {
-                signBit = 0x80; // sign bit
-            }
-            else
-            {
-                sample = -sample;
-                signBit = 0x00;
-            }
-
-            sample = (132 + sample) >> 3; // bias
-
-            outData[outputOffset++] = (byte) ((sample < 0x0020) ? (signBit
-                    | (7 << 4) | (31 - (sample >> 0)))
-                    : (sample < 0x0040) ? (signBit | (6 << 4) | (31 - (sample >> 1)))
-                            : (sample < 0x0080) ? (signBit | (5 << 4) | (31 - (sample >> 2)))
-                                    : (sample < 0x0100) ? (signBit | (4 << 4) | (31 - (sample >> 3)))
-                                            : (sample < 0x0200) ? (signBit
-                                                    | (3 << 4) | (31 - (sample >> 4)))
-                                                    : (sample < 0x0400) ? (signBit
-                                                            | (2 << 4) | (31 - (sample >> 5)))
-                                                            : (sample < 0x0800) ? (signBit
-                                                                    | (1 << 4) | (31 - (sample >> 6)))
-                                                                    : (sample < 0x1000) ? (signBit
-                                                                            | (0 << 4) | (31 - (sample >> 7)))
-                                                                            : (signBit
-                                                                                    | (0 << 4) | (31 - (0xfff >> 7))));
+            outData[outputOffset++]
+                = G711.linear2ulaw(inputSample + inputBias);
         }
 
     }
@@ -15,25 +15,30 @@
  */
 package org.jitsi.impl.neomedia.codec.video;
 
-import org.jitsi.impl.neomedia.codec.*;
-
 /**
  * Represents a buffer of native memory with a specific size/capacity which may
  * contains a specific number of bytes of valid data. If the memory represented
  * by a <tt>ByteBuffer</tt> instance has been allocated by the
- * <tt>ByteBuffer</tt> instance itself, the native memory will automatically be
- * freed upon finalization.
+ * <tt>ByteBuffer</tt> instance itself (from the {@link NativeMemoryArena}), the
+ * native memory will automatically be reclaimed after the instance has been
+ * garbage collected.
  *
  * @author Lyubomir Marinov
  */
 public class ByteBuffer
 {
+    /**
+     * The allocation of the native memory represented by this instance from
+     * the <tt>NativeMemoryArena</tt> or <tt>null</tt> if the native memory has
+     * been allocated outside this instance or has been freed.
+     */
+    private NativeMemoryArena.Allocation allocation;
 
     /**
      * The maximum number of bytes which may be written into the native memory
      * represented by this instance. If <tt>0</tt>, this instance has been
      * initialized to provide read-only access to the native memory it
-     * represents and will not deallocate it upon finalization.
+     * represents and will not deallocate it.
      */
     private int capacity;
 
@@ -49,11 +54,12 @@ public class ByteBuffer
     private long ptr;
 
     /**
-     * Initializes a new <tt>ByteBuffer</tt> instance with a specific
-     * <tt>capacity</tt> of native memory. The new instance allocates the native
-     * memory and automatically frees it upon finalization.
+     * Initializes a new <tt>ByteBuffer</tt> instance with (at least) a
+     * specific <tt>capacity</tt> of native memory. The new instance allocates
+     * the native memory from the <tt>NativeMemoryArena</tt> and the memory is
+     * reclaimed if the new instance is garbage collected without being freed.
      *
-     * @param capacity the maximum number of bytes which can be written into the
+     * @param capacity the minimum number of bytes which can be written into the
      * native memory represented by the new instance
      */
     public ByteBuffer(int capacity)
@@ -61,11 +67,11 @@ public class ByteBuffer
         if (capacity < 1)
             throw new IllegalArgumentException("capacity");
 
-        this.ptr = FFmpeg.av_malloc(capacity);
-        if (this.ptr == 0)
-            throw new OutOfMemoryError("av_malloc(" + capacity + ")");
+        this.allocation
+            = NativeMemoryArena.getInstance().allocate(this, capacity);
+        this.ptr = allocation.getPtr();
 
-        this.capacity = capacity;
+        this.capacity = allocation.getCapacity();
         this.length = 0;
     }
 
@@ -86,38 +92,17 @@ public class ByteBuffer
         this.length = 0;
     }
 
-    /**
-     * {@inheritDoc}
-     *
-     * Frees the native memory represented by this instance if the native memory
-     * has been allocated by this instance and has not been freed yet i.e.
-     * ensures that {@link #free()} is invoked on this instance.
-     *
-     * @see Object#finalize()
-     */
-    @Override
-    protected void finalize()
-        throws Throwable
-    {
-        try
-        {
-            free();
-        }
-        finally
-        {
-            super.finalize();
-        }
-    }
-
     /**
      * Frees the native memory represented by this instance if the native memory
-     * has been allocated by this instance and has not been freed yet.
+     * has been allocated by this instance and has not been freed yet. The
+     * memory is returned to the <tt>NativeMemoryArena</tt> for reuse.
      */
     public synchronized void free()
     {
-        if ((capacity != 0) && (ptr != 0))
+        if (allocation != null)
         {
-            FFmpeg.av_free(ptr);
+            NativeMemoryArena.getInstance().free(allocation);
+            allocation = null;
             capacity = 0;
             ptr = 0;
         }
@@ -127,7 +112,7 @@ public class ByteBuffer
      * Gets the maximum number of bytes which may be written into the native
      * memory represented by this instance. If <tt>0</tt>, this instance has
      * been initialized to provide read-only access to the native memory it
-     * represents and will not deallocate it upon finalization.
+     * represents and will not deallocate it.
      *
      * @return the maximum number of bytes which may be written into the native
      * memory represented by this instance
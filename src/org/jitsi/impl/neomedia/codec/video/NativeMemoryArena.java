@@ -0,0 +1,797 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.video;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.util.*;
+
+/**
+ * Allocates native memory (with <tt>av_malloc</tt> so that it is suitably
+ * aligned for FFmpeg) in size classes and keeps the freed memory for reuse.
+ * The size classes are powers of two up to 1 MiB and quarters of powers of
+ * two above that so that a large block (e.g. of a video frame) is at most a
+ * fifth unused. Each thread caches a few blocks of the smaller size classes so
+ * that a capture or codec thread which frees and allocates a frame of the
+ * same size does not contend with other threads; the rest of the freed
+ * blocks are kept in a bounded free list per size class. Blocks larger than
+ * the largest size class are allocated and freed directly. The memory kept
+ * for reuse may be returned to the native heap with {@link #trim()}.
+ * <p>
+ * The owner of each allocation (e.g. a {@link ByteBuffer}) is tracked with a
+ * <tt>PhantomReference</tt> so that the memory of an owner which is garbage
+ * collected without freeing it is reclaimed (and reported as a leak) without
+ * the cost of a finalizer.
+ * </p>
+ */
+public class NativeMemoryArena
+{
+    /**
+     * The number of leaks after which a leak is logged again.
+     */
+    private static final int LEAKS_TO_LOG = 100;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>NativeMemoryArena</tt> class and its
+     * instances to print debug information.
+     */
+    private static final Logger logger
+        = Logger.getLogger(NativeMemoryArena.class);
+
+    /**
+     * The <tt>NativeMemoryArena</tt> shared by the whole application.
+     */
+    private static final NativeMemoryArena instance = new NativeMemoryArena();
+
+    /**
+     * The maximum number of bytes of each size class which are kept in its
+     * free list.
+     */
+    private static final int MAX_FREE_BYTES_PER_SIZE_CLASS = 8 * 1024 * 1024;
+
+    /**
+     * The binary logarithm of the size of the largest power-of-two size class
+     * (1 MiB). The larger size classes divide each power of two into
+     * <tt>1 &lt;&lt; {@link #FINE_SIZE_CLASS_SHIFT}</tt> steps.
+     */
+    private static final int FINE_SIZE_SHIFT = 20;
+
+    /**
+     * The binary logarithm of the number of size classes per power of two
+     * above {@link #FINE_SIZE_SHIFT}.
+     */
+    private static final int FINE_SIZE_CLASS_SHIFT = 2;
+
+    /**
+     * The binary logarithm of the size of the largest size class (32 MiB).
+     */
+    private static final int MAX_SIZE_SHIFT = 25;
+
+    /**
+     * The binary logarithm of the size of the smallest size class (1 KiB).
+     */
+    private static final int MIN_SIZE_SHIFT = 10;
+
+    /**
+     * The index of the size class of {@link #FINE_SIZE_SHIFT} i.e. the
+     * largest power-of-two size class.
+     */
+    private static final int FINE_SIZE_CLASS = FINE_SIZE_SHIFT - MIN_SIZE_SHIFT;
+
+    /**
+     * The number of size classes.
+     */
+    private static final int SIZE_CLASS_COUNT
+        = FINE_SIZE_CLASS + 1
+            + ((MAX_SIZE_SHIFT - FINE_SIZE_SHIFT) << FINE_SIZE_CLASS_SHIFT);
+
+    /**
+     * The maximum number of bytes of each size class which are cached by each
+     * thread. The size classes larger than that are not cached by threads.
+     */
+    private static final int THREAD_CACHE_BYTES_PER_SIZE_CLASS
+        = 4 * 1024 * 1024;
+
+    /**
+     * The maximum number of blocks of each size class which are cached by each
+     * thread.
+     */
+    private static final int THREAD_CACHE_CAPACITY = 8;
+
+    /**
+     * Gets the <tt>NativeMemoryArena</tt> shared by the whole application.
+     *
+     * @return the <tt>NativeMemoryArena</tt> shared by the whole application
+     */
+    public static NativeMemoryArena getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Gets the number of bytes of a specific size class.
+     *
+     * @param sizeClass the index of the size class
+     * @return the number of bytes of <tt>sizeClass</tt>
+     */
+    private static int getSize(int sizeClass)
+    {
+        if (sizeClass <= FINE_SIZE_CLASS)
+            return 1 << (sizeClass + MIN_SIZE_SHIFT);
+
+        int fineSizeClass = sizeClass - FINE_SIZE_CLASS - 1;
+        int shift = FINE_SIZE_SHIFT + (fineSizeClass >> FINE_SIZE_CLASS_SHIFT);
+        int steps = (fineSizeClass & ((1 << FINE_SIZE_CLASS_SHIFT) - 1)) + 1;
+
+        return (1 << shift) + (steps << (shift - FINE_SIZE_CLASS_SHIFT));
+    }
+
+    /**
+     * Gets the index of the size class of a specific number of bytes.
+     *
+     * @param capacity the number of bytes to get the size class of
+     * @return the index of the (smallest) size class which fits
+     * <tt>capacity</tt> bytes or <tt>-1</tt> if <tt>capacity</tt> is larger
+     * than the largest size class
+     */
+    private static int getSizeClass(int capacity)
+    {
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+
+        if (shift > MAX_SIZE_SHIFT)
+            return -1;
+        if (shift <= FINE_SIZE_SHIFT)
+            return Math.max(shift - MIN_SIZE_SHIFT, 0);
+
+        // capacity is greater than 1 << (shift - 1) and its excess is rounded
+        // up to the steps of that power of two.
+        int stepShift = shift - 1 - FINE_SIZE_CLASS_SHIFT;
+        int steps
+            = (capacity - (1 << (shift - 1)) + (1 << stepShift) - 1)
+                >> stepShift;
+
+        return
+            FINE_SIZE_CLASS
+                + ((shift - 1 - FINE_SIZE_SHIFT) << FINE_SIZE_CLASS_SHIFT)
+                + steps;
+    }
+
+    /**
+     * The number of bytes allocated and not freed yet (rounded up to the size
+     * classes).
+     */
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * The number of allocations.
+     */
+    private final AtomicLong allocationCount = new AtomicLong();
+
+    /**
+     * The <tt>Allocation</tt>s which have not been freed yet.
+     */
+    private final Set<Allocation> allocations
+        = Collections.newSetFromMap(
+                new ConcurrentHashMap<Allocation, Boolean>());
+
+    /**
+     * The number of bytes freed and kept for reuse.
+     */
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    /**
+     * The number of allocations served with memory kept for reuse.
+     */
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    /**
+     * The free lists of the size classes.
+     */
+    private final FreeList[] freeLists = new FreeList[SIZE_CLASS_COUNT];
+
+    /**
+     * The number of allocations which have been garbage collected without
+     * being freed.
+     */
+    private final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * The number of invocations of {@link #trim()}. A <tt>ThreadCache</tt>
+     * which has not seen the latest one frees its blocks when its thread next
+     * uses this arena.
+     */
+    private final AtomicInteger trimCount = new AtomicInteger();
+
+    /**
+     * The queue into which the <tt>Allocation</tt>s and the
+     * <tt>ThreadCacheReference</tt>s are enqueued when their owners are
+     * garbage collected.
+     */
+    private final ReferenceQueue<Object> referenceQueue
+        = new ReferenceQueue<>();
+
+    /**
+     * The handles of the caches of the threads of this arena.
+     */
+    private final ThreadLocal<ThreadCacheHandle> threadCacheHandles
+        = new ThreadLocal<ThreadCacheHandle>()
+        {
+            @Override
+            protected ThreadCacheHandle initialValue()
+            {
+                ThreadCacheHandle handle = new ThreadCacheHandle();
+
+                handle.cache.trimCount = trimCount.get();
+                threadCacheReferences.add(
+                        new ThreadCacheReference(handle, referenceQueue));
+                return handle;
+            }
+        };
+
+    /**
+     * The <tt>ThreadCacheReference</tt>s of the threads which have used this
+     * arena. Keeps them reachable until they are enqueued.
+     */
+    private final Set<ThreadCacheReference> threadCacheReferences
+        = Collections.newSetFromMap(
+                new ConcurrentHashMap<ThreadCacheReference, Boolean>());
+
+    /**
+     * Initializes a new <tt>NativeMemoryArena</tt> instance.
+     */
+    private NativeMemoryArena()
+    {
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++)
+        {
+            int capacity = MAX_FREE_BYTES_PER_SIZE_CLASS / getSize(i);
+
+            freeLists[i] = new FreeList(Math.max(capacity, 2));
+        }
+    }
+
+    /**
+     * Allocates a block of native memory of at least a specific number of
+     * bytes on behalf of a specific owner.
+     *
+     * @param owner the <tt>Object</tt> (e.g. a <tt>ByteBuffer</tt>) which is
+     * to free the allocated memory with {@link #free(Allocation)} and the
+     * garbage collection of which without doing so is to be considered a leak
+     * @param capacity the minimum number of bytes to allocate
+     * @return an <tt>Allocation</tt> which represents the allocated memory
+     * @throws OutOfMemoryError if the native memory could not be allocated
+     */
+    public Allocation allocate(Object owner, int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity");
+
+        expungeStaleReferences();
+
+        int sizeClass = getSizeClass(capacity);
+        long ptr = 0;
+
+        if (sizeClass != -1)
+        {
+            capacity = getSize(sizeClass);
+
+            ThreadCache threadCache = getThreadCache();
+
+            ptr = threadCache.poll(sizeClass);
+            if (ptr == 0)
+                ptr = freeLists[sizeClass].poll();
+            if (ptr != 0)
+            {
+                cachedBytes.addAndGet(-capacity);
+                cacheHitCount.incrementAndGet();
+            }
+        }
+        if (ptr == 0)
+        {
+            ptr = FFmpeg.av_malloc(capacity);
+            if (ptr == 0)
+                throw new OutOfMemoryError("av_malloc(" + capacity + ")");
+        }
+
+        Allocation allocation
+            = new Allocation(owner, referenceQueue, ptr, capacity, sizeClass);
+
+        allocations.add(allocation);
+        allocatedBytes.addAndGet(capacity);
+        allocationCount.incrementAndGet();
+        return allocation;
+    }
+
+    /**
+     * Reclaims the memory of the allocations whose owners have been garbage
+     * collected without freeing them and the caches of the threads which have
+     * died.
+     */
+    private void expungeStaleReferences()
+    {
+        Reference<?> reference;
+
+        while ((reference = referenceQueue.poll()) != null)
+        {
+            if (reference instanceof Allocation)
+            {
+                Allocation allocation = (Allocation) reference;
+
+                // The owner of the allocation has been garbage collected
+                // without freeing it.
+                if (allocations.remove(allocation))
+                {
+                    long leakCount = this.leakCount.incrementAndGet();
+
+                    if (leakCount == 1 || (leakCount % LEAKS_TO_LOG) == 0)
+                    {
+                        logger.warn(
+                                "Native memory of " + allocation.capacity
+                                    + " bytes was not freed by its owner"
+                                    + " (leaks: " + leakCount + ")");
+                    }
+                    release(allocation, /* threadCache */ null);
+                }
+            }
+            else if (reference instanceof ThreadCacheReference)
+            {
+                ThreadCacheReference threadCacheReference
+                    = (ThreadCacheReference) reference;
+                ThreadCache threadCache = threadCacheReference.cache;
+
+                threadCacheReferences.remove(threadCacheReference);
+                // The blocks of a thread which died before it noticed trim()
+                // are not to be kept.
+                threadCache.drainTo(
+                        this,
+                        threadCache.trimCount == trimCount.get());
+            }
+        }
+    }
+
+    /**
+     * Frees a specific block of native memory allocated by this arena. The
+     * memory is kept for reuse if its size class has room for it.
+     *
+     * @param allocation the <tt>Allocation</tt> which represents the memory
+     * to free
+     */
+    public void free(Allocation allocation)
+    {
+        // The memory is freed at most once even if the owner is racing
+        // with the garbage collector.
+        if (allocations.remove(allocation))
+        {
+            allocation.clear();
+            release(allocation, getThreadCache());
+        }
+        expungeStaleReferences();
+    }
+
+    /**
+     * Gets the number of bytes which have been allocated by this arena and not
+     * freed yet (rounded up to the size classes).
+     *
+     * @return the number of bytes which have been allocated by this arena and
+     * not freed yet
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Gets the number of allocations performed by this arena.
+     *
+     * @return the number of allocations performed by this arena
+     */
+    public long getAllocationCount()
+    {
+        return allocationCount.get();
+    }
+
+    /**
+     * Gets the number of bytes which have been freed and are kept by this
+     * arena for reuse.
+     *
+     * @return the number of bytes which have been freed and are kept by this
+     * arena for reuse
+     */
+    public long getCachedBytes()
+    {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Gets the number of allocations which have been served with memory kept
+     * for reuse rather than allocated from the native heap.
+     *
+     * @return the number of allocations which have been served with memory
+     * kept for reuse
+     */
+    public long getCacheHitCount()
+    {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * Gets the number of allocations whose owners have been garbage collected
+     * without freeing them.
+     *
+     * @return the number of allocations whose owners have been garbage
+     * collected without freeing them
+     */
+    public long getLeakCount()
+    {
+        return leakCount.get();
+    }
+
+    /**
+     * Gets the <tt>ThreadCache</tt> of the current thread. Frees the blocks
+     * cached by the current thread if {@link #trim()} has been invoked since
+     * it last used this arena.
+     *
+     * @return the <tt>ThreadCache</tt> of the current thread
+     */
+    private ThreadCache getThreadCache()
+    {
+        ThreadCache threadCache = threadCacheHandles.get().cache;
+        int trimCount = this.trimCount.get();
+
+        if (threadCache.trimCount != trimCount)
+        {
+            threadCache.trimCount = trimCount;
+            threadCache.drainTo(this, false);
+        }
+        return threadCache;
+    }
+
+    /**
+     * Releases a specific block of native memory which is no longer
+     * allocated i.e. keeps it for reuse or frees it.
+     *
+     * @param allocation the <tt>Allocation</tt> which represents the memory
+     * to release
+     * @param threadCache the <tt>ThreadCache</tt> of the current thread or
+     * <tt>null</tt> if the memory is not to be cached by the current thread
+     */
+    private void release(Allocation allocation, ThreadCache threadCache)
+    {
+        int sizeClass = allocation.sizeClass;
+        int capacity = allocation.capacity;
+        long ptr = allocation.ptr;
+
+        allocatedBytes.addAndGet(-capacity);
+        if (sizeClass != -1
+                && ((threadCache != null && threadCache.offer(sizeClass, ptr))
+                        || freeLists[sizeClass].offer(ptr)))
+        {
+            cachedBytes.addAndGet(capacity);
+        }
+        else
+        {
+            FFmpeg.av_free(ptr);
+        }
+    }
+
+    /**
+     * Frees the native memory kept by this arena for reuse. The blocks cached
+     * by the current thread and the free lists are freed immediately and the
+     * blocks cached by any other thread are freed when that thread next
+     * allocates or frees memory (or dies).
+     */
+    public void trim()
+    {
+        trimCount.incrementAndGet();
+        getThreadCache();
+
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++)
+        {
+            long ptr;
+
+            while ((ptr = freeLists[i].poll()) != 0)
+            {
+                cachedBytes.addAndGet(-getSize(i));
+                FFmpeg.av_free(ptr);
+            }
+        }
+        expungeStaleReferences();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return
+            getClass().getSimpleName() + "[allocated=" + getAllocatedBytes()
+                + ", cached=" + getCachedBytes()
+                + ", allocations=" + getAllocationCount()
+                + ", cacheHits=" + getCacheHitCount()
+                + ", leaks=" + getLeakCount() + "]";
+    }
+
+    /**
+     * Represents a block of native memory allocated by a
+     * <tt>NativeMemoryArena</tt> and tracks the owner of the block.
+     */
+    public static class Allocation
+        extends PhantomReference<Object>
+    {
+        /**
+         * The number of bytes of the block.
+         */
+        private final int capacity;
+
+        /**
+         * The pointer to the block.
+         */
+        private final long ptr;
+
+        /**
+         * The index of the size class of the block or <tt>-1</tt> if the
+         * block is larger than the largest size class.
+         */
+        private final int sizeClass;
+
+        /**
+         * Initializes a new <tt>Allocation</tt> instance.
+         *
+         * @param owner the owner of the block
+         * @param queue the <tt>ReferenceQueue</tt> into which the new instance
+         * is to be enqueued when <tt>owner</tt> is garbage collected
+         * @param ptr the pointer to the block
+         * @param capacity the number of bytes of the block
+         * @param sizeClass the index of the size class of the block or
+         * <tt>-1</tt>
+         */
+        private Allocation(
+                Object owner,
+                ReferenceQueue<Object> queue,
+                long ptr,
+                int capacity,
+                int sizeClass)
+        {
+            super(owner, queue);
+
+            this.ptr = ptr;
+            this.capacity = capacity;
+            this.sizeClass = sizeClass;
+        }
+
+        /**
+         * Gets the number of bytes of the block represented by this instance.
+         *
+         * @return the number of bytes of the block represented by this
+         * instance
+         */
+        public int getCapacity()
+        {
+            return capacity;
+        }
+
+        /**
+         * Gets the pointer to the block represented by this instance.
+         *
+         * @return the pointer to the block represented by this instance
+         */
+        public long getPtr()
+        {
+            return ptr;
+        }
+    }
+
+    /**
+     * A bounded stack of free blocks of a size class shared by all threads.
+     */
+    private static class FreeList
+    {
+        /**
+         * The pointers to the free blocks.
+         */
+        private final long[] ptrs;
+
+        /**
+         * The number of free blocks in {@link #ptrs}.
+         */
+        private int size;
+
+        /**
+         * Initializes a new <tt>FreeList</tt> instance.
+         *
+         * @param capacity the maximum number of free blocks to keep
+         */
+        FreeList(int capacity)
+        {
+            ptrs = new long[capacity];
+        }
+
+        /**
+         * Keeps a specific free block if there is room for it.
+         *
+         * @param ptr the pointer to the free block
+         * @return <tt>true</tt> if <tt>ptr</tt> has been kept; otherwise,
+         * <tt>false</tt>
+         */
+        synchronized boolean offer(long ptr)
+        {
+            if (size == ptrs.length)
+                return false;
+
+            ptrs[size++] = ptr;
+            return true;
+        }
+
+        /**
+         * Takes a free block.
+         *
+         * @return the pointer to the free block or <tt>0</tt> if there are no
+         * free blocks
+         */
+        synchronized long poll()
+        {
+            return (size == 0) ? 0 : ptrs[--size];
+        }
+    }
+
+    /**
+     * The free blocks of the smaller size classes cached by a thread. Accessed
+     * by that thread only (or once the thread has died).
+     */
+    private static class ThreadCache
+    {
+        /**
+         * The pointers to the free blocks by size class.
+         */
+        private final long[][] ptrs = new long[SIZE_CLASS_COUNT][];
+
+        /**
+         * The numbers of free blocks in {@link #ptrs} by size class.
+         */
+        private final int[] sizes = new int[SIZE_CLASS_COUNT];
+
+        /**
+         * The value of {@link NativeMemoryArena#trimCount} when this cache
+         * was last trimmed.
+         */
+        int trimCount;
+
+        /**
+         * Initializes a new <tt>ThreadCache</tt> instance.
+         */
+        ThreadCache()
+        {
+            for (int i = 0; i < SIZE_CLASS_COUNT; i++)
+            {
+                int capacity
+                    = Math.min(
+                            THREAD_CACHE_BYTES_PER_SIZE_CLASS / getSize(i),
+                            THREAD_CACHE_CAPACITY);
+
+                ptrs[i] = new long[capacity];
+            }
+        }
+
+        /**
+         * Releases the free blocks of this cache into the free lists of a
+         * specific arena (or frees them).
+         *
+         * @param arena the <tt>NativeMemoryArena</tt> which owns this cache
+         * @param keep <tt>true</tt> to keep the free blocks in the free lists
+         * of <tt>arena</tt> if they have room for them or <tt>false</tt> to
+         * free them
+         */
+        void drainTo(NativeMemoryArena arena, boolean keep)
+        {
+            for (int i = 0; i < SIZE_CLASS_COUNT; i++)
+            {
+                while (sizes[i] != 0)
+                {
+                    long ptr = ptrs[i][--sizes[i]];
+
+                    if (!keep || !arena.freeLists[i].offer(ptr))
+                    {
+                        arena.cachedBytes.addAndGet(-getSize(i));
+                        FFmpeg.av_free(ptr);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Keeps a specific free block if there is room for it.
+         *
+         * @param sizeClass the index of the size class of the free block
+         * @param ptr the pointer to the free block
+         * @return <tt>true</tt> if <tt>ptr</tt> has been kept; otherwise,
+         * <tt>false</tt>
+         */
+        boolean offer(int sizeClass, long ptr)
+        {
+            long[] ptrs = this.ptrs[sizeClass];
+
+            if (sizes[sizeClass] == ptrs.length)
+                return false;
+
+            ptrs[sizes[sizeClass]++] = ptr;
+            return true;
+        }
+
+        /**
+         * Takes a free block of a specific size class.
+         *
+         * @param sizeClass the index of the size class
+         * @return the pointer to the free block or <tt>0</tt> if there are no
+         * free blocks of <tt>sizeClass</tt>
+         */
+        long poll(int sizeClass)
+        {
+            int size = sizes[sizeClass];
+
+            if (size == 0)
+                return 0;
+
+            sizes[sizeClass] = --size;
+            return ptrs[sizeClass][size];
+        }
+    }
+
+    /**
+     * The value of the <tt>ThreadLocal</tt> which holds the
+     * <tt>ThreadCache</tt> of a thread. Its garbage collection signals that
+     * the thread has died.
+     */
+    private static class ThreadCacheHandle
+    {
+        /**
+         * The <tt>ThreadCache</tt> of the thread.
+         */
+        final ThreadCache cache = new ThreadCache();
+    }
+
+    /**
+     * Tracks the <tt>ThreadCacheHandle</tt> of a thread in order to reclaim
+     * its <tt>ThreadCache</tt> after the thread has died.
+     */
+    private static class ThreadCacheReference
+        extends PhantomReference<Object>
+    {
+        /**
+         * The <tt>ThreadCache</tt> of the thread.
+         */
+        final ThreadCache cache;
+
+        /**
+         * Initializes a new <tt>ThreadCacheReference</tt> instance.
+         *
+         * @param handle the <tt>ThreadCacheHandle</tt> of the thread
+         * @param queue the <tt>ReferenceQueue</tt> into which the new instance
+         * is to be enqueued when <tt>handle</tt> is garbage collected
+         */
+        ThreadCacheReference(
+                ThreadCacheHandle handle,
+                ReferenceQueue<Object> queue)
+        {
+            super(handle, queue);
+
+            cache = handle.cache;
+        }
+    }
+}
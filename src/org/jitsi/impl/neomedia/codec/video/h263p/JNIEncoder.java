@@ -24,6 +24,7 @@ import net.sf.fmj.media.*;
 
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.codec.video.*;
 import org.jitsi.service.neomedia.codec.*;
 
 /**
@@ -80,7 +81,7 @@ public class JNIEncoder
     /**
      * The raw frame buffer.
      */
-    private long rawFrameBuffer = 0;
+    private ByteBuffer rawFrameBuffer;
 
     /**
      * Initializes a new <tt>JNIEncoder</tt> instance.
@@ -124,8 +125,8 @@ public class JNIEncoder
 
             FFmpeg.avcodec_free_frame(avFrame);
             avFrame = 0;
-            FFmpeg.av_free(rawFrameBuffer);
-            rawFrameBuffer = 0;
+            rawFrameBuffer.free();
+            rawFrameBuffer = null;
         }
     }
 
@@ -272,7 +273,7 @@ public class JNIEncoder
 
         encFrameLen = (width * height * 3) / 2;
 
-        rawFrameBuffer = FFmpeg.av_malloc(encFrameLen);
+        rawFrameBuffer = new ByteBuffer(encFrameLen);
 
         avFrame = FFmpeg.avcodec_alloc_frame();
 
@@ -280,7 +281,7 @@ public class JNIEncoder
 
         FFmpeg.avframe_set_data(
                 avFrame,
-                rawFrameBuffer,
+                rawFrameBuffer.getPtr(),
                 sizeInBytes,
                 sizeInBytes / 4);
         FFmpeg.avframe_set_linesize(avFrame, width, width / 2, width / 2);
@@ -328,7 +329,7 @@ public class JNIEncoder
 
         // copy data to avframe
         FFmpeg.memcpy(
-                rawFrameBuffer,
+                rawFrameBuffer.getPtr(),
                 (byte[]) inBuffer.getData(), inBuffer.getOffset(),
                 encFrameLen);
 
@@ -30,7 +30,11 @@ import org.jitsi.util.*;
 
 /**
  * Implements <tt>Codec</tt> to represent a depacketizer of H.264 RTP packets
- * into NAL units.
+ * into access units in the H.264 byte stream format. The RTP payloads of an
+ * access unit are collected by reference and copied once into the output when
+ * the access unit is complete. Lost and malformed fragments are detected as
+ * they arrive and make the <tt>DePacketizer</tt> request a key frame right
+ * away.
  *
  * @author Lyubomir Marinov
  * @author Damian Minkov
@@ -93,16 +97,41 @@ public class DePacketizer
             * 1000L;
 
     /**
-     * The Unspecified <tt>nal_unit_type</tt> as defined by the ITU-T
-     * Recommendation for H.264.
+     * The maximum number of <tt>byte</tt> arrays kept in {@link #pool} for
+     * reuse.
      */
-    private static final int UNSPECIFIED_NAL_UNIT_TYPE = 0;
+    private static final int POOL_CAPACITY = 128;
+
+    /**
+     * The indicator which determines whether RTP packets of the access unit
+     * being collected have been lost or were malformed.
+     */
+    private boolean accessUnitDamaged = false;
+
+    /**
+     * The indicator which determines whether the access unit being collected
+     * contains a coded slice of an IDR picture.
+     */
+    private boolean accessUnitKeyFrame = false;
+
+    /**
+     * The number of bytes which the access unit being collected occupies in
+     * the H.264 byte stream format i.e. including the {@link #NAL_PREFIX}es
+     * and the reconstructed octets of the fragmented NAL units.
+     */
+    private int accessUnitLength = 0;
+
+    /**
+     * The time stamp of the input <tt>Buffer</tt>s of the access unit being
+     * collected.
+     */
+    private long accessUnitTimeStamp = Buffer.TIME_UNKNOWN;
 
     /**
      * The indicator which determines whether this <tt>DePacketizer</tt> has
-     * successfully processed an RTP packet with payload representing a
-     * "Fragmentation Unit (FU)" with its Start bit set and has not encountered
-     * one with its End bit set.
+     * collected an RTP packet with payload representing a "Fragmentation Unit
+     * (FU)" with its Start bit set and has not encountered one with its End
+     * bit set.
      */
     private boolean fuaStartedAndNotEnded = false;
 
@@ -130,14 +159,6 @@ public class DePacketizer
      */
     private long lastSequenceNumber = -1;
 
-    /**
-     * The <tt>nal_unit_type</tt> as defined by the ITU-T Recommendation for
-     * H.264 of the last NAL unit given to this <tt>DePacketizer</tt> for
-     * processing. In the case of processing a fragmentation unit, the value is
-     * equal to the <tt>nal_unit_type</tt> of the fragmented NAL unit.
-     */
-    private int nal_unit_type;
-
     /**
      * The size of the padding at the end of the output data of this
      * <tt>DePacketizer</tt> expected by the H.264 decoder.
@@ -145,6 +166,25 @@ public class DePacketizer
     private final int outputPaddingSize
         = FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE;
 
+    /**
+     * The number of elements of {@link #packets} which are in use.
+     */
+    private int packetCount = 0;
+
+    /**
+     * The RTP payloads of the access unit being collected in the order of
+     * their receipt. The elements reference the <tt>byte</tt> arrays of the
+     * input <tt>Buffer</tt>s which this <tt>DePacketizer</tt> has taken over.
+     */
+    private Packet[] packets = new Packet[16];
+
+    /**
+     * The <tt>byte</tt> arrays which this <tt>DePacketizer</tt> is done with
+     * and which it gives to the input <tt>Buffer</tt>s it takes the data of
+     * and uses for its output.
+     */
+    private final Deque<byte[]> pool = new ArrayDeque<>();
+
     /**
      * The indicator which determines whether this <tt>DePacketizer</tt> is to
      * request a key frame from the remote peer associated with
@@ -185,148 +225,282 @@ public class DePacketizer
     }
 
     /**
-     * Extracts a fragment of a NAL unit from a specific FU-A RTP packet
-     * payload.
+     * Gets a <tt>byte</tt> array with a specific minimum length from
+     * {@link #pool} or allocates a new one if the pool does not have a
+     * suitable one.
+     *
+     * @param minLength the minimum length of the <tt>byte</tt> array to get
+     * @return a <tt>byte</tt> array with length greater than or equal to
+     * <tt>minLength</tt>
+     */
+    private byte[] acquire(int minLength)
+    {
+        for (Iterator<byte[]> i = pool.iterator(); i.hasNext();)
+        {
+            byte[] bytes = i.next();
+
+            if (bytes.length >= minLength)
+            {
+                i.remove();
+                return bytes;
+            }
+        }
+        return new byte[minLength];
+    }
+
+    /**
+     * Validates a specific RTP payload and accounts for it in the access unit
+     * being collected. The payload is not copied; if it is to be output, the
+     * caller has to keep a reference to it.
      *
-     * @param in the payload of the RTP packet from which a FU-A fragment of a
-     * NAL unit is to be extracted
+     * @param in the payload of the RTP packet
      * @param inOffset the offset in <tt>in</tt> at which the payload begins
      * @param inLength the length of the payload in <tt>in</tt> beginning at
      * <tt>inOffset</tt>
-     * @param outBuffer the <tt>Buffer</tt> which is to receive the extracted
-     * FU-A fragment of a NAL unit
-     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
-     * <tt>OUTPUT_BUFFER_NOT_FILLED</tt> to be returned by
-     * {@link #process(Buffer, Buffer)}
-     */
-    private int dePacketizeFUA(
-            byte[] in, int inOffset, int inLength,
-            Buffer outBuffer)
+     * @return <tt>true</tt> if the specified payload is part of the access
+     * unit being collected; <tt>false</tt> if it is to be dropped
+     */
+    private boolean addPacket(byte[] in, int inOffset, int inLength)
     {
-        byte fu_indicator = in[inOffset];
+        if (inLength < 1)
+            return false;
 
-        inOffset++;
-        inLength--;
+        /*
+         * NRI equal to the binary value 00 indicates that the content of the
+         * NAL unit is not used to reconstruct reference pictures for inter
+         * picture prediction. Such NAL units can be discarded without risking
+         * the integrity of the reference pictures. However, it is not the place
+         * of the DePacketizer to take the decision to discard them but of the
+         * H.264 decoder.
+         */
 
-        byte fu_header = in[inOffset];
+        /*
+         * The nal_unit_type of the NAL unit given to this DePacketizer for
+         * processing. In the case of processing a fragmentation unit, the value
+         * is equal to the nal_unit_type of the fragmentation unit, not the
+         * fragmented NAL unit.
+         */
+        int nal_unit_type = in[inOffset] & 0x1F;
+        int length;
 
-        inOffset++;
-        inLength--;
+        if (nal_unit_type == 28) // FU-A Fragmentation unit (FU)
+        {
+            if (inLength < 3)
+            {
+                accessUnitDamaged = true;
+                return false;
+            }
 
-        int nal_unit_type = fu_header & 0x1F;
+            byte fu_header = in[inOffset + 1];
+            boolean start_bit = (fu_header & 0x80) != 0;
+            boolean end_bit = (fu_header & 0x40) != 0;
 
-        this.nal_unit_type = nal_unit_type;
+            if (start_bit)
+            {
+                /*
+                 * The Start bit and End bit MUST NOT both be set in the same FU
+                 * header.
+                 */
+                if (end_bit)
+                    return false;
 
-        boolean start_bit = (fu_header & 0x80) != 0;
-        boolean end_bit = (fu_header & 0x40) != 0;
-        int outOffset = outBuffer.getOffset();
-        int newOutLength = inLength;
-        int octet;
+                // The End of the previous FU has not been received.
+                if (fuaStartedAndNotEnded)
+                    accessUnitDamaged = true;
 
-        if (start_bit)
-        {
-            /*
-             * The Start bit and End bit MUST NOT both be set in the same FU
-             * header.
-             */
+                fuaStartedAndNotEnded = true;
+                if ((fu_header & 0x1F) == 5)
+                    accessUnitKeyFrame = true;
+                length = NAL_PREFIX.length + 1 /* octet */ + inLength - 2;
+            }
+            else if (!fuaStartedAndNotEnded)
+            {
+                // The Start of the FU has not been received.
+                accessUnitDamaged = true;
+                return false;
+            }
+            else
+            {
+                length = inLength - 2;
+            }
             if (end_bit)
+                fuaStartedAndNotEnded = false;
+        }
+        else if (((nal_unit_type >= 1) && (nal_unit_type <= 23))
+                || (nal_unit_type == 24))
+        {
+            if (fuaStartedAndNotEnded)
             {
-                outBuffer.setDiscard(true);
-                return BUFFER_PROCESSED_OK;
+                // The End of the previous FU has not been received.
+                accessUnitDamaged = true;
+                fuaStartedAndNotEnded = false;
             }
 
-            fuaStartedAndNotEnded = true;
+            if (nal_unit_type == 24) // STAP-A Single-time aggregation packet
+            {
+                length = 0;
+                for (int i = inOffset + 1, end = inOffset + inLength;
+                        i < end;)
+                {
+                    int nalu_size
+                        = (i + 2 > end)
+                            ? 0
+                            : (((in[i] & 0xFF) << 8) | (in[i + 1] & 0xFF));
 
-            newOutLength += NAL_PREFIX.length + 1 /* octet */;
-            octet
-                = (fu_indicator & 0xE0) /* forbidden_zero_bit & NRI */
-                    | nal_unit_type;
-        }
-        else if (!fuaStartedAndNotEnded)
-        {
-            outBuffer.setDiscard(true);
-            return BUFFER_PROCESSED_OK;
+                    i += 2;
+                    if ((nalu_size == 0) || (i + nalu_size > end))
+                    {
+                        logger.warn("Dropping malformed STAP-A packet.");
+                        accessUnitDamaged = true;
+                        return false;
+                    }
+                    if ((in[i] & 0x1F) == 5)
+                        accessUnitKeyFrame = true;
+                    length += NAL_PREFIX.length + nalu_size;
+                    i += nalu_size;
+                }
+                if (length == 0)
+                    return false;
+            }
+            else // Single NAL Unit Packet
+            {
+                if (nal_unit_type == 5)
+                    accessUnitKeyFrame = true;
+                length = NAL_PREFIX.length + inLength;
+            }
         }
         else
         {
-            int outLength = outBuffer.getLength();
-
-            outOffset += outLength;
-            newOutLength += outLength;
-            octet = 0; // Ignored later on.
-        }
-
-        byte[] out
-            = validateByteArraySize(
-                    outBuffer,
-                    outBuffer.getOffset() + newOutLength + outputPaddingSize,
-                    true);
-
-        if (start_bit)
-        {
-            // Copy in the NAL start sequence and the (reconstructed) octet.
-            System.arraycopy(NAL_PREFIX, 0, out, outOffset, NAL_PREFIX.length);
-            outOffset += NAL_PREFIX.length;
-
-            out[outOffset] = (byte) (octet & 0xFF);
-            outOffset++;
+            logger.warn(
+                    "Dropping NAL unit of unsupported type " + nal_unit_type);
+            return false;
         }
-        System.arraycopy(in, inOffset, out, outOffset, inLength);
-        outOffset += inLength;
 
-        padOutput(out, outOffset);
+        accessUnitLength += length;
+        return true;
+    }
 
-        outBuffer.setLength(newOutLength);
+    /**
+     * Writes the access unit collected by this <tt>DePacketizer</tt> into a
+     * specific output <tt>Buffer</tt> in the H.264 byte stream format. The
+     * collected RTP payloads are copied once, directly at their final
+     * position in the output. If the collected access unit contains an
+     * incomplete NAL unit, its forbidden_zero_bit is turned on.
+     *
+     * @param outBuffer the <tt>Buffer</tt> to write the access unit into
+     * @return <tt>true</tt> if <tt>outBuffer</tt> has been filled;
+     * <tt>false</tt> if there was nothing to output
+     */
+    private boolean assemble(Buffer outBuffer)
+    {
+        int outLength = accessUnitLength;
+        Object outData = outBuffer.getData();
+        byte[] out;
 
-        if (end_bit)
+        /*
+         * The H.264 decoder does not take into account the offset of the
+         * output Buffer so the access unit is written at the beginning of the
+         * output byte array.
+         */
+        if ((outData instanceof byte[])
+                && (((byte[]) outData).length >= outLength + outputPaddingSize))
         {
-            fuaStartedAndNotEnded = false;
-            return BUFFER_PROCESSED_OK;
+            out = (byte[]) outData;
         }
         else
-            return OUTPUT_BUFFER_NOT_FILLED;
-    }
+        {
+            out = acquire(outLength + outputPaddingSize);
+            outBuffer.setData(out);
+        }
 
-    /**
-     * Extract a single (complete) NAL unit from RTP payload.
-     *
-     * @param nal_unit_type unit type of NAL
-     * @param in the payload of the RTP packet
-     * @param inOffset the offset in <tt>in</tt> at which the payload begins
-     * @param inLength the length of the payload in <tt>in</tt> beginning at
-     * <tt>inOffset</tt>
-     * @param outBuffer the <tt>Buffer</tt> which is to receive the extracted
-     * NAL unit
-     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
-     * <tt>OUTPUT_BUFFER_NOT_FILLED</tt> to be returned by
-     * {@link #process(Buffer, Buffer)}
-     */
-    private int dePacketizeSingleNALUnitPacket(
-            int nal_unit_type,
-            byte[] in, int inOffset, int inLength,
-            Buffer outBuffer)
-    {
-        this.nal_unit_type = nal_unit_type;
+        int outOffset = 0;
+        /*
+         * The index in out of the octet of the fragmented NAL unit which has
+         * not seen the End of its FU yet.
+         */
+        int octetIndex = -1;
 
-        int outOffset = outBuffer.getOffset();
-        int newOutLength = NAL_PREFIX.length + inLength;
-        byte[] out
-            = validateByteArraySize(
-                outBuffer,
-                outOffset + newOutLength + outputPaddingSize,
-                true);
+        for (int p = 0; p < packetCount; p++)
+        {
+            Packet packet = packets[p];
+            byte[] in = packet.data;
+            int inOffset = packet.offset;
+            int inLength = packet.length;
+            int nal_unit_type = in[inOffset] & 0x1F;
 
-        System.arraycopy(NAL_PREFIX, 0, out, outOffset, NAL_PREFIX.length);
-        outOffset += NAL_PREFIX.length;
+            if (nal_unit_type == 28)
+            {
+                byte fu_indicator = in[inOffset];
+                byte fu_header = in[inOffset + 1];
 
-        System.arraycopy(in, inOffset, out, outOffset, inLength);
-        outOffset += inLength;
+                if ((fu_header & 0x80) != 0)
+                {
+                    if (octetIndex != -1)
+                        out[octetIndex] |= 0x80;
+
+                    System.arraycopy(
+                            NAL_PREFIX, 0,
+                            out, outOffset,
+                            NAL_PREFIX.length);
+                    outOffset += NAL_PREFIX.length;
+
+                    octetIndex = outOffset;
+                    // forbidden_zero_bit & NRI and nal_unit_type
+                    out[outOffset]
+                        = (byte) ((fu_indicator & 0xE0) | (fu_header & 0x1F));
+                    outOffset++;
+                }
+                System.arraycopy(
+                        in, inOffset + 2,
+                        out, outOffset,
+                        inLength - 2);
+                outOffset += inLength - 2;
+                if ((fu_header & 0x40) != 0)
+                    octetIndex = -1;
+                continue;
+            }
 
-        padOutput(out, outOffset);
+            if (octetIndex != -1)
+            {
+                out[octetIndex] |= 0x80;
+                octetIndex = -1;
+            }
+            if (nal_unit_type == 24)
+            {
+                for (int i = inOffset + 1, end = inOffset + inLength; i < end;)
+                {
+                    int nalu_size = ((in[i] & 0xFF) << 8) | (in[i + 1] & 0xFF);
+
+                    i += 2;
+                    System.arraycopy(
+                            NAL_PREFIX, 0,
+                            out, outOffset,
+                            NAL_PREFIX.length);
+                    outOffset += NAL_PREFIX.length;
+                    System.arraycopy(in, i, out, outOffset, nalu_size);
+                    outOffset += nalu_size;
+                    i += nalu_size;
+                }
+            }
+            else
+            {
+                System.arraycopy(
+                        NAL_PREFIX, 0,
+                        out, outOffset,
+                        NAL_PREFIX.length);
+                outOffset += NAL_PREFIX.length;
+                System.arraycopy(in, inOffset, out, outOffset, inLength);
+                outOffset += inLength;
+            }
+        }
+        if (octetIndex != -1)
+            out[octetIndex] |= 0x80; // Turn on the forbidden_zero_bit.
 
-        outBuffer.setLength(newOutLength);
+        padOutput(out, outOffset);
 
-        return BUFFER_PROCESSED_OK;
+        outBuffer.setOffset(0);
+        outBuffer.setLength(outOffset);
+        return outOffset != 0;
     }
 
     /**
@@ -335,6 +509,9 @@ public class DePacketizer
     @Override
     protected synchronized void doClose()
     {
+        releaseAccessUnit();
+        pool.clear();
+
         // If requestKeyFrameThread is running, tell it to perish.
         requestKeyFrameThread = null;
         notifyAll();
@@ -355,17 +532,20 @@ public class DePacketizer
     protected synchronized void doOpen()
         throws ResourceUnavailableException
     {
-        fuaStartedAndNotEnded = false;
+        releaseAccessUnit();
         lastKeyFrameTime = -1;
         lastRequestKeyFrameTime = -1;
         lastSequenceNumber = -1;
-        nal_unit_type = UNSPECIFIED_NAL_UNIT_TYPE;
         requestKeyFrame = false;
         requestKeyFrameThread = null;
     }
 
     /**
-     * Processes (depacketizes) a buffer.
+     * Processes (depacketizes) a buffer. The RTP packets of an access unit
+     * are collected without copying their payloads and the access unit is
+     * output in the H.264 byte stream format when the RTP packet with the
+     * marker bit set is received or when an RTP packet of the next access
+     * unit is received.
      *
      * @param inBuffer input buffer
      * @param outBuffer output buffer
@@ -373,7 +553,6 @@ public class DePacketizer
      * processed
      */
     @Override
-    @SuppressWarnings("fallthrough")
     protected int doProcess(Buffer inBuffer, Buffer outBuffer)
     {
         /*
@@ -384,18 +563,40 @@ public class DePacketizer
          * depacketizing FU-A Fragmentation Units (FUs).
          */
         long sequenceNumber = inBuffer.getSequenceNumber();
-        int ret;
-        boolean requestKeyFrame = (lastKeyFrameTime == -1);
+        /*
+         * Even if (the new) sequenceNumber is less than lastSequenceNumber, we
+         * have to use it because the received sequence numbers may have
+         * reached their maximum value and wrapped around starting from their
+         * minimum value again.
+         */
+        boolean lost
+            = (lastSequenceNumber != -1)
+                && ((sequenceNumber - lastSequenceNumber) != 1);
+        int inFlags = inBuffer.getFlags();
+        long timeStamp = inBuffer.getTimeStamp();
 
-        if ((lastSequenceNumber != -1)
-                && ((sequenceNumber - lastSequenceNumber) != 1))
+        if (packetCount != 0)
         {
+            if (lost)
+                accessUnitDamaged = true;
+
             /*
-             * Even if (the new) sequenceNumber is less than lastSequenceNumber,
-             * we have to use it because the received sequence numbers may have
-             * reached their maximum value and wrapped around starting from
-             * their minimum value again.
+             * The RTP time stamp reported by JMF is not the actual RTP packet
+             * time stamp sent by the remote peer but it changes whenever the
+             * latter does. If it changes, the RTP packet with the marker bit
+             * set of the access unit collected so far has been lost or the
+             * remote peer does not set the marker bit.
              */
+            if (((inFlags & Buffer.FLAG_RTP_TIME) != 0)
+                    && (timeStamp != accessUnitTimeStamp)
+                    && outputAccessUnit(outBuffer))
+            {
+                return BUFFER_PROCESSED_OK | INPUT_BUFFER_NOT_CONSUMED;
+            }
+        }
+
+        if (lost)
+        {
             if (logger.isTraceEnabled())
                 logger.trace(
                         "Dropped RTP packets upto sequenceNumber "
@@ -404,116 +605,60 @@ public class DePacketizer
                             + sequenceNumber);
 
             /*
-             * If a frame has been lost, then we may be in a need of a key
-             * frame.
+             * The decoding of the pictures which follow is likely to be broken
+             * until the next key frame so do not wait for the decoder to stall
+             * and request one now.
              */
-            requestKeyFrame = true;
-
-            ret = reset(outBuffer);
-
-            if ((ret & OUTPUT_BUFFER_NOT_FILLED) == 0)
-            {
-                /*
-                 * TODO Do we have to reset the nal_unit_type field of this
-                 * DePacketizer to UNSPECIFIED_NAL_UNIT_TYPE here? If ret
-                 * contains INPUT_BUFFER_NOT_CONSUMED, it seems safe to not
-                 * reset it because the input Buffer will be returned for
-                 * processing during the next call.
-                 */
-
-                setRequestKeyFrame(requestKeyFrame);
-
-                return ret;
-            }
+            fuaStartedAndNotEnded = false;
+            lastKeyFrameTime = -1;
         }
-
-        /*
-         * Ignore the RTP time stamp reported by JMF because it is not the
-         * actual RTP packet time stamp send by the remote peer but some locally
-         * calculated JMF value.
-         */
-
         lastSequenceNumber = sequenceNumber;
 
+        if (packetCount == 0)
+            accessUnitTimeStamp = timeStamp;
+
         byte[] in = (byte[]) inBuffer.getData();
         int inOffset = inBuffer.getOffset();
-        byte octet = in[inOffset];
 
-        /*
-         * NRI equal to the binary value 00 indicates that the content of the
-         * NAL unit is not used to reconstruct reference pictures for inter
-         * picture prediction. Such NAL units can be discarded without risking
-         * the integrity of the reference pictures. However, it is not the place
-         * of the DePacketizer to take the decision to discard them but of the
-         * H.264 decoder.
-         */
+        if (addPacket(in, inOffset, inBuffer.getLength()))
+        {
+            if (packetCount == packets.length)
+                packets = Arrays.copyOf(packets, 2 * packets.length);
 
-        /*
-         * The nal_unit_type of the NAL unit given to this DePacketizer for
-         * processing. In the case of processing a fragmentation unit, the value
-         * is equal to the nal_unit_type of the fragmentation unit, not the
-         * fragmented NAL unit and is thus in contrast with the value of the
-         * nal_unit_type field of this DePacketizer.
-         */
-        int nal_unit_type = octet & 0x1F;
+            Packet packet = packets[packetCount];
 
-        // Single NAL Unit Packet
-        if ((nal_unit_type >= 1) && (nal_unit_type <= 23))
-        {
-            fuaStartedAndNotEnded = false;
-            ret
-                = dePacketizeSingleNALUnitPacket(
-                    nal_unit_type,
-                    in, inOffset, inBuffer.getLength(),
-                    outBuffer);
-        }
-        else if (nal_unit_type == 28) // FU-A Fragmentation unit (FU)
-        {
-            ret = dePacketizeFUA(in, inOffset, inBuffer.getLength(), outBuffer);
-            if (outBuffer.isDiscard())
-                fuaStartedAndNotEnded = false;
-        }
-        else
-        {
-            logger.warn(
-                    "Dropping NAL unit of unsupported type " + nal_unit_type);
-            this.nal_unit_type = nal_unit_type;
+            if (packet == null)
+                packets[packetCount] = packet = new Packet();
+            packet.data = in;
+            packet.offset = inOffset;
+            packet.length = inBuffer.getLength();
+            packetCount++;
 
-            fuaStartedAndNotEnded = false;
-            outBuffer.setDiscard(true);
-            ret = BUFFER_PROCESSED_OK;
+            /*
+             * Take over the data of the input Buffer instead of copying it and
+             * give it a byte array which is no longer in use in return.
+             */
+            inBuffer.setData(acquire(in.length));
         }
 
-        outBuffer.setSequenceNumber(sequenceNumber);
+        int ret;
 
         /*
          * The RTP marker bit is set for the very last packet of the access unit
          * indicated by the RTP time stamp to allow an efficient playout buffer
-         * handling. Consequently, we have to output it as well.
+         * handling.
          */
-        if ((inBuffer.getFlags() & Buffer.FLAG_RTP_MARKER) != 0)
-            outBuffer.setFlags(outBuffer.getFlags() | Buffer.FLAG_RTP_MARKER);
-
-        // Should we request a key frame.
-        switch (this.nal_unit_type)
+        if (((inFlags & Buffer.FLAG_RTP_MARKER) != 0)
+                && outputAccessUnit(outBuffer))
         {
-        case 5 /* Coded slice of an IDR picture */:
-            lastKeyFrameTime = System.currentTimeMillis();
-            // Do fall through to prevent the request of a key frame.
-
-        /*
-         * While it seems natural to not request a key frame in the presence of
-         * 5, 7 and 8 often seem to be followed by 5 so do not request a key
-         * frame if either 7 or 8 is present.
-         */
-        case 7 /* Sequence parameter set */:
-        case 8 /* Picture parameter set */:
-            requestKeyFrame = false;
-            break;
-        default:
-            break;
+            ret = BUFFER_PROCESSED_OK;
         }
-        setRequestKeyFrame(requestKeyFrame);
+        else
+        {
+            ret = OUTPUT_BUFFER_NOT_FILLED;
+        }
+
+        setRequestKeyFrame(lastKeyFrameTime == -1);
 
         return ret;
     }
@@ -558,6 +703,50 @@ public class DePacketizer
         return matchingOutputFormats;
     }
 
+    /**
+     * Outputs the access unit collected by this <tt>DePacketizer</tt> into a
+     * specific <tt>Buffer</tt> and gets ready to collect the next one.
+     *
+     * @param outBuffer the <tt>Buffer</tt> to output the access unit into
+     * @return <tt>true</tt> if <tt>outBuffer</tt> has been filled;
+     * otherwise, <tt>false</tt>
+     */
+    private boolean outputAccessUnit(Buffer outBuffer)
+    {
+        boolean damaged = accessUnitDamaged || fuaStartedAndNotEnded;
+        boolean filled;
+
+        if (damaged && !OUTPUT_INCOMPLETE_NAL_UNITS)
+        {
+            filled = false;
+        }
+        else
+        {
+            filled = assemble(outBuffer);
+            if (filled)
+            {
+                outBuffer.setSequenceNumber(lastSequenceNumber);
+                outBuffer.setTimeStamp(accessUnitTimeStamp);
+                outBuffer.setFlags(
+                        outBuffer.getFlags() | Buffer.FLAG_RTP_MARKER);
+            }
+        }
+
+        /*
+         * A damaged access unit (whether RTP packets have been lost or were
+         * malformed) is likely to break the decoding of the pictures which
+         * follow so a key frame is to be requested until a complete IDR
+         * picture ends the need for it.
+         */
+        if (damaged)
+            lastKeyFrameTime = -1;
+        else if (accessUnitKeyFrame)
+            lastKeyFrameTime = System.currentTimeMillis();
+
+        releaseAccessUnit();
+        return filled;
+    }
+
     /**
      * Appends {@link #outputPaddingSize} number of bytes to <tt>out</tt>
      * beginning at index <tt>outOffset</tt>. The specified <tt>out</tt> is
@@ -591,46 +780,36 @@ public class DePacketizer
     }
 
     /**
-     * Resets the states of this <tt>DePacketizer</tt> and a specific output
-     * <tt>Buffer</tt> so that they are ready to have this <tt>DePacketizer</tt>
-     * process input RTP payloads. If the specified output <tt>Buffer</tt>
-     * contains an incomplete NAL unit, its forbidden_zero_bit will be turned on
-     * and the NAL unit in question will be output by this
-     * <tt>DePacketizer</tt>.
+     * Returns a <tt>byte</tt> array which this <tt>DePacketizer</tt> is done
+     * with to {@link #pool}.
      *
-     * @param outBuffer the output <tt>Buffer</tt> to be reset
-     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
-     * <tt>OUTPUT_BUFFER_NOT_FILLED</tt> to be returned by
-     * {@link #process(Buffer, Buffer)}
+     * @param bytes the <tt>byte</tt> array to return to <tt>pool</tt>
      */
-    private int reset(Buffer outBuffer)
+    private void release(byte[] bytes)
     {
-        /*
-         * We need the octet at the very least. Additionally, it does not make
-         * sense to output a NAL unit with zero payload because such NAL units
-         * are only given meaning for the purposes of the network and not the
-         * H.264 decoder.
-         */
-        if (OUTPUT_INCOMPLETE_NAL_UNITS
-                && fuaStartedAndNotEnded
-                && (outBuffer.getLength() >= (NAL_PREFIX.length + 1 + 1)))
-        {
-            Object outData = outBuffer.getData();
+        if (pool.size() < POOL_CAPACITY)
+            pool.push(bytes);
+    }
 
-            if (outData instanceof byte[])
-            {
-                byte[] out = (byte[]) outData;
-                int octetIndex = outBuffer.getOffset() + NAL_PREFIX.length;
+    /**
+     * Releases the RTP payloads of the access unit collected by this
+     * <tt>DePacketizer</tt> and resets the state of the collection.
+     */
+    private void releaseAccessUnit()
+    {
+        for (int p = 0; p < packetCount; p++)
+        {
+            Packet packet = packets[p];
 
-                out[octetIndex] |= 0x80; // Turn on the forbidden_zero_bit.
-                fuaStartedAndNotEnded = false;
-                return (BUFFER_PROCESSED_OK | INPUT_BUFFER_NOT_CONSUMED);
-            }
+            release(packet.data);
+            packet.data = null;
         }
-
+        packetCount = 0;
+        accessUnitDamaged = false;
+        accessUnitKeyFrame = false;
+        accessUnitLength = 0;
+        accessUnitTimeStamp = Buffer.TIME_UNKNOWN;
         fuaStartedAndNotEnded = false;
-        outBuffer.setLength(0);
-        return OUTPUT_BUFFER_NOT_FILLED;
     }
 
     /**
@@ -808,4 +987,26 @@ public class DePacketizer
             notifyAll();
         }
     }
+
+    /**
+     * Represents an RTP payload collected by <tt>DePacketizer</tt> as part
+     * of an access unit.
+     */
+    private static class Packet
+    {
+        /**
+         * The <tt>byte</tt> array which contains the RTP payload.
+         */
+        byte[] data;
+
+        /**
+         * The length of the RTP payload in {@link #data}.
+         */
+        int length;
+
+        /**
+         * The offset in {@link #data} at which the RTP payload begins.
+         */
+        int offset;
+    }
 }
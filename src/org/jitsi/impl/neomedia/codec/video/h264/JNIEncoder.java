@@ -25,6 +25,7 @@ import net.sf.fmj.media.*;
 
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.codec.video.*;
 import org.jitsi.impl.neomedia.format.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
@@ -258,7 +259,7 @@ public class JNIEncoder
     /**
      * The raw frame buffer.
      */
-    private long rawFrameBuffer;
+    private ByteBuffer rawFrameBuffer;
 
     /**
      * Length of the raw frame buffer. Once the dimensions are known, this is
@@ -324,10 +325,10 @@ public class JNIEncoder
                 FFmpeg.avcodec_free_frame(avFrame);
                 avFrame = 0;
             }
-            if (rawFrameBuffer != 0)
+            if (rawFrameBuffer != null)
             {
-                FFmpeg.av_free(rawFrameBuffer);
-                rawFrameBuffer = 0;
+                rawFrameBuffer.free();
+                rawFrameBuffer = null;
             }
 
             if (keyFrameRequestee != null)
@@ -670,14 +671,16 @@ public class JNIEncoder
         }
 
         rawFrameLen = (width * height * 3) / 2;
-        rawFrameBuffer = FFmpeg.av_malloc(rawFrameLen);
+        // The buffer is reused from the NativeMemoryArena when the encoder is
+        // reopened (e.g. upon a change of the frame size).
+        rawFrameBuffer = new ByteBuffer(rawFrameLen);
         avFrame = FFmpeg.avcodec_alloc_frame();
 
         int sizeInBytes = width * height;
 
         FFmpeg.avframe_set_data(
                 avFrame,
-                rawFrameBuffer,
+                rawFrameBuffer.getPtr(),
                 sizeInBytes,
                 sizeInBytes / 4);
         FFmpeg.avframe_set_linesize(avFrame, width, width / 2, width / 2);
@@ -752,7 +755,7 @@ public class JNIEncoder
 
         // Copy the data of inBuffer into avFrame.
         FFmpeg.memcpy(
-                rawFrameBuffer,
+                rawFrameBuffer.getPtr(),
                 (byte[]) inBuffer.getData(), inBuffer.getOffset(),
                 rawFrameLen);
 
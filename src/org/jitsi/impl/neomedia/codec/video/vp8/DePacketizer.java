@@ -462,6 +462,11 @@ public class DePacketizer
          * I bit from the I byte of the Payload Descriptor.
          */
         private static final byte M_BIT = (byte) 0x80;
+
+        /**
+         * N bit from the first byte of the Payload Descriptor.
+         */
+        private static final byte N_BIT = (byte) 0x20;
         /**
          * Maximum length of a VP8 Payload Descriptor.
          */
@@ -480,6 +485,11 @@ public class DePacketizer
          */
         private static final byte X_BIT = (byte) 0x80;
 
+        /**
+         * Y bit from the TID/Y/KEYIDX byte of the Payload Descriptor.
+         */
+        private static final byte Y_BIT = (byte) 0x20;
+
         /**
          * Returns a simple Payload Descriptor, with PartID = 0, the 'start
          * of partition' bit set according to <tt>startOfPartition</tt>, and
@@ -530,6 +540,22 @@ public class DePacketizer
             return size;
         }
 
+        /**
+         * Gets the value of the KEYIDX field of a VP8 Payload Descriptor.
+         * @param input
+         * @param offset
+         * @return the value of the KEYIDX field of a VP8 Payload Descriptor,
+         * or -1 if the field is not present.
+         */
+        public static int getKeyIdx(byte[] input, int offset)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & K_BIT) == 0)
+                return -1;
+
+            return input[getTIDOffset(input, offset)] & 0x1f;
+        }
+
         /**
          * Gets the value of the PictureID field of a VP8 Payload Descriptor.
          * @param input
@@ -537,7 +563,7 @@ public class DePacketizer
          * @return the value of the PictureID field of a VP8 Payload Descriptor,
          * or -1 if the fields is not present.
          */
-        private static int getPictureId(byte[] input, int offset)
+        public static int getPictureId(byte[] input, int offset)
         {
             if (!isValid(input, offset))
                 return -1;
@@ -555,11 +581,203 @@ public class DePacketizer
 
         }
 
+        /**
+         * Gets the width in bits of the PictureID field of a VP8 Payload
+         * Descriptor.
+         * @param input
+         * @param offset
+         * @return <tt>15</tt> or <tt>7</tt> depending on the M bit, or
+         * <tt>0</tt> if the PictureID field is not present.
+         */
+        public static int getPictureIdWidth(byte[] input, int offset)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & I_BIT) == 0)
+                return 0;
+
+            return ((input[offset+2] & M_BIT) != 0) ? 15 : 7;
+        }
+
+        /**
+         * Gets the value of the TID (temporal layer index) field of a VP8
+         * Payload Descriptor.
+         * @param input
+         * @param offset
+         * @return the value of the TID field of a VP8 Payload Descriptor, or
+         * -1 if the field is not present.
+         */
+        public static int getTemporalLayerIndex(byte[] input, int offset)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & T_BIT) == 0)
+                return -1;
+
+            return (input[getTIDOffset(input, offset)] & 0xc0) >> 6;
+        }
+
+        /**
+         * Gets the offset of the TID/Y/KEYIDX byte of a VP8 Payload
+         * Descriptor which has the X bit set.
+         * @param input
+         * @param offset
+         * @return the offset of the TID/Y/KEYIDX byte
+         */
+        private static int getTIDOffset(byte[] input, int offset)
+        {
+            int tidOffset = getTL0PICIDXOffset(input, offset);
+
+            if ((input[offset+1] & L_BIT) != 0)
+                tidOffset++;
+            return tidOffset;
+        }
+
+        /**
+         * Gets the value of the TL0PICIDX field of a VP8 Payload Descriptor.
+         * @param input
+         * @param offset
+         * @return the value of the TL0PICIDX field of a VP8 Payload
+         * Descriptor, or -1 if the field is not present.
+         */
+        public static int getTL0PICIDX(byte[] input, int offset)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & L_BIT) == 0)
+                return -1;
+
+            return input[getTL0PICIDXOffset(input, offset)] & 0xff;
+        }
+
+        /**
+         * Gets the offset of the TL0PICIDX byte of a VP8 Payload Descriptor
+         * which has the X bit set i.e. the offset following the PictureID.
+         * @param input
+         * @param offset
+         * @return the offset of the TL0PICIDX byte
+         */
+        private static int getTL0PICIDXOffset(byte[] input, int offset)
+        {
+            int tl0picidxOffset = offset + 2;
+
+            if ((input[offset+1] & I_BIT) != 0)
+            {
+                tl0picidxOffset++;
+                if ((input[offset+2] & M_BIT) != 0)
+                    tl0picidxOffset++;
+            }
+            return tl0picidxOffset;
+        }
+
+        /**
+         * Checks whether the Y (layer sync) bit is set in the VP8 Payload
+         * Descriptor at offset <tt>offset</tt> in <tt>input</tt> i.e. whether
+         * the frame depends on base layer (TID 0) frames only.
+         * @param input
+         * @param offset
+         * @return <tt>true</tt> if the Y bit is present and set,
+         * <tt>false</tt> otherwise.
+         */
+        public static boolean isLayerSync(byte[] input, int offset)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & T_BIT) == 0)
+                return false;
+
+            return (input[getTIDOffset(input, offset)] & Y_BIT) != 0;
+        }
+
+        /**
+         * Checks whether the N (non-reference frame) bit is set in the VP8
+         * Payload Descriptor at offset <tt>offset</tt> in <tt>input</tt>.
+         * @param input
+         * @param offset
+         * @return <tt>true</tt> if the frame can be discarded without
+         * affecting any other frame, <tt>false</tt> otherwise.
+         */
+        public static boolean isNonReference(byte[] input, int offset)
+        {
+            return (input[offset] & N_BIT) != 0;
+        }
+
         public static boolean isValid(byte[] input, int offset)
         {
             return true;
         }
 
+        /**
+         * Checks whether a VP8 Payload Descriptor fits in a specific number of
+         * bytes.
+         * @param input
+         * @param offset
+         * @param length the number of bytes of <tt>input</tt> starting at
+         * <tt>offset</tt> which are available
+         * @return <tt>true</tt> if the Payload Descriptor at offset
+         * <tt>offset</tt> in <tt>input</tt> is complete within
+         * <tt>length</tt> bytes, <tt>false</tt> otherwise.
+         */
+        public static boolean isValid(byte[] input, int offset, int length)
+        {
+            if (length < 1)
+                return false;
+            if ((input[offset] & X_BIT) == 0)
+                return true;
+            if (length < 2)
+                return false;
+            if ((input[offset+1] & I_BIT) != 0 && length < 3)
+                return false;
+            return getSize(input, offset) <= length;
+        }
+
+        /**
+         * Sets the value of the PictureID field of a VP8 Payload Descriptor
+         * in place, keeping its width.
+         * @param input
+         * @param offset
+         * @param pictureId the new value of the PictureID field, truncated to
+         * the width of the field
+         * @return <tt>true</tt> if the field is present and was set,
+         * <tt>false</tt> otherwise.
+         */
+        public static boolean setPictureId(
+                byte[] input, int offset,
+                int pictureId)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & I_BIT) == 0)
+                return false;
+
+            if ((input[offset+2] & M_BIT) != 0)
+            {
+                input[offset+2] = (byte) (M_BIT | ((pictureId >> 8) & 0x7f));
+                input[offset+3] = (byte) pictureId;
+            }
+            else
+            {
+                input[offset+2] = (byte) (pictureId & 0x7f);
+            }
+            return true;
+        }
+
+        /**
+         * Sets the value of the TL0PICIDX field of a VP8 Payload Descriptor in
+         * place.
+         * @param input
+         * @param offset
+         * @param tl0picidx the new value of the TL0PICIDX field
+         * @return <tt>true</tt> if the field is present and was set,
+         * <tt>false</tt> otherwise.
+         */
+        public static boolean setTL0PICIDX(
+                byte[] input, int offset,
+                int tl0picidx)
+        {
+            if ((input[offset] & X_BIT) == 0
+                    || (input[offset+1] & L_BIT) == 0)
+                return false;
+
+            input[getTL0PICIDXOffset(input, offset)] = (byte) tl0picidx;
+            return true;
+        }
+
         /**
          * Checks whether the '<tt>start of partition</tt>' bit is set in the
          * VP8 Payload Descriptor at offset <tt>offset</tt> in <tt>input</tt>.
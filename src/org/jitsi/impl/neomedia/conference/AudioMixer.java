@@ -29,6 +29,8 @@ import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.control.*;
 import org.jitsi.impl.neomedia.device.*;
 import org.jitsi.impl.neomedia.protocol.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -76,6 +78,80 @@ public class AudioMixer
      */
     private static final Logger logger = Logger.getLogger(AudioMixer.class);
 
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * integer property which specifies the maximum number of input streams
+     * which are mixed at a time. If positive, only the loudest input streams
+     * (as measured by the mixer over the last few hundred milliseconds) are
+     * mixed and the others are skipped. The default value is <tt>0</tt> i.e.
+     * all input streams are mixed.
+     */
+    public static final String MAX_MIXED_STREAMS_PNAME
+        = AudioMixer.class.getName() + ".MAX_MIXED_STREAMS";
+
+    /**
+     * The maximum number of input streams which are mixed at a time or
+     * <tt>0</tt> if all input streams are mixed. Read from
+     * {@link #MAX_MIXED_STREAMS_PNAME}.
+     */
+    static final int MAX_MIXED_STREAMS;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * integer property which specifies the interval in milliseconds at which
+     * the <tt>AudioMixer</tt>s mix. If positive (e.g. <tt>10</tt> or
+     * <tt>20</tt>), all input streams are buffered and mixing is driven by a
+     * monotonic clock shared by all <tt>AudioMixer</tt>s rather than by the
+     * arrival of data on the first input stream. The default value is
+     * <tt>0</tt> i.e. mixing is driven by the first input stream.
+     */
+    public static final String MIXING_INTERVAL_PNAME
+        = AudioMixer.class.getName() + ".MIXING_INTERVAL";
+
+    /**
+     * The interval in milliseconds at which the <tt>AudioMixer</tt>s mix or
+     * <tt>0</tt> if mixing is driven by the first input stream. Read from
+     * {@link #MIXING_INTERVAL_PNAME}.
+     */
+    static final int MIXING_INTERVAL;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * boolean property which indicates whether the mixes of all
+     * <tt>AudioMixingPushBufferStream</tt>s of an <tt>AudioMixer</tt> are to
+     * be derived from a single sum of all input streams by subtracting the
+     * inputs which are not to be included in the respective mix (i.e.
+     * mix-minus) rather than being summed separately. The mix-minus sum is
+     * linear and clipped whereas the separate summing attenuates as the
+     * output approaches its maximum. The default value is <tt>false</tt>.
+     */
+    public static final String MIX_MINUS_PNAME
+        = AudioMixer.class.getName() + ".MIX_MINUS";
+
+    /**
+     * The indicator which determines whether the mixes are derived from a
+     * single sum of all input streams. Read from {@link #MIX_MINUS_PNAME}.
+     */
+    static final boolean MIX_MINUS;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        if (cfg == null)
+        {
+            MAX_MIXED_STREAMS = Integer.getInteger(MAX_MIXED_STREAMS_PNAME, 0);
+            MIXING_INTERVAL = Integer.getInteger(MIXING_INTERVAL_PNAME, 0);
+            MIX_MINUS = Boolean.getBoolean(MIX_MINUS_PNAME);
+        }
+        else
+        {
+            MAX_MIXED_STREAMS = cfg.getInt(MAX_MIXED_STREAMS_PNAME, 0);
+            MIXING_INTERVAL = cfg.getInt(MIXING_INTERVAL_PNAME, 0);
+            MIX_MINUS = cfg.getBoolean(MIX_MINUS_PNAME, false);
+        }
+    }
+
     /**
      * Gets the <tt>Format</tt> in which a specific <tt>DataSource</tt>
      * provides stream data.
@@ -988,6 +1064,22 @@ public class AudioMixer
             ((input instanceof AudioFormat) && input.isSameEncoding(pattern));
     }
 
+    /**
+     * Notifies this <tt>AudioMixer</tt> that the input <tt>DataSource</tt>s
+     * the audio of which is mixed have changed because only the
+     * {@link #MAX_MIXED_STREAMS} loudest input streams are mixed. Allows
+     * extenders to, for example, advertise the contributing sources of the
+     * mix. Invoked on the thread which performs the mixing so implementations
+     * are to return quickly. The default implementation does nothing.
+     *
+     * @param mixedInDataSources the input <tt>DataSource</tt>s the audio of
+     * which is mixed
+     */
+    protected void mixedInDataSourcesChanged(
+            Collection<DataSource> mixedInDataSources)
+    {
+    }
+
     /**
      * Reads media from a specific <tt>PushBufferStream</tt> which belongs to
      * a specific <tt>DataSource</tt> into a specific output <tt>Buffer</tt>.
@@ -0,0 +1,353 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.conference;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.jitsi.util.*;
+
+/**
+ * Drives the mixing of the <tt>AudioMixerPushBufferStream</tt>s of all
+ * <tt>AudioMixer</tt>s at a fixed interval measured by the monotonic
+ * {@link System#nanoTime()} rather than by the arrival of data on their input
+ * streams. A single clock thread keeps the time and, on every tick, splits the
+ * registered streams into at most as many batches as there are processors and
+ * mixes the batches on a shared thread pool. A batch which has not finished
+ * mixing by the next tick is not resubmitted i.e. its streams skip a tick
+ * instead of piling up work. Since the streams may be registered and
+ * unregistered between ticks, a stream may fall into different batches in
+ * consecutive ticks; it is then mixed by the batch which reaches it first and
+ * skipped by the other.
+ * <p>
+ * Pretty much private to <tt>AudioMixer</tt> but extracted into its own file
+ * for the sake of clarity.
+ * </p>
+ */
+class AudioMixerClock
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>AudioMixerClock</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(AudioMixerClock.class);
+
+    /**
+     * The <tt>AudioMixerClock</tt> which ticks every
+     * {@link AudioMixer#MIXING_INTERVAL} milliseconds. Initialized on first
+     * use.
+     */
+    private static AudioMixerClock instance;
+
+    /**
+     * Gets the <tt>AudioMixerClock</tt> which ticks every
+     * {@link AudioMixer#MIXING_INTERVAL} milliseconds.
+     *
+     * @return the <tt>AudioMixerClock</tt> which ticks every
+     * <tt>AudioMixer.MIXING_INTERVAL</tt> milliseconds
+     */
+    static synchronized AudioMixerClock getInstance()
+    {
+        if (instance == null)
+            instance = new AudioMixerClock(AudioMixer.MIXING_INTERVAL);
+        return instance;
+    }
+
+    /**
+     * The batches into which the registered streams are split on every tick.
+     * Batch <tt>i</tt> mixes the streams at indices <tt>i</tt>,
+     * <tt>i + batches.length</tt>, <tt>i + 2 * batches.length</tt> and so on.
+     */
+    private final Batch[] batches;
+
+    /**
+     * The <tt>ExecutorService</tt> which mixes the batches of this instance.
+     */
+    private final ExecutorService executorService
+        = ExecutorUtils.newCachedThreadPool(
+                true,
+                AudioMixerClock.class.getName());
+
+    /**
+     * The interval in nanoseconds at which this instance ticks.
+     */
+    private final long intervalNanos;
+
+    /**
+     * The <tt>AudioMixerPushBufferStream</tt>s registered with this instance.
+     * Copied on write so that the clock thread and the batches can iterate
+     * over it without locking.
+     */
+    private AudioMixerPushBufferStream[] streams
+        = new AudioMixerPushBufferStream[0];
+
+    /**
+     * The <tt>Object</tt> which synchronizes the access to {@link #streams}
+     * and {@link #thread}.
+     */
+    private final Object syncRoot = new Object();
+
+    /**
+     * The <tt>Thread</tt> which keeps the time of this instance or
+     * <tt>null</tt> if no stream is registered.
+     */
+    private Thread thread;
+
+    /**
+     * Initializes a new <tt>AudioMixerClock</tt> which is to tick at a
+     * specific interval.
+     *
+     * @param interval the interval in milliseconds at which the new instance
+     * is to tick
+     */
+    private AudioMixerClock(int interval)
+    {
+        if (interval <= 0)
+            throw new IllegalArgumentException("interval");
+
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+
+        batches = new Batch[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < batches.length; i++)
+            batches[i] = new Batch(i);
+    }
+
+    /**
+     * Registers a specific <tt>AudioMixerPushBufferStream</tt> with this
+     * instance so that it is mixed on every tick.
+     *
+     * @param stream the <tt>AudioMixerPushBufferStream</tt> to register
+     */
+    void register(AudioMixerPushBufferStream stream)
+    {
+        synchronized (syncRoot)
+        {
+            for (AudioMixerPushBufferStream s : streams)
+            {
+                if (s == stream)
+                    return;
+            }
+
+            AudioMixerPushBufferStream[] newStreams
+                = Arrays.copyOf(streams, streams.length + 1);
+
+            newStreams[streams.length] = stream;
+            streams = newStreams;
+
+            if (thread == null)
+            {
+                thread
+                    = new Thread(AudioMixerClock.class.getName())
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInThread();
+                        }
+                    };
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MAX_PRIORITY);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Keeps the time of this instance and mixes the registered streams on
+     * every tick until there are no more registered streams.
+     */
+    private void runInThread()
+    {
+        long nextTick = System.nanoTime() + intervalNanos;
+        boolean interrupted = false;
+
+        while (true)
+        {
+            AudioMixerPushBufferStream[] streams;
+
+            synchronized (syncRoot)
+            {
+                if (thread != Thread.currentThread())
+                    break;
+
+                streams = this.streams;
+                if (streams.length == 0)
+                {
+                    thread = null;
+                    break;
+                }
+            }
+
+            long sleep = nextTick - System.nanoTime();
+
+            if (sleep > 0)
+            {
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+                continue;
+            }
+
+            nextTick += intervalNanos;
+            /*
+             * If the clock has fallen behind by more than a tick (e.g. the
+             * process was suspended), do not try to catch up with a burst of
+             * ticks.
+             */
+            if (nextTick - System.nanoTime() < 0)
+            {
+                if (logger.isTraceEnabled())
+                    logger.trace("Skipping ticks which have been missed.");
+                nextTick = System.nanoTime() + intervalNanos;
+            }
+
+            tick(streams);
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Mixes a specific set of <tt>AudioMixerPushBufferStream</tt>s. The
+     * mixing is split into batches executed by {@link #executorService} so
+     * that the clock thread only keeps the time.
+     *
+     * @param streams the <tt>AudioMixerPushBufferStream</tt>s to mix
+     */
+    private void tick(AudioMixerPushBufferStream[] streams)
+    {
+        int batchCount = Math.min(streams.length, batches.length);
+
+        for (int i = 0; i < batchCount; i++)
+        {
+            Batch batch = batches[i];
+
+            if (batch.busy.compareAndSet(false, true))
+            {
+                batch.streams = streams;
+                try
+                {
+                    executorService.execute(batch);
+                }
+                catch (RejectedExecutionException ree)
+                {
+                    batch.streams = null;
+                    batch.busy.set(false);
+                    logger.error(
+                            "Failed to execute an audio mixing batch.",
+                            ree);
+                }
+            }
+            else if (logger.isTraceEnabled())
+            {
+                logger.trace(
+                        "Audio mixing batch " + i
+                            + " is still busy with the previous tick.");
+            }
+        }
+    }
+
+    /**
+     * Unregisters a specific <tt>AudioMixerPushBufferStream</tt> from this
+     * instance so that it is no longer mixed.
+     *
+     * @param stream the <tt>AudioMixerPushBufferStream</tt> to unregister
+     */
+    void unregister(AudioMixerPushBufferStream stream)
+    {
+        synchronized (syncRoot)
+        {
+            for (int i = 0; i < streams.length; i++)
+            {
+                if (streams[i] == stream)
+                {
+                    AudioMixerPushBufferStream[] newStreams
+                        = new AudioMixerPushBufferStream[streams.length - 1];
+
+                    System.arraycopy(streams, 0, newStreams, 0, i);
+                    System.arraycopy(
+                            streams, i + 1,
+                            newStreams, i,
+                            newStreams.length - i);
+                    streams = newStreams;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes a subset of the streams of a tick of this
+     * <tt>AudioMixerClock</tt>.
+     */
+    private class Batch
+        implements Runnable
+    {
+        /**
+         * The indicator which determines whether this <tt>Batch</tt> has been
+         * submitted for execution and has not completed yet.
+         */
+        final AtomicBoolean busy = new AtomicBoolean();
+
+        /**
+         * The index of this <tt>Batch</tt> in {@link #batches}.
+         */
+        private final int index;
+
+        /**
+         * The snapshot of {@link AudioMixerClock#streams} taken by the tick
+         * which submitted this <tt>Batch</tt> for execution. Written by the
+         * clock thread before the submission.
+         */
+        AudioMixerPushBufferStream[] streams;
+
+        /**
+         * Initializes a new <tt>Batch</tt> instance.
+         *
+         * @param index the index of the new instance in {@link #batches}
+         */
+        Batch(int index)
+        {
+            this.index = index;
+        }
+
+        @Override
+        public void run()
+        {
+            AudioMixerPushBufferStream[] streams = this.streams;
+
+            this.streams = null;
+            try
+            {
+                int step = batches.length;
+
+                for (int i = index; i < streams.length; i += step)
+                    streams[i].mix();
+            }
+            finally
+            {
+                busy.set(false);
+            }
+        }
+    }
+}
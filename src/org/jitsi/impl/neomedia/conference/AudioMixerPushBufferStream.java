@@ -18,6 +18,7 @@ package org.jitsi.impl.neomedia.conference;
 import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import javax.media.*;
 import javax.media.control.*;
@@ -85,6 +86,28 @@ class AudioMixerPushBufferStream
      */
     private AudioFormat lastReadInFormat;
 
+    /**
+     * The indexes in {@link InSampleDesc#inSamples} of the input streams which
+     * are not to be included in the mix being computed by
+     * {@link #mixMinus(InSampleDesc, int, AudioMixingPushBufferStream[])}.
+     * Cached in order to reduce garbage collection.
+     */
+    private int[] mixMinusExcluded;
+
+    /**
+     * The mix being computed by
+     * {@link #mixMinus(InSampleDesc, int, AudioMixingPushBufferStream[])}.
+     * Cached in order to reduce garbage collection.
+     */
+    private int[] mixMinusOutSamples;
+
+    /**
+     * The sum of all input streams computed by
+     * {@link #mixMinus(InSampleDesc, int, AudioMixingPushBufferStream[])}.
+     * Cached in order to reduce garbage collection.
+     */
+    private int[] mixMinusSum;
+
     /**
      * The <tt>AudioFormat</tt> of the data this instance outputs.
      */
@@ -107,6 +130,20 @@ class AudioMixerPushBufferStream
      */
     private long outStreamsGeneration;
 
+    /**
+     * The factor by which the measured level of an input stream decays per
+     * read when the stream is quieter than its level. Provides the hangover
+     * which keeps speakers mixed during short pauses.
+     */
+    private static final float LEVEL_DECAY = 0.95f;
+
+    /**
+     * The indexes in {@link InSampleDesc#inStreams} of the loudest input
+     * streams selected by {@link #selectLoudestInStreams(InSampleDesc)}.
+     * Cached in order to reduce garbage collection.
+     */
+    private int[] loudestInStreams;
+
     /**
      * The <tt>BufferTransferHandler</tt> through which this instance gets
      * notifications from its input <tt>SourceStream</tt>s that new data is
@@ -134,6 +171,20 @@ class AudioMixerPushBufferStream
             }
         };
 
+    /**
+     * The cached <tt>Buffer</tt> instance to be used during the execution of
+     * {@link #mix()} in order to reduce garbage collection.
+     */
+    private final Buffer mixBuffer = new Buffer();
+
+    /**
+     * The indicator which determines whether {@link #mix()} is executing.
+     * Prevents two batches of {@link AudioMixerClock} from mixing this
+     * instance at the same time when a batch of a tick overlaps with a batch
+     * of the next tick.
+     */
+    private final AtomicBoolean mixing = new AtomicBoolean();
+
     /**
      * A copy of {@link #outStreams} which will cause no
      * <tt>ConcurrentModificationException</tt> and which has been introduced to
@@ -200,6 +251,8 @@ class AudioMixerPushBufferStream
              * risks of deadlocks.
              */
             audioMixer.start(this, generation);
+            if (AudioMixer.MIXING_INTERVAL > 0)
+                AudioMixerClock.getInstance().register(this);
         }
     }
 
@@ -227,6 +280,19 @@ class AudioMixerPushBufferStream
         return true;
     }
 
+    /**
+     * Returns a specific <tt>short</tt> array, which has been pushed by this
+     * instance to an <tt>AudioMixingPushBufferStream</tt> and is no longer
+     * used by it, to the cache of this instance.
+     *
+     * @param shortArray the <tt>short</tt> array to return to the cache of this
+     * instance
+     */
+    void deallocateShortArray(short[] shortArray)
+    {
+        shortArrayCache.deallocateShortArray(shortArray);
+    }
+
     /**
      * Attempts to equalize the length in milliseconds of the buffering
      * performed by the <tt>inStreams</tt> in order to always read and mix
@@ -250,6 +316,30 @@ class AudioMixerPushBufferStream
                     ? CachingPushBufferStream.DEFAULT_BUFFER_LENGTH
                     : bufferControl.getBufferLength();
 
+            /*
+             * When mixing is driven by AudioMixerClock, every input stream
+             * (including the first one) is buffered and has to absorb the
+             * jitter of its arrivals relative to the ticks.
+             */
+            if (AudioMixer.MIXING_INTERVAL > 0)
+            {
+                bufferLength
+                    = Math.max(bufferLength, 2L * AudioMixer.MIXING_INTERVAL);
+
+                SourceStream inStream = inStreams[0].getInStream();
+
+                if (inStream instanceof CachingPushBufferStream)
+                {
+                    BufferControl inStreamBufferControl
+                        = (BufferControl)
+                            inStream.getControl(
+                                    BufferControl.class.getName());
+
+                    if (inStreamBufferControl != null)
+                        inStreamBufferControl.setBufferLength(bufferLength);
+                }
+            }
+
             for (int i = 1; i < inStreams.length; i++)
             {
                 BufferControl inStreamBufferControl
@@ -481,6 +571,9 @@ class AudioMixerPushBufferStream
                             maxInSampleCount,
                             inSampleDesc));
 
+        if (AudioMixer.MAX_MIXED_STREAMS > 0)
+            selectLoudestInStreams(inSampleDesc);
+
         buffer.setData(inSampleDesc);
         buffer.setLength(maxInSampleCount);
 
@@ -494,6 +587,182 @@ class AudioMixerPushBufferStream
             buffer.setTimeStamp(timeStamp);
     }
 
+    /**
+     * Reads the audio samples buffered by the input streams of this instance
+     * during a tick of {@link AudioMixerClock} and pushes them to the output
+     * <tt>AudioMixingPushBufferStream</tt>s of this instance for audio mixing.
+     * Any failure is logged rather than thrown so that it does not affect the
+     * mixing of the other <tt>AudioMixer</tt>s of the tick. If this instance
+     * is still being mixed during a previous tick, skips the current tick.
+     */
+    void mix()
+    {
+        if (!mixing.compareAndSet(false, true))
+        {
+            if (logger.isTraceEnabled())
+                logger.trace("Skipping a tick which overlaps the previous.");
+            return;
+        }
+        try
+        {
+            mixBuffer.setDiscard(false);
+            mixBuffer.setFlags(0);
+            mixBuffer.setLength(0);
+            mixBuffer.setOffset(0);
+
+            transferData(mixBuffer);
+        }
+        catch (Throwable t)
+        {
+            if (t instanceof ThreadDeath)
+                throw (ThreadDeath) t;
+            else
+                logger.error("Failed to mix audio.", t);
+        }
+        finally
+        {
+            mixing.set(false);
+        }
+    }
+
+    /**
+     * Mixes a specific set of input audio samples for each of a specific set
+     * of <tt>AudioMixingPushBufferStream</tt>s and pushes the mixes to them.
+     * All input streams are summed once and the mix of each
+     * <tt>AudioMixingPushBufferStream</tt> is derived from the sum by
+     * subtracting the input streams which are not to be included in it so the
+     * mixing takes time linear (rather than quadratic) in the number of
+     * participants.
+     *
+     * @param inSampleDesc the set of audio samples to be mixed
+     * @param maxInSampleCount the maximum number of audio samples available
+     * in <tt>inSamples</tt>
+     * @param outStreams the <tt>AudioMixingPushBufferStream</tt>s to push the
+     * mixes to
+     */
+    private void mixMinus(
+            InSampleDesc inSampleDesc,
+            int maxInSampleCount,
+            AudioMixingPushBufferStream[] outStreams)
+    {
+        short[][] inSamples = inSampleDesc.inSamples;
+        InStreamDesc[] inStreams = inSampleDesc.inStreams;
+        int[] sum = mixMinusSum;
+
+        if ((sum == null) || (sum.length < maxInSampleCount))
+            mixMinusSum = sum = new int[maxInSampleCount];
+        else
+            Arrays.fill(sum, 0, maxInSampleCount, 0);
+
+        for (short[] inStreamSamples : inSamples)
+        {
+            if (inStreamSamples == null)
+                continue;
+
+            int inStreamSampleCount
+                = Math.min(inStreamSamples.length, maxInSampleCount);
+
+            for (int i = 0; i < inStreamSampleCount; i++)
+                sum[i] += inStreamSamples[i];
+        }
+
+        int[] excluded = mixMinusExcluded;
+
+        if ((excluded == null) || (excluded.length < inSamples.length))
+            mixMinusExcluded = excluded = new int[inSamples.length];
+
+        CaptureDevice captureDevice = audioMixer.captureDevice;
+        long timeStamp = inSampleDesc.getTimeStamp();
+
+        for (AudioMixingPushBufferStream outStream : outStreams)
+        {
+            AudioMixingPushBufferDataSource outDataSource
+                = outStream.getDataSource();
+            boolean outDataSourceIsSendingDTMF
+                = (captureDevice instanceof AudioMixingPushBufferDataSource)
+                    ? outDataSource.isSendingDTMF()
+                    : false;
+            boolean outDataSourceIsMute = outDataSource.isMute();
+            int excludedCount = 0;
+            short[] toneSignal = null;
+            int outSampleCount = maxInSampleCount;
+
+            for (int i = 0; i < inSamples.length; i++)
+            {
+                InStreamDesc inStreamDesc = inStreams[i];
+                DataSource inDataSource
+                    = inStreamDesc.inDataSourceDesc.inDataSource;
+
+                if (outDataSourceIsSendingDTMF
+                        && (inDataSource == captureDevice))
+                {
+                    PushBufferStream inStream
+                        = (PushBufferStream) inStreamDesc.getInStream();
+                    AudioFormat inStreamFormat
+                        = (AudioFormat) inStream.getFormat();
+
+                    // Replace the input with the inband DTMF signal.
+                    toneSignal
+                        = outDataSource.getNextToneSignal(
+                                inStreamFormat.getSampleRate(),
+                                inStreamFormat.getSampleSizeInBits());
+                    if (outSampleCount < toneSignal.length)
+                        outSampleCount = toneSignal.length;
+                }
+                else if (!outDataSource.equals(inStreamDesc.getOutDataSource())
+                        && !(outDataSourceIsMute
+                                && (inDataSource == captureDevice)))
+                {
+                    continue;
+                }
+                if (inSamples[i] != null)
+                    excluded[excludedCount++] = i;
+            }
+
+            int[] outSamples = mixMinusOutSamples;
+
+            if ((outSamples == null) || (outSamples.length < outSampleCount))
+                mixMinusOutSamples = outSamples = new int[outSampleCount];
+
+            System.arraycopy(sum, 0, outSamples, 0, maxInSampleCount);
+            if (outSampleCount > maxInSampleCount)
+            {
+                Arrays.fill(
+                        outSamples, maxInSampleCount, outSampleCount,
+                        0);
+            }
+            for (int e = 0; e < excludedCount; e++)
+            {
+                short[] inStreamSamples = inSamples[excluded[e]];
+                int inStreamSampleCount
+                    = Math.min(inStreamSamples.length, maxInSampleCount);
+
+                for (int i = 0; i < inStreamSampleCount; i++)
+                    outSamples[i] -= inStreamSamples[i];
+            }
+            if (toneSignal != null)
+            {
+                for (int i = 0; i < toneSignal.length; i++)
+                    outSamples[i] += toneSignal[i];
+            }
+
+            short[] mix = shortArrayCache.allocateShortArray(outSampleCount);
+
+            for (int i = 0; i < outSampleCount; i++)
+            {
+                int outSample = outSamples[i];
+
+                if (outSample > Short.MAX_VALUE)
+                    outSample = Short.MAX_VALUE;
+                else if (outSample < Short.MIN_VALUE)
+                    outSample = Short.MIN_VALUE;
+                mix[i] = (short) outSample;
+            }
+
+            outStream.setMix(mix, outSampleCount, timeStamp);
+        }
+    }
+
     /**
      * Reads audio samples from the input <tt>PullBufferStream</tt>s of this
      * instance and converts them to a specific output <tt>AudioFormat</tt>. An
@@ -772,6 +1041,18 @@ class AudioMixerPushBufferStream
         Buffer buffer = inSampleDesc.getBuffer();
         int maxInSampleCount = 0;
         short[][] inSamples = inSampleDesc.inSamples;
+        /*
+         * When mixing is driven by AudioMixerClock, read no more than the
+         * samples of a single tick from each (buffering) input stream.
+         */
+        int tickSampleCount
+            = (AudioMixer.MIXING_INTERVAL > 0)
+                ? (int)
+                    (outFormat.getSampleRate()
+                        * AudioMixer.MIXING_INTERVAL
+                        / 1000)
+                    * Math.max(outFormat.getChannels(), 1)
+                : 0;
 
         for (int i = 0; i < inStreams.length; i++)
         {
@@ -786,7 +1067,11 @@ class AudioMixerPushBufferStream
                 buffer.setOffset(0);
 
                 readInPushBufferStream(
-                        inStreamDesc, outFormat, maxInSampleCount,
+                        inStreamDesc,
+                        outFormat,
+                        (tickSampleCount > 0)
+                            ? tickSampleCount
+                            : maxInSampleCount,
                         buffer);
 
                 int sampleCount;
@@ -889,6 +1174,8 @@ class AudioMixerPushBufferStream
         }
         if (stop)
         {
+            if (AudioMixer.MIXING_INTERVAL > 0)
+                AudioMixerClock.getInstance().unregister(this);
             /*
              * The stop method of AudioMixer is potentially blocking so it has
              * been moved out of synchronized blocks in order to reduce the
@@ -985,6 +1272,110 @@ class AudioMixerPushBufferStream
                 inSampleDesc.getTimeStamp());
     }
 
+    /**
+     * Updates the levels of the input streams of a specific set of audio
+     * samples and drops the samples of all but the
+     * {@link AudioMixer#MAX_MIXED_STREAMS} loudest of them so that they are
+     * not mixed. Notifies {@link #audioMixer} when the set of mixed input
+     * streams changes.
+     *
+     * @param inSampleDesc the set of audio samples read from the input streams
+     */
+    private void selectLoudestInStreams(InSampleDesc inSampleDesc)
+    {
+        short[][] inSamples = inSampleDesc.inSamples;
+        InStreamDesc[] inStreams = inSampleDesc.inStreams;
+        int maxMixedStreams
+            = Math.min(AudioMixer.MAX_MIXED_STREAMS, inStreams.length);
+        int[] loudest = loudestInStreams;
+        int loudestCount = 0;
+
+        if ((loudest == null) || (loudest.length < maxMixedStreams))
+            loudestInStreams = loudest = new int[maxMixedStreams];
+
+        for (int i = 0; i < inStreams.length; i++)
+        {
+            InStreamDesc inStreamDesc = inStreams[i];
+            short[] samples = inSamples[i];
+            float level = inStreamDesc.level * LEVEL_DECAY;
+
+            if (samples != null)
+            {
+                // The mean square of the samples.
+                long energy = 0;
+
+                for (short sample : samples)
+                    energy += sample * sample;
+
+                float sampleLevel = ((float) energy) / samples.length;
+
+                if (level < sampleLevel)
+                    level = sampleLevel;
+            }
+            inStreamDesc.level = level;
+
+            // Insert the input stream into the loudest sorted by level.
+            if (level <= 0)
+                continue;
+
+            int j = loudestCount;
+
+            if (j == maxMixedStreams)
+            {
+                if (level <= inStreams[loudest[j - 1]].level)
+                    continue;
+                j--;
+            }
+            else
+            {
+                loudestCount++;
+            }
+            for (; (j > 0) && (inStreams[loudest[j - 1]].level < level); j--)
+                loudest[j] = loudest[j - 1];
+            loudest[j] = i;
+        }
+
+        boolean changed = false;
+
+        for (int i = 0; i < inStreams.length; i++)
+        {
+            InStreamDesc inStreamDesc = inStreams[i];
+            boolean mixed = false;
+
+            for (int j = 0; j < loudestCount; j++)
+            {
+                if (loudest[j] == i)
+                {
+                    mixed = true;
+                    break;
+                }
+            }
+            if (!mixed && (inSamples[i] != null))
+            {
+                shortArrayCache.deallocateShortArray(inSamples[i]);
+                inSamples[i] = null;
+            }
+            if (inStreamDesc.mixed != mixed)
+            {
+                inStreamDesc.mixed = mixed;
+                changed = true;
+            }
+        }
+
+        if (changed)
+        {
+            List<DataSource> mixedInDataSources
+                = new ArrayList<DataSource>(loudestCount);
+
+            for (int j = 0; j < loudestCount; j++)
+            {
+                mixedInDataSources.add(
+                        inStreams[loudest[j]].inDataSourceDesc.inDataSource);
+            }
+            audioMixer.mixedInDataSourcesChanged(mixedInDataSources);
+        }
+    }
+
     /**
      * Sets the <tt>SourceStream</tt>s (in the form of <tt>InStreamDesc</tt>)
      * from which this instance is to read audio samples and push them to the
@@ -1028,7 +1419,12 @@ class AudioMixerPushBufferStream
 
                 if (!(inStream instanceof PushBufferStream))
                     continue;
-                if (!skippedForTransferHandler)
+                /*
+                 * When mixing is driven by AudioMixerClock, no input stream
+                 * causes the transfer of data so all of them are buffered.
+                 */
+                if (!skippedForTransferHandler
+                        && (AudioMixer.MIXING_INTERVAL <= 0))
                 {
                     skippedForTransferHandler = true;
                     continue;
@@ -1110,7 +1506,11 @@ class AudioMixerPushBufferStream
         if ((inStreams == null) || (inStreams.length <= 0))
             return;
 
-        boolean transferHandlerIsSet = false;
+        /*
+         * When mixing is driven by AudioMixerClock, none of the input streams
+         * is to cause the transfer of data from this instance.
+         */
+        boolean transferHandlerIsSet = (AudioMixer.MIXING_INTERVAL > 0);
 
         for (InStreamDesc inStreamDesc : inStreams)
         {
@@ -1202,8 +1602,15 @@ class AudioMixerPushBufferStream
                                         this.outStreams.size()]);
             }
         }
-        for (AudioMixingPushBufferStream outStream : outStreams)
-            setInSamples(outStream, inSampleDesc, maxInSampleCount);
+        if (AudioMixer.MIX_MINUS)
+        {
+            mixMinus(inSampleDesc, maxInSampleCount, outStreams);
+        }
+        else
+        {
+            for (AudioMixingPushBufferStream outStream : outStreams)
+                setInSamples(outStream, inSampleDesc, maxInSampleCount);
+        }
 
         /*
          * The input samples have already been delivered to the output streams
@@ -106,6 +106,18 @@ public class AudioMixingPushBufferStream
      */
     private int maxInSampleCount;
 
+    /**
+     * The audio samples mixed by {@link #audioMixerStream} in mix-minus mode
+     * (i.e. with {@link AudioMixer#MIX_MINUS}) which are to be read by this
+     * instance. Returned to the cache of {@link #audioMixerStream} once read.
+     */
+    private short[] mix;
+
+    /**
+     * The number of audio samples in {@link #mix}.
+     */
+    private int mixSampleCount;
+
     /**
      * The audio samples output by the last invocation of
      * {@link #mix(int[][], AudioFormat, int)}. Cached in order to reduce
@@ -351,16 +363,22 @@ public class AudioMixingPushBufferStream
     {
         short[][] inSamples;
         int maxInSampleCount;
+        short[] mix;
+        int mixSampleCount;
         long timeStamp;
 
         synchronized (readSyncRoot)
         {
             inSamples = this.inSamples;
             maxInSampleCount = this.maxInSampleCount;
+            mix = this.mix;
+            mixSampleCount = this.mixSampleCount;
             timeStamp = this.timeStamp;
 
             this.inSamples = null;
             this.maxInSampleCount = 0;
+            this.mix = null;
+            this.mixSampleCount = 0;
             // For the purposes of debugging, we want to have the last known
             // value of the field timeStamp at all times. The reset of the
             // values of the fields inSamples and/or maxInSampleCount should
@@ -368,17 +386,27 @@ public class AudioMixingPushBufferStream
             // this.timeStamp = Buffer.TIME_UNKNOWN;
         }
 
-        if ((inSamples == null)
+        AudioFormat outFormat = getFormat();
+        short[] outSamples;
+        int outSampleCount;
+
+        if (mix != null)
+        {
+            outSamples = mix;
+            outSampleCount = mixSampleCount;
+        }
+        else if ((inSamples == null)
                 || (inSamples.length == 0)
                 || (maxInSampleCount <= 0))
         {
             buffer.setDiscard(true);
             return;
         }
-
-        AudioFormat outFormat = getFormat();
-        short[] outSamples = mix(inSamples, outFormat, maxInSampleCount);
-        int outSampleCount = Math.min(maxInSampleCount, outSamples.length);
+        else
+        {
+            outSamples = mix(inSamples, outFormat, maxInSampleCount);
+            outSampleCount = Math.min(maxInSampleCount, outSamples.length);
+        }
 
         if (Format.byteArray.equals(outFormat.getDataType()))
         {
@@ -419,6 +447,9 @@ public class AudioMixingPushBufferStream
             throw new UnsupportedOperationException(
                     "AudioMixingPushBufferStream.read(Buffer)");
         }
+
+        if (mix != null)
+            audioMixerStream.deallocateShortArray(mix);
     }
 
     /**
@@ -448,6 +479,38 @@ public class AudioMixingPushBufferStream
             transferHandler.transferData(this);
     }
 
+    /**
+     * Sets the audio samples already mixed for this instance by
+     * {@link #audioMixerStream} (in mix-minus mode) and notifies the
+     * <tt>BufferTransferHandler</tt> that new data is available. The ownership
+     * of <tt>mix</tt> is transferred to this instance which returns it to
+     * <tt>audioMixerStream</tt> once it has been read (or replaced).
+     *
+     * @param mix the mixed audio samples
+     * @param mixSampleCount the number of audio samples in <tt>mix</tt>
+     * @param timeStamp the time stamp of <tt>mix</tt> to be reported in the
+     * specified <tt>Buffer</tt> when data is read from this instance
+     */
+    void setMix(short[] mix, int mixSampleCount, long timeStamp)
+    {
+        short[] oldMix;
+
+        synchronized (readSyncRoot)
+        {
+            oldMix = this.mix;
+            this.mix = mix;
+            this.mixSampleCount = mixSampleCount;
+            this.timeStamp = timeStamp;
+        }
+        if (oldMix != null)
+            audioMixerStream.deallocateShortArray(oldMix);
+
+        BufferTransferHandler transferHandler = this.transferHandler;
+
+        if (transferHandler != null)
+            transferHandler.transferData(this);
+    }
+
     /**
      * Implements
      * {@link PushBufferStream#setTransferHandler(BufferTransferHandler)}. Sets
@@ -47,6 +47,20 @@ class InStreamDesc
      */
     public final InDataSourceDesc inDataSourceDesc;
 
+    /**
+     * The energy of the audio of {@link #inStream} as measured by the
+     * <tt>AudioMixerPushBufferStream</tt> which reads it in order to mix only
+     * the loudest input streams. Decays while the stream is quiet.
+     */
+    float level;
+
+    /**
+     * The indicator which determines whether the audio of {@link #inStream}
+     * is mixed (or skipped because it is not among the loudest input
+     * streams).
+     */
+    boolean mixed = true;
+
     /**
      * The <tt>SourceStream</tt> for which additional information is described
      * by this instance.
@@ -306,6 +306,39 @@ public class AudioMixerMediaDevice
             audioMixer
                 = new AudioMixer(device.createCaptureDevice())
                 {
+                    @Override
+                    protected void mixedInDataSourcesChanged(
+                            Collection<DataSource> mixedInDataSources)
+                    {
+                        AudioMixerMediaDeviceSession deviceSession
+                            = AudioMixerMediaDevice.this.deviceSession;
+
+                        if (deviceSession == null)
+                            return;
+
+                        /*
+                         * Advertise only the ReceiveStreams which are in the
+                         * mix as contributing sources.
+                         */
+                        Set<Long> mixedSSRCs = new HashSet<Long>();
+
+                        for (DataSource dataSource : mixedInDataSources)
+                        {
+                            if (dataSource
+                                    instanceof ReceiveStreamPushBufferDataSource)
+                            {
+                                ReceiveStream receiveStream
+                                    = ((ReceiveStreamPushBufferDataSource)
+                                            dataSource)
+                                        .getReceiveStream();
+
+                                mixedSSRCs.add(
+                                        0xFFFFFFFFL & receiveStream.getSSRC());
+                            }
+                        }
+                        deviceSession.setMixedSSRCs(mixedSSRCs);
+                    }
+
                     @Override
                     protected void connect(
                             DataSource dataSource,
@@ -558,6 +591,13 @@ public class AudioMixerMediaDevice
             mediaStreamMediaDeviceSessions
                 = new LinkedList<MediaStreamMediaDeviceSession>();
 
+        /**
+         * The SSRCs of the <tt>ReceiveStream</tt>s which are in the mix if the
+         * <tt>AudioMixer</tt> mixes only the loudest input streams or
+         * <tt>null</tt> if all <tt>ReceiveStream</tt>s are in the mix.
+         */
+        private Set<Long> mixedSSRCs;
+
         /**
          * The <tt>VolumeControl</tt> which is to control the volume (level) of
          * the audio (to be) played back by this instance.
@@ -683,6 +723,41 @@ public class AudioMixerMediaDevice
             addSSRC(0xFFFFFFFFL & receiveStream.getSSRC());
         }
 
+        /**
+         * Returns the list of SSRC identifiers of the <tt>ReceiveStream</tt>s
+         * which are contributing audio to the mix produced by the associated
+         * <tt>AudioMixer</tt>. If the <tt>AudioMixer</tt> mixes only the
+         * loudest input streams, the <tt>ReceiveStream</tt>s which are not in
+         * the mix are not listed.
+         *
+         * @return a <tt>long[]</tt> array of SSRC identifiers that are
+         * currently contributing to the mix
+         */
+        @Override
+        public long[] getRemoteSSRCList()
+        {
+            long[] ssrcList = super.getRemoteSSRCList();
+            Set<Long> mixedSSRCs = this.mixedSSRCs;
+
+            if ((ssrcList == null) || (mixedSSRCs == null))
+                return ssrcList;
+
+            long[] mixedSSRCList = new long[ssrcList.length];
+            int mixedSSRCCount = 0;
+
+            for (long ssrc : ssrcList)
+            {
+                if (mixedSSRCs.contains(ssrc))
+                    mixedSSRCList[mixedSSRCCount++] = ssrc;
+            }
+            if (mixedSSRCCount == 0)
+                return null;
+            else if (mixedSSRCCount == mixedSSRCList.length)
+                return mixedSSRCList;
+            else
+                return Arrays.copyOf(mixedSSRCList, mixedSSRCCount);
+        }
+
         /**
          * Creates the <tt>DataSource</tt> that this instance is to read
          * captured media from. Since this is the <tt>MediaDeviceSession</tt> of
@@ -924,6 +999,27 @@ public class AudioMixerMediaDevice
             //make sure we no longer cache levels for that stream.
             audioLevelCache.removeLevel(ssrc);
         }
+
+        /**
+         * Sets the SSRCs of the <tt>ReceiveStream</tt>s which are in the mix
+         * produced by the associated <tt>AudioMixer</tt> and fires a
+         * <tt>PropertyChangeEvent</tt> for the <tt>SSRC_LIST</tt> property if
+         * the list of contributing SSRCs changes as a result.
+         *
+         * @param mixedSSRCs the SSRCs of the <tt>ReceiveStream</tt>s which are
+         * in the mix
+         */
+        void setMixedSSRCs(Set<Long> mixedSSRCs)
+        {
+            long[] oldValue = getRemoteSSRCList();
+
+            this.mixedSSRCs = mixedSSRCs;
+
+            long[] newValue = getRemoteSSRCList();
+
+            if (!Arrays.equals(oldValue, newValue))
+                firePropertyChange(SSRC_LIST, oldValue, newValue);
+        }
     }
 
     /**
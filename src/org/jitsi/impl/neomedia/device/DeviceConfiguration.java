@@ -362,8 +362,13 @@ public class DeviceConfiguration
                     this);
         }
 
-        registerCustomRenderers();
-        fixRenderers();
+        // Nothing is played back in headless mode so the Renderers (some of
+        // which load native libraries) are left alone.
+        if (!MediaServiceImpl.isHeadless())
+        {
+            registerCustomRenderers();
+            fixRenderers();
+        }
 
         /*
          * Adds this instance as a PropertyChangeListener to all DeviceSystems
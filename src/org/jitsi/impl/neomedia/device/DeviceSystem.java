@@ -148,6 +148,14 @@ public abstract class DeviceSystem
      */
     public static void initializeDeviceSystems()
     {
+        // There are no devices to detect in headless mode.
+        if (MediaServiceImpl.isHeadless())
+        {
+            if (logger.isInfoEnabled())
+                logger.info("Not initializing devices in headless mode");
+            return;
+        }
+
         /*
          * Detect the audio capture devices unless the configuration explicitly
          * states that they are to not be detected.
@@ -183,6 +191,9 @@ public abstract class DeviceSystem
      */
     public static void initializeDeviceSystems(MediaType mediaType)
     {
+        if (MediaServiceImpl.isHeadless())
+            return;
+
         /*
          * The list of supported DeviceSystem implementations if hard-coded. The
          * order of the classes is significant and represents a decreasing
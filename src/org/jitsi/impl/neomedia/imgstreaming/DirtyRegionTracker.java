@@ -0,0 +1,532 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.imgstreaming;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Keeps the last of a sequence of video frames of a fixed size and determines
+ * which square tiles of each new frame differ from it. Only the pixels of the
+ * tiles which have changed are copied and only they need to be converted
+ * into the raw bytes to be handed downstream. A frame without changed tiles
+ * may be skipped altogether.
+ * <p>
+ * The pixels are kept as ARGB <tt>int</tt>s and are converted into raw bytes
+ * in the order A, R, G, B which is the order of the bytes written by the
+ * native screen grabber.
+ * </p>
+ */
+public class DirtyRegionTracker
+{
+    /**
+     * The default width and height in pixels of the tiles.
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * The mask of the alpha component which is to be added to the pixels of
+     * the last frame when they are converted into raw bytes. Non-zero for
+     * images which do not have an alpha channel.
+     */
+    private int alpha;
+
+    /**
+     * The number of tiles in a row of tiles.
+     */
+    private final int columns;
+
+    /**
+     * Whether each of the tiles (in row-major order) has changed in the last
+     * frame.
+     */
+    private final boolean[] dirty;
+
+    /**
+     * The number of elements of {@link #dirty} which are <tt>true</tt>.
+     */
+    private int dirtyTileCount;
+
+    /**
+     * The height in pixels of the frames.
+     */
+    private final int height;
+
+    /**
+     * The pixels of the last frame or <tt>null</tt> if no frame has been
+     * tracked yet (or the last one has been forgotten).
+     */
+    private int[] pixels;
+
+    /**
+     * The number of rows of tiles.
+     */
+    private final int rows;
+
+    /**
+     * The row of pixels to read into the pixels of images which do not
+     * expose them as <tt>int</tt>s.
+     */
+    private int[] scanline;
+
+    /**
+     * The width and height in pixels of the tiles.
+     */
+    private final int tileSize;
+
+    /**
+     * The width in pixels of the frames.
+     */
+    private final int width;
+
+    /**
+     * Initializes a new <tt>DirtyRegionTracker</tt> for frames of a specific
+     * size with tiles of {@link #DEFAULT_TILE_SIZE}.
+     *
+     * @param width the width in pixels of the frames
+     * @param height the height in pixels of the frames
+     */
+    public DirtyRegionTracker(int width, int height)
+    {
+        this(width, height, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Initializes a new <tt>DirtyRegionTracker</tt> for frames of a specific
+     * size with tiles of a specific size.
+     *
+     * @param width the width in pixels of the frames
+     * @param height the height in pixels of the frames
+     * @param tileSize the width and height in pixels of the tiles
+     */
+    public DirtyRegionTracker(int width, int height, int tileSize)
+    {
+        if (width <= 0)
+            throw new IllegalArgumentException("width");
+        if (height <= 0)
+            throw new IllegalArgumentException("height");
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("tileSize");
+
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+
+        columns = (width + tileSize - 1) / tileSize;
+        rows = (height + tileSize - 1) / tileSize;
+        dirty = new boolean[columns * rows];
+    }
+
+    /**
+     * Marks all tiles dirty if no frame has been tracked yet (or the last one
+     * has been forgotten) and allocates the pixels of the last frame.
+     *
+     * @return <tt>true</tt> if all tiles have been marked dirty; otherwise,
+     * <tt>false</tt> and all tiles have been marked clean
+     */
+    private boolean beginUpdate()
+    {
+        if (pixels == null)
+        {
+            pixels = new int[width * height];
+            Arrays.fill(dirty, true);
+            dirtyTileCount = dirty.length;
+            return true;
+        }
+        else
+        {
+            Arrays.fill(dirty, false);
+            dirtyTileCount = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Forgets the last frame so that all tiles of the next one are considered
+     * changed.
+     */
+    public void clear()
+    {
+        pixels = null;
+    }
+
+    /**
+     * Gets the smallest rectangle which contains all tiles changed in the last
+     * frame.
+     *
+     * @return the smallest rectangle which contains all tiles changed in the
+     * last frame or <tt>null</tt> if no tile has changed
+     */
+    public Rectangle getDirtyBounds()
+    {
+        Rectangle bounds = null;
+
+        for (Rectangle region : getDirtyRegions())
+        {
+            if (bounds == null)
+                bounds = region;
+            else
+                bounds.add(region);
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the regions changed in the last frame i.e. the horizontal runs of
+     * changed tiles in each row of tiles (clipped to the frame).
+     *
+     * @return the regions changed in the last frame in top-to-bottom,
+     * left-to-right order
+     */
+    public List<Rectangle> getDirtyRegions()
+    {
+        List<Rectangle> regions = new ArrayList<>();
+
+        if (dirtyTileCount == 0)
+            return regions;
+
+        for (int row = 0; row < rows; row++)
+        {
+            int y = row * tileSize;
+            int h = Math.min(tileSize, height - y);
+
+            for (int column = 0; column < columns;)
+            {
+                if (dirty[row * columns + column])
+                {
+                    int end = column + 1;
+
+                    while (end < columns && dirty[row * columns + end])
+                        end++;
+
+                    int x = column * tileSize;
+
+                    regions.add(
+                            new Rectangle(
+                                    x, y,
+                                    Math.min(end * tileSize, width) - x, h));
+                    column = end;
+                }
+                else
+                    column++;
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Gets the number of tiles changed in the last frame.
+     *
+     * @return the number of tiles changed in the last frame
+     */
+    public int getDirtyTileCount()
+    {
+        return dirtyTileCount;
+    }
+
+    /**
+     * Gets the height in pixels of the frames.
+     *
+     * @return the height in pixels of the frames
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Gets the total number of tiles of a frame.
+     *
+     * @return the total number of tiles of a frame
+     */
+    public int getTileCount()
+    {
+        return dirty.length;
+    }
+
+    /**
+     * Gets the width in pixels of the frames.
+     *
+     * @return the width in pixels of the frames
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Determines whether a specific tile has changed in the last frame.
+     *
+     * @param column the column of the tile
+     * @param row the row of the tile
+     * @return <tt>true</tt> if the specified tile has changed in the last
+     * frame; otherwise, <tt>false</tt>
+     */
+    public boolean isDirty(int column, int row)
+    {
+        if (column < 0 || column >= columns)
+            throw new IndexOutOfBoundsException("column");
+        if (row < 0 || row >= rows)
+            throw new IndexOutOfBoundsException("row");
+
+        return dirty[row * columns + column];
+    }
+
+    /**
+     * Tracks a specific ARGB <tt>BufferedImage</tt> as the next frame. The
+     * pixels of images of type <tt>TYPE_INT_ARGB</tt> and
+     * <tt>TYPE_INT_RGB</tt> (such as the ones captured by
+     * <tt>java.awt.Robot</tt>) are read directly from their rasters.
+     *
+     * @param image the <tt>BufferedImage</tt> to track as the next frame. Must
+     * have the size of the frames.
+     * @return the number of tiles of <tt>image</tt> which differ from the last
+     * frame
+     */
+    public int update(BufferedImage image)
+    {
+        if (image.getWidth() != width || image.getHeight() != height)
+            throw new IllegalArgumentException("image");
+
+        int type = image.getType();
+        int alpha
+            = (type == BufferedImage.TYPE_INT_RGB) ? 0xFF000000 : 0;
+        WritableRaster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+        boolean all = beginUpdate();
+
+        // An image without an alpha channel compares equal to an image with an
+        // opaque one but the pixels are kept without the alpha component.
+        if (this.alpha != alpha)
+        {
+            this.alpha = alpha;
+            if (!all)
+            {
+                Arrays.fill(dirty, true);
+                dirtyTileCount = dirty.length;
+                all = true;
+            }
+        }
+
+        if ((type == BufferedImage.TYPE_INT_ARGB
+                    || type == BufferedImage.TYPE_INT_RGB)
+                && (dataBuffer instanceof DataBufferInt)
+                && (sampleModel instanceof SinglePixelPackedSampleModel))
+        {
+            int[] data = ((DataBufferInt) dataBuffer).getData();
+            int stride
+                = ((SinglePixelPackedSampleModel) sampleModel)
+                    .getScanlineStride();
+            int offset
+                = dataBuffer.getOffset()
+                    - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX();
+
+            for (int y = 0; y < height; y++, offset += stride)
+                updateScanline(y, data, offset, all);
+        }
+        else
+        {
+            if (scanline == null)
+                scanline = new int[width];
+            for (int y = 0; y < height; y++)
+            {
+                image.getRGB(0, y, width, 1, scanline, 0, width);
+                updateScanline(y, scanline, 0, all);
+            }
+        }
+        return dirtyTileCount;
+    }
+
+    /**
+     * Tracks specific raw bytes as the next frame.
+     *
+     * @param data the raw bytes of the next frame in the order A, R, G, B
+     * @param offset the offset in <tt>data</tt> at which the raw bytes of the
+     * next frame begin
+     * @return the number of tiles of the next frame which differ from the
+     * last frame
+     */
+    public int update(byte[] data, int offset)
+    {
+        if (offset < 0 || data.length - offset < width * height * 4)
+            throw new IllegalArgumentException("data");
+
+        boolean all = beginUpdate();
+
+        if (alpha != 0)
+        {
+            alpha = 0;
+            if (!all)
+            {
+                Arrays.fill(dirty, true);
+                dirtyTileCount = dirty.length;
+                all = true;
+            }
+        }
+
+        int[] pixels = this.pixels;
+
+        for (int y = 0, i = 0; y < height; y++)
+        {
+            int tileRow = (y / tileSize) * columns;
+
+            for (int column = 0; column < columns; column++)
+            {
+                int tile = tileRow + column;
+                int end = i + Math.min(tileSize, width - column * tileSize);
+                boolean changed = all || dirty[tile];
+
+                for (; i < end; i++, offset += 4)
+                {
+                    int pixel
+                        = ((data[offset] & 0xFF) << 24)
+                            | ((data[offset + 1] & 0xFF) << 16)
+                            | ((data[offset + 2] & 0xFF) << 8)
+                            | (data[offset + 3] & 0xFF);
+
+                    if (pixels[i] != pixel)
+                    {
+                        pixels[i] = pixel;
+                        changed = true;
+                    }
+                }
+                if (changed && !dirty[tile])
+                {
+                    dirty[tile] = true;
+                    dirtyTileCount++;
+                }
+            }
+        }
+        return dirtyTileCount;
+    }
+
+    /**
+     * Compares a specific row of pixels of the next frame to the last frame
+     * and copies the segments of the tiles which have changed.
+     *
+     * @param y the index of the row of pixels
+     * @param data the array which contains the row of pixels
+     * @param offset the offset in <tt>data</tt> at which the row of pixels
+     * begins
+     * @param all <tt>true</tt> to copy the whole row without comparing it
+     */
+    private void updateScanline(int y, int[] data, int offset, boolean all)
+    {
+        int[] pixels = this.pixels;
+        int i = y * width;
+
+        if (all)
+        {
+            System.arraycopy(data, offset, pixels, i, width);
+            return;
+        }
+
+        int tileRow = (y / tileSize) * columns;
+
+        for (int column = 0; column < columns; column++)
+        {
+            int tile = tileRow + column;
+            int length = Math.min(tileSize, width - column * tileSize);
+
+            /*
+             * The rows of the tile above y have been found equal to the last
+             * frame so a changed tile is only to be copied from y downwards.
+             */
+            if (dirty[tile])
+            {
+                System.arraycopy(data, offset, pixels, i, length);
+            }
+            else
+            {
+                for (int j = 0; j < length; j++)
+                {
+                    if (data[offset + j] != pixels[i + j])
+                    {
+                        System.arraycopy(
+                                data, offset + j,
+                                pixels, i + j,
+                                length - j);
+                        dirty[tile] = true;
+                        dirtyTileCount++;
+                        break;
+                    }
+                }
+            }
+            offset += length;
+            i += length;
+        }
+    }
+
+    /**
+     * Converts the last frame into raw bytes in the order A, R, G, B.
+     *
+     * @param output the array to write the raw bytes into. If it is
+     * <tt>null</tt> or too small, a new one is allocated.
+     * @param dirtyOnly <tt>true</tt> to write the tiles changed in the last
+     * frame only i.e. if <tt>output</tt> already contains the raw bytes of the
+     * frame before it; <tt>false</tt> to write all tiles
+     * @return the array the raw bytes have been written into i.e.
+     * <tt>output</tt> or a new array if <tt>output</tt> is not large enough
+     */
+    public byte[] write(byte[] output, boolean dirtyOnly)
+    {
+        if (pixels == null)
+            throw new IllegalStateException("pixels");
+
+        int size = width * height * 4;
+
+        if (output == null || output.length < size)
+        {
+            output = new byte[size];
+            dirtyOnly = false;
+        }
+        if (dirtyOnly && dirtyTileCount == 0)
+            return output;
+
+        int[] pixels = this.pixels;
+        int alpha = this.alpha;
+
+        for (int y = 0, i = 0; y < height; y++)
+        {
+            int tileRow = (y / tileSize) * columns;
+
+            for (int column = 0; column < columns; column++)
+            {
+                int length = Math.min(tileSize, width - column * tileSize);
+
+                if (dirtyOnly && !dirty[tileRow + column])
+                {
+                    i += length;
+                    continue;
+                }
+                for (int end = i + length, off = i * 4; i < end; i++)
+                {
+                    int pixel = pixels[i] | alpha;
+
+                    output[off++] = (byte) (pixel >>> 24);
+                    output[off++] = (byte) (pixel >>> 16);
+                    output[off++] = (byte) (pixel >>> 8);
+                    output[off++] = (byte) pixel;
+                }
+            }
+        }
+        return output;
+    }
+}
@@ -43,8 +43,23 @@ public class ImgStreamingUtils
                                                int height,
                                                int type)
     {
-        double scaleWidth = width / ((double)src.getWidth());
-        double scaleHeight = height / ((double)src.getHeight());
+        return getScaledImage(src, new BufferedImage(width, height, type));
+    }
+
+    /**
+     * Scales a <tt>BufferedImage</tt> into another (existing) one so that the
+     * latter may be reused for consecutive images.
+     *
+     * @param src source image
+     * @param dst the <tt>BufferedImage</tt> to scale <tt>src</tt> into. Its
+     * size and type specify the scaled image.
+     * @return <tt>dst</tt>
+     */
+    public static BufferedImage getScaledImage(BufferedImage src,
+                                               BufferedImage dst)
+    {
+        double scaleWidth = dst.getWidth() / ((double)src.getWidth());
+        double scaleHeight = dst.getHeight() / ((double)src.getHeight());
         AffineTransform tx = new AffineTransform();
 
         // Skip rescaling if input and output size are the same.
@@ -54,7 +69,6 @@ public class ImgStreamingUtils
 
         AffineTransformOp op
             = new AffineTransformOp(tx, AffineTransformOp.TYPE_BILINEAR);
-        BufferedImage dst = new BufferedImage(width, height, type);
 
         return op.filter(src, dst);
     }
@@ -112,38 +112,40 @@ public abstract class AbstractVideoPullBufferStream
 
                     doRead(buffer);
 
-                    if (!buffer.isDiscard())
+                    /*
+                     * A discarded Buffer (e.g. a frame which is the same as
+                     * the previous one) has taken a frame interval as well and
+                     * reading again right away would only busy-wait.
+                     */
+                    boolean interrupted = false;
+
+                    while (true)
                     {
-                        boolean interrupted = false;
+                        // Sleep to respect the frame rate as much as possible.
+                        long sleep
+                            = minimumVideoFrameInterval
+                                - (System.currentTimeMillis() - startTime);
 
-                        while (true)
+                        if (sleep > 0)
                         {
-                            // Sleep to respect the frame rate as much as possible.
-                            long sleep
-                                = minimumVideoFrameInterval
-                                    - (System.currentTimeMillis() - startTime);
-
-                            if (sleep > 0)
+                            try
                             {
-                                try
-                                {
-                                    Thread.sleep(sleep);
-                                }
-                                catch (InterruptedException ie)
-                                {
-                                    interrupted = true;
-                                }
+                                Thread.sleep(sleep);
                             }
-                            else
+                            catch (InterruptedException ie)
                             {
-                                // Yield a little bit to not use all the whole CPU.
-                                Thread.yield();
-                                break;
+                                interrupted = true;
                             }
                         }
-                        if (interrupted)
-                            Thread.currentThread().interrupt();
+                        else
+                        {
+                            // Yield a little bit to not use all the whole CPU.
+                            Thread.yield();
+                            break;
+                        }
                     }
+                    if (interrupted)
+                        Thread.currentThread().interrupt();
 
                     // We've executed #doRead(Buffer).
                     return;
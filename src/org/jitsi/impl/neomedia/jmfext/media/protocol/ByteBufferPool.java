@@ -15,9 +15,6 @@
  */
 package org.jitsi.impl.neomedia.jmfext.media.protocol;
 
-import java.lang.ref.*;
-import java.util.*;
-
 import org.jitsi.impl.neomedia.codec.*;
 import org.jitsi.impl.neomedia.codec.video.*;
 
@@ -25,31 +22,27 @@ import org.jitsi.impl.neomedia.codec.video.*;
  * Represents a pool of <tt>ByteBuffer</tt>s which reduces the allocations and
  * deallocations of <tt>ByteBuffer</tt>s in the Java heap and of native memory
  * in the native heap.
+ * <p>
+ * The native memory is pooled by the {@link NativeMemoryArena} (shared by all
+ * <tt>ByteBufferPool</tt>s) in size classes with thread-local caches so that
+ * getting a buffer neither contends on the pool nor searches it.
+ * </p>
  *
  * @author Lyubomir Marinov
  */
 public class ByteBufferPool
 {
-    /**
-     * The <tt>ByteBuffer</tt>s which are managed by this
-     * <tt>ByteBufferPool</tt>.
-     */
-    private final List<PooledByteBuffer> buffers
-        = new ArrayList<PooledByteBuffer>();
-
     /**
      * Drains this <tt>ByteBufferPool</tt> i.e. frees the <tt>ByteBuffer</tt>s
-     * that it contains.
+     * that it contains. The freed native memory is kept by the
+     * <tt>NativeMemoryArena</tt> (within its bounds) for reuse by any
+     * <tt>ByteBufferPool</tt> so there is nothing to drain. Trimming the
+     * shared arena here would defeat the pooling of the other live streams;
+     * the memory it keeps may be returned to the native heap explicitly with
+     * {@link NativeMemoryArena#trim()}.
      */
-    public synchronized void drain()
+    public void drain()
     {
-        for (Iterator<PooledByteBuffer> i = buffers.iterator(); i.hasNext();)
-        {
-            PooledByteBuffer buffer = i.next();
-
-            i.remove();
-            buffer.doFree();
-        }
     }
 
     /**
@@ -62,91 +55,12 @@ public class ByteBufferPool
      * data into and which is capable of receiving at least <tt>capacity</tt>
      * number of bytes
      */
-    public synchronized ByteBuffer getBuffer(int capacity)
+    public ByteBuffer getBuffer(int capacity)
     {
         // XXX Pad with FF_INPUT_BUFFER_PADDING_SIZE or hell will break loose.
         capacity += FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE;
 
-        ByteBuffer buffer = null;
-
-        for (Iterator<PooledByteBuffer> i = buffers.iterator(); i.hasNext();)
-        {
-            ByteBuffer aBuffer = i.next();
-
-            if (aBuffer.getCapacity() >= capacity)
-            {
-                i.remove();
-                buffer = aBuffer;
-                break;
-            }
-        }
-        if (buffer == null)
-            buffer = new PooledByteBuffer(capacity, this);
-        return buffer;
-    }
-
-    /**
-     * Returns a specific <tt>ByteBuffer</tt> into this pool of
-     * <tt>ByteBuffer</tt>s.
-     *
-     * @param buffer the <tt>ByteBuffer</tt> to be returned into this pool of
-     * <tt>ByteBuffer</tt>s
-     */
-    private synchronized void returnBuffer(PooledByteBuffer buffer)
-    {
-        if (!buffers.contains(buffer))
-            buffers.add(buffer);
-    }
-
-    /**
-     * Implements a <tt>ByteBuffer</tt> which is pooled in a
-     * <tt>ByteBufferPool</tt> in order to reduce the numbers of allocations
-     * and deallocations of <tt>ByteBuffer</tt>s and their respective native
-     * memory.
-     */
-    private static class PooledByteBuffer
-        extends ByteBuffer
-    {
-        /**
-         * The <tt>ByteBufferPool</tt> in which this instance is pooled and in
-         * which it should returns upon {@link #free()}.
-         */
-        private final WeakReference<ByteBufferPool> pool;
-
-        public PooledByteBuffer(int capacity, ByteBufferPool pool)
-        {
-            super(capacity);
-
-            this.pool = new WeakReference<ByteBufferPool>(pool);
-        }
-
-        /**
-         * Invokes {@link ByteBuffer#free()} i.e. does not make any attempt to
-         * return this instance to the associated <tt>ByteBufferPool</tt> and
-         * frees the native memory represented by this instance.
-         */
-        void doFree()
-        {
-            super.free();
-        }
-
-        /**
-         * {@inheritDoc}
-         *
-         * Returns this <tt>ByteBuffer</tt> and, respectively, the native memory
-         * that it represents to the associated <tt>ByteBufferPool</tt>. If the
-         * <tt>ByteBufferPool</tt> has already been finalized by the garbage
-         * collector, frees the native memory represented by this instance.
-         */
-        @Override
-        public void free()
-        {
-            ByteBufferPool pool = this.pool.get();
-
-            if (pool == null)
-                doFree();
-            else
-                pool.returnBuffer(this);
-        }
+        // ByteBuffer#free() returns the native memory to the arena.
+        return new ByteBuffer(capacity);
     }
 }
@@ -27,6 +27,7 @@ import org.jitsi.impl.neomedia.codec.*;
 import org.jitsi.impl.neomedia.codec.video.*;
 import org.jitsi.impl.neomedia.imgstreaming.*;
 import org.jitsi.impl.neomedia.jmfext.media.protocol.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -45,22 +46,84 @@ public class ImageStream
      */
     private static final Logger logger = Logger.getLogger(ImageStream.class);
 
+    /**
+     * The default value of {@link #MAX_UNCHANGED_INTERVAL_PNAME}.
+     */
+    private static final int DEFAULT_MAX_UNCHANGED_INTERVAL = 1000;
+
+    /**
+     * The name of the property which specifies the maximum interval in
+     * milliseconds during which frames which are the same as the previous one
+     * are discarded instead of handed downstream. A frame is handed downstream
+     * at least once per interval so that, for example, a receiver which has
+     * just joined or has requested a key frame is not kept waiting. A value of
+     * zero disables the discarding of unchanged frames.
+     */
+    public static final String MAX_UNCHANGED_INTERVAL_PNAME
+        = ImageStream.class.getName() + ".MAX_UNCHANGED_INTERVAL";
+
     /**
      * The pool of <tt>ByteBuffer</tt>s this instances is using to optimize the
      * allocations and deallocations of <tt>ByteBuffer</tt>s.
      */
     private final ByteBufferPool byteBufferPool = new ByteBufferPool();
 
+    /**
+     * The raw bytes of the last frame captured by this instance. Reused for
+     * consecutive frames and copied into the native buffers handed downstream
+     * when the output format is an <tt>AVFrameFormat</tt>. Never handed
+     * downstream itself.
+     */
+    private byte[] capture;
+
+    /**
+     * Whether the last frame was captured as a <tt>BufferedImage</tt> i.e.
+     * {@link #capture} has been written by {@link #dirtyRegionTracker} rather
+     * than the native grabber.
+     */
+    private boolean captureFromImage = false;
+
     /**
      * Desktop interaction (screen capture, key press, ...).
      */
     private DesktopInteract desktopInteract = null;
 
+    /**
+     * The <tt>DirtyRegionTracker</tt> which determines the regions of the
+     * screen which have changed since the last frame.
+     */
+    private DirtyRegionTracker dirtyRegionTracker;
+
     /**
      * Index of display that we will capture from.
      */
     private int displayIndex = -1;
 
+    /**
+     * The time in milliseconds at which the last frame which has not been
+     * discarded has been captured.
+     */
+    private long lastFrameTime;
+
+    /**
+     * The array of the <tt>Buffer</tt> into which the last frame which has
+     * not been discarded has been written when the output format is not an
+     * <tt>AVFrameFormat</tt>. If the next <tt>Buffer</tt> carries the same
+     * array, only the tiles which have changed since are written into it.
+     */
+    private byte[] lastOutput;
+
+    /**
+     * The value of {@link #MAX_UNCHANGED_INTERVAL_PNAME}.
+     */
+    private int maxUnchangedInterval = DEFAULT_MAX_UNCHANGED_INTERVAL;
+
+    /**
+     * The <tt>BufferedImage</tt> into which the images captured with
+     * <tt>java.awt.Robot</tt> are scaled to the output size.
+     */
+    private BufferedImage scaledScreen;
+
     /**
      * Sequence number.
      */
@@ -90,9 +153,91 @@ public class ImageStream
         super(dataSource, formatControl);
     }
 
+    /**
+     * Captures the screen into {@link #capture} and determines how much of it
+     * has changed since the last frame.
+     *
+     * @param dim the dimension of the video
+     * @return the number of tiles of the screen which have changed since the
+     * last frame or <tt>-1</tt> if the screen could not be captured
+     */
+    private int captureScreen(Dimension dim)
+    {
+        int width = dim.width;
+        int height = dim.height;
+        int length = width * height * 4;
+
+        if ((capture == null)
+                || (capture.length < length)
+                || (dirtyRegionTracker == null)
+                || (dirtyRegionTracker.getWidth() != width)
+                || (dirtyRegionTracker.getHeight() != height))
+        {
+            if ((capture == null) || (capture.length < length))
+                capture = new byte[length];
+            dirtyRegionTracker = new DirtyRegionTracker(width, height);
+        }
+
+        /* get desktop screen via native grabber if available */
+        if (desktopInteract.captureScreen(
+                displayIndex,
+                x, y, width, height,
+                capture))
+        {
+            captureFromImage = false;
+            return dirtyRegionTracker.update(capture, 0);
+        }
+
+        if (logger.isDebugEnabled())
+            logger.debug("Failed to grab screen with the native grabber.");
+
+        /* OK native grabber failed or is not available,
+         * try with AWT Robot and convert it to the right format
+         *
+         * Note that it is very memory consuming since memory are allocated
+         * to capture screen (via Robot) and then for converting to raw bytes
+         * Moreover support for multiple display has not yet been investigated
+         *
+         * Normally not of our supported platform (Windows (x86, x64),
+         * Linux (x86, x86-64), Mac OS X (i386, x86-64, ppc) and
+         * FreeBSD (x86, x86-64) should go here.
+         */
+        BufferedImage screen = desktopInteract.captureScreen();
+
+        if (screen == null)
+            return -1;
+
+        if ((screen.getWidth() != width) || (screen.getHeight() != height))
+        {
+            if ((scaledScreen == null)
+                    || (scaledScreen.getWidth() != width)
+                    || (scaledScreen.getHeight() != height))
+            {
+                scaledScreen
+                    = new BufferedImage(
+                            width, height,
+                            BufferedImage.TYPE_INT_ARGB);
+            }
+            screen = ImgStreamingUtils.getScaledImage(screen, scaledScreen);
+        }
+
+        /*
+         * Only the tiles which have changed are converted into raw bytes
+         * unless capture has been overwritten by the native grabber since.
+         */
+        int dirtyTiles = dirtyRegionTracker.update(screen);
+
+        capture = dirtyRegionTracker.write(capture, captureFromImage);
+        captureFromImage = true;
+        return dirtyTiles;
+    }
+
     /**
      * Blocks and reads into a <tt>Buffer</tt> from this
-     * <tt>PullBufferStream</tt>.
+     * <tt>PullBufferStream</tt>. A frame which is the same as the previous
+     * one is discarded (i.e. the <tt>Buffer</tt> is marked discarded) unless
+     * {@link #MAX_UNCHANGED_INTERVAL_PNAME} has elapsed since the last frame
+     * which has not been discarded.
      *
      * @param buffer the <tt>Buffer</tt> this <tt>PullBufferStream</tt> is to
      * read into
@@ -119,7 +264,25 @@ public class ImageStream
                 buffer.setFormat(format);
         }
 
-        if(format instanceof AVFrameFormat)
+        Dimension size = ((VideoFormat) format).getSize();
+        int dirtyTiles = captureScreen(size);
+
+        if (dirtyTiles < 0)
+        {
+            /*
+             * This can happen when we disconnect a monitor from computer
+             * before or during grabbing.
+             */
+            throw new IOException("Failed to grab screen.");
+        }
+
+        boolean discard = isUnchanged(dirtyTiles);
+
+        if (discard)
+        {
+            // The downstream keeps the previous frame.
+        }
+        else if(format instanceof AVFrameFormat)
         {
             Object o = buffer.getData();
             AVFrame frame;
@@ -133,43 +296,69 @@ public class ImageStream
             }
 
             AVFrameFormat avFrameFormat = (AVFrameFormat) format;
-            Dimension size = avFrameFormat.getSize();
             ByteBuffer data = readScreenNative(size);
 
-            if(data != null)
-            {
-                if (frame.avpicture_fill(data, avFrameFormat) < 0)
-                {
-                    data.free();
-                    throw new IOException("avpicture_fill");
-                }
-            }
-            else
+            if (frame.avpicture_fill(data, avFrameFormat) < 0)
             {
-                /*
-                 * This can happen when we disconnect a monitor from computer
-                 * before or during grabbing.
-                 */
-                throw new IOException("Failed to grab screen.");
+                data.free();
+                throw new IOException("avpicture_fill");
             }
         }
         else
         {
-            byte[] bytes = (byte[]) buffer.getData();
-            Dimension size = ((VideoFormat) format).getSize();
-
-            bytes = readScreen(bytes, size);
-
-            buffer.setData(bytes);
+            Object o = buffer.getData();
+            byte[] data = (o instanceof byte[]) ? (byte[]) o : null;
+
+            /*
+             * The Buffer owns its array so the frame is written into it rather
+             * than shared. The whole frame is written unless the array already
+             * contains the previous frame.
+             */
+            data
+                = dirtyRegionTracker.write(
+                        data,
+                        (data != null) && (data == lastOutput));
+            lastOutput = data;
+
+            buffer.setData(data);
             buffer.setOffset(0);
-            buffer.setLength(bytes.length);
+            buffer.setLength(size.width * size.height * 4);
         }
 
         buffer.setHeader(null);
         buffer.setTimeStamp(System.nanoTime());
         buffer.setSequenceNumber(seqNo);
         buffer.setFlags(Buffer.FLAG_SYSTEM_TIME | Buffer.FLAG_LIVE_DATA);
-        seqNo++;
+        if (discard)
+            buffer.setDiscard(true);
+        else
+            seqNo++;
+    }
+
+    /**
+     * Determines whether the frame which has just been captured is to be
+     * discarded because it is the same as the previous one.
+     *
+     * @param dirtyTiles the number of tiles of the frame which has just been
+     * captured which have changed since the previous one
+     * @return <tt>true</tt> if the frame which has just been captured is to be
+     * discarded; otherwise, <tt>false</tt>
+     */
+    private boolean isUnchanged(int dirtyTiles)
+    {
+        long now = System.currentTimeMillis();
+
+        if ((dirtyTiles == 0)
+                && (maxUnchangedInterval > 0)
+                && (now - lastFrameTime < maxUnchangedInterval))
+        {
+            return true;
+        }
+        else
+        {
+            lastFrameTime = now;
+            return false;
+        }
     }
 
     /**
@@ -182,102 +371,30 @@ public class ImageStream
      */
     public byte[] readScreen(byte[] output, Dimension dim)
     {
-        VideoFormat format = (VideoFormat) getFormat();
-        Dimension formatSize = format.getSize();
-        int width = formatSize.width;
-        int height = formatSize.height;
-        BufferedImage scaledScreen = null;
-        BufferedImage screen = null;
-        byte data[] = null;
-        int size = width * height * 4;
-
-        // If output is not large enough, enlarge it.
-        if ((output == null) || (output.length < size))
-            output = new byte[size];
-
-        /* get desktop screen via native grabber if available */
-        if(desktopInteract.captureScreen(
-                displayIndex,
-                x, y, dim.width, dim.height,
-                output))
-        {
-            return output;
-        }
-
-        System.out.println("failed to grab with native! " + output.length);
+        if (captureScreen(dim) < 0)
+            return null;
 
-        /* OK native grabber failed or is not available,
-         * try with AWT Robot and convert it to the right format
-         *
-         * Note that it is very memory consuming since memory are allocated
-         * to capture screen (via Robot) and then for converting to raw bytes
-         * Moreover support for multiple display has not yet been investigated
-         *
-         * Normally not of our supported platform (Windows (x86, x64),
-         * Linux (x86, x86-64), Mac OS X (i386, x86-64, ppc) and
-         * FreeBSD (x86, x86-64) should go here.
-         */
-        screen = desktopInteract.captureScreen();
-
-        if(screen != null)
-        {
-            /* convert to ARGB BufferedImage */
-            scaledScreen
-                = ImgStreamingUtils.getScaledImage(
-                        screen,
-                        width, height,
-                        BufferedImage.TYPE_INT_ARGB);
-            /* get raw bytes */
-            data = ImgStreamingUtils.getImageBytes(scaledScreen, output);
-        }
-
-        screen = null;
-        scaledScreen = null;
-        return data;
+        // The frame captured here will not be in the array of the next
+        // Buffer read by this stream.
+        lastOutput = null;
+        return dirtyRegionTracker.write(output, false);
     }
 
     /**
-     * Read screen and store result in native buffer.
+     * Copies the last frame captured by this instance into a native buffer.
      *
      * @param dim dimension of the video
-     * @return true if success, false otherwise
+     * @return the native buffer which contains the last frame captured by
+     * this instance
      */
     private ByteBuffer readScreenNative(Dimension dim)
     {
-        int size
-            = dim.width * dim.height * 4 + FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE;
+        int length = dim.width * dim.height * 4;
+        int size = length + FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE;
         ByteBuffer data = byteBufferPool.getBuffer(size);
 
         data.setLength(size);
-
-        /* get desktop screen via native grabber */
-        boolean b;
-
-        try
-        {
-            b
-                = desktopInteract.captureScreen(
-                        displayIndex,
-                        x, y, dim.width, dim.height,
-                        data.getPtr(), data.getLength());
-        }
-        catch (Throwable t)
-        {
-            if (t instanceof ThreadDeath)
-            {
-                throw (ThreadDeath) t;
-            }
-            else
-            {
-                b = false;
-//                logger.error("Failed to grab screen!", t);
-            }
-        }
-        if (!b)
-        {
-            data.free();
-            data = null;
-        }
+        FFmpeg.memcpy(data.getPtr(), capture, 0, length);
         return data;
     }
 
@@ -315,6 +432,17 @@ public class ImageStream
     {
         super.start();
 
+        maxUnchangedInterval
+            = ConfigUtils.getInt(
+                    LibJitsi.getConfigurationService(),
+                    MAX_UNCHANGED_INTERVAL_PNAME,
+                    DEFAULT_MAX_UNCHANGED_INTERVAL);
+        lastFrameTime = 0;
+        // The first frame after a restart is to be handed downstream whole.
+        if (dirtyRegionTracker != null)
+            dirtyRegionTracker.clear();
+        lastOutput = null;
+
         if(desktopInteract == null)
         {
             try
@@ -17,10 +17,19 @@
 package org.jitsi.impl.neomedia.jmfext.media.protocol.ivffile;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 
 /**
  * This class represent an IVF file and provide an API to get the vp8 video
  * frames it contains.
+ * <p>
+ * The file is memory-mapped and its frames are indexed once upon
+ * initialization so that they may be accessed by index without any system
+ * call or copying (see {@link #getFrame(int)}) which allows a single
+ * <tt>IVFFileReader</tt> to be shared by many readers such as
+ * {@link IVFReplayer}.
+ * </p>
  *
  * @author Thomas Kuntz
  */
@@ -31,6 +40,44 @@ public class IVFFileReader
      */
     private static int IVF_HEADER_LENGTH = 32;
 
+    /**
+     * The length in bytes of the header of an IVF frame.
+     */
+    private static final int IVF_FRAME_HEADER_LENGTH = 12;
+
+    /**
+     * The read-only mapped content of the IVF file in little-endian byte
+     * order.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The number of frames in the IVF file.
+     */
+    private int frameCount;
+
+    /**
+     * The index of the frame to be returned by the next call to
+     * {@link #getNextFrame(VP8Frame, boolean)}.
+     */
+    private int frameIndex;
+
+    /**
+     * The lengths in bytes of the frames of the IVF file.
+     */
+    private int[] frameLengths = new int[0];
+
+    /**
+     * The offsets in {@link #buffer} of the data of the frames of the IVF
+     * file.
+     */
+    private int[] frameOffsets = new int[0];
+
+    /**
+     * The timestamps of the frames of the IVF file.
+     */
+    private long[] frameTimestamps = new long[0];
+
     /**
      * A <tt>IVFHeader</tt> representing the global header of the IVF
      * file which this <tt>IVFFileReader</tt> will read.
@@ -39,11 +86,6 @@ public class IVFFileReader
      */
     private IVFHeader header;
 
-    /**
-     * The <tt>RandomAccessFile</tt> used to read the IVF file.
-     */
-    private RandomAccessFile stream;
-
     /**
      * Initialize a new instance of <tt>IVFFileReader</tt> that will read
      * the IVF file located by <tt>filePath</tt>.
@@ -56,8 +98,21 @@ public class IVFFileReader
 
         try
         {
-            stream = new RandomAccessFile(filePath,"r");
-            stream.seek(IVF_HEADER_LENGTH);
+            RandomAccessFile file = new RandomAccessFile(filePath, "r");
+
+            try
+            {
+                FileChannel channel = file.getChannel();
+
+                buffer
+                    = channel
+                        .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                            .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            finally
+            {
+                file.close();
+            }
         }
         catch (FileNotFoundException e) 
         {
@@ -67,6 +122,151 @@ public class IVFFileReader
         {
             e.printStackTrace();
         }
+
+        if (buffer != null)
+            indexFrames();
+    }
+
+    /**
+     * Gets the data of a specific frame of the IVF file as a read-only slice
+     * of the mapped file i.e. without copying it.
+     *
+     * @param index the index of the frame to get
+     * @return a read-only <tt>ByteBuffer</tt> which contains exactly the data
+     * of the frame with the specified <tt>index</tt>
+     */
+    public ByteBuffer getFrame(int index)
+    {
+        ByteBuffer frame = buffer.asReadOnlyBuffer();
+        int offset = getFrameOffset(index);
+
+        frame.limit(offset + getFrameLength(index));
+        frame.position(offset);
+        return frame.slice();
+    }
+
+    /**
+     * Gets the number of frames in the IVF file. Unlike
+     * {@link IVFHeader#getNumberOfFramesInFile()}, it is determined from the
+     * content of the file.
+     *
+     * @return the number of frames in the IVF file
+     */
+    public int getFrameCount()
+    {
+        return frameCount;
+    }
+
+    /**
+     * Gets the length in bytes of a specific frame of the IVF file.
+     *
+     * @param index the index of the frame
+     * @return the length in bytes of the frame with the specified
+     * <tt>index</tt>
+     */
+    public int getFrameLength(int index)
+    {
+        if (index < 0 || index >= frameCount)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return frameLengths[index];
+    }
+
+    /**
+     * Gets the offset of the data of a specific frame of the IVF file in the
+     * <tt>ByteBuffer</tt> returned by {@link #getMappedBuffer()}.
+     *
+     * @param index the index of the frame
+     * @return the offset of the data of the frame with the specified
+     * <tt>index</tt>
+     */
+    public int getFrameOffset(int index)
+    {
+        if (index < 0 || index >= frameCount)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return frameOffsets[index];
+    }
+
+    /**
+     * Gets the timestamp of a specific frame of the IVF file in the timebase
+     * of the file.
+     *
+     * @param index the index of the frame
+     * @return the timestamp of the frame with the specified <tt>index</tt>
+     */
+    public long getFrameTimestamp(int index)
+    {
+        if (index < 0 || index >= frameCount)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return frameTimestamps[index];
+    }
+
+    /**
+     * Gets a new read-only view of the whole mapped IVF file with its own
+     * position and limit so that it may be read by a single thread without
+     * synchronization.
+     *
+     * @return a new read-only view of the whole mapped IVF file
+     */
+    public ByteBuffer getMappedBuffer()
+    {
+        return buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Determines the offsets, lengths and timestamps of the frames of the
+     * mapped IVF file. A truncated last frame is ignored.
+     */
+    private void indexFrames()
+    {
+        int headerLength = header.getHeaderLength();
+        int offset
+            = (headerLength >= IVF_HEADER_LENGTH)
+                ? headerLength
+                : IVF_HEADER_LENGTH;
+        int limit = buffer.limit();
+        // The number of frames declared by the header is merely a hint.
+        int capacity
+            = Math.min(
+                    Math.max(header.getNumberOfFramesInFile(), 16),
+                    limit / IVF_FRAME_HEADER_LENGTH + 1);
+
+        frameLengths = new int[capacity];
+        frameOffsets = new int[capacity];
+        frameTimestamps = new long[capacity];
+        while (offset + IVF_FRAME_HEADER_LENGTH <= limit)
+        {
+            int frameLength = buffer.getInt(offset);
+
+            offset += IVF_FRAME_HEADER_LENGTH;
+            if (frameLength < 0 || frameLength > limit - offset)
+                break;
+
+            if (frameCount == frameOffsets.length)
+            {
+                capacity = frameCount * 2;
+
+                int[] newLengths = new int[capacity];
+                int[] newOffsets = new int[capacity];
+                long[] newTimestamps = new long[capacity];
+
+                System.arraycopy(frameLengths, 0, newLengths, 0, frameCount);
+                System.arraycopy(frameOffsets, 0, newOffsets, 0, frameCount);
+                System.arraycopy(
+                        frameTimestamps, 0,
+                        newTimestamps, 0,
+                        frameCount);
+                frameLengths = newLengths;
+                frameOffsets = newOffsets;
+                frameTimestamps = newTimestamps;
+            }
+            frameLengths[frameCount] = frameLength;
+            frameOffsets[frameCount] = offset;
+            frameTimestamps[frameCount]
+                = buffer.getLong(offset - IVF_FRAME_HEADER_LENGTH + 4);
+            frameCount++;
+
+            offset += frameLength;
+        }
     }
 
     /**
@@ -107,21 +307,26 @@ public class IVFFileReader
      * and start over the reading of the file.
      * @throws IOException if an error occur during the read, of if EOF is reached.
      */
-    public void getNextFrame(VP8Frame frame,boolean loopFile) throws IOException
+    public synchronized void getNextFrame(VP8Frame frame,boolean loopFile)
+        throws IOException
     {
-        if(loopFile && (stream.getFilePointer() >= stream.length()))
+        if (buffer == null)
+            throw new IOException("The IVF file could not be mapped.");
+        if(loopFile && (frameIndex >= frameCount))
         {
-            stream.seek(header.getHeaderLength());
+            frameIndex = 0;
         }
+        if (frameIndex >= frameCount)
+            throw new EOFException();
 
-        byte[] data;
-        int frameSizeInBytes;
-        long timestamp;
+        int frameSizeInBytes = frameLengths[frameIndex];
+        long timestamp = frameTimestamps[frameIndex];
+        byte[] data = new byte[frameSizeInBytes];
+        ByteBuffer src = buffer.duplicate();
 
-        frameSizeInBytes = changeEndianness(stream.readInt());
-        timestamp = changeEndianness(stream.readLong());
-        data = new byte[frameSizeInBytes];
-        stream.read(data);
+        src.position(frameOffsets[frameIndex]);
+        src.get(data);
+        frameIndex++;
 
         frame.set(timestamp, frameSizeInBytes, data);
     }
@@ -0,0 +1,709 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.jmfext.media.protocol.ivffile;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.media.*;
+import javax.media.Buffer;
+import javax.media.format.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.codec.video.vp8.*;
+import org.jitsi.impl.neomedia.rtp.replay.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.service.neomedia.codec.*;
+import org.jitsi.service.neomedia.format.*;
+import org.jitsi.util.*;
+
+/**
+ * Replays the VP8 frames of a single (shared, memory-mapped)
+ * {@link IVFFileReader} into any number of <tt>VideoMediaStream</tt>s (or,
+ * more generally, {@link ReplayTarget}s) at the same time. Unlike
+ * {@link IVFMediaDevice}, the frames do not go through an FMJ capture device,
+ * <tt>Processor</tt> and <tt>RTPManager</tt> per stream: each stream has its
+ * own {@link Packetizer} which is fed the frames directly and its output is
+ * turned into RTP packets with the SSRC of the stream and sequence numbers and
+ * RTP timestamps which start at random values.
+ * <p>
+ * Each stream has independent timing: it starts with the first frame of the
+ * file when it is added (delayed by a random fraction of a frame interval so
+ * that the streams do not send their frames at the same instants) and loops
+ * over the file on its own schedule. The streams are served by a fixed number
+ * of daemon threads which take the streams from a <tt>DelayQueue</tt> when
+ * their next frames are due so a single stream is never served by two threads
+ * at the same time.
+ * </p>
+ */
+public class IVFReplayer
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>IVFReplayer</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(IVFReplayer.class);
+
+    /**
+     * The maximum time in milliseconds for which a thread of an
+     * <tt>IVFReplayer</tt> waits for a due stream before it checks whether
+     * it is to continue.
+     */
+    private static final long IDLE_TIMEOUT = 1000;
+
+    /**
+     * The maximum length in bytes of the RTP packets sent by
+     * <tt>IVFReplayer</tt> i.e. the RTP header, the VP8 payload descriptor and
+     * the maximum payload of <tt>Packetizer</tt> with some headroom.
+     */
+    private static final int MAX_PACKET_LENGTH = 1500;
+
+    /**
+     * The length in bytes of the RTP headers written by <tt>IVFReplayer</tt>.
+     */
+    private static final int RTP_HEADER_LENGTH = 12;
+
+    /**
+     * The RTP clock rate of VP8.
+     */
+    private static final long VP8_CLOCK_RATE = 90000;
+
+    /**
+     * The <tt>Random</tt> which generates the initial sequence numbers and RTP
+     * timestamps of the streams and the phases of their timing.
+     */
+    private static final Random random = new Random();
+
+    /**
+     * The number of frames sent so far by all streams.
+     */
+    private final AtomicLong framesSent = new AtomicLong();
+
+    /**
+     * The duration in nanoseconds of an iteration of the replay of the file.
+     */
+    private final long loopDuration;
+
+    /**
+     * The indicator which determines whether the streams start over when they
+     * reach the end of the file.
+     */
+    private volatile boolean loop = true;
+
+    /**
+     * The number of RTP packets sent so far by all streams.
+     */
+    private final AtomicLong packetsSent = new AtomicLong();
+
+    /**
+     * The (shared) <tt>IVFFileReader</tt> which provides the frames to be
+     * replayed.
+     */
+    private final IVFFileReader reader;
+
+    /**
+     * The streams which wait for their next frames to be due.
+     */
+    private final DelayQueue<Stream> dueStreams = new DelayQueue<>();
+
+    /**
+     * The streams into which the file is replayed.
+     */
+    private final List<Stream> streams = new CopyOnWriteArrayList<>();
+
+    /**
+     * The number of threads which serve {@link #dueStreams}.
+     */
+    private final int threadCount;
+
+    /**
+     * The threads which serve {@link #dueStreams} or <tt>null</tt> if this
+     * instance is not started. Each thread exits when it notices that it is
+     * no longer an element of this array rather than being interrupted
+     * because an interrupt would close the <tt>DatagramChannel</tt> of a
+     * <tt>ReplayTarget</tt> which is sending.
+     */
+    private volatile Thread[] threads;
+
+    /**
+     * The duration in nanoseconds of a unit of the timestamps of the frames
+     * of the file.
+     */
+    private final double timebase;
+
+    /**
+     * Initializes a new <tt>IVFReplayer</tt> instance which is to replay the
+     * frames of a specific <tt>IVFFileReader</tt>.
+     *
+     * @param reader the <tt>IVFFileReader</tt> which provides the frames to
+     * replay
+     * @param threadCount the number of threads which are to send the frames
+     * of all streams or <tt>0</tt> for the number of available processors
+     */
+    public IVFReplayer(IVFFileReader reader, int threadCount)
+    {
+        if (threadCount < 0)
+            throw new IllegalArgumentException("threadCount");
+
+        this.reader = reader;
+        this.threadCount
+            = (threadCount == 0)
+                ? Runtime.getRuntime().availableProcessors()
+                : threadCount;
+
+        IVFHeader header = reader.getHeader();
+        int framerate = header.getFramerate();
+
+        timebase
+            = (framerate == 0)
+                ? 0
+                : 1000000000D * header.getTimeScale() / framerate;
+
+        int frameCount = reader.getFrameCount();
+
+        if (frameCount == 0)
+        {
+            loopDuration = 0;
+        }
+        else
+        {
+            long duration
+                = reader.getFrameTimestamp(frameCount - 1)
+                    - reader.getFrameTimestamp(0);
+
+            // Leave the average frame interval between the iterations.
+            loopDuration
+                = (long)
+                    ((duration
+                                + ((frameCount > 1)
+                                        ? (double) duration / (frameCount - 1)
+                                        : 1))
+                            * timebase);
+        }
+    }
+
+    /**
+     * Adds a <tt>MediaStream</tt> into which the file is to be replayed. The
+     * RTP packets are injected into the stream with its local SSRC and the
+     * payload type which it has mapped to VP8. May be invoked while
+     * replaying.
+     *
+     * @param stream the <tt>MediaStream</tt> into which the file is to be
+     * replayed
+     * @throws IllegalArgumentException if <tt>stream</tt> has no payload type
+     * mapped to VP8
+     */
+    public void addStream(MediaStream stream)
+    {
+        byte payloadType = -1;
+
+        for (Map.Entry<Byte, MediaFormat> e
+                : stream.getDynamicRTPPayloadTypes().entrySet())
+        {
+            if (Constants.VP8.equalsIgnoreCase(e.getValue().getEncoding()))
+            {
+                payloadType = e.getKey();
+                break;
+            }
+        }
+        if (payloadType < 0)
+            throw new IllegalArgumentException("stream");
+
+        addStream(
+                new Stream(
+                        new MediaStreamReplayTarget(stream),
+                        stream,
+                        (int) stream.getLocalSourceID(),
+                        payloadType));
+    }
+
+    /**
+     * Adds a specific <tt>Stream</tt> to {@link #streams} with a random phase.
+     *
+     * @param stream the <tt>Stream</tt> to add
+     */
+    private void addStream(Stream stream)
+    {
+        if (reader.getFrameCount() == 0)
+            return;
+
+        long frameInterval
+            = (reader.getFrameCount() > 1)
+                ? loopDuration / reader.getFrameCount()
+                : 0;
+
+        stream.startTime
+            = System.nanoTime()
+                + ((frameInterval > 0)
+                        ? (long) (random.nextDouble() * frameInterval)
+                        : 0);
+        stream.due = stream.startTime;
+        streams.add(stream);
+        dueStreams.add(stream);
+    }
+
+    /**
+     * Adds a <tt>ReplayTarget</tt> to which the file is to be replayed with a
+     * specific SSRC and RTP payload type. May be invoked while replaying.
+     *
+     * @param target the <tt>ReplayTarget</tt> to which the file is to be
+     * replayed
+     * @param ssrc the SSRC of the RTP packets sent to <tt>target</tt>
+     * @param payloadType the RTP payload type of the packets sent to
+     * <tt>target</tt>
+     */
+    public void addTarget(ReplayTarget target, int ssrc, byte payloadType)
+    {
+        addStream(new Stream(target, null, ssrc, payloadType));
+    }
+
+    /**
+     * Gets the number of frames sent so far by all streams.
+     *
+     * @return the number of frames sent so far by all streams
+     */
+    public long getFramesSent()
+    {
+        return framesSent.get();
+    }
+
+    /**
+     * Gets the number of RTP packets sent so far by all streams.
+     *
+     * @return the number of RTP packets sent so far by all streams
+     */
+    public long getPacketsSent()
+    {
+        return packetsSent.get();
+    }
+
+    /**
+     * Stops replaying into a specific <tt>MediaStream</tt>.
+     *
+     * @param stream the <tt>MediaStream</tt> to stop replaying into
+     */
+    public void removeStream(MediaStream stream)
+    {
+        for (Stream s : streams)
+        {
+            if (s.mediaStream == stream)
+                removeStream(s);
+        }
+    }
+
+    /**
+     * Stops replaying to a specific <tt>ReplayTarget</tt>.
+     *
+     * @param target the <tt>ReplayTarget</tt> to stop replaying to
+     */
+    public void removeTarget(ReplayTarget target)
+    {
+        for (Stream s : streams)
+        {
+            if (s.target == target)
+                removeStream(s);
+        }
+    }
+
+    /**
+     * Removes a specific <tt>Stream</tt> from this <tt>IVFReplayer</tt>. If
+     * it is being served at the time, it is not rescheduled.
+     *
+     * @param stream the <tt>Stream</tt> to remove
+     */
+    private void removeStream(Stream stream)
+    {
+        stream.removed = true;
+        streams.remove(stream);
+        dueStreams.remove(stream);
+    }
+
+    /**
+     * Serves {@link #dueStreams} until the current thread is no longer one of
+     * {@link #threads}.
+     *
+     * @param index the index of the current thread in {@link #threads}
+     */
+    private void runInThread(int index)
+    {
+        Thread currentThread = Thread.currentThread();
+
+        while (true)
+        {
+            Stream stream;
+
+            try
+            {
+                stream = dueStreams.poll(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ie)
+            {
+                stream = null;
+            }
+
+            Thread[] threads = this.threads;
+
+            if ((threads == null) || (threads[index] != currentThread))
+            {
+                // Leave the stream to the threads of a subsequent start().
+                if (stream != null)
+                    dueStreams.add(stream);
+                break;
+            }
+            if ((stream == null) || stream.removed)
+                continue;
+
+            boolean more;
+
+            try
+            {
+                more = stream.sendFrame();
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                logger.error("Failed to replay a VP8 frame.", t);
+                more = false;
+            }
+            if (!more)
+                streams.remove(stream);
+            else if (!stream.removed)
+                dueStreams.add(stream);
+        }
+    }
+
+    /**
+     * Sets whether the streams are to start over when they reach the end of
+     * the file.
+     *
+     * @param loop <tt>true</tt> to loop the replay; otherwise, <tt>false</tt>
+     */
+    public void setLoop(boolean loop)
+    {
+        this.loop = loop;
+    }
+
+    /**
+     * Starts replaying in {@link #threadCount} new daemon threads if not
+     * started already.
+     */
+    public synchronized void start()
+    {
+        if (threads != null)
+            return;
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int index = i;
+            Thread thread
+                = new Thread(IVFReplayer.class.getName() + "-" + i)
+                {
+                    @Override
+                    public void run()
+                    {
+                        runInThread(index);
+                    }
+                };
+
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            threads[i] = thread;
+        }
+        this.threads = threads;
+        for (Thread thread : threads)
+            thread.start();
+    }
+
+    /**
+     * Stops replaying. The streams which have been added are kept and resume
+     * with their next frames if this instance is started again.
+     */
+    public synchronized void stop()
+    {
+        threads = null;
+    }
+
+    /**
+     * Represents a stream into which the file is replayed with its own
+     * <tt>Packetizer</tt>, RTP state and timing.
+     */
+    private class Stream
+        implements Delayed
+    {
+        /**
+         * The time (in terms of <tt>System.nanoTime()</tt>) at which the next
+         * frame of this <tt>Stream</tt> is due.
+         */
+        long due;
+
+        /**
+         * The index of the next frame of this <tt>Stream</tt>.
+         */
+        private int frameIndex;
+
+        /**
+         * The <tt>Buffer</tt> which feeds the frames to {@link #packetizer}.
+         */
+        private final Buffer inBuffer = new Buffer();
+
+        /**
+         * The iteration of the replay of this <tt>Stream</tt>.
+         */
+        private int iteration;
+
+        /**
+         * The view of the mapped file from which the frames of this
+         * <tt>Stream</tt> are read.
+         */
+        private final ByteBuffer mappedBuffer = reader.getMappedBuffer();
+
+        /**
+         * The <tt>MediaStream</tt> into which this <tt>Stream</tt> is replayed
+         * or <tt>null</tt> if this <tt>Stream</tt> was added as a mere
+         * <tt>ReplayTarget</tt>.
+         */
+        final MediaStream mediaStream;
+
+        /**
+         * The <tt>Buffer</tt> into which {@link #packetizer} writes its
+         * output.
+         */
+        private final Buffer outBuffer = new Buffer();
+
+        /**
+         * The <tt>Packetizer</tt> which is fed the frames of this
+         * <tt>Stream</tt>.
+         */
+        private final Packetizer packetizer = new Packetizer();
+
+        /**
+         * The <tt>RawPacket</tt> in which the RTP packets of this
+         * <tt>Stream</tt> are written before they are sent.
+         */
+        private final RawPacket pkt
+            = new RawPacket(new byte[MAX_PACKET_LENGTH], 0, 0);
+
+        /**
+         * The RTP payload type of the packets of this <tt>Stream</tt>.
+         */
+        private final byte payloadType;
+
+        /**
+         * The indicator which determines whether this <tt>Stream</tt> has been
+         * removed from the <tt>IVFReplayer</tt>.
+         */
+        volatile boolean removed;
+
+        /**
+         * The RTP sequence number of the next packet of this <tt>Stream</tt>.
+         */
+        private int seq = random.nextInt(0x10000);
+
+        /**
+         * The SSRC of the packets of this <tt>Stream</tt>.
+         */
+        private final int ssrc;
+
+        /**
+         * The time (in terms of <tt>System.nanoTime()</tt>) at which the first
+         * frame of this <tt>Stream</tt> was due.
+         */
+        long startTime;
+
+        /**
+         * The <tt>ReplayTarget</tt> to which the RTP packets of this
+         * <tt>Stream</tt> are sent.
+         */
+        final ReplayTarget target;
+
+        /**
+         * The random offset of the RTP timestamps of this <tt>Stream</tt>.
+         */
+        private final long tsOffset = random.nextInt() & 0xFFFFFFFFL;
+
+        /**
+         * Initializes a new <tt>Stream</tt> instance.
+         *
+         * @param target the <tt>ReplayTarget</tt> to which the RTP packets of
+         * the new instance are to be sent
+         * @param mediaStream the <tt>MediaStream</tt> which <tt>target</tt>
+         * injects into or <tt>null</tt>
+         * @param ssrc the SSRC of the RTP packets of the new instance
+         * @param payloadType the RTP payload type of the packets of the new
+         * instance
+         */
+        Stream(
+                ReplayTarget target,
+                MediaStream mediaStream,
+                int ssrc,
+                byte payloadType)
+        {
+            this.target = target;
+            this.mediaStream = mediaStream;
+            this.ssrc = ssrc;
+            this.payloadType = payloadType;
+
+            inBuffer.setFormat(new VideoFormat(Constants.VP8));
+            try
+            {
+                packetizer.open();
+            }
+            catch (ResourceUnavailableException rue)
+            {
+                // AbstractCodec2#open() does not acquire any resource.
+                throw new IllegalStateException(rue);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(Delayed o)
+        {
+            long diff = due - ((Stream) o).due;
+
+            return (diff < 0) ? -1 : ((diff == 0) ? 0 : 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Packetizes the next frame of this <tt>Stream</tt>, sends its RTP
+         * packets to {@link #target} and schedules the following frame.
+         *
+         * @return <tt>true</tt> if this <tt>Stream</tt> has more frames to
+         * send; otherwise, <tt>false</tt>
+         */
+        boolean sendFrame()
+        {
+            int offset = reader.getFrameOffset(frameIndex);
+            int length = reader.getFrameLength(frameIndex);
+            long time
+                = reader.getFrameTimestamp(frameIndex)
+                    - reader.getFrameTimestamp(0);
+            long ts
+                = tsOffset
+                    + Math.round(
+                            (iteration * loopDuration + time * timebase)
+                                * VP8_CLOCK_RATE
+                                / 1000000000D);
+
+            // The Packetizer reads from a byte array.
+            byte[] data = (byte[]) inBuffer.getData();
+
+            if ((data == null) || (data.length < length))
+                inBuffer.setData(data = new byte[length]);
+            mappedBuffer.position(offset);
+            mappedBuffer.get(data, 0, length);
+            inBuffer.setOffset(0);
+            inBuffer.setLength(length);
+
+            int process;
+
+            do
+            {
+                outBuffer.setFlags(0);
+                outBuffer.setDiscard(false);
+                process = packetizer.process(inBuffer, outBuffer);
+                if ((process & PlugIn.BUFFER_PROCESSED_FAILED) != 0)
+                    break;
+                if ((process & PlugIn.OUTPUT_BUFFER_NOT_FILLED) == 0
+                        && !outBuffer.isDiscard())
+                {
+                    sendPacket(
+                            ts,
+                            (outBuffer.getFlags() & Buffer.FLAG_RTP_MARKER)
+                                != 0);
+                }
+            }
+            while ((process & PlugIn.INPUT_BUFFER_NOT_CONSUMED) != 0);
+            framesSent.incrementAndGet();
+
+            if (++frameIndex >= reader.getFrameCount())
+            {
+                if (!loop)
+                    return false;
+                frameIndex = 0;
+                iteration++;
+            }
+            due
+                = startTime
+                    + iteration * loopDuration
+                    + (long)
+                        ((reader.getFrameTimestamp(frameIndex)
+                                    - reader.getFrameTimestamp(0))
+                                * timebase);
+            return true;
+        }
+
+        /**
+         * Sends the output of {@link #packetizer} to {@link #target} as an RTP
+         * packet.
+         *
+         * @param ts the RTP timestamp of the packet
+         * @param marker the RTP marker bit of the packet
+         */
+        private void sendPacket(long ts, boolean marker)
+        {
+            int payloadLength = outBuffer.getLength();
+            byte[] buffer = pkt.getBuffer();
+
+            if (buffer.length < RTP_HEADER_LENGTH + payloadLength)
+            {
+                buffer = new byte[RTP_HEADER_LENGTH + payloadLength];
+                pkt.setBuffer(buffer);
+            }
+            buffer[0] = (byte) 0x80; // version 2, no padding/extension/CSRC
+            System.arraycopy(
+                    outBuffer.getData(), outBuffer.getOffset(),
+                    buffer, RTP_HEADER_LENGTH,
+                    payloadLength);
+            pkt.setOffset(0);
+            pkt.setLength(RTP_HEADER_LENGTH + payloadLength);
+            pkt.setPayloadType(payloadType);
+            pkt.setMarker(marker);
+            pkt.setSequenceNumber(seq);
+            pkt.setTimestamp(ts & 0xFFFFFFFFL);
+            pkt.setSSRC(ssrc);
+            seq = (seq + 1) & 0xFFFF;
+
+            try
+            {
+                target.send(pkt);
+                packetsSent.incrementAndGet();
+            }
+            catch (IOException ioe)
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Failed to replay a VP8 packet.", ioe);
+            }
+        }
+    }
+}
@@ -17,8 +17,10 @@
 package org.jitsi.impl.neomedia.jmfext.media.protocol.rtpdumpfile;
 
 import java.io.*;
+import java.nio.*;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.rtp.replay.*;
 
 /**
  * This class represent a rtpdump file and provide an API to get the
@@ -37,6 +39,10 @@ import org.jitsi.impl.neomedia.*;
  * If the RTP menu isn't found in the Telephony menu, maybe you can find it in
  * the "Statistics" menu (in old version of Wireshark).
  *
+ * The file is memory-mapped and indexed by {@link CaptureFile} so reading a
+ * packet does not perform I/O. Bulk replay of rtpdump files into many streams
+ * is implemented by {@link PacketReplayer}.
+ *
  * 
  * @author Thomas Kuntz
  */
@@ -52,12 +58,25 @@ public class RtpdumpFileReader
     public final static int FILE_HEADER_LENGTH = 4 + 4 + 4 + 2 + 2;
 
     /**
-     * The <tt>RandomAccessFile</tt> used to read the rtpdump file.
-     * 
-     * <tt>RandomAccessFile</tt> is used because I need to go to the beginning
-     * of the file when the loop is activated.
+     * The read-only view of the contents of {@link #file}.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The memory-mapped and indexed rtpdump file.
+     */
+    private CaptureFile file;
+
+    /**
+     * The index in {@link #file} of the next packet to be read.
+     */
+    private int index;
+
+    /**
+     * The <tt>RawPacket</tt> returned by {@link #getNextPacket(boolean)}.
+     * Reused (along with its buffer) for every packet read.
      */
-    private RandomAccessFile stream;
+    private final RawPacket packet = new RawPacket();
 
     /**
      * Initialize a new instance of <tt>RtpdumpFileReader</tt> that will the
@@ -69,12 +88,8 @@ public class RtpdumpFileReader
     {
         try
         {
-            stream = new RandomAccessFile(filePath, "r");
-            resetFile();
-        }
-        catch (FileNotFoundException e) 
-        {
-            e.printStackTrace();
+            file = new CaptureFile(new File(filePath));
+            buffer = file.getBuffer();
         }
         catch (IOException e)
         {
@@ -88,43 +103,41 @@ public class RtpdumpFileReader
      * this <tt>RtpdumpFileReader</tt> will go back at the beginning of the file
      * and get the first packet.
      * @return a <tt>RawPacket</tt> containing all the information and data
-     * of the next rtp packet recorded in the rtpdump file
+     * of the next rtp packet recorded in the rtpdump file. The same instance
+     * (and buffer) is reused by the next invocation so the caller is to copy
+     * what it needs to keep.
      * @throws IOException if <tt>loopFile</tt> was false and the end of the file
      * is reached.
      */
     public RawPacket getNextPacket(boolean loopFile)
         throws IOException
     {
-        if(loopFile && (stream.getFilePointer() >= stream.length()))
+        if (file == null)
+            throw new IOException("The rtpdump file could not be read.");
+
+        if (index >= file.getPacketCount())
         {
-            resetFile();
+            if (loopFile && (file.getPacketCount() != 0))
+                index = 0;
+            else
+                throw new EOFException();
         }
 
-        byte[] rtpdumpPacket;
-        int sizeInBytes;
-
-        stream.readShort(); //read away an useless short (2 bytes)
-        sizeInBytes = stream.readUnsignedShort();
-        rtpdumpPacket = new byte[sizeInBytes];
-        stream.readInt(); //read away the rtpdump timestamp
+        int length = file.getLength(index);
+        byte[] rtpdumpPacket = packet.getBuffer();
 
-        stream.read(rtpdumpPacket);
+        if ((rtpdumpPacket == null) || (rtpdumpPacket.length < length))
+        {
+            rtpdumpPacket = new byte[length];
+            packet.setBuffer(rtpdumpPacket);
+        }
 
-        return new RawPacket(rtpdumpPacket, 0, rtpdumpPacket.length);
-    }
+        buffer.position(file.getOffset(index));
+        buffer.get(rtpdumpPacket, 0, length);
+        index++;
 
-    /**
-     * Go to the beginning of the rtpdump file and
-     * skip the first line of ascii (giving the file version) and
-     * skip the file header (useless)
-     * @throws IOException if an error occur during the seek and reading of the
-     * file.
-     */
-    private void resetFile() throws IOException
-    {
-        stream.seek(0);
-        stream.readLine(); //read the first line that is in ascii
-        stream.seek(stream.getFilePointer()
-                             + RtpdumpFileReader.FILE_HEADER_LENGTH );
+        packet.setOffset(0);
+        packet.setLength(length);
+        return packet;
     }
 }
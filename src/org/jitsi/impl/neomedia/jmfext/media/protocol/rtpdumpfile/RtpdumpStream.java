@@ -21,6 +21,7 @@ import javax.media.control.*;
 import javax.media.format.*;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.codec.*;
 import org.jitsi.impl.neomedia.jmfext.media.protocol.*;
 import org.jitsi.util.*;
 
@@ -132,12 +133,24 @@ public class RtpdumpStream
                 buffer.setFormat(format);
         }
 
+        /*
+         * The RawPacket is reused by the reader so its payload is copied into
+         * the array of the Buffer (which is reused as well if it is large
+         * enough).
+         */
         RawPacket rtpPacket = rtpFileReader.getNextPacket(true);
-        byte[] data = rtpPacket.getPayload(); 
-
-        buffer.setData(data);
-        buffer.setOffset(rtpPacket.getOffset());
-        buffer.setLength(rtpPacket.getPayloadLength());
+        int length = rtpPacket.getPayloadLength();
+        byte[] data
+            = AbstractCodec2.validateByteArraySize(buffer, length, false);
+
+        System.arraycopy(
+                rtpPacket.getBuffer(),
+                rtpPacket.getOffset() + rtpPacket.getHeaderLength(),
+                data,
+                0,
+                length);
+        buffer.setOffset(0);
+        buffer.setLength(length);
 
         buffer.setFlags(Buffer.FLAG_SYSTEM_TIME | Buffer.FLAG_LIVE_DATA);
         if(lastReadWasMarked)
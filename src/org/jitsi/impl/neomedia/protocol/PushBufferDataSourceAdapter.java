@@ -254,7 +254,7 @@ public class PushBufferDataSourceAdapter
         private void runInStreamReadThread()
         {
             boolean bufferIsWritten;
-            boolean yield;
+            boolean backOff;
 
             synchronized (buffer)
             {
@@ -274,9 +274,10 @@ public class PushBufferDataSourceAdapter
                  * If an exception has been thrown by the stream's read method,
                  * it may be better to give the stream's underlying
                  * implementation (e.g. PortAudio) a little time to possibly get
-                 * its act together.
+                 * its act together. Merely yielding turns a stream which keeps
+                 * failing into a busy loop so actually wait instead.
                  */
-                yield = (!bufferIsWritten && (streamReadException != null));
+                backOff = (!bufferIsWritten && (streamReadException != null));
             }
 
             if (bufferIsWritten)
@@ -286,8 +287,29 @@ public class PushBufferDataSourceAdapter
                 if (transferHandler != null)
                     transferHandler.transferData(this);
             }
-            else if (yield)
-                Thread.yield();
+            else if (backOff)
+            {
+                boolean interrupted = false;
+
+                synchronized (streamReadThreadSyncRoot)
+                {
+                    if (started
+                            && (streamReadThread == Thread.currentThread()))
+                    {
+                        try
+                        {
+                            streamReadThreadSyncRoot.wait(
+                                    READ_EXCEPTION_BACK_OFF);
+                        }
+                        catch (InterruptedException iex)
+                        {
+                            interrupted = true;
+                        }
+                    }
+                }
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
         }
 
         /**
@@ -374,6 +396,11 @@ public class PushBufferDataSourceAdapter
             synchronized (streamReadThreadSyncRoot)
             {
                 started = false;
+                /*
+                 * Wake up streamReadThread if it is backing off after a failed
+                 * read so that it notices it is to stop.
+                 */
+                streamReadThreadSyncRoot.notifyAll();
                 if (STRICT_STOP)
                 {
                     boolean interrupted = false;
@@ -418,6 +445,14 @@ public class PushBufferDataSourceAdapter
      */
     private static final boolean STRICT_STOP = false;
 
+    /**
+     * The number of milliseconds for which a
+     * {@link PushBufferStreamAdapter#streamReadThread} waits after a read
+     * from its <tt>PullBufferStream</tt> has thrown an <tt>IOException</tt>
+     * before it attempts another read.
+     */
+    private static final long READ_EXCEPTION_BACK_OFF = 10;
+
     /**
      * The indicator which determines whether {@link #start()} has been called
      * on this <tt>DataSource</tt> without a subsequent call to {@link #stop()}.
@@ -23,6 +23,7 @@ import net.sf.fmj.media.rtp.util.*;
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.rtcp.*;
 import org.jitsi.impl.neomedia.rtp.*;
+import org.jitsi.impl.neomedia.rtp.remotebitrateestimator.*;
 import org.jitsi.impl.neomedia.transform.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.neomedia.rtp.*;
@@ -74,6 +75,21 @@ public class BasicRTCPTerminationStrategy
      */
     private static final int MTU = 1024 + 256;
 
+    /**
+     * The length in bytes of an RTCP report block.
+     */
+    private static final int REPORT_BLOCK_LENGTH = 24;
+
+    /**
+     * The length in bytes of an RR without report blocks.
+     */
+    private static final int RR_LENGTH = 8;
+
+    /**
+     * The length in bytes of the header of an SDES packet.
+     */
+    private static final int SDES_HEADER_LENGTH = 4;
+
     /**
      * The RTP stats map that holds RTP statistics about all the streams that
      * this <tt>BasicRTCPTerminationStrategy</tt> (as a
@@ -140,7 +156,7 @@ public class BasicRTCPTerminationStrategy
         {
             // Update our RTP stats map (packets/octet sent).
             rtpStatsMap.apply(pkt);
-            rtcpReporter.maybeReport();
+            rtcpReporter.maybeReport(pkt);
 
             return pkt;
         }
@@ -152,7 +168,7 @@ public class BasicRTCPTerminationStrategy
         public RawPacket reverseTransform(RawPacket pkt)
         {
             // Let everything pass through.
-            rtcpReporter.maybeReport();
+            rtcpReporter.maybeReport(pkt);
             return pkt;
         }
     };
@@ -209,6 +225,24 @@ public class BasicRTCPTerminationStrategy
      */
     private int sdesCounter = 0;
 
+    /**
+     * The SSRC of the last report block included in a report. The report
+     * blocks are included round-robin starting after it.
+     */
+    private long lastReportBlockSSRC = Long.MIN_VALUE;
+
+    /**
+     * The SSRC of the last SR included in a report. The SRs are included
+     * round-robin starting after it.
+     */
+    private long lastSRSSRC = Long.MIN_VALUE;
+
+    /**
+     * The number of members of the RTP session (i.e. the local SSRC, the
+     * senders and the sources reported on) as of the last report.
+     */
+    private int members = 1;
+
     /**
      * {@inheritDoc}
      */
@@ -234,13 +268,10 @@ public class BasicRTCPTerminationStrategy
      * @return a {@code List} of {@code RawPacket}s representing the RTCP
      * compound packets to inject into the {@code MediaStream}.
      */
-    public List<RawPacket> report()
+    public synchronized List<RawPacket> report()
     {
         garbageCollector.cleanup();
 
-        // TODO Compound RTCP packets should not exceed the MTU of the network
-        // path.
-        //
         // An individual RTP participant should send only one compound RTCP
         // packet per report interval in order for the RTCP bandwidth per
         // participant to be estimated correctly, except when the compound
@@ -260,13 +291,17 @@ public class BasicRTCPTerminationStrategy
         // reason, we can just guess 1200 or 1500 bytes per message.
         long time = System.currentTimeMillis();
 
-        // RRs
-        List<RTCPRRPacket> rrs = makeRRs(time);
+        // Report blocks
+        RTCPReportBlock[] reportBlocks = makeReportBlocks(time);
         // SRs
         List<RTCPSRPacket> srs = makeSRs(time);
 
+        // The report interval scales with the number of members of the
+        // session.
+        members = 1 + reportBlocks.length + srs.size();
+
         // Bail out (early) if we have nothing to report.
-        if ((rrs == null || rrs.isEmpty()) && (srs == null || srs.isEmpty()))
+        if (reportBlocks.length == 0 && srs.isEmpty())
         {
             return null;
         }
@@ -277,241 +312,247 @@ public class BasicRTCPTerminationStrategy
         // SDES
         RTCPSDESPacket sdes = makeSDES();
 
-        // Build the RTCPCompoundPackets to return.
-        List<RTCPCompoundPacket> compounds = compound(rrs, srs, sdes, remb);
+        // Build the RTCPCompoundPacket to return and return the RawPacket to
+        // inject into the MediaStream.
+        RTCPCompoundPacket compound = compound(reportBlocks, srs, sdes, remb);
 
-        // Return the RawPackets to inject into the MediaStream.
-        List<RawPacket> rawPkts;
+        return Collections.singletonList(generator.apply(compound));
+    }
+
+    /**
+     * Generates the RTCP feedback of the associated {@code MediaStream} which
+     * is to be sent more often than the reports i.e. REMB. The feedback is
+     * sent in a minimal compound packet so that it is neither delayed by the
+     * report interval nor bloated by the report blocks.
+     *
+     * @return a {@code List} of {@code RawPacket}s representing the RTCP
+     * compound packets to inject into the {@code MediaStream}.
+     */
+    private List<RawPacket> reportFeedback()
+    {
+        RTCPREMBPacket remb = makeREMB();
 
-        if (compounds.isEmpty())
+        if (remb == null)
         {
-            rawPkts = null;
+            return null;
         }
-        else
+
+        List<RTCPPacket> feedback = new ArrayList<>(3);
+
+        feedback.add(remb);
+        return Collections.singletonList(makeFeedbackCompound(feedback));
+    }
+
+    /**
+     * Gets the length in bytes of a specific SDES chunk when it is serialized
+     * into an SDES packet.
+     *
+     * @param chunk the {@code RTCPSDES} to get the length of or {@code null}
+     * @return the length in bytes of {@code chunk} or <tt>0</tt> if
+     * {@code chunk} is {@code null}
+     */
+    private static int chunkLength(RTCPSDES chunk)
+    {
+        if (chunk == null)
         {
-            rawPkts = new ArrayList<>(compounds.size());
-            for (RTCPCompoundPacket compound : compounds)
-            {
-                rawPkts.add(generator.apply(compound));
-            }
+            return 0;
         }
-        return rawPkts;
+        return
+            new RTCPSDESPacket(new RTCPSDES[] { chunk }).calcLength()
+                - SDES_HEADER_LENGTH;
     }
 
     /**
-     * Constructs a new {@code RTCPCompoundPacket}s out of specific SRs, RRs,
-     * SDES, and other RTCP packets.
+     * Constructs a new {@code RTCPCompoundPacket} out of specific SRs, report
+     * blocks, SDES, and feedback which does not exceed {@link #MTU}. The
+     * feedback is always included. The SRs and the report blocks which do
+     * not fit are left out and are included first in the next compound packet
+     * i.e. they are selected round-robin across the report intervals.
      *
-     * @param rrs
-     * @param srs
-     * @param sdes the {@code RTCPSDESPacket} to include in the new
-     * {@code RTCPCompoundPacket}. An SDES packet containing a CNAME item MUST
-     * be included in each compound RTCP packet.
-     * @param others other {@code RTCPPacket}s to be included in the new
-     * {@code RTCPCompoundPacket}
-     * @return a new {@code RTCPCompoundPacket} consisting of the specified
-     * {@code srs}, {@code rrs}, {@code sdes}, and {@code others}
+     * @param reportBlocks the report blocks to include
+     * @param srs the SRs to include
+     * @param sdes the {@code RTCPSDESPacket} with the CNAMEs of the SSRCs of
+     * the SRs and RRs. An SDES packet containing a CNAME item MUST be included
+     * in each compound RTCP packet.
+     * @param feedback the {@code RTCPPacket} such as REMB to include in the
+     * new {@code RTCPCompoundPacket} or {@code null}
+     * @return a new {@code RTCPCompoundPacket} consisting of (a subset of) the
+     * specified {@code srs}, {@code reportBlocks}, {@code sdes} and
+     * {@code feedback}
      */
-    private List<RTCPCompoundPacket> compound(
-            List<RTCPRRPacket> rrs,
+    private RTCPCompoundPacket compound(
+            RTCPReportBlock[] reportBlocks,
             List<RTCPSRPacket> srs,
             RTCPSDESPacket sdes,
-            RTCPPacket... others)
+            RTCPPacket feedback)
     {
-        // SRs are capable of carrying the report blocks of the RRs and thus of
-        // reducing the compound packets's size.
-        if (srs != null && !srs.isEmpty() && rrs != null && !rrs.isEmpty())
+        int length = SDES_HEADER_LENGTH;
+
+        // The feedback is not subject to the round-robin selection so account
+        // for it first.
+        if (feedback != null)
         {
-            moveReportBlocks(rrs, srs);
+            length += feedback.calcLength();
         }
 
-        List<RTCPCompoundPacket> compounds = new ArrayList<>();
-        RTCPCompoundPacket prevCompound = null;
+        // SRs. If there are report blocks as well, the SRs may take at most
+        // half of the room that is left so that the report blocks are not
+        // starved by a large number of senders.
+        List<RTCPSRPacket> reports = new ArrayList<>();
+        List<RTCPSDES> chunks = new ArrayList<>();
 
-        do
+        if (!srs.isEmpty())
         {
-            // SR or RR.
-            RTCPPacket report;
-            int ssrc;
-
-            if (srs != null && !srs.isEmpty())
-            {
-                RTCPSRPacket sr = srs.remove(0);
+            Collections.sort(
+                    srs,
+                    new Comparator<RTCPSRPacket>()
+                    {
+                        @Override
+                        public int compare(RTCPSRPacket a, RTCPSRPacket b)
+                        {
+                            return Integer.compare(a.ssrc, b.ssrc);
+                        }
+                    });
 
-                report = sr;
-                ssrc = sr.ssrc;
-            }
-            else if (rrs != null && !rrs.isEmpty())
-            {
-                RTCPRRPacket rr = rrs.remove(0);
+            int start = 0;
 
-                report = rr;
-                ssrc = rr.ssrc;
-            }
-            else
+            while (start < srs.size() && srs.get(start).ssrc <= lastSRSSRC)
             {
-                break;
+                start++;
             }
-            
-            List<RTCPPacket> rtcps = new ArrayList<>();
 
-            rtcps.add(report);
+            int maxLength
+                = (reportBlocks.length == 0) ? MTU : (MTU + length) / 2;
 
-            // RTCP packets other than SR, RR, and SDES such as REMB.
-            if (others.length > 0)
+            for (int i = 0; i < srs.size(); i++)
             {
-                for (int i = 0; i < others.length; ++i)
+                RTCPSRPacket sr = srs.get((start + i) % srs.size());
+                RTCPSDES chunk = makeCNAMEChunk(sdes, sr.ssrc);
+                int srLength = sr.calcLength() + chunkLength(chunk);
+
+                if (length + srLength > maxLength && !reports.isEmpty())
                 {
-                    RTCPPacket other = others[i];
+                    break;
+                }
 
-                    if (other != null)
-                    {
-                        rtcps.add(other);
-                        // We've included the current other in the current
-                        // compound packet and we don't want to include it in
-                        // subsequent compound packets.
-                        others[i] = null;
-                    }
+                length += srLength;
+                reports.add(sr);
+                if (chunk != null)
+                {
+                    chunks.add(chunk);
                 }
+                lastSRSSRC = sr.ssrc;
             }
+        }
 
-            // SDES with CNAME for the SSRC of the SR or RR.
-            RTCPSDESItem cnameItem = findCNAMEItem(sdes, ssrc);
+        // Report blocks. They go into the SRs first and then into RRs (sent by
+        // the local SSRC) of MAX_RTCP_REPORT_BLOCKS each.
+        RTCPSDES localChunk = makeCNAMEChunk(sdes, (int) getLocalSSRC());
+        int srCapacity = reports.size() * MAX_RTCP_REPORT_BLOCKS;
 
-            if (cnameItem != null)
-            {
-                RTCPSDES sdesOfReport = new RTCPSDES();
+        if (reports.isEmpty())
+        {
+            // The first packet in a compound packet must be an SR or an RR.
+            length += RR_LENGTH + chunkLength(localChunk);
+        }
 
-                sdesOfReport.items = new RTCPSDESItem[] { cnameItem };
-                sdesOfReport.ssrc = ssrc;
-                rtcps.add(new RTCPSDESPacket(new RTCPSDES[] { sdesOfReport }));
-            }
+        Arrays.sort(
+                reportBlocks,
+                new Comparator<RTCPReportBlock>()
+                {
+                    @Override
+                    public int compare(RTCPReportBlock a, RTCPReportBlock b)
+                    {
+                        return Integer.compare(a.ssrc, b.ssrc);
+                    }
+                });
 
-            RTCPCompoundPacket compound
-                = new RTCPCompoundPacket(
-                        rtcps.toArray(new RTCPPacket[rtcps.size()]));
+        int start = 0;
 
-            // Try to merge the current compound packet into the previous
-            // compound packet.
-            if (prevCompound == null || !tryMerge(prevCompound, compound))
-            {
-                compounds.add(compound);
-                prevCompound = compound;
-            }
+        while (start < reportBlocks.length
+                && reportBlocks[start].ssrc <= lastReportBlockSSRC)
+        {
+            start++;
         }
-        while (true);
-
-        return compounds;
-    }
 
-    /**
-     * Merges {@code src} into {@code dst} if the resulting compound packet's
-     * size does not exceed {@link #MTU}.
-     *
-     * @param dst the {@code RTCPCompoundPacket} to merge {@code src} into
-     * @param src the {@code RTCPCompoundPacket} to merge into {@code dst}
-     * @return {@code true} if {@code src} was merged into {@code dst};
-     * otherwise, {@code false}
-     */
-    private boolean tryMerge(RTCPCompoundPacket dst, RTCPCompoundPacket src)
-    {
-        // The SDES of src may be merged into the SDES of dst (if any) in order
-        // to reduce the resulting compound packet's size.
+        int blockCount = 0;
 
-        // XXX For the sake of performance, we assume that SDES is the last
-        // packet in the compound packets.
-        RTCPSDESPacket dstSDES = null;
-        RTCPSDESPacket srcSDES = null;
-        boolean mergeSDES = false;
-
-        // dstSDES
-        if (dst.packets.length != 0)
+        for (; blockCount < reportBlocks.length; blockCount++)
         {
-            RTCPPacket last;
+            int blockLength = REPORT_BLOCK_LENGTH;
+            int rrIndex = blockCount - srCapacity;
 
-            last = dst.packets[dst.packets.length - 1];
-            if (last instanceof RTCPSDESPacket)
+            if (rrIndex >= 0
+                    && rrIndex % MAX_RTCP_REPORT_BLOCKS == 0
+                    && !(rrIndex == 0 && reports.isEmpty()))
             {
-                dstSDES = (RTCPSDESPacket) last;
-                // srcSDES
-                if (src.packets.length != 0)
+                // The block starts a new RR.
+                blockLength += RR_LENGTH;
+                if (rrIndex == 0)
                 {
-                    last = src.packets[src.packets.length - 1];
-                    if (last instanceof RTCPSDESPacket)
-                    {
-                        srcSDES = (RTCPSDESPacket) last;
-                        // mergeSDES
-                        mergeSDES = true;
-                    }
+                    blockLength += chunkLength(localChunk);
                 }
             }
+            if (length + blockLength > MTU)
+            {
+                break;
+            }
+            length += blockLength;
         }
 
-        int newDstLen = dst.calcLength() + src.calcLength();
+        RTCPReportBlock[] blocks = new RTCPReportBlock[blockCount];
 
-        if (mergeSDES)
+        for (int i = 0; i < blockCount; i++)
         {
-            // The SDES of src will be merged into the SDES of dst in order to
-            // reduce the resulting compound packet's size.
-            newDstLen -= 4;
+            blocks[i] = reportBlocks[(start + i) % reportBlocks.length];
         }
-
-        if (newDstLen > MTU)
+        if (blockCount != 0)
         {
-            // Cannot merge src into dst because the resulting compound packet's
-            // size would exceeed the MTU.
-            return false;
+            lastReportBlockSSRC = blocks[blockCount - 1].ssrc;
         }
 
-        int dstPktCount = dst.packets.length;
-        int srcPktCount = src.packets.length;
+        // SRs are capable of carrying report blocks and thus of reducing the
+        // compound packet's size.
+        List<RTCPPacket> rtcps = new ArrayList<>();
+        int offset = 0;
 
-        if (dstSDES != null)
+        for (RTCPSRPacket sr : reports)
         {
-            // We'll take the SDES of dst into account separately.
-            --dstPktCount;
-        }
+            int count = Math.min(blockCount - offset, MAX_RTCP_REPORT_BLOCKS);
 
-        // Merge the SDES of src into the SDES of dst.
-        if (mergeSDES)
+            if (count > 0)
+            {
+                sr.reports = Arrays.copyOfRange(blocks, offset, offset + count);
+                offset += count;
+            }
+            rtcps.add(sr);
+        }
+        if (reports.isEmpty() || offset < blockCount)
         {
-            RTCPSDES[] newDstChunks
-                = new RTCPSDES[dstSDES.sdes.length + srcSDES.sdes.length];
-
-            System.arraycopy(
-                    dstSDES.sdes, 0,
-                    newDstChunks, 0,
-                    dstSDES.sdes.length);
-            System.arraycopy(
-                    srcSDES.sdes, 0,
-                    newDstChunks, dstSDES.sdes.length,
-                    srcSDES.sdes.length);
-            dstSDES.sdes = newDstChunks;
-
-            // We've merged the SDES of src into the SDES of dst.
-            --srcPktCount;
+            rtcps.addAll(
+                    makeRRs(Arrays.copyOfRange(blocks, offset, blockCount)));
+            if (localChunk != null)
+            {
+                chunks.add(localChunk);
+            }
         }
 
-        // Merge the non-SDES packets of src into dst.
-        int newDstPktCount = dstPktCount + srcPktCount;
-
-        if (dstSDES != null)
+        // RTCP packets other than SR, RR, and SDES such as REMB.
+        if (feedback != null)
         {
-            ++newDstPktCount;
+            rtcps.add(feedback);
         }
 
-        RTCPPacket[] newDstPkts = new RTCPPacket[newDstPktCount];
-
-        System.arraycopy(dst.packets, 0, newDstPkts, 0, dstPktCount);
-        System.arraycopy(src.packets, 0, newDstPkts, dstPktCount, srcPktCount);
-        // Keep SDES at the end.
-        if (dstSDES != null)
+        // SDES with CNAME for the SSRCs of the SRs and RRs.
+        if (!chunks.isEmpty())
         {
-            newDstPkts[newDstPkts.length - 1] = dstSDES;
+            rtcps.add(
+                    new RTCPSDESPacket(
+                            chunks.toArray(new RTCPSDES[chunks.size()])));
         }
-        dst.packets = newDstPkts;
 
-        return true;
+        return
+            new RTCPCompoundPacket(rtcps.toArray(new RTCPPacket[rtcps.size()]));
     }
 
     /**
@@ -541,95 +582,6 @@ public class BasicRTCPTerminationStrategy
         return null;
     }
 
-    /**
-     * Moves report blocks from specific RRs into specific SRs.
-     *
-     * @param rrs the {@code List} of RRs to move report blocks from. If an RR
-     * remains with no report blocks (after a possible move), it is removed from
-     * the {@code List}.
-     * @param srs the {@code List} of SRs to move report blocks to
-     */
-    private void moveReportBlocks(
-            List<RTCPRRPacket> rrs,
-            List<RTCPSRPacket> srs)
-    {
-        for (RTCPSRPacket sr : srs)
-        {
-            if (rrs.isEmpty())
-            {
-                // There are no (more) RRs to replace with SRs.
-                break;
-            }
-
-            int srReportBlockCapacity
-                = MAX_RTCP_REPORT_BLOCKS - sr.reports.length;
-
-            if (srReportBlockCapacity <= 0)
-            {
-                // The current SR does not have the capacity to carry the report
-                // blocks of RRs.
-                continue;
-            }
-
-            for (Iterator<RTCPRRPacket> rrI = rrs.iterator(); rrI.hasNext();)
-            {
-                RTCPRRPacket rr = rrI.next();
-                int reportBlocksToMove
-                    = Math.min(srReportBlockCapacity, rr.reports.length);
-
-                if (reportBlocksToMove > 0)
-                {
-                    if (srReportBlockCapacity == MAX_RTCP_REPORT_BLOCKS
-                            && reportBlocksToMove == rr.reports.length)
-                    {
-                        // Since the SR appears to have the capacity to carry
-                        // MAX_RTCP_REPORT_BLOCKS number of report blocks, then
-                        // we assume its reports array is empty.
-                        RTCPReportBlock[] srReportBlocks = sr.reports;
-
-                        sr.reports = rr.reports;
-                        rr.reports = srReportBlocks;
-                    }
-                    else
-                    {
-                        // Copy report blocks from the RR to the SR.
-                        RTCPReportBlock[] srReportBlocks
-                            = new RTCPReportBlock[
-                                    sr.reports.length + reportBlocksToMove];
-
-                        System.arraycopy(
-                                sr.reports, 0,
-                                srReportBlocks, 0,
-                                sr.reports.length);
-                        System.arraycopy(
-                                rr.reports, 0,
-                                srReportBlocks, sr.reports.length,
-                                reportBlocksToMove);
-                        sr.reports = srReportBlocks;
-
-                        // Remove the copied report blocks from the RR.
-                        int rrReportBlockCount
-                            = rr.reports.length - reportBlocksToMove;
-                        RTCPReportBlock[] rrReportBlocks
-                            = new RTCPReportBlock[rrReportBlockCount];
-
-                        System.arraycopy(
-                                rr.reports, reportBlocksToMove,
-                                rrReportBlocks, 0,
-                                rrReportBlockCount);
-                        rr.reports = rrReportBlocks;
-                    }
-                }
-                if (rr.reports.length == 0)
-                {
-                    // The report blocks of the current RR will be carried by
-                    // the current SR so the current RR is no longer necessary.
-                    rrI.remove();
-                }
-            }
-        }
-    }
-
     /**
      * (attempts) to get the local SSRC that will be used in the media sender
      * SSRC field of the RTCP reports. TAG(cat4-local-ssrc-hurricane)
@@ -641,20 +593,80 @@ public class BasicRTCPTerminationStrategy
     }
 
     /**
-     * Makes <tt>RTCPRRPacket</tt>s using information in FMJ.
+     * Makes an SDES chunk which carries the CNAME of a specific SSRC only.
      *
-     * @param time
-     * @return A <tt>List</tt> of <tt>RTCPRRPacket</tt>s to inject into the
-     * <tt>MediaStream</tt>.
+     * @param sdes the {@code RTCPSDESPacket} to find the CNAME of
+     * {@code ssrc} in
+     * @param ssrc the SSRC to make the SDES chunk for
+     * @return an {@code RTCPSDES} which carries the CNAME of {@code ssrc} or
+     * {@code null} if {@code sdes} does not specify the CNAME of {@code ssrc}
      */
-    private List<RTCPRRPacket> makeRRs(long time)
+    private RTCPSDES makeCNAMEChunk(RTCPSDESPacket sdes, int ssrc)
     {
-        RTCPReportBlock[] reportBlocks = makeReportBlocks(time);
-        if (reportBlocks == null || reportBlocks.length == 0)
+        RTCPSDESItem cnameItem = findCNAMEItem(sdes, ssrc);
+
+        if (cnameItem == null)
         {
             return null;
         }
 
+        RTCPSDES chunk = new RTCPSDES();
+
+        chunk.items = new RTCPSDESItem[] { cnameItem };
+        chunk.ssrc = ssrc;
+        return chunk;
+    }
+
+    /**
+     * Makes a minimal compound packet which carries specific RTCP feedback
+     * packets i.e. an RR without report blocks followed by the feedback and
+     * the CNAME of the local SSRC.
+     *
+     * @param feedback the RTCP feedback packets to carry. The list is modified
+     * by the method.
+     * @return a <tt>RawPacket</tt> which represents the new compound packet
+     */
+    private RawPacket makeFeedbackCompound(List<RTCPPacket> feedback)
+    {
+        // We use the stream's local source ID (SSRC) as the SSRC of packet
+        // sender. TODO Use RFC5506 Reduced-Size RTCP, if the receiver supports
+        // it.
+        int streamSSRC = (int) getLocalSSRC();
+
+        feedback.add(
+                0,
+                new RTCPRRPacket(streamSSRC, MIN_RTCP_REPORT_BLOCKS_ARRAY));
+
+        SSRCInfo ourinfo
+            = getStream().getStreamRTPManager().getSSRCCache().ourssrc;
+        RTCPSDES chunk = new RTCPSDES();
+
+        chunk.items
+            = new RTCPSDESItem[]
+            {
+                new RTCPSDESItem(
+                        RTCPSDESItem.CNAME,
+                        ourinfo.sourceInfo.getCNAME())
+            };
+        chunk.ssrc = streamSSRC;
+        feedback.add(new RTCPSDESPacket(new RTCPSDES[] { chunk }));
+
+        RTCPCompoundPacket compound
+            = new RTCPCompoundPacket(
+                    feedback.toArray(new RTCPPacket[feedback.size()]));
+
+        return generator.apply(compound);
+    }
+
+    /**
+     * Makes <tt>RTCPRRPacket</tt>s which carry specific report blocks.
+     *
+     * @param reportBlocks the report blocks to carry
+     * @return A <tt>List</tt> of <tt>RTCPRRPacket</tt>s which carry
+     * <tt>reportBlocks</tt>. It contains at least one RR.
+     */
+    private List<RTCPRRPacket> makeRRs(RTCPReportBlock[] reportBlocks)
+    {
         List<RTCPRRPacket> rrs = new ArrayList<>();
 
         // We use the stream's local source ID (SSRC) as the SSRC of packet
@@ -1056,52 +1068,164 @@ public class BasicRTCPTerminationStrategy
             }
 
             // We have feedback messages to send. Pack them in a compound RR and
-            // send them. TODO Use RFC5506 Reduced-Size RTCP, if the receiver
-            // supports it.
-            Collection<RTCPRRPacket> rrs = makeRRs(System.currentTimeMillis());
-
-            if (rrs != null && !rrs.isEmpty())
-            {
-                outPackets.addAll(0, rrs);
-            }
-            else
-            {
-                logger.warn("We might be sending invalid RTCPs.");
-            }
-
-            RTCPCompoundPacket outPacket
-                = new RTCPCompoundPacket(
-                        outPackets.toArray(new RTCPPacket[outPackets.size()]));
-
-            return generator.apply(outPacket);
+            // send them. The report blocks are left to the reports so that
+            // the feedback is as small as possible.
+            return makeFeedbackCompound(outPackets);
         }
     }
 
     /**
-     * Takes care of calling the report() method every RTCP_INTERVAL_VIDEO_MS.
+     * Takes care of calling the report() method at the RTCP report interval
+     * computed as described in RFC 3550 section 6.3.1 and of sending the REMBs
+     * at least every RTCP_INTERVAL_VIDEO_MS.
      */
     class RTCPReporter
     {
         /**
-         * For video we use 500ms interval.
+         * The factor which compensates for the "timer reconsideration"
+         * algorithm converging to a value below the intended average.
+         */
+        private static final double COMPENSATION = Math.E - 1.5;
+
+        /**
+         * The length in bytes of the IPv4 and UDP headers which are accounted
+         * in the average RTCP packet size.
+         */
+        private static final int IP_UDP_HEADER_LENGTH = 28;
+
+        /**
+         * The fraction of the session bandwidth allocated to RTCP.
+         */
+        private static final double RTCP_BANDWIDTH_FRACTION = 0.05;
+
+        /**
+         * For video we use 500ms minimum interval. The feedback (i.e. REMB)
+         * is sent at this interval regardless of the report interval.
          */
         private static final int RTCP_INTERVAL_VIDEO_MS = 500;
 
         /**
-        */
+         * The average size in bytes of the compound RTCP packets sent (or
+         * <tt>0</tt> if none has been sent yet).
+         */
+        private double avgRTCPSize;
+
+        /**
+         * The time in milliseconds at which the feedback is to be sent next.
+         */
+        private long nextTimeToSendFeedback;
+
+        /**
+         * The time in milliseconds at which the reports are to be sent next.
+         */
         private long nextTimeToSendRTCP;
 
         /**
+         * The <tt>Random</tt> which randomizes the report interval.
+         */
+        private final Random random = new Random();
+
+        /**
+         * The session bandwidth in bits per second i.e. the bitrate of the
+         * RTP packets sent and received.
+         */
+        private final RateStatistics sessionBitrate
+            = new RateStatistics(1000, 8000F);
+
+        /**
+         * Computes the (randomized) RTCP report interval in milliseconds.
+         *
+         * @param now the current time in milliseconds
+         * @return the RTCP report interval in milliseconds
          */
-        public void maybeReport()
+        private long computeInterval(long now)
         {
-            if (!timeToSendRTCPReport())
+            long bitrate;
+
+            synchronized (sessionBitrate)
             {
-                return;
+                bitrate = sessionBitrate.getRate(now);
+            }
+
+            double interval = RTCP_INTERVAL_VIDEO_MS;
+
+            if (bitrate > 0 && avgRTCPSize > 0)
+            {
+                // The RTCP bandwidth in bytes per millisecond.
+                double rtcpBandwidth
+                    = bitrate * RTCP_BANDWIDTH_FRACTION / 8000D;
+
+                interval
+                    = Math.max(interval, members * avgRTCPSize / rtcpBandwidth);
+            }
+
+            // Avoid the synchronization of the reports of the participants.
+            interval *= (random.nextDouble() + 0.5) / COMPENSATION;
+            return (long) interval;
+        }
+
+        /**
+         * Accounts a specific RTP packet in the session bandwidth and sends
+         * the RTCP reports (or feedback) if it is time to.
+         *
+         * @param rtp the RTP packet sent or received
+         */
+        public void maybeReport(RawPacket rtp)
+        {
+            long now = System.currentTimeMillis();
+
+            if (rtp != null)
+            {
+                synchronized (sessionBitrate)
+                {
+                    sessionBitrate.update(rtp.getLength(), now);
+                }
             }
 
-            // Make the RTCP reports for the assoc. MediaStream.
-            List<RawPacket> pkts = report();
+            boolean feedbackOnly;
+
+            synchronized (this)
+            {
+                if (now >= nextTimeToSendRTCP)
+                {
+                    // The actual interval is computed after the report
+                    // because it depends on the number of members.
+                    nextTimeToSendRTCP = now + RTCP_INTERVAL_VIDEO_MS;
+                    feedbackOnly = false;
+                }
+                else if (now >= nextTimeToSendFeedback)
+                {
+                    feedbackOnly = true;
+                }
+                else
+                {
+                    return;
+                }
+                nextTimeToSendFeedback = now + RTCP_INTERVAL_VIDEO_MS;
+            }
+
+            // Make the RTCP reports (or feedback) for the assoc. MediaStream.
+            List<RawPacket> pkts = feedbackOnly ? reportFeedback() : report();
+
+            synchronized (this)
+            {
+                if (pkts != null)
+                {
+                    for (RawPacket pkt : pkts)
+                    {
+                        int size = pkt.getLength() + IP_UDP_HEADER_LENGTH;
+
+                        avgRTCPSize
+                            = (avgRTCPSize == 0)
+                                ? size
+                                : (size + 15 * avgRTCPSize) / 16;
+                    }
+                }
+                if (!feedbackOnly)
+                {
+                    nextTimeToSendRTCP = now + computeInterval(now);
+                }
+            }
 
             if (pkts == null || pkts.isEmpty())
             {
@@ -1139,18 +1263,5 @@ public class BasicRTCPTerminationStrategy
                 }
             }
         }
-
-        private boolean timeToSendRTCPReport()
-        {
-            final long now = System.currentTimeMillis();
-
-            if (now >= nextTimeToSendRTCP)
-            {
-                nextTimeToSendRTCP = now + RTCP_INTERVAL_VIDEO_MS;
-                return true;
-            }
-
-            return false;
-        }
     }
 }
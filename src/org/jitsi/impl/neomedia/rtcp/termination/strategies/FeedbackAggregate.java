@@ -0,0 +1,149 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtcp.termination.strategies;
+
+import java.util.*;
+
+/**
+ * Keeps the feedback of the receivers of a media sender sorted by score so
+ * that any percentile of it may be read in constant time. The feedback of a
+ * receiver is replaced (or removed) as the receiver sends (or stops sending)
+ * feedback.
+ */
+class FeedbackAggregate
+{
+    /**
+     * The initial capacity of the arrays of a <tt>FeedbackAggregate</tt>.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The feedback sorted in ascending order of {@link #scores}.
+     */
+    private FeedbackCacheProcessor.FeedbackData[] feedbacks
+        = new FeedbackCacheProcessor.FeedbackData[INITIAL_CAPACITY];
+
+    /**
+     * The scores of {@link #feedbacks} in ascending order.
+     */
+    private double[] scores = new double[INITIAL_CAPACITY];
+
+    /**
+     * The number of elements in {@link #feedbacks}.
+     */
+    private int size;
+
+    /**
+     * The SSRCs of the receivers which sent {@link #feedbacks}.
+     */
+    private int[] sources = new int[INITIAL_CAPACITY];
+
+    /**
+     * Gets the feedback which satisfies a specific percentile of the
+     * receivers.
+     *
+     * @param percentile the percentile of the receivers to be satisfied
+     * @return the feedback which satisfies <tt>percentile</tt> of the
+     * receivers or <tt>null</tt> if there is no feedback
+     */
+    FeedbackCacheProcessor.FeedbackData get(int percentile)
+    {
+        if (size == 0)
+            return null;
+
+        int index = (int) Math.ceil((percentile / 100.0) * size) - 1;
+
+        return feedbacks[Math.max(index, 0)];
+    }
+
+    /**
+     * Determines whether this aggregate has no feedback.
+     *
+     * @return <tt>true</tt> if this aggregate has no feedback; otherwise,
+     * <tt>false</tt>
+     */
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Sets the feedback of a specific receiver.
+     *
+     * @param source the SSRC of the receiver
+     * @param feedback the feedback of <tt>source</tt>
+     */
+    void put(int source, FeedbackCacheProcessor.FeedbackData feedback)
+    {
+        remove(source);
+
+        if (size == feedbacks.length)
+        {
+            int capacity = 2 * size;
+
+            feedbacks = Arrays.copyOf(feedbacks, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+        }
+
+        double score = FeedbackCacheProcessor.calculateScore(feedback);
+        // Insert after the equal scores.
+        int low = 0;
+        int high = size;
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (scores[mid] <= score)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        int count = size - low;
+
+        System.arraycopy(feedbacks, low, feedbacks, low + 1, count);
+        System.arraycopy(scores, low, scores, low + 1, count);
+        System.arraycopy(sources, low, sources, low + 1, count);
+        feedbacks[low] = feedback;
+        scores[low] = score;
+        sources[low] = source;
+        size++;
+    }
+
+    /**
+     * Removes the feedback of a specific receiver.
+     *
+     * @param source the SSRC of the receiver
+     */
+    void remove(int source)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (sources[i] == source)
+            {
+                int count = size - i - 1;
+
+                System.arraycopy(feedbacks, i + 1, feedbacks, i, count);
+                System.arraycopy(scores, i + 1, scores, i, count);
+                System.arraycopy(sources, i + 1, sources, i, count);
+                feedbacks[--size] = null;
+                return;
+            }
+        }
+    }
+}
@@ -26,20 +26,243 @@ import java.util.concurrent.*;
  */
 public class FeedbackCache
 {
+    /**
+     * The aggregates of the unexpired feedback about the media senders (by
+     * their SSRC). They are maintained on each update so that reading a
+     * percentile of the feedback does not need to walk the whole cache.
+     */
+    private final Map<Integer, FeedbackAggregate> aggregates
+            = new HashMap<Integer, FeedbackAggregate>();
+
     final Map<Integer, FeedbackCacheEntry> cache
             = new ConcurrentHashMap<Integer, FeedbackCacheEntry>();
 
+    /**
+     * The entries of {@link #cache} which are in {@link #aggregates} (by the
+     * SSRC of the media receiver) in the order of their last update.
+     */
+    private final Map<Integer, FeedbackCacheEntry> unexpired
+            = new LinkedHashMap<Integer, FeedbackCacheEntry>();
+
+    /**
+     * Adds the feedback of a specific cache entry to {@link #aggregates}.
+     *
+     * @param source the SSRC of the media receiver which sent the feedback
+     * @param item the cache entry
+     */
+    private void aggregate(int source, FeedbackCacheEntry item)
+    {
+        RTCPReportBlock[] reports = item.reports;
+        RTCPREMBPacket remb = item.remb;
+        long[] rembDests = (remb == null) ? null : remb.dest;
+        int[] dests
+            = new int[
+                    ((reports == null) ? 0 : reports.length)
+                        + ((rembDests == null) ? 0 : rembDests.length)];
+        int destCount = 0;
+
+        // Process RRs in this cache item.
+        if (reports != null)
+        {
+            for (RTCPReportBlock b : reports)
+            {
+                FeedbackCacheProcessor.FeedbackData feedback
+                    = new FeedbackCacheProcessor.FeedbackData();
+                feedback.rr = new FeedbackCacheProcessor.RRData();
+                feedback.rr.fraction = b.getFractionLost();
+                feedback.rr.lost = b.getNumLost();
+                feedback.rr.jitter = b.getJitter();
+                feedback.rr.dlsr = b.getDLSR();
+                feedback.rr.lsr = b.getLSR();
+                feedback.rr.seqnum = b.getXtndSeqNum();
+
+                int dest = (int) b.getSSRC();
+
+                if (rembDests != null)
+                {
+                    for (long rembDest : rembDests)
+                    {
+                        if ((int) rembDest == dest)
+                        {
+                            feedback.remb = makeREMBData(remb);
+                            break;
+                        }
+                    }
+                }
+
+                destCount = put(dests, destCount, dest, source, feedback);
+            }
+        }
+
+        // Process the REMB packet in this cache item for the media senders
+        // which have not been reported on.
+        if (rembDests != null)
+        {
+            for (long rembDest : rembDests)
+            {
+                int dest = (int) rembDest;
+
+                if (indexOf(dests, destCount, dest) == -1)
+                {
+                    FeedbackCacheProcessor.FeedbackData feedback
+                        = new FeedbackCacheProcessor.FeedbackData();
+
+                    feedback.remb = makeREMBData(remb);
+                    destCount = put(dests, destCount, dest, source, feedback);
+                }
+            }
+        }
+
+        item.dests
+            = (destCount == dests.length)
+                ? dests
+                : Arrays.copyOf(dests, destCount);
+    }
+
+    /**
+     * Removes the feedback of the entries which have not been updated since a
+     * specific time from the aggregates.
+     *
+     * @param time the time in milliseconds before which the entries expire
+     */
+    synchronized void expire(long time)
+    {
+        for (Iterator<Map.Entry<Integer, FeedbackCacheEntry>> it
+                    = unexpired.entrySet().iterator();
+                it.hasNext();)
+        {
+            Map.Entry<Integer, FeedbackCacheEntry> entry = it.next();
+            FeedbackCacheEntry item = entry.getValue();
+
+            // The entries are in the order of their last update.
+            if (item.lastUpdate >= time)
+                break;
+
+            it.remove();
+            unaggregate(entry.getKey(), item);
+        }
+    }
+
+    /**
+     * Gets the feedback which satisfies a specific percentile of the
+     * receivers of each media sender.
+     *
+     * @param percentile the percentile of the receivers to be satisfied
+     * @return <dest, feedback>
+     */
+    synchronized Map<Integer, FeedbackCacheProcessor.FeedbackData>
+        getPercentileFeedback(int percentile)
+    {
+        Map<Integer, FeedbackCacheProcessor.FeedbackData> feedbackMap
+            = new HashMap<Integer, FeedbackCacheProcessor.FeedbackData>();
+
+        for (Map.Entry<Integer, FeedbackAggregate> entry
+                : aggregates.entrySet())
+        {
+            feedbackMap.put(entry.getKey(), entry.getValue().get(percentile));
+        }
+        return feedbackMap;
+    }
+
+    /**
+     * Gets the index of a specific SSRC in the first elements of an array.
+     *
+     * @param ssrcs the array to search
+     * @param length the number of elements of <tt>ssrcs</tt> to search
+     * @param ssrc the SSRC to search for
+     * @return the index of <tt>ssrc</tt> in <tt>ssrcs</tt> or <tt>-1</tt>
+     */
+    private static int indexOf(int[] ssrcs, int length, int ssrc)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (ssrcs[i] == ssrc)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Makes a lightweight copy of the information of a specific REMB packet.
+     *
+     * @param remb the REMB packet to copy the information of
+     * @return the lightweight copy of the information of <tt>remb</tt>
+     */
+    private static FeedbackCacheProcessor.REMBData makeREMBData(
+            RTCPREMBPacket remb)
+    {
+        FeedbackCacheProcessor.REMBData rembData
+            = new FeedbackCacheProcessor.REMBData();
+
+        rembData.exp = remb.exp;
+        rembData.mantissa = remb.mantissa;
+        return rembData;
+    }
+
+    /**
+     * Sets the feedback of a specific media receiver about a specific media
+     * sender in {@link #aggregates}.
+     *
+     * @param dests the SSRCs of the media senders the media receiver has
+     * given feedback about so far
+     * @param destCount the number of elements of <tt>dests</tt>
+     * @param dest the SSRC of the media sender
+     * @param source the SSRC of the media receiver
+     * @param feedback the feedback
+     * @return the number of elements of <tt>dests</tt> after the method
+     */
+    private int put(
+            int[] dests, int destCount,
+            int dest, int source,
+            FeedbackCacheProcessor.FeedbackData feedback)
+    {
+        FeedbackAggregate aggregate = aggregates.get(dest);
+
+        if (aggregate == null)
+        {
+            aggregate = new FeedbackAggregate();
+            aggregates.put(dest, aggregate);
+        }
+        aggregate.put(source, feedback);
+
+        if (indexOf(dests, destCount, dest) == -1)
+            dests[destCount++] = dest;
+        return destCount;
+    }
+
     public int size()
     {
         return cache.size();
     }
 
+    /**
+     * Removes the feedback of a specific cache entry from
+     * {@link #aggregates}.
+     *
+     * @param source the SSRC of the media receiver which sent the feedback
+     * @param item the cache entry
+     */
+    private void unaggregate(int source, FeedbackCacheEntry item)
+    {
+        for (int dest : item.dests)
+        {
+            FeedbackAggregate aggregate = aggregates.get(dest);
+
+            if (aggregate != null)
+            {
+                aggregate.remove(source);
+                if (aggregate.isEmpty())
+                    aggregates.remove(dest);
+            }
+        }
+    }
+
     public Set<Map.Entry<Integer, FeedbackCacheEntry>> entrySet()
     {
         return cache.entrySet();
     }
 
-    public void update(Integer ssrc, RTCPReportBlock[] reports,
+    public synchronized void update(Integer ssrc, RTCPReportBlock[] reports,
                                     RTCPREMBPacket remb)
     {
         // Update the cache with the new data we've gathered.
@@ -75,6 +298,15 @@ public class FeedbackCache
             }
 
             cache.put(ssrc, item);
+
+            // Replace the feedback of the previous cache item in the
+            // aggregates.
+            FeedbackCacheEntry base = unexpired.remove(ssrc);
+
+            if (base != null)
+                unaggregate(ssrc, base);
+            aggregate(ssrc, item);
+            unexpired.put(ssrc, item);
         }
     }
 }
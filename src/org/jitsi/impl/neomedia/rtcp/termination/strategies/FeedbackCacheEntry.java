@@ -27,4 +27,10 @@ class FeedbackCacheEntry
 
     RTCPReportBlock[] reports;
     RTCPREMBPacket remb;
+
+    /**
+     * The SSRCs of the media senders whose {@link FeedbackAggregate}s this
+     * entry contributes to.
+     */
+    int[] dests;
 }
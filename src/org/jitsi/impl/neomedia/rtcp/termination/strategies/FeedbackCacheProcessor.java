@@ -89,113 +89,13 @@ public class FeedbackCacheProcessor
         RRData rr;
     }
 
-    /**
-     * Builds the <dest, <source, feedback>> map map using the cached receiver
-     * feedback information.
-     *
-     * @return <dest, <source, feedback>>
-     */
-    private Map<Integer, Map<Integer, FeedbackData>>
-                                                getReverseFeedbackMapMap()
-    {
-        Map<Integer, Map<Integer, FeedbackData>> reverseFeedbackMapMap
-                = new HashMap<Integer, Map<Integer, FeedbackData>>();
-
-        if (feedbackCache != null && feedbackCache.size() != 0)
-        {
-            for (Map.Entry<Integer, FeedbackCacheEntry> entry
-                    : feedbackCache.entrySet())
-            {
-                FeedbackCacheEntry item = entry.getValue();
-
-                // Skip expired feedback.
-                if (item.lastUpdate < lastRun - expireMillis)
-                    continue;
-
-                Integer sender = entry.getKey();
-
-                // Process RRs in this cache item.
-                if (item.reports != null && item.reports.length != 0)
-                {
-                    for (RTCPReportBlock b : item.reports)
-                    {
-                        FeedbackData feedback = new FeedbackData();
-                        feedback.rr = new RRData();
-                        feedback.rr.fraction = b.getFractionLost();
-                        feedback.rr.lost = b.getNumLost();
-                        feedback.rr.jitter = b.getJitter();
-                        feedback.rr.dlsr = b.getDLSR();
-                        feedback.rr.lsr = b.getLSR();
-                        feedback.rr.seqnum = b.getXtndSeqNum();
-
-                        Integer dest = Integer.valueOf((int) b.getSSRC());
-
-                        // <dest, feedback>
-                        Map<Integer, FeedbackData> reverseFeedbackMap
-                                = new HashMap<Integer, FeedbackData>();
-
-                        reverseFeedbackMapMap.put(dest, reverseFeedbackMap);
-                        reverseFeedbackMap.put(sender, feedback);
-                    }
-                }
-
-                // Process the REMB packet in this cache item.
-                if (item.remb != null
-                        && item.remb.dest != null
-                        && item.remb.dest.length != 0)
-                {
-                    for (long destl : item.remb.dest)
-                    {
-                        Integer dest = Integer.valueOf((int) destl);
-                        // <dest, feedback>
-                        Map<Integer, FeedbackData> reverseFeedbackMap;
-                        if (reverseFeedbackMapMap.containsKey(dest))
-                        {
-                            reverseFeedbackMap
-                                    = reverseFeedbackMapMap.get(dest);
-                        }
-                        else
-                        {
-                            reverseFeedbackMap
-                                    = new HashMap<Integer, FeedbackData>();
-
-                            reverseFeedbackMapMap.put(dest,
-                                    reverseFeedbackMap);
-
-                        }
-
-                        FeedbackData feedback;
-                        if (reverseFeedbackMap.containsKey(sender))
-                        {
-                            feedback = reverseFeedbackMap.get(sender);
-                        }
-                        else
-                        {
-                            feedback = new FeedbackData();
-                            reverseFeedbackMap.put(sender, feedback);
-                        }
-
-                        feedback.remb = new REMBData();
-                        feedback.remb.exp = item.remb.exp;
-                        feedback.remb.mantissa = item.remb.mantissa;
-                    }
-
-                }
-            }
-        }
-
-        lastRun = System.currentTimeMillis();
-
-        return reverseFeedbackMapMap;
-    }
-
     /**
      * Calculates a score for the feedback.
      *
      * @param feedback
      * @return
      */
-    private double calculateScore(FeedbackData feedback)
+    static double calculateScore(FeedbackData feedback)
     {
         if (feedback == null)
             throw new IllegalArgumentException();
@@ -215,60 +115,34 @@ public class FeedbackCacheProcessor
     }
 
     /**
+     * Gets the feedback which satisfies {@link #percentile} of the receivers
+     * of each media sender. The feedback is aggregated by the
+     * <tt>FeedbackCache</tt> as it is updated so this is cheap to call at
+     * every report interval.
      *
      * @return <dest, feedback>
      */
     public Map<Integer, FeedbackData> getReverseFeedbackMap()
     {
-        // <dest, <source, feedback>>
-        Map<Integer, Map<Integer, FeedbackData>> reverseFeedbackMapMap
-                = getReverseFeedbackMapMap();
-
-        if (reverseFeedbackMapMap == null || reverseFeedbackMapMap.size() == 0)
+        if (feedbackCache == null)
             return null;
 
-        // let's build the <dest, feedback> map
-        Map<Integer, FeedbackData> reverseFeedbackMap
-                = new HashMap<Integer, FeedbackData>();
+        // Skip expired feedback.
+        feedbackCache.expire(lastRun - expireMillis);
+        lastRun = System.currentTimeMillis();
 
-        // iterate over the destinations
-        for (Map.Entry<Integer, Map<Integer, FeedbackData>> entry
-                : reverseFeedbackMapMap.entrySet())
+        // satisfy the nth percentile (decide)
+        int p = this.percentile;
+        if (p > 100 || p < 0)
         {
-            Integer dest = entry.getKey();
-
-            // <score, feedback>
-            NavigableMap<Double, FeedbackData> scoresMap = new TreeMap<Double, FeedbackData>();
-
-            // rank feedbacks
-
-            // <source, feedback>
-            Map<Integer, FeedbackData> feedbackMap = entry.getValue();
-            for (FeedbackData feedback : feedbackMap.values())
-            {
-                double score = calculateScore(feedback);
-                scoresMap.put(score, feedback);
-            }
-
-            // satisfy the nth percentile (decide)
-            int p = this.percentile;
-            if (p > 100 || p < 0)
-            {
-                // set to something reasonable.
-                p = 70;
-            }
-
-            int idxNearestBest
-                    = (int) Math.ceil((p / 100.0) * scoresMap.size()) - 1;
-
-            FeedbackData feedback
-                    = new ArrayList<FeedbackData>(scoresMap.values())
-                            .get(idxNearestBest);
-
-            reverseFeedbackMap.put(dest, feedback);
+            // set to something reasonable.
+            p = 70;
         }
 
-        return reverseFeedbackMap;
+        Map<Integer, FeedbackData> reverseFeedbackMap
+                = feedbackCache.getPercentileFeedback(p);
+
+        return reverseFeedbackMap.isEmpty() ? null : reverseFeedbackMap;
     }
 
     public int getPercentile()
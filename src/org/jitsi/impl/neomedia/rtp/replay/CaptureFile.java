@@ -0,0 +1,612 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.replay;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Represents the RTP packets recorded in an rtpdump, pcap or pcapng file. The
+ * file is memory-mapped and indexed once upon construction so that its
+ * packets may be read any number of times, by any number of threads, without
+ * further I/O or allocations. Only the UDP payloads of pcap and pcapng files
+ * which look like RTP packets are indexed i.e. RTCP, STUN, DTLS and anything
+ * which is not UDP over IPv4 or IPv6 is skipped. Files larger than 2 GiB are
+ * not supported.
+ * <p>
+ * Instances are immutable and may be shared by any number of
+ * {@link PacketReplayer}s.
+ * </p>
+ */
+public class CaptureFile
+{
+    /**
+     * The ethertype of IPv4.
+     */
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+
+    /**
+     * The ethertype of IPv6.
+     */
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+
+    /**
+     * The ethertype of a 802.1Q VLAN tag.
+     */
+    private static final int ETHERTYPE_VLAN = 0x8100;
+
+    /**
+     * The link type of BSD loopback encapsulation.
+     */
+    private static final int LINKTYPE_NULL = 0;
+
+    /**
+     * The link type of Ethernet.
+     */
+    private static final int LINKTYPE_ETHERNET = 1;
+
+    /**
+     * The link type of raw IPv4 or IPv6 (as written by
+     * <tt>PacketLoggingServiceImpl</tt>).
+     */
+    private static final int LINKTYPE_RAW = 101;
+
+    /**
+     * The link type of Linux "cooked" capture.
+     */
+    private static final int LINKTYPE_LINUX_SLL = 113;
+
+    /**
+     * The type of a pcapng Enhanced Packet Block.
+     */
+    private static final int PCAPNG_EPB = 6;
+
+    /**
+     * The type of a pcapng Interface Description Block.
+     */
+    private static final int PCAPNG_IDB = 1;
+
+    /**
+     * The type of a pcapng Section Header Block.
+     */
+    private static final int PCAPNG_SHB = 0x0A0D0D0A;
+
+    /**
+     * The mapped content of the file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The offsets in {@link #buffer} of the indexed packets.
+     */
+    private int[] offsets;
+
+    /**
+     * The lengths of the indexed packets.
+     */
+    private int[] lengths;
+
+    /**
+     * The number of indexed packets.
+     */
+    private int packetCount;
+
+    /**
+     * The distinct SSRCs of the indexed packets in order of appearance.
+     */
+    private final List<Integer> ssrcs = new ArrayList<>();
+
+    /**
+     * The indices in {@link #ssrcs} of the SSRCs of the indexed packets.
+     */
+    private int[] ssrcIndices;
+
+    /**
+     * The times in microseconds relative to the first indexed packet at which
+     * the indexed packets were recorded.
+     */
+    private long[] times;
+
+    /**
+     * Initializes a new <tt>CaptureFile</tt> instance which is to map and
+     * index a specific rtpdump, pcap or pcapng file. The format is detected
+     * from the content of the file.
+     *
+     * @param file the file to map and index
+     * @throws IOException if reading the file fails or its format is not
+     * supported
+     */
+    public CaptureFile(File file)
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large: " + file);
+
+            // The mapping remains valid after the file has been closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        offsets = new int[1024];
+        lengths = new int[offsets.length];
+        ssrcIndices = new int[offsets.length];
+        times = new long[offsets.length];
+
+        if (buffer.remaining() < 4)
+            throw new IOException("Unsupported file format: " + file);
+
+        int magic = buffer.getInt(0);
+
+        if (magic == PCAPNG_SHB)
+            indexPcapng();
+        else if ((magic == 0xA1B2C3D4)
+                || (magic == 0xD4C3B2A1)
+                || (magic == 0xA1B23C4D)
+                || (magic == 0x4D3CB2A1))
+            indexPcap(magic);
+        else if (buffer.get(0) == '#')
+            indexRtpdump();
+        else
+            throw new IOException("Unsupported file format: " + file);
+
+        if (packetCount > 0)
+        {
+            long time0 = times[0];
+
+            for (int i = 0; i < packetCount; i++)
+                times[i] -= time0;
+        }
+    }
+
+    /**
+     * Adds a packet to the index if it looks like an RTP packet.
+     *
+     * @param offset the offset of the packet in {@link #buffer}
+     * @param length the length of the packet
+     * @param time the time in microseconds at which the packet was recorded
+     */
+    private void add(int offset, int length, long time)
+    {
+        if ((length < 12)
+                || ((buffer.get(offset) & 0xC0) != 0x80))
+            return;
+
+        int pt = buffer.get(offset + 1) & 0x7F;
+
+        // RTCP packet types 200-204 appear as payload types 72-76.
+        if ((pt >= 72) && (pt <= 76))
+            return;
+
+        if (packetCount == offsets.length)
+        {
+            int newLength = offsets.length * 2;
+
+            offsets = Arrays.copyOf(offsets, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            ssrcIndices = Arrays.copyOf(ssrcIndices, newLength);
+            times = Arrays.copyOf(times, newLength);
+        }
+
+        Integer ssrc = buffer.getInt(offset + 8);
+        int ssrcIndex = ssrcs.indexOf(ssrc);
+
+        if (ssrcIndex < 0)
+        {
+            ssrcIndex = ssrcs.size();
+            ssrcs.add(ssrc);
+        }
+
+        offsets[packetCount] = offset;
+        lengths[packetCount] = length;
+        ssrcIndices[packetCount] = ssrcIndex;
+        times[packetCount] = time;
+        packetCount++;
+    }
+
+    /**
+     * Adds the UDP payload of a link-layer frame to the index.
+     *
+     * @param linkType the link type of the frame
+     * @param offset the offset of the frame in {@link #buffer}
+     * @param length the captured length of the frame
+     * @param time the time in microseconds at which the frame was recorded
+     * @param order the byte order of the capture file which is used by the
+     * BSD loopback encapsulation
+     */
+    private void addFrame(
+            int linkType,
+            int offset, int length,
+            long time,
+            ByteOrder order)
+    {
+        int end = offset + length;
+        int etherType;
+
+        switch (linkType)
+        {
+        case LINKTYPE_ETHERNET:
+            if (length < 14)
+                return;
+            etherType = buffer.getShort(offset + 12) & 0xFFFF;
+            offset += 14;
+            while ((etherType == ETHERTYPE_VLAN) && (offset + 4 <= end))
+            {
+                etherType = buffer.getShort(offset + 2) & 0xFFFF;
+                offset += 4;
+            }
+            break;
+        case LINKTYPE_LINUX_SLL:
+            if (length < 16)
+                return;
+            etherType = buffer.getShort(offset + 14) & 0xFFFF;
+            offset += 16;
+            break;
+        case LINKTYPE_NULL:
+            if (length < 4)
+                return;
+            int family = buffer.order(order).getInt(offset);
+
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            etherType = (family == 2) ? ETHERTYPE_IPV4 : ETHERTYPE_IPV6;
+            offset += 4;
+            break;
+        case LINKTYPE_RAW:
+        case 12: // LINKTYPE_RAW on some platforms
+            if (length < 1)
+                return;
+            etherType
+                = (((buffer.get(offset) & 0xF0) >> 4) == 4)
+                    ? ETHERTYPE_IPV4
+                    : ETHERTYPE_IPV6;
+            break;
+        default:
+            return;
+        }
+
+        int protocol;
+
+        if (etherType == ETHERTYPE_IPV4)
+        {
+            if (offset + 20 > end)
+                return;
+            /*
+             * Fragmented datagrams (including their first fragments, which
+             * carry truncated UDP payloads) are not supported so they are
+             * skipped as a whole.
+             */
+            if ((buffer.getShort(offset + 6) & 0x3FFF) != 0)
+                return;
+            protocol = buffer.get(offset + 9) & 0xFF;
+            offset += (buffer.get(offset) & 0x0F) * 4;
+        }
+        else if (etherType == ETHERTYPE_IPV6)
+        {
+            if (offset + 40 > end)
+                return;
+            protocol = buffer.get(offset + 6) & 0xFF;
+            offset += 40;
+        }
+        else
+        {
+            return;
+        }
+        if ((protocol != 17) || (offset + 8 > end))
+            return;
+
+        int udpLength = buffer.getShort(offset + 4) & 0xFFFF;
+
+        offset += 8;
+        add(offset, Math.min(udpLength - 8, end - offset), time);
+    }
+
+    /**
+     * Gets a read-only view of the mapped content of this file with
+     * independent position and limit. Each thread reading the packets of
+     * this file should use its own view.
+     *
+     * @return a read-only view of the mapped content of this file
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the length of a specific indexed packet.
+     *
+     * @param index the index of the packet
+     * @return the length of the packet with the specified <tt>index</tt>
+     */
+    public int getLength(int index)
+    {
+        return lengths[index];
+    }
+
+    /**
+     * Gets the offset in the mapped content of this file (see
+     * {@link #getBuffer()}) of a specific indexed packet.
+     *
+     * @param index the index of the packet
+     * @return the offset of the packet with the specified <tt>index</tt>
+     */
+    public int getOffset(int index)
+    {
+        return offsets[index];
+    }
+
+    /**
+     * Gets the number of indexed packets.
+     *
+     * @return the number of indexed packets
+     */
+    public int getPacketCount()
+    {
+        return packetCount;
+    }
+
+    /**
+     * Gets the number of distinct SSRCs of the indexed packets.
+     *
+     * @return the number of distinct SSRCs of the indexed packets
+     */
+    public int getSSRCCount()
+    {
+        return ssrcs.size();
+    }
+
+    /**
+     * Gets the index of the SSRC of a specific indexed packet among the
+     * distinct SSRCs of the indexed packets in order of appearance.
+     *
+     * @param index the index of the packet
+     * @return the index of the SSRC of the packet with the specified
+     * <tt>index</tt>
+     */
+    public int getSSRCIndex(int index)
+    {
+        return ssrcIndices[index];
+    }
+
+    /**
+     * Gets the time in microseconds relative to the first indexed packet at
+     * which a specific indexed packet was recorded.
+     *
+     * @param index the index of the packet
+     * @return the time in microseconds at which the packet with the specified
+     * <tt>index</tt> was recorded relative to the first indexed packet
+     */
+    public long getTime(int index)
+    {
+        return times[index];
+    }
+
+    /**
+     * Indexes a pcap file.
+     *
+     * @param magic the magic number of the file read in big endian byte order
+     * @throws IOException if the file is malformed
+     */
+    private void indexPcap(int magic)
+        throws IOException
+    {
+        ByteOrder order
+            = ((magic == 0xA1B2C3D4) || (magic == 0xA1B23C4D))
+                ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN;
+        boolean nanos = (magic == 0xA1B23C4D) || (magic == 0x4D3CB2A1);
+        int limit = buffer.limit();
+
+        if (limit < 24)
+            throw new IOException("Truncated pcap header");
+
+        buffer.order(order);
+
+        int linkType = buffer.getInt(20) & 0x0FFFFFFF;
+        int offset = 24;
+
+        while (offset + 16 <= limit)
+        {
+            buffer.order(order);
+
+            long seconds = buffer.getInt(offset) & 0xFFFFFFFFL;
+            long fraction = buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+            int capturedLength = buffer.getInt(offset + 8);
+
+            offset += 16;
+            if ((capturedLength < 0) || (offset + capturedLength > limit))
+                break;
+
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            addFrame(
+                    linkType,
+                    offset, capturedLength,
+                    seconds * 1000000L + (nanos ? fraction / 1000 : fraction),
+                    order);
+            offset += capturedLength;
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Indexes a pcapng file. Only Enhanced Packet Blocks are indexed.
+     *
+     * @throws IOException if the file is malformed
+     */
+    private void indexPcapng()
+        throws IOException
+    {
+        List<int[]> interfaces = new ArrayList<>();
+        ByteOrder order = ByteOrder.BIG_ENDIAN;
+        int limit = buffer.limit();
+        int offset = 0;
+
+        while (offset + 12 <= limit)
+        {
+            buffer.order(order);
+
+            int type = buffer.getInt(offset);
+
+            if (type == PCAPNG_SHB)
+            {
+                order
+                    = (buffer.order(ByteOrder.BIG_ENDIAN).getInt(offset + 8)
+                            == 0x1A2B3C4D)
+                        ? ByteOrder.BIG_ENDIAN
+                        : ByteOrder.LITTLE_ENDIAN;
+                buffer.order(order);
+                interfaces.clear();
+            }
+
+            int blockLength = buffer.getInt(offset + 4);
+
+            if ((blockLength < 12) || (offset + blockLength > limit))
+                break;
+
+            if (type == PCAPNG_IDB)
+            {
+                // The link type and the exponent of the timestamp resolution.
+                interfaces.add(
+                        new int[]
+                        {
+                            buffer.getShort(offset + 8) & 0xFFFF,
+                            getPcapngTimestampResolution(
+                                    offset + 16,
+                                    offset + blockLength - 4)
+                        });
+            }
+            else if ((type == PCAPNG_EPB) && (blockLength >= 32))
+            {
+                int interfaceId = buffer.getInt(offset + 8);
+
+                if ((interfaceId >= 0) && (interfaceId < interfaces.size()))
+                {
+                    int[] iface = interfaces.get(interfaceId);
+                    long timestamp
+                        = ((buffer.getInt(offset + 12) & 0xFFFFFFFFL) << 32)
+                            | (buffer.getInt(offset + 16) & 0xFFFFFFFFL);
+                    int capturedLength = buffer.getInt(offset + 20);
+                    long time = timestamp;
+
+                    for (int i = iface[1]; i > 6; i--)
+                        time /= 10;
+                    for (int i = iface[1]; i < 6; i++)
+                        time *= 10;
+
+                    if ((capturedLength >= 0)
+                            && (capturedLength <= blockLength - 32))
+                    {
+                        buffer.order(ByteOrder.BIG_ENDIAN);
+                        addFrame(
+                                iface[0],
+                                offset + 28, capturedLength,
+                                time,
+                                order);
+                    }
+                }
+            }
+            offset += blockLength;
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Gets the decimal exponent of the timestamp resolution specified by the
+     * options of a pcapng Interface Description Block.
+     *
+     * @param offset the offset in {@link #buffer} of the options
+     * @param end the offset in {@link #buffer} at which the options end
+     * @return the decimal exponent of the timestamp resolution specified by
+     * the options e.g. <tt>6</tt> for microseconds (the default)
+     */
+    private int getPcapngTimestampResolution(int offset, int end)
+    {
+        while (offset + 4 <= end)
+        {
+            int code = buffer.getShort(offset) & 0xFFFF;
+            int length = buffer.getShort(offset + 2) & 0xFFFF;
+
+            if (code == 0)
+                break;
+            // if_tsresol with a power of ten (binary resolutions are rare).
+            if ((code == 9) && (length >= 1))
+            {
+                int tsresol = buffer.get(offset + 4);
+
+                if ((tsresol & 0x80) == 0)
+                    return tsresol;
+            }
+            offset += 4 + ((length + 3) & ~3);
+        }
+        return 6;
+    }
+
+    /**
+     * Indexes an rtpdump file. The records of RTCP packets (i.e. the ones with
+     * a zero packet length) are skipped.
+     *
+     * @throws IOException if the file is malformed
+     */
+    private void indexRtpdump()
+        throws IOException
+    {
+        int limit = buffer.limit();
+        int offset = 0;
+
+        // Skip the line of ASCII text which identifies the format.
+        while ((offset < limit) && (buffer.get(offset) != '\n'))
+            offset++;
+        offset++;
+        if (offset + 16 > limit)
+            throw new IOException("Truncated rtpdump header");
+
+        long startTime
+            = (buffer.getInt(offset) & 0xFFFFFFFFL) * 1000000L
+                + (buffer.getInt(offset + 4) & 0xFFFFFFFFL);
+
+        offset += 16;
+        while (offset + 8 <= limit)
+        {
+            int recordLength = buffer.getShort(offset) & 0xFFFF;
+            int packetLength = buffer.getShort(offset + 2) & 0xFFFF;
+            long time
+                = startTime
+                    + (buffer.getInt(offset + 4) & 0xFFFFFFFFL) * 1000L;
+
+            if ((recordLength < 8) || (offset + recordLength > limit))
+                break;
+            if (packetLength != 0)
+            {
+                add(
+                        offset + 8,
+                        Math.min(packetLength, recordLength - 8),
+                        time);
+            }
+            offset += recordLength;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.replay;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.jitsi.impl.neomedia.*;
+
+/**
+ * Implements {@link ReplayTarget} by sending the replayed RTP packets as UDP
+ * datagrams to a specific address through a <tt>DatagramChannel</tt>. A
+ * single <tt>DatagramChannel</tt> may be shared by any number of instances.
+ */
+public class DatagramReplayTarget
+    implements ReplayTarget
+{
+    /**
+     * The <tt>DatagramChannel</tt> through which the packets are sent.
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * The <tt>ByteBuffer</tt> which wraps the buffer of the last sent
+     * <tt>RawPacket</tt>. Cached because the <tt>PacketReplayer</tt> reuses
+     * the buffers of its <tt>RawPacket</tt>s.
+     */
+    private ByteBuffer byteBuffer;
+
+    /**
+     * The address to which the packets are sent.
+     */
+    private final SocketAddress target;
+
+    /**
+     * Initializes a new <tt>DatagramReplayTarget</tt> instance.
+     *
+     * @param channel the <tt>DatagramChannel</tt> through which the packets
+     * are to be sent
+     * @param target the address to which the packets are to be sent
+     */
+    public DatagramReplayTarget(DatagramChannel channel, SocketAddress target)
+    {
+        this.channel = channel;
+        this.target = target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(RawPacket pkt)
+        throws IOException
+    {
+        byte[] buffer = pkt.getBuffer();
+
+        if ((byteBuffer == null) || (byteBuffer.array() != buffer))
+            byteBuffer = ByteBuffer.wrap(buffer);
+
+        byteBuffer.limit(pkt.getOffset() + pkt.getLength());
+        byteBuffer.position(pkt.getOffset());
+        channel.send(byteBuffer, target);
+    }
+}
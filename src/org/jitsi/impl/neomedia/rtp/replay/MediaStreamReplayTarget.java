@@ -0,0 +1,71 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.replay;
+
+import java.io.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.service.neomedia.*;
+
+/**
+ * Implements {@link ReplayTarget} by injecting the replayed RTP packets into
+ * a specific <tt>MediaStream</tt> so that they go through its
+ * <tt>TransformEngine</tt> chain (e.g. SRTP) and are sent to its target.
+ */
+public class MediaStreamReplayTarget
+    implements ReplayTarget
+{
+    /**
+     * The <tt>MediaStream</tt> into which the packets are injected.
+     */
+    private final MediaStream stream;
+
+    /**
+     * Initializes a new <tt>MediaStreamReplayTarget</tt> instance.
+     *
+     * @param stream the <tt>MediaStream</tt> into which the packets are to be
+     * injected
+     */
+    public MediaStreamReplayTarget(MediaStream stream)
+    {
+        this.stream = stream;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The packet is not modified. The <tt>RTPConnectorOutputStream</tt> of the
+     * <tt>MediaStream</tt> copies it into a <tt>RawPacket</tt> of its own pool
+     * before the <tt>TransformEngine</tt> chain transforms it in place so
+     * <tt>pkt</tt> may be reused as soon as the method returns.
+     */
+    @Override
+    public void send(RawPacket pkt)
+        throws IOException
+    {
+        try
+        {
+            stream.injectPacket(pkt, true, null);
+        }
+        catch (TransmissionFailedException tfe)
+        {
+            IOException ioe = new IOException();
+
+            ioe.initCause(tfe);
+            throw ioe;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.replay;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * Replays the RTP packets of a {@link CaptureFile} with their recorded timing
+ * into any number of {@link ReplayTarget}s at the same time. Every target
+ * receives a clone of the recorded streams with its own SSRCs and random
+ * initial sequence numbers and RTP timestamps so that the clones look like
+ * independent endpoints to their receiver. The packets are read from the
+ * memory-mapped file and copied into a buffer owned by each clone so that
+ * replaying does not allocate.
+ * <p>
+ * The replay may be accelerated (or slowed down) through
+ * {@link #setSpeed(double)} and may loop in which case the sequence numbers
+ * and RTP timestamps of the clones continue across the iterations.
+ * </p>
+ */
+public class PacketReplayer
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>PacketReplayer</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(PacketReplayer.class);
+
+    /**
+     * The <tt>Random</tt> which generates the initial sequence numbers and RTP
+     * timestamps of the clones.
+     */
+    private static final Random random = new Random();
+
+    /**
+     * The clones of the recorded streams to be replayed.
+     */
+    private final List<Clone> clones = new CopyOnWriteArrayList<>();
+
+    /**
+     * The <tt>CaptureFile</tt> which is replayed.
+     */
+    private final CaptureFile file;
+
+    /**
+     * The indicator which determines whether the replay starts over when it
+     * reaches the end of {@link #file}.
+     */
+    private volatile boolean loop;
+
+    /**
+     * The duration in microseconds of an iteration of a looping replay.
+     */
+    private final long loopDuration;
+
+    /**
+     * The number of packets sent so far.
+     */
+    private final AtomicLong packetsSent = new AtomicLong();
+
+    /**
+     * The numbers by which the sequence numbers of the recorded streams (by
+     * their SSRC index in {@link #file}) advance with every iteration of a
+     * looping replay.
+     */
+    private final int[] seqSpans;
+
+    /**
+     * The factor by which the replay is faster than real time or <tt>0</tt>
+     * to replay as fast as possible.
+     */
+    private volatile double speed = 1;
+
+    /**
+     * The <tt>Thread</tt> which replays {@link #file} or <tt>null</tt> if
+     * this instance is not started.
+     */
+    private volatile Thread thread;
+
+    /**
+     * The numbers by which the RTP timestamps of the recorded streams (by
+     * their SSRC index in {@link #file}) advance with every iteration of a
+     * looping replay.
+     */
+    private final int[] tsSpans;
+
+    /**
+     * Initializes a new <tt>PacketReplayer</tt> instance which is to replay
+     * the RTP packets of a specific <tt>CaptureFile</tt>.
+     *
+     * @param file the <tt>CaptureFile</tt> to replay
+     */
+    public PacketReplayer(CaptureFile file)
+    {
+        this.file = file;
+
+        int packetCount = file.getPacketCount();
+        int ssrcCount = file.getSSRCCount();
+        ByteBuffer buffer = file.getBuffer();
+
+        // Determine by how much each stream advances in an iteration.
+        int[] firstSeqs = new int[ssrcCount];
+        int[] lastSeqs = new int[ssrcCount];
+        int[] firstTss = new int[ssrcCount];
+        int[] lastTss = new int[ssrcCount];
+        int[] lastTsSteps = new int[ssrcCount];
+        boolean[] seen = new boolean[ssrcCount];
+
+        seqSpans = new int[ssrcCount];
+        tsSpans = new int[ssrcCount];
+        for (int i = 0; i < packetCount; i++)
+        {
+            int k = file.getSSRCIndex(i);
+            int offset = file.getOffset(i);
+            int seq = buffer.getShort(offset + 2) & 0xFFFF;
+            int ts = buffer.getInt(offset + 4);
+
+            if (!seen[k])
+            {
+                seen[k] = true;
+                firstSeqs[k] = lastSeqs[k] = seq;
+                firstTss[k] = lastTss[k] = ts;
+                continue;
+            }
+
+            // Unwrap the sequence numbers which are newer.
+            int seqDelta = (short) (seq - lastSeqs[k]);
+
+            if (seqDelta > 0)
+                lastSeqs[k] += seqDelta;
+
+            int tsDelta = ts - lastTss[k];
+
+            if (tsDelta > 0)
+            {
+                lastTss[k] = ts;
+                lastTsSteps[k] = tsDelta;
+            }
+        }
+        for (int k = 0; k < ssrcCount; k++)
+        {
+            seqSpans[k] = lastSeqs[k] - firstSeqs[k] + 1;
+            tsSpans[k] = lastTss[k] - firstTss[k] + lastTsSteps[k];
+        }
+
+        long duration
+            = (packetCount == 0) ? 0 : file.getTime(packetCount - 1);
+
+        // Leave the average packet interval between the iterations.
+        loopDuration
+            = duration + ((packetCount > 1) ? duration / (packetCount - 1) : 0);
+    }
+
+    /**
+     * Adds a clone of the recorded streams to be replayed to a specific
+     * <tt>ReplayTarget</tt>. The k-th recorded stream (in order of appearance
+     * in the file) is replayed with the SSRC <tt>ssrc + k</tt>. May be invoked
+     * while replaying.
+     *
+     * @param target the <tt>ReplayTarget</tt> to replay the clone to
+     * @param ssrc the SSRC of the first recorded stream in the clone
+     */
+    public void addClone(ReplayTarget target, int ssrc)
+    {
+        clones.add(new Clone(target, ssrc, file.getSSRCCount()));
+    }
+
+    /**
+     * Gets the number of packets sent so far by all clones.
+     *
+     * @return the number of packets sent so far by all clones
+     */
+    public long getPacketsSent()
+    {
+        return packetsSent.get();
+    }
+
+    /**
+     * Removes the clones which replay to a specific <tt>ReplayTarget</tt>.
+     *
+     * @param target the <tt>ReplayTarget</tt> to stop replaying to
+     */
+    public void removeClone(ReplayTarget target)
+    {
+        for (Clone clone : clones)
+        {
+            if (clone.target == target)
+                clones.remove(clone);
+        }
+    }
+
+    /**
+     * Replays {@link #file} until {@link #stop()} is invoked or the end of
+     * the file is reached without looping.
+     */
+    private void runInThread()
+    {
+        int packetCount = file.getPacketCount();
+
+        if (packetCount == 0)
+            return;
+
+        ByteBuffer buffer = file.getBuffer();
+        long startTime = System.nanoTime();
+        long iterationTime = 0;
+        int iteration = 0;
+
+        while (true)
+        {
+            for (int i = 0; i < packetCount; i++)
+            {
+                if (thread != Thread.currentThread())
+                    return;
+
+                double speed = this.speed;
+
+                if (speed > 0)
+                {
+                    long time = iterationTime + file.getTime(i);
+                    long due
+                        = startTime
+                            + (long) (TimeUnit.MICROSECONDS.toNanos(time)
+                                    / speed);
+                    long delay;
+
+                    while ((delay = due - System.nanoTime()) > 0)
+                    {
+                        LockSupport.parkNanos(delay);
+                        if (thread != Thread.currentThread())
+                            return;
+                    }
+                }
+
+                int offset = file.getOffset(i);
+                int length = file.getLength(i);
+                int k = file.getSSRCIndex(i);
+
+                for (Clone clone : clones)
+                {
+                    try
+                    {
+                        clone.send(buffer, offset, length, k, iteration);
+                        packetsSent.incrementAndGet();
+                    }
+                    catch (IOException ioe)
+                    {
+                        if (logger.isDebugEnabled())
+                            logger.debug("Failed to replay a packet.", ioe);
+                    }
+                }
+            }
+
+            if (!loop)
+                break;
+            iteration++;
+            iterationTime += loopDuration;
+        }
+    }
+
+    /**
+     * Sets whether the replay is to start over when it reaches the end of the
+     * file.
+     *
+     * @param loop <tt>true</tt> to loop the replay; otherwise, <tt>false</tt>
+     */
+    public void setLoop(boolean loop)
+    {
+        this.loop = loop;
+    }
+
+    /**
+     * Sets the factor by which the replay is to be faster than the recorded
+     * timing. Takes effect for the packets which have not been sent yet
+     * relative to the start of the replay.
+     *
+     * @param speed the factor by which the replay is to be faster than the
+     * recorded timing (e.g. <tt>1</tt> for real time, <tt>2</tt> for twice as
+     * fast) or <tt>0</tt> to replay as fast as possible
+     */
+    public void setSpeed(double speed)
+    {
+        if (speed < 0)
+            throw new IllegalArgumentException("speed");
+        this.speed = speed;
+    }
+
+    /**
+     * Starts replaying in a new daemon thread if not started already.
+     */
+    public synchronized void start()
+    {
+        if (thread != null)
+            return;
+
+        thread
+            = new Thread(PacketReplayer.class.getName())
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        runInThread();
+                    }
+                    finally
+                    {
+                        synchronized (PacketReplayer.this)
+                        {
+                            if (thread == Thread.currentThread())
+                                thread = null;
+                        }
+                    }
+                }
+            };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops replaying.
+     */
+    public synchronized void stop()
+    {
+        Thread thread = this.thread;
+
+        if (thread != null)
+        {
+            this.thread = null;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Represents a clone of the recorded streams replayed to a specific
+     * <tt>ReplayTarget</tt>.
+     */
+    private class Clone
+    {
+        /**
+         * The <tt>RawPacket</tt> in which the packets of this clone are
+         * rewritten before they are sent.
+         */
+        private final RawPacket pkt = new RawPacket(new byte[1500], 0, 0);
+
+        /**
+         * The random offsets of the sequence numbers of the streams of this
+         * clone relative to the recorded ones.
+         */
+        private final int[] seqOffsets;
+
+        /**
+         * The SSRC of the first stream of this clone.
+         */
+        private final int ssrc;
+
+        /**
+         * The <tt>ReplayTarget</tt> to which this clone is replayed.
+         */
+        final ReplayTarget target;
+
+        /**
+         * The random offsets of the RTP timestamps of the streams of this
+         * clone relative to the recorded ones.
+         */
+        private final int[] tsOffsets;
+
+        /**
+         * Initializes a new <tt>Clone</tt> instance.
+         *
+         * @param target the <tt>ReplayTarget</tt> to which the new instance is
+         * to be replayed
+         * @param ssrc the SSRC of the first stream of the new instance
+         * @param ssrcCount the number of recorded streams
+         */
+        Clone(ReplayTarget target, int ssrc, int ssrcCount)
+        {
+            this.target = target;
+            this.ssrc = ssrc;
+
+            seqOffsets = new int[ssrcCount];
+            tsOffsets = new int[ssrcCount];
+            for (int k = 0; k < ssrcCount; k++)
+            {
+                seqOffsets[k] = random.nextInt(0x10000);
+                tsOffsets[k] = random.nextInt();
+            }
+        }
+
+        /**
+         * Rewrites a recorded packet for this clone and sends it to
+         * {@link #target}.
+         *
+         * @param buffer the mapped content of the file
+         * @param offset the offset of the packet in <tt>buffer</tt>
+         * @param length the length of the packet
+         * @param k the index of the SSRC of the packet in the file
+         * @param iteration the iteration of the replay
+         * @throws IOException if sending fails
+         */
+        void send(
+                ByteBuffer buffer, int offset, int length,
+                int k,
+                int iteration)
+            throws IOException
+        {
+            byte[] data = pkt.getBuffer();
+
+            if (data.length < length)
+            {
+                data = new byte[length];
+                pkt.setBuffer(data);
+            }
+            buffer.position(offset);
+            buffer.get(data, 0, length);
+            pkt.setOffset(0);
+            pkt.setLength(length);
+
+            pkt.setSSRC(ssrc + k);
+            pkt.setSequenceNumber(
+                    (pkt.getSequenceNumber()
+                            + seqOffsets[k]
+                            + iteration * seqSpans[k])
+                        & 0xFFFF);
+            pkt.setTimestamp(
+                    (pkt.getTimestamp()
+                            + tsOffsets[k]
+                            + iteration * tsSpans[k])
+                        & 0xFFFFFFFFL);
+
+            target.send(pkt);
+        }
+    }
+}
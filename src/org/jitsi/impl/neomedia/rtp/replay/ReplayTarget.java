@@ -0,0 +1,38 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.rtp.replay;
+
+import java.io.*;
+
+import org.jitsi.impl.neomedia.*;
+
+/**
+ * Represents a destination of the RTP packets replayed by a
+ * {@link PacketReplayer}.
+ */
+public interface ReplayTarget
+{
+    /**
+     * Sends a specific RTP packet. The <tt>RawPacket</tt> and its buffer are
+     * reused by the <tt>PacketReplayer</tt> as soon as the method returns so
+     * implementations which retain the packet have to copy it.
+     *
+     * @param pkt the RTP packet to send
+     * @throws IOException if sending fails
+     */
+    void send(RawPacket pkt)
+        throws IOException;
+}
@@ -127,8 +127,8 @@ class OutputDataStreamImpl
 
     private synchronized void createWriteThread()
     {
-        writeThread = new Thread(this, getClass().getName());
-        writeThread.setDaemon(true);
+        writeThread
+            = ExecutorUtils.newThread(this, getClass().getName(), true, 0);
         writeThread.start();
     }
 
@@ -85,48 +85,11 @@ public class AbsSendTimeEngine
      */
     private void replaceAbsSendTime(RawPacket pkt)
     {
-        byte[] buf = pkt.getBuffer();
-        int extensionOffset = pkt.getOffset();
+        HeaderExtensions headerExtensions = pkt.getHeaderExtensions();
+        int i = headerExtensions.indexOf(extensionID);
 
-        // Skip the fixed header.
-        extensionOffset += RawPacket.FIXED_HEADER_SIZE;
-        // Skip the list of CSRCs.
-        extensionOffset += pkt.getCsrcCount() * 4;
-
-        // Skip the 16-bit "defined by profile" field (RFC3550).
-        extensionOffset += 2;
-
-        if (extensionOffset + 1 < buf.length) //we can read 'length'
-        {
-            int lengthInWords
-                    = buf[extensionOffset] << 8
-                      | buf[extensionOffset + 1];
-            // Length in bytes of the header extensions
-            int lengthInBytes = 4 * (1 + lengthInWords);
-            extensionOffset += 2;
-
-            int innerOffset = 0;
-            while (extensionOffset < buf.length && innerOffset < lengthInBytes)
-            {
-                int id = (buf[extensionOffset] & 0xf0) >> 4;
-                int len = buf[extensionOffset] & 0x0f;
-                if (id == extensionID)
-                {
-                    if (len == 2 && extensionOffset + 3 < buf.length)
-                    {
-                        setTimestamp(buf, extensionOffset + 1);
-                    }
-                    return;
-                }
-                else
-                {
-                    // 1 byte for id/len, one more byte by the definition of
-                    // len, see RFC5285
-                    innerOffset += 1 + len + 1;
-                    extensionOffset += 1 + len + 1;
-                }
-            }
-        }
+        if (i != -1 && headerExtensions.getLength(i) == 3)
+            setTimestamp(pkt.getBuffer(), headerExtensions.getOffset(i));
     }
 
     /**
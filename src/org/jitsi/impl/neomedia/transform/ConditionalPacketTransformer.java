@@ -0,0 +1,48 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform;
+
+import org.jitsi.impl.neomedia.*;
+
+/**
+ * A <tt>PacketTransformer</tt> which may declare that, in its current state,
+ * it leaves the packets unmodified in either direction. A
+ * <tt>TransformEngineChain</tt> skips such a transformer altogether instead of
+ * invoking it on each packet of each batch.
+ */
+public interface ConditionalPacketTransformer
+    extends PacketTransformer
+{
+    /**
+     * Determines whether this <tt>PacketTransformer</tt> currently modifies
+     * (or otherwise inspects) the packets it reverse-transforms. Invoked once
+     * per batch of packets so it should be cheap.
+     *
+     * @return <tt>true</tt> if {@link #reverseTransform(RawPacket[])} is to be
+     * invoked; <tt>false</tt> if it may be skipped
+     */
+    public boolean isReverseTransformActive();
+
+    /**
+     * Determines whether this <tt>PacketTransformer</tt> currently modifies
+     * (or otherwise inspects) the packets it transforms. Invoked once per
+     * batch of packets so it should be cheap.
+     *
+     * @return <tt>true</tt> if {@link #transform(RawPacket[])} is to be
+     * invoked; <tt>false</tt> if it may be skipped
+     */
+    public boolean isTransformActive();
+}
@@ -248,7 +248,7 @@ public class DebugTransformEngine implements TransformEngine
                 (dst != null) ? dst.getPort() : 1,
                 PacketLoggingService.TransportName.UDP,
                 sender,
-                pkt.getBuffer().clone(),
+                pkt.getBuffer(),
                 pkt.getOffset(),
                 pkt.getLength());
 
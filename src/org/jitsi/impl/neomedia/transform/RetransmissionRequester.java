@@ -113,16 +113,18 @@ public class RetransmissionRequester
         this.senderSsrc = senderSsrc;
 
         thread
-            = new Thread()
-            {
-                @Override
-                public void run()
-                {
-                    runInRequesterThread();
-                }
-            };
-        thread.setDaemon(true);
-        thread.setName(RetransmissionRequester.class.getName());
+            = ExecutorUtils.newThread(
+                    new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInRequesterThread();
+                        }
+                    },
+                    RetransmissionRequester.class.getName(),
+                    true,
+                    0);
         thread.start();
     }
 
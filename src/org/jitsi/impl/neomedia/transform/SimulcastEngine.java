@@ -0,0 +1,539 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform;
+
+import java.util.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.codec.video.*;
+import org.jitsi.impl.neomedia.rtcp.*;
+import org.jitsi.impl.neomedia.rtp.remotebitrateestimator.*;
+import org.jitsi.impl.neomedia.rtp.translator.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.service.neomedia.codec.*;
+import org.jitsi.service.neomedia.format.*;
+import org.jitsi.util.*;
+
+/**
+ * Selects which one of the simulcast encodings (layers) of a sender is
+ * forwarded to the receiver of the associated <tt>MediaStream</tt> and drops
+ * the RTP packets (and their RTX retransmissions) of all other layers. It is
+ * placed right before the {@link SsrcRewritingEngine} in the
+ * <tt>TransformEngine</tt> chain so that the dropped packets are neither
+ * rewritten nor encrypted, and the <tt>SsrcRewritingEngine</tt> sees a single
+ * layer at a time which it rewrites to the target SSRC.
+ * <p>
+ * The layer is selected from the bandwidth estimate of the receiver (learnt
+ * from the REMB packets that it sends or set through
+ * {@link #setBandwidthEstimate(long)}) and the bitrates at which the layers
+ * are received: the highest layer which fits in the estimate is selected. A
+ * switch (up or down) takes effect on the first key frame of the newly
+ * selected layer only so that the receiver can decode it. A FIR is sent to
+ * the sender of the newly selected layer to expedite the key frame.
+ * </p>
+ */
+public class SimulcastEngine
+    implements TransformEngine
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>SimulcastEngine</tt> class and its
+     * instances to print debug information.
+     */
+    private static final Logger logger
+        = Logger.getLogger(SimulcastEngine.class);
+
+    /**
+     * The minimum interval in milliseconds between two FIRs sent for the
+     * layer which is waited for.
+     */
+    private static final long FIR_INTERVAL_MS = 1000;
+
+    /**
+     * The window in milliseconds over which the bitrates of the layers are
+     * measured.
+     */
+    private static final int RATE_WINDOW_MS = 1000;
+
+    /**
+     * The interval in milliseconds at which the layer to be forwarded is
+     * reselected.
+     */
+    private static final long SELECTION_INTERVAL_MS = 500;
+
+    /**
+     * The factor by which the bandwidth estimate has to exceed the bitrate of
+     * a layer higher than the forwarded one for it to be selected. Prevents
+     * switching back and forth between two layers when the estimate is close
+     * to the bitrate of the higher one.
+     */
+    private static final double UP_SWITCH_MARGIN = 1.2;
+
+    /**
+     * The bandwidth estimate in bits per second of the receiver or
+     * <tt>-1</tt> if it is not known yet.
+     */
+    private volatile long bandwidthEstimate = -1;
+
+    /**
+     * The index in {@link #layers} of the layer which is forwarded or
+     * <tt>-1</tt> if no layer is forwarded yet.
+     */
+    private int forwarded = -1;
+
+    /**
+     * The time in milliseconds at which the layer to be forwarded was last
+     * selected.
+     */
+    private long lastSelectionTime;
+
+    /**
+     * The simulcast layers of the sender ordered from the lowest to the
+     * highest quality. Replaced rather than modified.
+     */
+    private volatile Layer[] layers = new Layer[0];
+
+    /**
+     * The <tt>MediaStream</tt> of the receiver.
+     */
+    private final MediaStreamImpl mediaStream;
+
+    /**
+     * The payload type of RED in {@link #mediaStream} or <tt>-1</tt>.
+     */
+    private byte redPT = -1;
+
+    /**
+     * The <tt>PacketTransformer</tt> which inspects the RTCP packets of the
+     * receiver for its bandwidth estimate.
+     */
+    private final PacketTransformer rtcpTransformer
+        = new SinglePacketTransformerAdapter()
+        {
+            @Override
+            public RawPacket reverseTransform(RawPacket pkt)
+            {
+                if ((pkt != null) && (layers.length != 0))
+                    parseREMB(pkt);
+                return pkt;
+            }
+        };
+
+    /**
+     * The <tt>PacketTransformer</tt> which drops the RTP packets of the
+     * layers which are not forwarded.
+     */
+    private final PacketTransformer rtpTransformer
+        = new SinglePacketTransformerAdapter()
+        {
+            @Override
+            public RawPacket transform(RawPacket pkt)
+            {
+                return (pkt == null) ? null : filter(pkt);
+            }
+        };
+
+    /**
+     * The index in {@link #layers} of the layer selected to be forwarded.
+     * It becomes {@link #forwarded} on its first key frame.
+     */
+    private int selected = -1;
+
+    /**
+     * The payload type of VP8 in {@link #mediaStream} or <tt>-1</tt> in which
+     * case key frames cannot be detected and switches take effect
+     * immediately.
+     */
+    private byte vp8PT = -1;
+
+    /**
+     * Initializes a new <tt>SimulcastEngine</tt> instance.
+     *
+     * @param mediaStream the <tt>MediaStream</tt> of the receiver
+     */
+    public SimulcastEngine(MediaStreamImpl mediaStream)
+    {
+        this.mediaStream = mediaStream;
+    }
+
+    /**
+     * Gets the bandwidth estimate of the receiver.
+     *
+     * @return the bandwidth estimate in bits per second of the receiver or
+     * <tt>-1</tt> if it is not known
+     */
+    public long getBandwidthEstimate()
+    {
+        return bandwidthEstimate;
+    }
+
+    /**
+     * Gets the SSRC of the layer which is forwarded to the receiver.
+     *
+     * @return the SSRC of the layer which is forwarded to the receiver or
+     * <tt>-1</tt> if no layer is forwarded
+     */
+    public synchronized long getForwardedSSRC()
+    {
+        Layer[] layers = this.layers;
+
+        return
+            (forwarded < 0 || forwarded >= layers.length)
+                ? -1
+                : (layers[forwarded].ssrc & 0xffffffffl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketTransformer getRTCPTransformer()
+    {
+        return rtcpTransformer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketTransformer getRTPTransformer()
+    {
+        return rtpTransformer;
+    }
+
+    /**
+     * Updates {@link #bandwidthEstimate} from the REMB packets in a specific
+     * (compound) RTCP packet. Reads the packet in place without parsing it
+     * into <tt>RTCPPacket</tt>s.
+     *
+     * @param pkt the RTCP packet received from the receiver
+     */
+    private void parseREMB(RawPacket pkt)
+    {
+        byte[] buf = pkt.getBuffer();
+        int off = pkt.getOffset();
+        int end = off + pkt.getLength();
+
+        while (off + 4 <= end)
+        {
+            int b0 = buf[off] & 0xff;
+
+            if ((b0 >>> 6) != 2)
+                break;
+
+            int len
+                = ((((buf[off + 2] & 0xff) << 8) | (buf[off + 3] & 0xff)) + 1)
+                    * 4;
+
+            if (off + len > end)
+                break;
+            if ((buf[off + 1] & 0xff) == RTCPFBPacket.PSFB
+                    && (b0 & 0x1f) == RTCPREMBPacket.FMT
+                    && len >= 20
+                    && buf[off + 12] == 'R'
+                    && buf[off + 13] == 'E'
+                    && buf[off + 14] == 'M'
+                    && buf[off + 15] == 'B')
+            {
+                int exp = (buf[off + 17] & 0xfc) >>> 2;
+                long mantissa
+                    = ((buf[off + 17] & 0x03) << 16)
+                        | ((buf[off + 18] & 0xff) << 8)
+                        | (buf[off + 19] & 0xff);
+
+                setBandwidthEstimate(mantissa << exp);
+            }
+            off += len;
+        }
+    }
+
+    /**
+     * Sends a FIR for a specific layer through the <tt>RTPTranslator</tt> of
+     * {@link #mediaStream}, if any.
+     *
+     * @param layer the layer to request a key frame for
+     * @param now the current time in milliseconds
+     */
+    private void requestKeyFrame(Layer layer, long now)
+    {
+        if (now - layer.lastFIRTime < FIR_INTERVAL_MS)
+            return;
+        layer.lastFIRTime = now;
+
+        RTPTranslator rtpTranslator = mediaStream.getRTPTranslator();
+
+        if (rtpTranslator instanceof RTPTranslatorImpl)
+        {
+            ((RTPTranslatorImpl) rtpTranslator)
+                .getRtcpFeedbackMessageSender()
+                    .sendFIR(layer.ssrc);
+        }
+    }
+
+    /**
+     * Selects the layer to be forwarded from {@link #bandwidthEstimate} and
+     * the measured bitrates of the layers. Requests a key frame for the
+     * selected layer if it is not the forwarded one.
+     *
+     * @param layers the layers to select from
+     * @param now the current time in milliseconds
+     */
+    private void select(Layer[] layers, long now)
+    {
+        lastSelectionTime = now;
+
+        // The payload types may change during the lifetime of the stream.
+        vp8PT = redPT = -1;
+        for (Map.Entry<Byte, MediaFormat> e
+                : mediaStream.getDynamicRTPPayloadTypes().entrySet())
+        {
+            String encoding = e.getValue().getEncoding();
+
+            if (Constants.VP8.equalsIgnoreCase(encoding))
+                vp8PT = e.getKey();
+            else if (Constants.RED.equalsIgnoreCase(encoding))
+                redPT = e.getKey();
+        }
+
+        long bandwidthEstimate = this.bandwidthEstimate;
+        int newSelected = -1;
+
+        for (int i = 0; i < layers.length; i++)
+        {
+            long rate = layers[i].getRate(now);
+
+            // Do not select a layer which the sender does not send (any
+            // longer) unless there is no other choice.
+            if (rate == 0)
+            {
+                if (newSelected < 0 && i == layers.length - 1)
+                    newSelected = i;
+                continue;
+            }
+            if (newSelected < 0)
+            {
+                // The lowest layer which is received is the fallback.
+                newSelected = i;
+                continue;
+            }
+            if (bandwidthEstimate < 0)
+                break;
+
+            double margin = (i > forwarded) ? UP_SWITCH_MARGIN : 1;
+
+            if (rate * margin <= bandwidthEstimate)
+                newSelected = i;
+            else
+                break;
+        }
+
+        if (newSelected != selected)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(
+                        mediaStream.getProperty(
+                                MediaStream.PNAME_RECEIVER_IDENTIFIER)
+                            + ": selected simulcast layer " + newSelected
+                            + " (forwarding " + forwarded
+                            + ", bandwidth estimate " + bandwidthEstimate
+                            + " bps).");
+            }
+            selected = newSelected;
+        }
+        if (selected >= 0 && selected != forwarded)
+            requestKeyFrame(layers[selected], now);
+    }
+
+    /**
+     * Sets the bandwidth estimate of the receiver. The layer to be forwarded
+     * is reselected on the next packet.
+     *
+     * @param bandwidthEstimate the bandwidth estimate in bits per second of
+     * the receiver or <tt>-1</tt> if it is not known
+     */
+    public synchronized void setBandwidthEstimate(long bandwidthEstimate)
+    {
+        long oldValue = this.bandwidthEstimate;
+
+        this.bandwidthEstimate = bandwidthEstimate;
+        // React to a drop of the estimate immediately.
+        if (bandwidthEstimate < oldValue)
+            lastSelectionTime = 0;
+    }
+
+    /**
+     * Sets the simulcast layers of the sender whose one layer is to be
+     * forwarded to the receiver. Packets with other SSRCs are not affected.
+     *
+     * @param ssrcs the SSRCs of the layers ordered from the lowest to the
+     * highest quality or <tt>null</tt> to forward all packets
+     * @param rtxSSRCs the SSRCs of the RTX streams of the layers in the order
+     * of <tt>ssrcs</tt> (with <tt>0</tt> for a layer without RTX) or
+     * <tt>null</tt> if the layers have no RTX streams
+     */
+    public synchronized void setLayers(int[] ssrcs, int[] rtxSSRCs)
+    {
+        Layer[] newLayers = new Layer[(ssrcs == null) ? 0 : ssrcs.length];
+
+        for (int i = 0; i < newLayers.length; i++)
+        {
+            int rtxSSRC
+                = (rtxSSRCs != null && i < rtxSSRCs.length) ? rtxSSRCs[i] : 0;
+
+            newLayers[i] = new Layer(ssrcs[i], rtxSSRC);
+        }
+
+        layers = newLayers;
+        forwarded = selected = -1;
+        lastSelectionTime = 0;
+    }
+
+    /**
+     * Determines whether a specific RTP packet is to be forwarded to the
+     * receiver.
+     *
+     * @param pkt the RTP packet to be sent to the receiver
+     * @return <tt>pkt</tt> if it is to be forwarded; <tt>null</tt> if it is
+     * to be dropped
+     */
+    private RawPacket filter(RawPacket pkt)
+    {
+        Layer[] layers = this.layers;
+
+        if (layers.length == 0)
+            return pkt;
+
+        int ssrc = pkt.getSSRC();
+        int index = -1;
+        boolean rtx = false;
+
+        for (int i = 0; i < layers.length; i++)
+        {
+            Layer layer = layers[i];
+
+            if (layer.ssrc == ssrc)
+            {
+                index = i;
+                break;
+            }
+            else if (layer.rtxSSRC == ssrc && ssrc != 0)
+            {
+                index = i;
+                rtx = true;
+                break;
+            }
+        }
+        if (index < 0)
+            return pkt;
+
+        long now = System.currentTimeMillis();
+
+        if (!rtx)
+            layers[index].update(pkt.getLength(), now);
+
+        synchronized (this)
+        {
+            if (layers != this.layers)
+                return null;
+
+            if (now - lastSelectionTime >= SELECTION_INTERVAL_MS)
+                select(layers, now);
+
+            if (!rtx
+                    && index == selected
+                    && index != forwarded
+                    && (vp8PT < 0 || Utils.isKeyFrame(pkt, redPT, vp8PT)))
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(
+                            mediaStream.getProperty(
+                                    MediaStream.PNAME_RECEIVER_IDENTIFIER)
+                                + ": switching from simulcast layer "
+                                + forwarded + " to " + index + ".");
+                }
+                forwarded = index;
+            }
+
+            return (index == forwarded) ? pkt : null;
+        }
+    }
+
+    /**
+     * Represents a simulcast layer i.e. an encoding of the sender with its
+     * own SSRC.
+     */
+    private static class Layer
+    {
+        /**
+         * The time in milliseconds at which a FIR was last sent for this
+         * layer.
+         */
+        long lastFIRTime = -FIR_INTERVAL_MS;
+
+        /**
+         * The bitrate at which this layer is received.
+         */
+        private final RateStatistics rate
+            = new RateStatistics(RATE_WINDOW_MS, 8000F);
+
+        /**
+         * The SSRC of the RTX stream of this layer or <tt>0</tt>.
+         */
+        final int rtxSSRC;
+
+        /**
+         * The SSRC of this layer.
+         */
+        final int ssrc;
+
+        /**
+         * Initializes a new <tt>Layer</tt> instance.
+         *
+         * @param ssrc the SSRC of the new instance
+         * @param rtxSSRC the SSRC of the RTX stream of the new instance or
+         * <tt>0</tt>
+         */
+        Layer(int ssrc, int rtxSSRC)
+        {
+            this.ssrc = ssrc;
+            this.rtxSSRC = rtxSSRC;
+        }
+
+        /**
+         * Gets the bitrate at which this layer is received.
+         *
+         * @param now the current time in milliseconds
+         * @return the bitrate in bits per second at which this layer is
+         * received
+         */
+        synchronized long getRate(long now)
+        {
+            return rate.getRate(now);
+        }
+
+        /**
+         * Accounts for a received packet of this layer.
+         *
+         * @param length the length in bytes of the packet
+         * @param now the current time in milliseconds
+         */
+        synchronized void update(int length, long now)
+        {
+            rate.update(length, now);
+        }
+    }
+}
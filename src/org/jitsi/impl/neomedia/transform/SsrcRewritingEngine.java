@@ -527,7 +527,20 @@ public class SsrcRewritingEngine implements TransformEngine
      */
     private class MyRTPSinglePacketTransformer
         extends SinglePacketTransformerAdapter
+        implements ConditionalPacketTransformer
     {
+        @Override
+        public boolean isReverseTransformActive()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isTransformActive()
+        {
+            return initialized;
+        }
+
         @Override
         public RawPacket transform(RawPacket pkt)
         {
@@ -567,7 +580,20 @@ public class SsrcRewritingEngine implements TransformEngine
      */
     private class MyRTCPSinglePacketTransformer
         extends SinglePacketTransformerAdapter
+        implements ConditionalPacketTransformer
     {
+        @Override
+        public boolean isReverseTransformActive()
+        {
+            return initialized;
+        }
+
+        @Override
+        public boolean isTransformActive()
+        {
+            return false;
+        }
+
         @Override
         public RawPacket reverseTransform(RawPacket pkt)
         {
@@ -0,0 +1,724 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.transform;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.codec.video.vp8.*;
+import org.jitsi.impl.neomedia.rtcp.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.service.neomedia.codec.*;
+import org.jitsi.service.neomedia.format.*;
+import org.jitsi.util.*;
+
+/**
+ * Drops the VP8 frames of the temporal layers above a specific one from the
+ * RTP packets sent to the receiver of the associated <tt>MediaStream</tt> in
+ * order to reduce its frame rate (and bitrate) without transcoding. The
+ * temporal layer of a frame is read from the TID field of its VP8 Payload
+ * Descriptor. The sequence numbers and the PictureIDs of the forwarded
+ * packets are rewritten to close the gaps left by the dropped frames so that
+ * the receiver neither requests retransmissions nor detects lost pictures.
+ * Since the base layer (TID 0) is always forwarded, the TL0PICIDX fields do
+ * not need to be rewritten. The sequence numbers reported lost by the NACKs of
+ * the receiver are rewritten back so that the sender retransmits the right
+ * packets.
+ * <p>
+ * Lowering the temporal layer takes effect at the next frame. Raising it
+ * takes effect at a key frame or, one layer at a time, at a layer sync frame
+ * (Y bit set) of the next higher layer because the frames of a layer which
+ * were dropped before may be referenced otherwise.
+ * </p>
+ * <p>
+ * It is placed after the {@link SimulcastEngine} and before the
+ * {@link SsrcRewritingEngine} in the <tt>TransformEngine</tt> chain so that
+ * the latter sees contiguous sequence numbers.
+ * </p>
+ */
+public class TemporalLayerFilteringEngine
+    implements TransformEngine
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>TemporalLayerFilteringEngine</tt>
+     * class and its instances to print debug information.
+     */
+    private static final Logger logger
+        = Logger.getLogger(TemporalLayerFilteringEngine.class);
+
+    /**
+     * The highest temporal layer to be forwarded to the receiver or
+     * <tt>-1</tt> to forward all of them.
+     */
+    private volatile int maxTemporalLayer = -1;
+
+    /**
+     * The <tt>MediaStream</tt> of the receiver.
+     */
+    private final MediaStream mediaStream;
+
+    /**
+     * The payload type of RED in {@link #mediaStream} or <tt>-1</tt>.
+     */
+    private byte redPT = -1;
+
+    /**
+     * The <tt>PacketTransformer</tt> which rewrites the NACKs received from
+     * the receiver.
+     */
+    private final PacketTransformer rtcpTransformer
+        = new SinglePacketTransformerAdapter()
+        {
+            @Override
+            public RawPacket reverseTransform(RawPacket pkt)
+            {
+                return
+                    (pkt == null || states.isEmpty())
+                        ? pkt
+                        : reverseTransformRTCP(pkt);
+            }
+        };
+
+    /**
+     * The <tt>PacketTransformer</tt> which drops and rewrites the RTP packets
+     * sent to the receiver.
+     */
+    private final PacketTransformer rtpTransformer
+        = new SinglePacketTransformerAdapter()
+        {
+            @Override
+            public RawPacket transform(RawPacket pkt)
+            {
+                return (pkt == null) ? null : filter(pkt);
+            }
+        };
+
+    /**
+     * The state of the filtering of the RTP streams sent to the receiver by
+     * their SSRCs.
+     */
+    private final Map<Integer, StreamState> states
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The payload type of VP8 in {@link #mediaStream} or <tt>-1</tt>.
+     */
+    private byte vp8PT = -1;
+
+    /**
+     * Initializes a new <tt>TemporalLayerFilteringEngine</tt> instance.
+     *
+     * @param mediaStream the <tt>MediaStream</tt> of the receiver
+     */
+    public TemporalLayerFilteringEngine(MediaStream mediaStream)
+    {
+        this.mediaStream = mediaStream;
+    }
+
+    /**
+     * Drops or rewrites an RTP packet to be sent to the receiver.
+     *
+     * @param pkt the RTP packet to be sent to the receiver
+     * @return <tt>pkt</tt> (possibly rewritten) if it is to be forwarded or
+     * <tt>null</tt> if it is to be dropped
+     */
+    private RawPacket filter(RawPacket pkt)
+    {
+        int ssrc = pkt.getSSRC();
+        StreamState state = states.get(ssrc);
+
+        if (state == null)
+        {
+            // Do not bother unless the temporal layers have ever been limited.
+            if (maxTemporalLayer < 0)
+                return pkt;
+
+            updatePayloadTypes();
+            state = new StreamState();
+            states.put(ssrc, state);
+        }
+
+        // Find the VP8 Payload Descriptor, possibly in the primary RED block.
+        byte pt = pkt.getPayloadType();
+        int offset;
+        int length;
+
+        if (pt == vp8PT)
+        {
+            offset = pkt.getPayloadOffset();
+            length
+                = pkt.getLength()
+                    - pkt.getHeaderLength()
+                    - pkt.getPaddingSize();
+        }
+        else if (pt == redPT)
+        {
+            REDBlock block = REDBlockIterator.getPrimaryBlock(pkt);
+
+            if (block == null || block.getPayloadType() != vp8PT)
+                return state.filter(pkt, null, 0, 0, maxTemporalLayer);
+            offset = block.getOffset();
+            length = block.getLength();
+        }
+        else
+        {
+            return state.filter(pkt, null, 0, 0, maxTemporalLayer);
+        }
+
+        byte[] buf = pkt.getBuffer();
+
+        if (!DePacketizer.VP8PayloadDescriptor.isValid(buf, offset, length))
+            return state.filter(pkt, null, 0, 0, maxTemporalLayer);
+
+        return
+            state.filter(
+                    pkt,
+                    buf,
+                    offset,
+                    length,
+                    maxTemporalLayer);
+    }
+
+    /**
+     * Gets the highest temporal layer forwarded to the receiver.
+     *
+     * @return the highest temporal layer forwarded to the receiver or
+     * <tt>-1</tt> if all of them are forwarded
+     */
+    public int getMaxTemporalLayer()
+    {
+        return maxTemporalLayer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketTransformer getRTCPTransformer()
+    {
+        return rtcpTransformer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketTransformer getRTPTransformer()
+    {
+        return rtpTransformer;
+    }
+
+    /**
+     * Rewrites the sequence numbers reported lost by a specific NACK from the
+     * ones sent to the receiver to the ones sent by the sender. The NACK may
+     * grow or shrink because the rewritten sequence numbers are spread
+     * differently. A NACK which reports no sequence number of the sender is
+     * removed.
+     *
+     * @param pkt the RTCP (compound) packet which contains the NACK
+     * @param off the offset of the NACK in <tt>pkt</tt> relative to the
+     * offset of <tt>pkt</tt>
+     * @param len the length of the NACK in bytes
+     * @param state the state of the RTP stream the NACK is about
+     * @return the length of the rewritten NACK in bytes or <tt>0</tt> if it
+     * has been removed
+     */
+    private static int reverseTransformNACK(
+            RawPacket pkt, int off, int len,
+            StreamState state)
+    {
+        int fciCount = (len - 12) / 4;
+        int[] fci = new int[fciCount * 17];
+        int newFCICount = 0;
+        int pid = -1;
+
+        for (int i = 0; i < fciCount; i++)
+        {
+            int lostPID = pkt.readUnsignedShortAsInt(off + 12 + 4 * i);
+            int blp = pkt.readUnsignedShortAsInt(off + 14 + 4 * i);
+
+            // The PID itself (j == -1) and then the bits of the BLP.
+            for (int j = -1; j < 16; j++)
+            {
+                if (j != -1 && (blp & (1 << j)) == 0)
+                    continue;
+
+                int seq
+                    = state.reverseSequenceNumber((lostPID + 1 + j) & 0xffff);
+
+                if (seq == -1 || seq == pid)
+                    continue;
+
+                int delta = (seq - pid) & 0xffff;
+
+                if (pid == -1 || delta > 16)
+                {
+                    pid = seq;
+                    fci[newFCICount++] = pid << 16;
+                }
+                else
+                {
+                    fci[newFCICount - 1] |= 1 << (delta - 1);
+                }
+            }
+        }
+
+        int newLen = (newFCICount == 0) ? 0 : 12 + 4 * newFCICount;
+
+        if (newLen != len)
+        {
+            int tail = pkt.getLength() - off - len;
+
+            if (newLen > len && pkt.getBuffer().length
+                    < pkt.getOffset() + pkt.getLength() + newLen - len)
+            {
+                pkt.grow(newLen - len);
+            }
+
+            byte[] buf = pkt.getBuffer();
+            int start = pkt.getOffset() + off;
+
+            System.arraycopy(buf, start + len, buf, start + newLen, tail);
+            pkt.setLength(pkt.getLength() + newLen - len);
+        }
+        if (newLen != 0)
+        {
+            pkt.writeShort(off + 2, (short) (newLen / 4 - 1));
+            for (int i = 0; i < newFCICount; i++)
+                pkt.writeInt(off + 12 + 4 * i, fci[i]);
+        }
+        return newLen;
+    }
+
+    /**
+     * Rewrites the NACKs in an RTCP (compound) packet received from the
+     * receiver about the RTP streams filtered by this instance. The NACKs
+     * which are terminated before they reach this instance are answered from
+     * the cache of the rewritten packets and are thus not concerned.
+     *
+     * @param pkt the RTCP (compound) packet received from the receiver
+     * @return <tt>pkt</tt> (possibly rewritten) or <tt>null</tt> if it
+     * contained nothing but NACKs which have been removed
+     */
+    private RawPacket reverseTransformRTCP(RawPacket pkt)
+    {
+        int off = 0;
+
+        while (pkt.getLength() - off >= 4)
+        {
+            int b0 = pkt.readByte(off);
+
+            if ((b0 & 0xc0) != 0x80)
+                break;
+
+            int len = (pkt.readUnsignedShortAsInt(off + 2) + 1) * 4;
+
+            if (len > pkt.getLength() - off)
+                break;
+
+            if ((b0 & 0x1f) == NACKPacket.FMT
+                    && (pkt.readByte(off + 1) & 0xff) == RTCPFBPacket.RTPFB
+                    && len >= 16)
+            {
+                StreamState state = states.get(pkt.readInt(off + 8));
+
+                if (state != null)
+                    len = reverseTransformNACK(pkt, off, len, state);
+            }
+            off += len;
+        }
+        return (pkt.getLength() == 0) ? null : pkt;
+    }
+
+    /**
+     * Sets the highest temporal layer to be forwarded to the receiver.
+     *
+     * @param maxTemporalLayer the highest temporal layer (TID) to be forwarded
+     * to the receiver or <tt>-1</tt> to forward all of them
+     */
+    public void setMaxTemporalLayer(int maxTemporalLayer)
+    {
+        if (maxTemporalLayer < -1 || maxTemporalLayer > 3)
+            throw new IllegalArgumentException("maxTemporalLayer");
+
+        if (this.maxTemporalLayer != maxTemporalLayer)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(
+                        mediaStream.getProperty(
+                                MediaStream.PNAME_RECEIVER_IDENTIFIER)
+                            + ": forwarding the VP8 temporal layers up to "
+                            + maxTemporalLayer + ".");
+            }
+            this.maxTemporalLayer = maxTemporalLayer;
+        }
+    }
+
+    /**
+     * Updates {@link #vp8PT} and {@link #redPT} from the dynamic payload
+     * types of {@link #mediaStream}.
+     */
+    private void updatePayloadTypes()
+    {
+        byte vp8PT = -1;
+        byte redPT = -1;
+
+        for (Map.Entry<Byte, MediaFormat> e
+                : mediaStream.getDynamicRTPPayloadTypes().entrySet())
+        {
+            String encoding = e.getValue().getEncoding();
+
+            if (Constants.VP8.equalsIgnoreCase(encoding))
+                vp8PT = e.getKey();
+            else if (Constants.RED.equalsIgnoreCase(encoding))
+                redPT = e.getKey();
+        }
+        this.vp8PT = vp8PT;
+        this.redPT = redPT;
+    }
+
+    /**
+     * Represents the state of the filtering of an RTP stream sent to the
+     * receiver.
+     * <p>
+     * The offsets by which the sequence numbers and the PictureIDs are
+     * rewritten change whenever frames are dropped. They are remembered per
+     * range of sequence numbers so that packets which arrive late (i.e.
+     * reordered) are rewritten with the offsets in effect when the packets
+     * around them were forwarded, and so that the sequence numbers reported
+     * lost by the receiver can be rewritten back.
+     * </p>
+     */
+    private static class StreamState
+    {
+        /**
+         * The number of ranges of sequence numbers which are remembered.
+         */
+        private static final int RANGE_COUNT = 64;
+
+        /**
+         * The maximum number of sequence numbers in a range. Keeps the
+         * starts of the recent ranges within half of the sequence number space
+         * of each other so that they compare correctly.
+         */
+        private static final int RANGE_SPAN = 0x4000;
+
+        /**
+         * The number of frames with PictureIDs which have been dropped.
+         */
+        private int droppedPictures;
+
+        /**
+         * The number of packets which have been dropped.
+         */
+        private int droppedPackets;
+
+        /**
+         * The RTP timestamp of the last frame which has been dropped or
+         * <tt>-1</tt>.
+         */
+        private long droppedTimestamp = -1;
+
+        /**
+         * The indicator which determines whether the packets of the current
+         * frame are dropped.
+         */
+        private boolean dropFrame;
+
+        /**
+         * The highest temporal layer which is currently forwarded or
+         * <tt>-1</tt> if all of them are forwarded.
+         */
+        private int forwardedTemporalLayer = -1;
+
+        /**
+         * The RTP timestamp of the current frame or <tt>-1</tt> if no frame
+         * has been seen yet.
+         */
+        private long frameTimestamp = -1;
+
+        /**
+         * The sequence number of the last packet seen.
+         */
+        private int lastSeq = -1;
+
+        /**
+         * The number of valid elements in the range arrays.
+         */
+        private int rangeCount;
+
+        /**
+         * The index in the range arrays of the most recent range.
+         */
+        private int rangeIndex = -1;
+
+        /**
+         * The values of {@link #droppedPictures} in effect for the ranges.
+         */
+        private final int[] rangePictureOffsets = new int[RANGE_COUNT];
+
+        /**
+         * The values of {@link #droppedPackets} in effect for the ranges.
+         */
+        private final int[] rangeSeqOffsets = new int[RANGE_COUNT];
+
+        /**
+         * The sequence numbers (as sent by the sender) at which the ranges
+         * start.
+         */
+        private final int[] rangeStarts = new int[RANGE_COUNT];
+
+        /**
+         * Drops or rewrites a packet.
+         *
+         * @param pkt the packet
+         * @param buf the buffer of <tt>pkt</tt> or <tt>null</tt> if it is not
+         * a (valid) VP8 packet
+         * @param offset the offset of the VP8 Payload Descriptor in
+         * <tt>buf</tt>
+         * @param length the length of the VP8 payload of <tt>pkt</tt>
+         * @param maxTemporalLayer the highest temporal layer to forward or
+         * <tt>-1</tt>
+         * @return <tt>pkt</tt> if it is to be forwarded or <tt>null</tt>
+         */
+        synchronized RawPacket filter(
+                RawPacket pkt,
+                byte[] buf, int offset, int length,
+                int maxTemporalLayer)
+        {
+            long timestamp = pkt.getTimestamp();
+            int seq = pkt.getSequenceNumber();
+            int pictureId
+                = (buf == null)
+                    ? -1
+                    : DePacketizer.VP8PayloadDescriptor.getPictureId(
+                            buf, offset);
+            int range;
+
+            if (isNewer(seq))
+            {
+                lastSeq = seq;
+
+                // The decision is made for whole frames in the order in which
+                // they are sent.
+                if (buf != null && timestamp != frameTimestamp)
+                {
+                    frameTimestamp = timestamp;
+
+                    int tid
+                        = DePacketizer.VP8PayloadDescriptor
+                            .getTemporalLayerIndex(buf, offset);
+
+                    updateForwardedTemporalLayer(
+                            buf, offset, length,
+                            tid,
+                            maxTemporalLayer);
+                    dropFrame
+                        = (tid > 0)
+                            && (forwardedTemporalLayer >= 0)
+                            && (tid > forwardedTemporalLayer);
+                    if (dropFrame)
+                    {
+                        droppedTimestamp = timestamp;
+                        if (pictureId != -1)
+                            droppedPictures++;
+                    }
+                }
+                if (buf != null && dropFrame && timestamp == frameTimestamp)
+                {
+                    droppedPackets++;
+                    return null;
+                }
+                range = startRange(seq);
+            }
+            else if (buf != null && timestamp == droppedTimestamp)
+            {
+                // A late packet of a dropped frame. If the frame is the
+                // current one, no later packet has been forwarded yet so the
+                // packet may still be accounted for.
+                if (dropFrame && timestamp == frameTimestamp)
+                    droppedPackets++;
+                return null;
+            }
+            else
+            {
+                range = findRange(seq);
+                if (range == -1)
+                    return null;
+            }
+
+            int seqOffset = rangeSeqOffsets[range];
+            int pictureOffset = rangePictureOffsets[range];
+
+            if (seqOffset != 0)
+                pkt.setSequenceNumber((seq - seqOffset) & 0xffff);
+            if (pictureId != -1 && pictureOffset != 0)
+            {
+                int mask
+                    = (1
+                            << DePacketizer.VP8PayloadDescriptor
+                                .getPictureIdWidth(buf, offset))
+                        - 1;
+
+                DePacketizer.VP8PayloadDescriptor.setPictureId(
+                        buf, offset,
+                        (pictureId - pictureOffset) & mask);
+            }
+            return pkt;
+        }
+
+        /**
+         * Finds the range of a packet which arrives late i.e. after packets
+         * with newer sequence numbers.
+         *
+         * @param seq the sequence number of the packet as sent by the sender
+         * @return the index of the range of <tt>seq</tt> or <tt>-1</tt> if it
+         * is too old or falls into the gap left by packets which have been
+         * dropped
+         */
+        private int findRange(int seq)
+        {
+            for (int i = 0, r = rangeIndex;
+                    i < rangeCount;
+                    i++, r = (r + RANGE_COUNT - 1) % RANGE_COUNT)
+            {
+                if ((short) (seq - rangeStarts[r]) >= 0)
+                {
+                    if (i != 0)
+                    {
+                        // The packets dropped after range r precede the
+                        // start of the next range.
+                        int next = (r + 1) % RANGE_COUNT;
+                        int gap = rangeSeqOffsets[next] - rangeSeqOffsets[r];
+
+                        if ((short) (seq - (rangeStarts[next] - gap)) >= 0)
+                            return -1;
+                    }
+                    return r;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Determines whether a specific sequence number is newer than
+         * {@link #lastSeq}.
+         *
+         * @param seq the sequence number
+         * @return <tt>true</tt> if <tt>seq</tt> is newer than
+         * <tt>lastSeq</tt>
+         */
+        private boolean isNewer(int seq)
+        {
+            return (lastSeq == -1) || ((short) (seq - lastSeq) > 0);
+        }
+
+        /**
+         * Rewrites a sequence number sent to the receiver back to the one sent
+         * by the sender.
+         *
+         * @param seq the sequence number sent to the receiver
+         * @return the sequence number sent by the sender or <tt>-1</tt> if it
+         * is too old to be known
+         */
+        synchronized int reverseSequenceNumber(int seq)
+        {
+            for (int i = 0, r = rangeIndex;
+                    i < rangeCount;
+                    i++, r = (r + RANGE_COUNT - 1) % RANGE_COUNT)
+            {
+                int seqOffset = rangeSeqOffsets[r];
+
+                if ((short) (seq - (rangeStarts[r] - seqOffset)) >= 0)
+                    return (seq + seqOffset) & 0xffff;
+            }
+            return (rangeCount == 0) ? seq : -1;
+        }
+
+        /**
+         * Starts a new range at a specific sequence number of a forwarded
+         * packet unless the offsets have not changed since the start of the
+         * current range.
+         *
+         * @param seq the sequence number of the forwarded packet which is
+         * newer than all packets seen before
+         * @return the index of the range of <tt>seq</tt>
+         */
+        private int startRange(int seq)
+        {
+            if (rangeCount == 0
+                    || rangeSeqOffsets[rangeIndex] != droppedPackets
+                    || rangePictureOffsets[rangeIndex] != droppedPictures
+                    || ((seq - rangeStarts[rangeIndex]) & 0xffff)
+                        >= RANGE_SPAN)
+            {
+                rangeIndex = (rangeIndex + 1) % RANGE_COUNT;
+                rangeStarts[rangeIndex] = seq;
+                rangeSeqOffsets[rangeIndex] = droppedPackets;
+                rangePictureOffsets[rangeIndex] = droppedPictures;
+                if (rangeCount < RANGE_COUNT)
+                    rangeCount++;
+            }
+            return rangeIndex;
+        }
+
+        /**
+         * Updates {@link #forwardedTemporalLayer} at the start of a frame.
+         * Lowering takes effect immediately. Raising takes effect on a key
+         * frame or, one layer at a time, on a layer sync frame of the layer
+         * just above the forwarded one.
+         *
+         * @param buf the buffer of the first packet of the frame
+         * @param offset the offset of the VP8 Payload Descriptor in
+         * <tt>buf</tt>
+         * @param length the length of the VP8 payload
+         * @param tid the temporal layer of the frame or <tt>-1</tt>
+         * @param maxTemporalLayer the highest temporal layer to forward or
+         * <tt>-1</tt>
+         */
+        private void updateForwardedTemporalLayer(
+                byte[] buf, int offset, int length,
+                int tid,
+                int maxTemporalLayer)
+        {
+            if (forwardedTemporalLayer == maxTemporalLayer)
+                return;
+
+            boolean lower
+                = (maxTemporalLayer >= 0)
+                    && (forwardedTemporalLayer < 0
+                            || maxTemporalLayer < forwardedTemporalLayer);
+
+            if (lower
+                    || DePacketizer.isKeyFrame(buf, offset, length))
+            {
+                forwardedTemporalLayer = maxTemporalLayer;
+            }
+            else if (tid == forwardedTemporalLayer + 1
+                    && DePacketizer.VP8PayloadDescriptor.isLayerSync(
+                            buf, offset))
+            {
+                // A layer sync frame depends on the base layer only so its
+                // layer may be forwarded from now on. The layers above it may
+                // depend on frames of its layer which have been dropped.
+                forwardedTemporalLayer = tid;
+            }
+        }
+    }
+}
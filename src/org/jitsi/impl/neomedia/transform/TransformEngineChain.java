@@ -17,6 +17,10 @@ package org.jitsi.impl.neomedia.transform;
 
 import java.util.*;
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+import org.jitsi.util.metrics.*;
 
 /**
  * The engine chain allows using numerous <tt>TransformEngine</tt>s on a single
@@ -28,6 +32,91 @@ import org.jitsi.impl.neomedia.*;
 public class TransformEngineChain
     implements TransformEngine
 {
+    /**
+     * The name of the property which specifies the interval in batches of
+     * packets at which the latencies of the <tt>TransformEngine</tt>s of a
+     * <tt>TransformEngineChain</tt> are sampled. The latencies are not
+     * measured if the value is not positive (which is the default).
+     */
+    public static final String LATENCY_SAMPLING_INTERVAL_PNAME
+        = TransformEngineChain.class.getName() + ".LATENCY_SAMPLING_INTERVAL";
+
+    /**
+     * Gets the name under which the latencies of a specific
+     * <tt>TransformEngine</tt> are recorded.
+     *
+     * @param engine the <tt>TransformEngine</tt> to get the stage name of
+     * @param rtp <tt>true</tt> for the RTP transformer of <tt>engine</tt> or
+     * <tt>false</tt> for its RTCP transformer
+     * @param reverse <tt>true</tt> for the reverse transformation or
+     * <tt>false</tt> for the transformation
+     * @return the name under which the latencies of <tt>engine</tt> are
+     * recorded
+     */
+    private static String getStageName(
+            TransformEngine engine,
+            boolean rtp,
+            boolean reverse)
+    {
+        // The wrapped engine determines what the stage actually does.
+        if (engine instanceof TransformEngineWrapper)
+        {
+            TransformEngine wrapped
+                = ((TransformEngineWrapper<?>) engine).getWrapped();
+
+            if (wrapped != null)
+                engine = wrapped;
+        }
+
+        Class<?> clazz = engine.getClass();
+        String name = clazz.getSimpleName();
+
+        if (name.length() == 0)
+        {
+            // Anonymous classes are named after their enclosing classes.
+            name = clazz.getName();
+            name = name.substring(name.lastIndexOf('.') + 1);
+        }
+        return
+            name + (rtp ? ".RTP." : ".RTCP.")
+                + (reverse ? "reverseTransform" : "transform");
+    }
+
+    /**
+     * Determines whether a specific <tt>PacketTransformer</tt> is to be
+     * invoked in a specific direction i.e. unless it declares that it leaves
+     * the packets unmodified.
+     *
+     * @param transformer the <tt>PacketTransformer</tt> to check
+     * @param reverse <tt>true</tt> for the reverse transformation or
+     * <tt>false</tt> for the transformation
+     * @return <tt>true</tt> if <tt>transformer</tt> is to be invoked;
+     * otherwise, <tt>false</tt>
+     */
+    private static boolean isActive(
+            PacketTransformer transformer,
+            boolean reverse)
+    {
+        if (transformer == null)
+        {
+            return false;
+        }
+        else if (transformer instanceof ConditionalPacketTransformer)
+        {
+            ConditionalPacketTransformer conditional
+                = (ConditionalPacketTransformer) transformer;
+
+            return
+                reverse
+                    ? conditional.isReverseTransformActive()
+                    : conditional.isTransformActive();
+        }
+        else
+        {
+            return true;
+        }
+    }
+
     /**
      * The sequence of <tt>TransformEngine</tt>s whose
      * <tt>PacketTransformer</tt>s this engine chain will be applying to RTP and
@@ -41,6 +130,19 @@ public class TransformEngineChain
      */
     private List<TransformEngine> engineChainAsList;
 
+    /**
+     * The interval in batches of packets at which the latencies of the
+     * <tt>TransformEngine</tt>s of this chain are sampled or <tt>0</tt> if
+     * they are not measured.
+     */
+    private volatile int latencySamplingInterval;
+
+    /**
+     * The <tt>MediaStreamMetrics</tt> into which the latencies of the
+     * <tt>TransformEngine</tt>s of this chain are recorded.
+     */
+    private volatile MediaStreamMetrics mediaStreamMetrics;
+
     /**
      * The sequence of <tt>PacketTransformer</tt>s that this engine chain will
      * be applying to RTCP packets.
@@ -207,6 +309,30 @@ public class TransformEngineChain
         return rtpTransformer;
     }
 
+    /**
+     * Sets the <tt>MediaStreamMetrics</tt> into which this chain is to record
+     * the latencies of its <tt>TransformEngine</tt>s. The latencies are
+     * measured (for every {@link #LATENCY_SAMPLING_INTERVAL_PNAME}th batch of
+     * packets) only if the property is set.
+     *
+     * @param mediaStreamMetrics the <tt>MediaStreamMetrics</tt> into which
+     * this chain is to record the latencies of its <tt>TransformEngine</tt>s
+     * or <tt>null</tt> to stop recording them
+     */
+    public void setMediaStreamMetrics(MediaStreamMetrics mediaStreamMetrics)
+    {
+        int latencySamplingInterval
+            = (mediaStreamMetrics == null)
+                ? 0
+                : ConfigUtils.getInt(
+                        LibJitsi.getConfigurationService(),
+                        LATENCY_SAMPLING_INTERVAL_PNAME,
+                        0);
+
+        this.mediaStreamMetrics = mediaStreamMetrics;
+        this.latencySamplingInterval = Math.max(latencySamplingInterval, 0);
+    }
+
     /**
      * Sets the sequence of {@code TransformEngine}s whose
      * {@code PacketTransformer}s this engine chain will be applying to RTP and
@@ -238,6 +364,26 @@ public class TransformEngineChain
          */
         private final boolean rtp;
 
+        /**
+         * The number of batches of packets transformed and reverse-transformed
+         * by this transformer modulo the latency sampling interval. Updated
+         * without synchronization because an occasional lost increment merely
+         * shifts the sampling.
+         */
+        private int samples;
+
+        /**
+         * The histograms of the latencies of the reverse transformations of
+         * the <tt>TransformEngine</tt>s of this chain.
+         */
+        private StageLatencies reverseTransformLatencies;
+
+        /**
+         * The histograms of the latencies of the transformations of the
+         * <tt>TransformEngine</tt>s of this chain.
+         */
+        private StageLatencies transformLatencies;
+
         /**
          * Creates an instance of this packet transformer and prepares it to
          * deal with RTP or RTCP according to the <tt>isRtp</tt> argument.
@@ -251,6 +397,67 @@ public class TransformEngineChain
             this.rtp = rtp;
         }
 
+        /**
+         * Gets the histograms of the latencies of the (reverse)
+         * transformations of the <tt>TransformEngine</tt>s of a specific
+         * engine chain if the current batch of packets is to be sampled.
+         *
+         * @param engineChain the engine chain through which the current batch
+         * of packets is to be (reverse-)transformed
+         * @param reverse <tt>true</tt> for the reverse transformation or
+         * <tt>false</tt> for the transformation
+         * @return the histograms into which the latencies of the
+         * <tt>TransformEngine</tt>s of <tt>engineChain</tt> are to be recorded
+         * or <tt>null</tt> if the current batch of packets is not sampled
+         */
+        private Histogram[] getLatencies(
+                TransformEngine[] engineChain,
+                boolean reverse)
+        {
+            int latencySamplingInterval
+                = TransformEngineChain.this.latencySamplingInterval;
+
+            if (latencySamplingInterval == 0)
+                return null;
+
+            int samples = this.samples + 1;
+
+            if (samples < latencySamplingInterval)
+            {
+                this.samples = samples;
+                return null;
+            }
+            this.samples = 0;
+
+            MediaStreamMetrics mediaStreamMetrics
+                = TransformEngineChain.this.mediaStreamMetrics;
+
+            if (mediaStreamMetrics == null)
+                return null;
+
+            StageLatencies latencies
+                = reverse ? reverseTransformLatencies : transformLatencies;
+
+            // The engine chain is copy-on-write so the histograms are looked
+            // up only when it changes.
+            if (latencies == null
+                    || latencies.engineChain != engineChain
+                    || latencies.mediaStreamMetrics != mediaStreamMetrics)
+            {
+                latencies
+                    = new StageLatencies(
+                            engineChain,
+                            mediaStreamMetrics,
+                            rtp,
+                            reverse);
+                if (reverse)
+                    reverseTransformLatencies = latencies;
+                else
+                    transformLatencies = latencies;
+            }
+            return latencies.histograms;
+        }
+
         /**
          * Close the transformer and underlying transform engines.
          *
@@ -284,6 +491,8 @@ public class TransformEngineChain
         {
             TransformEngine[] engineChain
                 = TransformEngineChain.this.engineChain;
+            Histogram[] latencies
+                = getLatencies(engineChain, /* reverse */ true);
 
             for (int i = engineChain.length - 1 ; i >= 0; i--)
             {
@@ -295,8 +504,21 @@ public class TransformEngineChain
 
                 //the packet transformer may be null if for example the engine
                 //only does RTP transformations and this is an RTCP transformer.
-                if (pTransformer != null)
-                    pkts = pTransformer.reverseTransform(pkts);
+                //It may also be idle for this stream at this time.
+                if (isActive(pTransformer, /* reverse */ true))
+                {
+                    if (latencies == null)
+                    {
+                        pkts = pTransformer.reverseTransform(pkts);
+                    }
+                    else
+                    {
+                        long start = System.nanoTime();
+
+                        pkts = pTransformer.reverseTransform(pkts);
+                        latencies[i].record(System.nanoTime() - start);
+                    }
+                }
             }
 
             return pkts;
@@ -333,9 +555,15 @@ public class TransformEngineChain
             // transformation is to start after it.
             boolean lookForAfter
                 = after != null && engineChainAsList.contains(after);
+            TransformEngine[] engineChain
+                = TransformEngineChain.this.engineChain;
+            Histogram[] latencies
+                = getLatencies(engineChain, /* reverse */ false);
 
-            for (TransformEngine engine : engineChain)
+            for (int i = 0; i < engineChain.length; i++)
             {
+                TransformEngine engine = engineChain[i];
+
                 // Start the transformation after the specified TransformEngine.
                 if (lookForAfter)
                 {
@@ -353,12 +581,81 @@ public class TransformEngineChain
                         : engine.getRTCPTransformer();
 
                 // The transformer may be null if for example the engine does
-                // RTP transformations only and this is an RTCP transformer.
-                if (transformer != null)
-                    pkts = transformer.transform(pkts);
+                // RTP transformations only and this is an RTCP transformer. It
+                // may also be idle for this stream at this time.
+                if (isActive(transformer, /* reverse */ false))
+                {
+                    if (latencies == null)
+                    {
+                        pkts = transformer.transform(pkts);
+                    }
+                    else
+                    {
+                        long start = System.nanoTime();
+
+                        pkts = transformer.transform(pkts);
+                        latencies[i].record(System.nanoTime() - start);
+                    }
+                }
             }
 
             return pkts;
         }
     }
+
+    /**
+     * The histograms of the latencies of the (reverse) transformations of the
+     * <tt>TransformEngine</tt>s of a specific engine chain in the order of the
+     * engine chain.
+     */
+    private static class StageLatencies
+    {
+        /**
+         * The engine chain whose latencies are recorded into
+         * {@link #histograms}.
+         */
+        final TransformEngine[] engineChain;
+
+        /**
+         * The histograms of the latencies of the <tt>TransformEngine</tt>s of
+         * {@link #engineChain} in the order of <tt>engineChain</tt>.
+         */
+        final Histogram[] histograms;
+
+        /**
+         * The <tt>MediaStreamMetrics</tt> which {@link #histograms} belong
+         * to.
+         */
+        final MediaStreamMetrics mediaStreamMetrics;
+
+        /**
+         * Initializes a new <tt>StageLatencies</tt> instance.
+         *
+         * @param engineChain the engine chain whose latencies are to be
+         * recorded
+         * @param mediaStreamMetrics the <tt>MediaStreamMetrics</tt> to record
+         * the latencies into
+         * @param rtp <tt>true</tt> for the RTP transformers of
+         * <tt>engineChain</tt> or <tt>false</tt> for its RTCP transformers
+         * @param reverse <tt>true</tt> for the reverse transformations or
+         * <tt>false</tt> for the transformations
+         */
+        StageLatencies(
+                TransformEngine[] engineChain,
+                MediaStreamMetrics mediaStreamMetrics,
+                boolean rtp,
+                boolean reverse)
+        {
+            this.engineChain = engineChain;
+            this.mediaStreamMetrics = mediaStreamMetrics;
+
+            histograms = new Histogram[engineChain.length];
+            for (int i = 0; i < engineChain.length; i++)
+            {
+                histograms[i]
+                    = mediaStreamMetrics.getStageLatencyNs(
+                            getStageName(engineChain[i], rtp, reverse));
+            }
+        }
+    }
 }
@@ -31,7 +31,8 @@ import org.jitsi.service.neomedia.*;
  */
 public class CsrcTransformEngine
     extends SinglePacketTransformer
-    implements TransformEngine
+    implements ConditionalPacketTransformer,
+               TransformEngine
 {
     /**
      * The direction that we are supposed to handle audio levels in.
@@ -55,12 +56,6 @@ public class CsrcTransformEngine
      */
     private byte[] extensionBuff = null;
 
-    /**
-     * Indicates the length that we are currently using in the
-     * <tt>extensionBuff</tt> buffer.
-     */
-    private int extensionBuffLen = 0;
-
     /**
      * The <tt>MediaStreamImpl</tt> that this transform engine was created to
      * transform packets for.
@@ -129,34 +124,19 @@ public class CsrcTransformEngine
     }
 
     /**
-     * Creates a audio level extension buffer containing the level extension
-     * header and the audio levels corresponding to (and in the same order as)
-     * the <tt>CSRC</tt> IDs in the <tt>csrcList</tt>
+     * Creates the data of an audio level extension containing the audio levels
+     * corresponding to (and in the same order as) the <tt>CSRC</tt> IDs in the
+     * <tt>csrcList</tt>. The extension header and padding are written by
+     * {@link HeaderExtensions#apply()}.
      *
      * @param csrcList the list of CSRC IDs whose level we'd like the extension
      * to contain.
-     * @return the extension buffer in the form that it should be added to the
-     * RTP packet.
+     * @return the data of the extension in the first <tt>csrcList.length</tt>
+     * elements
      */
     private byte[] createLevelExtensionBuffer(long[] csrcList)
     {
-        int buffLen = 1 + //CSRC one byte extension hdr
-                      csrcList.length;
-
-        // calculate extension padding
-        int padLen = 4 - buffLen%4;
-
-        if(padLen == 4)
-            padLen = 0;
-
-        buffLen += padLen;
-
-        byte[] extensionBuff = getExtensionBuff(buffLen);
-
-        extensionBuff[0]
-            = (byte)((csrcAudioLevelExtID << 4) | (csrcList.length - 1));
-
-        int csrcOffset = 1; // initial offset is equal to ext hdr size
+        byte[] extensionBuff = getExtensionBuff(csrcList.length);
 
         for (int i = 0; i < csrcList.length; i++)
         {
@@ -166,8 +146,7 @@ public class CsrcTransformEngine
                     ((AudioMediaStreamImpl) mediaStream)
                         .getLastMeasuredAudioLevel(csrc);
 
-            extensionBuff[csrcOffset] = level;
-            csrcOffset ++;
+            extensionBuff[i] = level;
         }
 
         return extensionBuff;
@@ -175,8 +154,7 @@ public class CsrcTransformEngine
 
     /**
      * Returns a reusable byte array which is guaranteed to have the requested
-     * <tt>ensureCapacity</tt> length and sets our internal length keeping
-     * var.
+     * <tt>ensureCapacity</tt> length.
      *
      * @param ensureCapacity the minimum length that we need the returned buffer
      * to have.
@@ -188,7 +166,6 @@ public class CsrcTransformEngine
         if ((extensionBuff == null) || (extensionBuff.length < ensureCapacity))
             extensionBuff = new byte[ensureCapacity];
 
-        extensionBuffLen = ensureCapacity;
         return extensionBuff;
     }
 
@@ -218,6 +195,33 @@ public class CsrcTransformEngine
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Received packets are inspected only in order to dispatch CSRC audio
+     * levels.
+     */
+    @Override
+    public boolean isReverseTransformActive()
+    {
+        return
+            (csrcAudioLevelExtID > 0)
+                && csrcAudioLevelDirection.allowsReceiving()
+                && (csrcAudioLevelDispatcher != null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The CSRC list of the <tt>MediaStream</tt> may change at any time so
+     * packets to be sent are always inspected.
+     */
+    @Override
+    public boolean isTransformActive()
+    {
+        return true;
+    }
+
     /**
      * Extracts the list of CSRC identifiers and passes it to the
      * <tt>MediaStream</tt> associated with this engine. Other than that the
@@ -299,7 +303,9 @@ public class CsrcTransformEngine
         {
             byte[] levelsExt = createLevelExtensionBuffer(csrcList);
 
-            pkt.addExtension(levelsExt, extensionBuffLen);
+            pkt.getHeaderExtensions()
+                .put(csrcAudioLevelExtID, levelsExt, 0, csrcList.length)
+                .apply();
         }
 
         return pkt;
@@ -16,8 +16,6 @@
 package org.jitsi.impl.neomedia.transform.dtls;
 
 import java.io.*;
-import java.util.*;
-import java.util.concurrent.*;
 
 import javax.media.rtp.*;
 
@@ -25,6 +23,7 @@ import org.bouncycastle.crypto.tls.*;
 import org.ice4j.ice.*;
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.codec.video.h264.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -43,6 +42,21 @@ public class DatagramTransportImpl
     private static final Logger logger
         = Logger.getLogger(DatagramTransportImpl.class);
 
+    /**
+     * The default value of {@link #MTU_PNAME}.
+     */
+    private static final int DEFAULT_MTU = 1024 + 256;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * integer property which specifies the maximum length in bytes of a
+     * datagram into which multiple DTLS records of a flight are to be
+     * coalesced. Coalescing records into datagrams larger than the path MTU
+     * would only have them fragmented (or dropped) by the network.
+     */
+    public static final String MTU_PNAME
+        = DatagramTransportImpl.class.getName() + ".MTU";
+
     /**
      * The ID of the component which this instance works for/is associated with.
      */
@@ -52,30 +66,40 @@ public class DatagramTransportImpl
      * The <tt>RTPConnector</tt> which represents and implements the actual
      * <tt>DatagramSocket</tt> adapted by this instance.
      */
-    private AbstractRTPConnector connector;
+    private volatile AbstractRTPConnector connector;
 
     /**
-     * The pool of <tt>RawPacket</tt>s instances to reduce their allocations
-     * and garbage collection.
+     * The value of {@link #MTU_PNAME} i.e. the maximum length in bytes of a
+     * datagram into which multiple DTLS records are to be coalesced.
      */
-    private final Queue<RawPacket> rawPacketPool
-        = new LinkedBlockingQueue<RawPacket>();
+    private final int mtu;
 
     /**
-     * The queue of <tt>RawPacket</tt>s which have been received from the
-     * network are awaiting to be received by the application through this
-     * <tt>DatagramTransport</tt>.
+     * The pool of <tt>RawPacket</tt>s instances to reduce their allocations
+     * and garbage collection. The <tt>RawPacket</tt>s are returned to the pool
+     * by the thread which receives from {@link #receiveQ} and are reused by
+     * the thread which queues into it. Their buffers are of the fixed length
+     * {@link RTPConnectorInputStream#PACKET_RECEIVE_BUFFER_LENGTH} which fits
+     * any datagram read by the <tt>RTPConnector</tt>.
      */
-    private final ArrayBlockingQueue<RawPacket> receiveQ;
+    private final SPSCQueue<RawPacket> rawPacketPool;
 
     /**
-     * The capacity of {@link #receiveQ}.
+     * The queue of <tt>RawPacket</tt>s which have been received from the
+     * network are awaiting to be received by the application through this
+     * <tt>DatagramTransport</tt>. Packets are queued by the thread which
+     * reverse-transforms them (one at a time because
+     * <tt>DtlsPacketTransformer</tt> synchronizes the queueing) and are
+     * received by Bouncy Castle in the thread which performs the handshake
+     * and then in the thread which reverse-transforms them.
      */
-    private final int receiveQCapacity;
+    private final SPSCQueue<RawPacket> receiveQ;
 
     /**
      * The <tt>byte</tt> buffer which represents a datagram to be sent. It may
      * consist of multiple DTLS records which are simple encoded consecutively.
+     * Its length is {@link #mtu}. Allocated once and reused for every
+     * datagram.
      */
     private byte[] sendBuf;
 
@@ -110,8 +134,21 @@ public class DatagramTransportImpl
             throw new IllegalArgumentException("componentID");
         }
 
-        receiveQCapacity = MaxPacketsPerMillisPolicy.PACKET_QUEUE_CAPACITY;
-        receiveQ = new ArrayBlockingQueue<RawPacket>(receiveQCapacity);
+        int receiveQCapacity = MaxPacketsPerMillisPolicy.PACKET_QUEUE_CAPACITY;
+
+        receiveQ = new SPSCQueue<RawPacket>(receiveQCapacity);
+        rawPacketPool = new SPSCQueue<RawPacket>(receiveQCapacity);
+
+        int mtu
+            = ConfigUtils.getInt(
+                    LibJitsi.getConfigurationService(),
+                    MTU_PNAME,
+                    DEFAULT_MTU);
+
+        this.mtu
+            = (mtu > DtlsPacketTransformer.DTLS_RECORD_HEADER_LENGTH)
+                ? mtu
+                : DEFAULT_MTU;
     }
 
     private AbstractRTPConnector assertNotClosed(
@@ -172,27 +209,7 @@ public class DatagramTransportImpl
     {
         // Do preserve the sequence of sends.
         flush();
-
-        AbstractRTPConnector connector = assertNotClosed(false);
-        OutputDataStream outputStream;
-
-        switch (componentID)
-        {
-        case Component.RTCP:
-            outputStream = connector.getControlOutputStream();
-            break;
-        case Component.RTP:
-            outputStream = connector.getDataOutputStream();
-            break;
-        default:
-            String msg = "componentID";
-            IllegalStateException ise = new IllegalStateException(msg);
-
-            logger.error(msg, ise);
-            throw ise;
-        }
-
-        outputStream.write(buf, off, len);
+        write(buf, off, len);
     }
 
     private void flush()
@@ -200,33 +217,19 @@ public class DatagramTransportImpl
     {
         assertNotClosed(false);
 
-        byte[] buf;
-        int len;
-
+        /*
+         * The datagram is written while sendBufSyncRoot is held so that
+         * sendBuf may be reused right away (and the sequence of sends is
+         * preserved).
+         */
         synchronized (sendBufSyncRoot)
         {
-            if ((sendBuf != null) && (sendBufLength != 0))
-            {
-                buf = sendBuf;
-                sendBuf = null;
-                len = sendBufLength;
-                sendBufLength = 0;
-            }
-            else
-            {
-                buf = null;
-                len = 0;
-            }
-        }
-        if (buf != null)
-        {
-            doSend(buf, 0, len);
+            int len = sendBufLength;
 
-            // Attempt to reduce allocations and garbage collection.
-            synchronized (sendBufSyncRoot)
+            if (len != 0)
             {
-                if (sendBuf == null)
-                    sendBuf = buf;
+                sendBufLength = 0;
+                write(sendBuf, 0, len);
             }
         }
     }
@@ -268,7 +271,9 @@ public class DatagramTransportImpl
                 = DtlsPacketTransformer.DTLS_RECORD_HEADER_LENGTH
                     + Packetizer.MAX_PAYLOAD_SIZE;
         }
-        return sendLimit;
+        // Neither a record nor a datagram of coalesced records is to be
+        // larger than the MTU.
+        return Math.min(sendLimit, mtu);
     }
 
     /**
@@ -286,41 +291,48 @@ public class DatagramTransportImpl
     {
         if (len > 0)
         {
-            synchronized (receiveQ)
+            try
             {
-                try
-                {
-                    assertNotClosed(false);
-                }
-                catch (IOException ioe)
-                {
-                    throw new IllegalStateException(ioe);
-                }
+                assertNotClosed(false);
+            }
+            catch (IOException ioe)
+            {
+                throw new IllegalStateException(ioe);
+            }
 
-                RawPacket pkt = rawPacketPool.poll();
-                byte[] pktBuf;
+            RawPacket pkt = rawPacketPool.poll();
+            byte[] pktBuf;
 
-                if ((pkt == null) || ((pktBuf = pkt.getBuffer()).length < len))
-                {
-                    pktBuf = new byte[len];
-                    pkt = new RawPacket(pktBuf, 0, len);
-                }
-                else
-                {
-                    pktBuf = pkt.getBuffer();
-                    pkt.setLength(len);
-                    pkt.setOffset(0);
-                }
-                System.arraycopy(buf, off, pktBuf, 0, len);
+            if ((pkt == null) || ((pktBuf = pkt.getBuffer()).length < len))
+            {
+                int pktBufLength
+                    = RTPConnectorInputStream.PACKET_RECEIVE_BUFFER_LENGTH;
 
-                if (receiveQ.size() == receiveQCapacity)
-                {
-                    RawPacket oldPkt = receiveQ.remove();
+                pktBuf = new byte[Math.max(len, pktBufLength)];
+                pkt = new RawPacket(pktBuf, 0, len);
+            }
+            else
+            {
+                pkt.setLength(len);
+                pkt.setOffset(0);
+            }
+            System.arraycopy(buf, off, pktBuf, 0, len);
 
-                    rawPacketPool.offer(oldPkt);
+            /*
+             * The oldest packet cannot be dropped in favour of the newest one
+             * because the head of receiveQ belongs to the receiving thread.
+             * The record layer will have the peer retransmit, if necessary.
+             * The dropped packet is not returned to rawPacketPool which only
+             * the receiving thread may append to.
+             */
+            if (!receiveQ.offer(pkt))
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(
+                            "Dropping a DTLS record because the receive queue"
+                                + " is full.");
                 }
-                receiveQ.add(pkt);
-                receiveQ.notifyAll();
             }
         }
     }
@@ -354,108 +366,76 @@ public class DatagramTransportImpl
         int received = -1;
         boolean interrupted = false;
 
-        while (received < len)
+        while (true)
         {
-            long timeout;
+            assertNotClosed(true);
 
-            if (waitMillis > 0)
-            {
-                timeout = waitMillis - System.currentTimeMillis() + enterTime;
-                if (timeout == 0 /* wait forever */)
-                    timeout = -1 /* do not wait */;
-            }
-            else
-            {
-                timeout = waitMillis;
-            }
+            RawPacket pkt = receiveQ.peek();
 
-            synchronized (receiveQ)
+            if (pkt != null)
             {
-                assertNotClosed(true);
-
-                RawPacket pkt = receiveQ.peek();
-
-                if (pkt != null)
+                /*
+                 * If a datagram has been received and even if it carries
+                 * no/zero bytes, a non-negative value is to be returned in
+                 * order to distinguish the case with that of no received
+                 * datagram. If the received bytes do not represent a DTLS
+                 * record, the record layer may still not retransmit the
+                 * outbound flight. But that should not be much of a concern
+                 * because we queue DTLS records into DatagramTransportImpl.
+                 */
+                int pktLength = pkt.getLength();
+                int pktOffset = pkt.getOffset();
+
+                received = Math.max(Math.min(len, pktLength), 0);
+                if (received > 0)
                 {
-                    /*
-                     * If a datagram has been received and even if it carries
-                     * no/zero bytes, a non-negative value is to be returned in
-                     * order to distinguish the case with that of no received
-                     * datagram. If the received bytes do not represent a DTLS
-                     * record, the record layer may still not retransmit the
-                     * outbound flight. But that should not be much of a concern
-                     * because we queue DTLS records into DatagramTransportImpl.  
-                     */
-                    if (received < 0)
-                        received = 0;
-
-                    int toReceive = len - received;
-                    boolean toReceiveIsPositive = (toReceive > 0);
-
-                    if (toReceiveIsPositive)
+                    System.arraycopy(
+                            pkt.getBuffer(), pktOffset,
+                            buf, off,
+                            received);
+                    // We do not concatenate RawPackets.
+                    if (received == pktLength)
                     {
-                        int pktLength = pkt.getLength();
-                        int pktOffset = pkt.getOffset();
-
-                        if (toReceive > pktLength)
-                        {
-                            toReceive = pktLength;
-                            toReceiveIsPositive = (toReceive > 0);
-                        }
-                        if (toReceiveIsPositive)
-                        {
-                            System.arraycopy(
-                                    pkt.getBuffer(), pktOffset,
-                                    buf, off + received,
-                                    toReceive);
-                            received += toReceive;
-                        }
-                        if (toReceive == pktLength)
-                        {
-                            receiveQ.remove();
-                            rawPacketPool.offer(pkt);
-                        }
-                        else
-                        {
-                            pkt.setLength(pktLength - toReceive);
-                            pkt.setOffset(pktOffset + toReceive);
-                        }
-                        if (toReceiveIsPositive)
-                        {
-                            /*
-                             * The specified buf has received toReceive bytes
-                             * and we do not concatenate RawPackets.
-                             */
-                            break;
-                        }
+                        receiveQ.poll();
+                        rawPacketPool.offer(pkt);
                     }
                     else
                     {
-                        // The specified buf has received at least len bytes.
-                        break;
+                        pkt.setLength(pktLength - received);
+                        pkt.setOffset(pktOffset + received);
                     }
                 }
+                break;
+            }
+
+            long timeout;
 
-                if (receiveQ.isEmpty())
+            if (waitMillis > 0)
+            {
+                timeout = waitMillis - System.currentTimeMillis() + enterTime;
+                if (timeout <= 0)
                 {
-                    if (timeout >= 0)
-                    {
-                        try
-                        {
-                            receiveQ.wait(timeout);
-                        }
-                        catch (InterruptedException ie)
-                        {
-                            interrupted = true;
-                        }
-                    }
-                    else
-                    {
-                        // The specified waitMillis has been exceeded.
-                        break;
-                    }
+                    // The specified waitMillis has been exceeded.
+                    break;
                 }
             }
+            else if (waitMillis == 0)
+            {
+                // Wait forever.
+                timeout = 0;
+            }
+            else
+            {
+                break;
+            }
+
+            /*
+             * Park rather than wait on a monitor so that the queueing thread
+             * does not have to acquire a lock in order to wake this one up.
+             */
+            receiveQ.await(timeout);
+            if (Thread.interrupted())
+                interrupted = true;
         }
         if (interrupted)
             Thread.currentThread().interrupt();
@@ -508,45 +488,28 @@ public class DatagramTransportImpl
             case ContentType.change_cipher_spec:
                 synchronized (sendBufSyncRoot)
                 {
-                    int newSendBufLength = sendBufLength + len;
+                    // Coalesce records into datagrams no larger than the MTU.
                     int sendLimit = getSendLimit();
 
-                    if (newSendBufLength <= sendLimit)
+                    if (sendBufLength + len > sendLimit)
+                        flush();
+                    if (len > sendLimit)
+                    {
+                        // The record does not fit into any datagram of
+                        // coalesced records so it is sent on its own.
+                        doSend(buf, off, len);
+                    }
+                    else
                     {
                         if (sendBuf == null)
-                        {
-                            sendBuf = new byte[sendLimit];
-                            sendBufLength = 0;
-                        }
-                        else if (sendBuf.length < sendLimit)
-                        {
-                            byte[] oldSendBuf = sendBuf;
-
-                            sendBuf = new byte[sendLimit];
-                            System.arraycopy(
-                                    oldSendBuf, 0,
-                                    sendBuf, 0,
-                                    Math.min(sendBufLength, sendBuf.length));
-                        }
+                            sendBuf = new byte[mtu];
 
                         System.arraycopy(buf, off, sendBuf, sendBufLength, len);
-                        sendBufLength = newSendBufLength;
+                        sendBufLength += len;
 
                         if (endOfFlight)
                             flush();
                     }
-                    else
-                    {
-                        if (endOfFlight)
-                        {
-                            doSend(buf, off, len);
-                        }
-                        else
-                        {
-                            flush();
-                            send(buf, off, len);
-                        }
-                    }
                 }
                 break;
 
@@ -573,10 +536,42 @@ public class DatagramTransportImpl
      */
     void setConnector(AbstractRTPConnector connector)
     {
-        synchronized (receiveQ)
+        this.connector = connector;
+        // Have a blocked receive notice that this instance has been closed.
+        receiveQ.wakeUp();
+    }
+
+    /**
+     * Writes a specific datagram into the <tt>OutputDataStream</tt> of the
+     * <tt>RTPConnector</tt> of this instance.
+     *
+     * @param buf the <tt>byte</tt> array which contains the datagram to write
+     * @param off the offset in <tt>buf</tt> at which the datagram starts
+     * @param len the length in bytes of the datagram
+     * @throws IOException if the datagram could not be written
+     */
+    private void write(byte[] buf, int off, int len)
+        throws IOException
+    {
+        AbstractRTPConnector connector = assertNotClosed(false);
+        OutputDataStream outputStream;
+
+        switch (componentID)
         {
-            this.connector = connector;
-            receiveQ.notifyAll();
+        case Component.RTCP:
+            outputStream = connector.getControlOutputStream();
+            break;
+        case Component.RTP:
+            outputStream = connector.getDataOutputStream();
+            break;
+        default:
+            String msg = "componentID";
+            IllegalStateException ise = new IllegalStateException(msg);
+
+            logger.error(msg, ise);
+            throw ise;
         }
+
+        outputStream.write(buf, off, len);
     }
 }
@@ -1098,32 +1098,34 @@ public class DtlsPacketTransformer
         datagramTransport.setConnector(connector);
 
         Thread connectThread
-            = new Thread()
-            {
-                @Override
-                public void run()
-                {
-                    try
-                    {
-                        runInConnectThread(
-                                dtlsProtocolObj,
-                                tlsPeer,
-                                datagramTransport);
-                    }
-                    finally
+            = ExecutorUtils.newThread(
+                    new Runnable()
                     {
-                        if (Thread.currentThread().equals(
-                                DtlsPacketTransformer.this.connectThread))
+                        @Override
+                        public void run()
                         {
-                            DtlsPacketTransformer.this.connectThread = null;
+                            try
+                            {
+                                runInConnectThread(
+                                        dtlsProtocolObj,
+                                        tlsPeer,
+                                        datagramTransport);
+                            }
+                            finally
+                            {
+                                if (Thread.currentThread().equals(
+                                        DtlsPacketTransformer.this
+                                            .connectThread))
+                                {
+                                    DtlsPacketTransformer.this.connectThread
+                                        = null;
+                                }
+                            }
                         }
-                    }
-                }
-            };
-
-        connectThread.setDaemon(true);
-        connectThread.setName(
-                DtlsPacketTransformer.class.getName() + ".connectThread");
+                    },
+                    DtlsPacketTransformer.class.getName() + ".connectThread",
+                    true,
+                    0);
 
         this.connectThread = connectThread;
         this.datagramTransport = datagramTransport;
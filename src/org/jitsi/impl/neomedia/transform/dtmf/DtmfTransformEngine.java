@@ -36,7 +36,8 @@ import org.jitsi.service.neomedia.format.*;
  */
 public class DtmfTransformEngine
     extends SinglePacketTransformer
-    implements TransformEngine
+    implements ConditionalPacketTransformer,
+               TransformEngine
 {
     /**
      * The <tt>AudioMediaStreamImpl</tt> that this transform engine was created
@@ -237,6 +238,28 @@ public class DtmfTransformEngine
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Received packets are always inspected for DTMF events.
+     */
+    @Override
+    public boolean isReverseTransformActive()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Packets to be sent are replaced only while a tone is being sent.
+     */
+    @Override
+    public boolean isTransformActive()
+    {
+        return !currentTone.isEmpty();
+    }
+
     /**
      * A stub meant to handle incoming DTMF packets.
      *
@@ -34,7 +34,8 @@ import java.util.*;
  */
 public class PayloadTypeTransformEngine
     extends SinglePacketTransformerAdapter
-    implements TransformEngine
+    implements ConditionalPacketTransformer,
+               TransformEngine
 {
     /**
      * The mapping we use to override payloads. By default it is empty
@@ -108,6 +109,32 @@ public class PayloadTypeTransformEngine
         return null;
     }
 
+    /**
+     * Always returns <tt>false</tt> since received packets are not modified.
+     *
+     * @return <tt>false</tt>
+     */
+    @Override
+    public boolean isReverseTransformActive()
+    {
+        return false;
+    }
+
+    /**
+     * Determines whether there are any override mappings to apply to the
+     * packets to be sent.
+     *
+     * @return <tt>true</tt> if there are override mappings; otherwise,
+     * <tt>false</tt>
+     */
+    @Override
+    public boolean isTransformActive()
+    {
+        Map<Byte, Byte> mappingOverridesCopy = this.mappingOverridesCopy;
+
+        return mappingOverridesCopy != null && !mappingOverridesCopy.isEmpty();
+    }
+
     /**
      * Adds an additional RTP payload type mapping used to override the payload
      * type of outgoing RTP packets. If an override for <tt>originalPT<tt/>,
@@ -131,6 +131,11 @@ public class StatisticsEngine
      */
     private final MediaStreamImpl mediaStream;
 
+    /**
+     * The counters and histograms of {@link #mediaStream}.
+     */
+    private final MediaStreamMetrics mediaStreamMetrics;
+
     /**
      * The <tt>MediaType</tt> of {@link #mediaStream}. Cached for the purposes
      * of performance.
@@ -187,7 +192,10 @@ public class StatisticsEngine
         public RawPacket transform(RawPacket pkt)
         {
             if (pkt != null && pkt.getVersion() == RTPHeader.VERSION)
+            {
                 StatisticsEngine.this.rtpPacketsSent++;
+                mediaStreamMetrics.rtpPacketSent(pkt.getLength());
+            }
             return pkt;
         }
 
@@ -195,7 +203,10 @@ public class StatisticsEngine
         public RawPacket reverseTransform(RawPacket pkt)
         {
             if (pkt != null && pkt.getVersion() == RTPHeader.VERSION)
+            {
                 StatisticsEngine.this.rtpPacketsReceived++;
+                mediaStreamMetrics.rtpPacketReceived(pkt.getLength());
+            }
             return pkt;
         }
     };
@@ -207,6 +218,7 @@ public class StatisticsEngine
     public StatisticsEngine(MediaStreamImpl stream)
     {
         this.mediaStream = stream;
+        mediaStreamMetrics = stream.getMediaStreamMetrics();
 
         mediaType = this.mediaStream.getMediaType();
     }
@@ -0,0 +1,549 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.packetlogging;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.service.packetlogging.*;
+import org.jitsi.util.*;
+
+/**
+ * Implements {@link PacketLoggingService} by writing the logged packets into
+ * a rotating set of pcapng files. The threads which log packets only copy
+ * them into a preallocated slot of a lock-free ring and never block or wait
+ * for I/O; a single background thread drains the ring and writes the files.
+ * If the ring is full (i.e. the writer cannot keep up), packets are dropped
+ * and counted rather than stalling the threads which log them.
+ * <p>
+ * Logging is configured through the properties defined by
+ * {@link PacketLoggingConfiguration}. Additionally, only one of every so many
+ * packets of a protocol may be logged (see {@link #SAMPLING_RATE_PNAME}) in
+ * order to reduce the overhead of always-on logging.
+ * </p>
+ */
+public class PacketLoggingServiceImpl
+    implements PacketLoggingService
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>PacketLoggingServiceImpl</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(PacketLoggingServiceImpl.class);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the directory in which the pcapng files are written. If not specified,
+     * the log directory of the application is used.
+     */
+    public static final String DIRECTORY_PNAME
+        = PacketLoggingServiceImpl.class.getName() + ".DIRECTORY";
+
+    /**
+     * The number of milliseconds after which the packets buffered by the
+     * writer thread are written into the file even if the buffer is not full.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    /**
+     * The number of nanoseconds for which the writer thread parks when there
+     * are no packets to write. Since the producers never wake the writer
+     * thread up, this is the latency of the writing which is traded for not
+     * imposing any signaling cost on the threads which log packets.
+     */
+    private static final long IDLE_PARK_NANOS
+        = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the number of packets which may wait to be written. The default value
+     * is <tt>4096</tt>.
+     */
+    public static final String QUEUE_CAPACITY_PNAME
+        = PacketLoggingServiceImpl.class.getName() + ".QUEUE_CAPACITY";
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * that only one of every so many packets is to be logged. May be
+     * overridden for a specific protocol by a property with the name of the
+     * protocol appended e.g. <tt>SAMPLING_RATE.RTP</tt>. The default value is
+     * <tt>1</tt> i.e. every packet is logged.
+     */
+    public static final String SAMPLING_RATE_PNAME
+        = PacketLoggingServiceImpl.class.getName() + ".SAMPLING_RATE";
+
+    /**
+     * The <tt>PacketLoggingConfiguration</tt> of this instance.
+     */
+    private final PacketLoggingConfiguration configuration
+        = new PacketLoggingConfiguration();
+
+    /**
+     * The directory in which the pcapng files are written.
+     */
+    private File directory;
+
+    /**
+     * The number of packets which have been dropped because {@link #queue}
+     * was full.
+     */
+    private final AtomicLong droppedPacketCount = new AtomicLong();
+
+    /**
+     * The indicator which determines whether logging has been disabled
+     * because writing has failed or this instance has been stopped.
+     */
+    private volatile boolean disabled;
+
+    /**
+     * The numbers of packets per {@link PacketLoggingService.ProtocolName}
+     * which have been offered for logging. Used for sampling.
+     */
+    private final AtomicLongArray packetCounts
+        = new AtomicLongArray(ProtocolName.values().length);
+
+    /**
+     * The ring through which the logged packets are handed over to
+     * {@link #writerThread}.
+     */
+    private final PacketQueue queue;
+
+    /**
+     * The number of packets per {@link PacketLoggingService.ProtocolName} of
+     * which only one is logged.
+     */
+    private final int[] samplingRates = new int[ProtocolName.values().length];
+
+    /**
+     * The difference between the time in microseconds since the epoch and
+     * {@link System#nanoTime()} in microseconds. Allows time-stamping the
+     * logged packets with microsecond precision.
+     */
+    private final long timestampBase;
+
+    /**
+     * The <tt>Thread</tt> which writes the logged packets or <tt>null</tt>
+     * if it has not been started yet.
+     */
+    private volatile Thread writerThread;
+
+    /**
+     * Initializes a new <tt>PacketLoggingServiceImpl</tt> instance and reads
+     * its configuration from the <tt>ConfigurationService</tt>, if any.
+     */
+    public PacketLoggingServiceImpl()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        int queueCapacity = 4096;
+        int samplingRate = 1;
+        String directory = null;
+
+        if (cfg != null)
+        {
+            configuration.setGlobalLoggingEnabled(
+                    cfg.getBoolean(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_ENABLED_PROPERTY_NAME,
+                            false));
+            configuration.setSipLoggingEnabled(
+                    cfg.getBoolean(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_SIP_ENABLED_PROPERTY_NAME,
+                            false));
+            configuration.setJabberLoggingEnabled(
+                    cfg.getBoolean(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_JABBER_ENABLED_PROPERTY_NAME,
+                            false));
+            configuration.setRTPLoggingEnabled(
+                    cfg.getBoolean(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_RTP_ENABLED_PROPERTY_NAME,
+                            false));
+            configuration.setIce4JLoggingEnabled(
+                    cfg.getBoolean(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_ICE4J_ENABLED_PROPERTY_NAME,
+                            false));
+            configuration.setArbitraryLoggingEnabled(
+                    cfg.getBoolean(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_ARBITRARY_ENABLED_PROPERTY_NAME,
+                            false));
+            configuration.setLimit(
+                    cfg.getLong(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_FILE_SIZE_PROPERTY_NAME,
+                            configuration.getLimit()));
+            configuration.setLogfileCount(
+                    cfg.getInt(
+                            PacketLoggingConfiguration
+                                .PACKET_LOGGING_FILE_COUNT_PROPERTY_NAME,
+                            configuration.getLogfileCount()));
+
+            queueCapacity = cfg.getInt(QUEUE_CAPACITY_PNAME, queueCapacity);
+            samplingRate = cfg.getInt(SAMPLING_RATE_PNAME, samplingRate);
+            directory = cfg.getString(DIRECTORY_PNAME);
+        }
+        else
+        {
+            configuration.setGlobalLoggingEnabled(false);
+        }
+
+        for (ProtocolName protocol : ProtocolName.values())
+        {
+            int protocolSamplingRate
+                = (cfg == null)
+                    ? samplingRate
+                    : cfg.getInt(
+                            SAMPLING_RATE_PNAME + "." + protocol.name(),
+                            samplingRate);
+
+            samplingRates[protocol.ordinal()]
+                = Math.max(protocolSamplingRate, 1);
+        }
+
+        if (directory != null)
+            this.directory = new File(directory);
+        queue = new PacketQueue(Math.max(queueCapacity, 1));
+        timestampBase
+            = System.currentTimeMillis() * 1000L
+                - System.nanoTime() / 1000L;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PacketLoggingConfiguration getConfiguration()
+    {
+        return configuration;
+    }
+
+    /**
+     * Gets the number of packets which have been dropped because the writer
+     * could not keep up with the rate at which they were logged.
+     *
+     * @return the number of packets which have been dropped
+     */
+    public long getDroppedPacketCount()
+    {
+        return droppedPacketCount.get();
+    }
+
+    /**
+     * Gets the directory in which the pcapng files are to be written.
+     *
+     * @return the directory in which the pcapng files are to be written
+     * @throws IOException if the log directory of the application cannot be
+     * determined
+     */
+    private File getDirectory()
+        throws IOException
+    {
+        if (directory == null)
+        {
+            FileAccessService fas = LibJitsi.getFileAccessService();
+
+            directory
+                = (fas == null)
+                    ? new File(System.getProperty("java.io.tmpdir"))
+                    : fas.getPrivatePersistentDirectory(
+                            "log",
+                            FileCategory.LOG);
+        }
+        return directory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isLoggingEnabled()
+    {
+        return configuration.isGlobalLoggingEnabled() && !disabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isLoggingEnabled(ProtocolName protocol)
+    {
+        if (!isLoggingEnabled())
+            return false;
+
+        switch (protocol)
+        {
+        case SIP:
+            return configuration.isSipLoggingEnabled();
+        case JABBER:
+            return configuration.isJabberLoggingEnabled();
+        case RTP:
+            return configuration.isRTPLoggingEnabled();
+        case ICE4J:
+            return configuration.isIce4JLoggingEnabled();
+        case ARBITRARY:
+            return configuration.isArbitraryLoggingEnabled();
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void logPacket(
+            ProtocolName protocol,
+            byte[] sourceAddress,
+            int sourcePort,
+            byte[] destinationAddress,
+            int destinationPort,
+            TransportName transport,
+            boolean sender,
+            byte[] packetContent)
+    {
+        logPacket(
+                protocol,
+                sourceAddress, sourcePort,
+                destinationAddress, destinationPort,
+                transport,
+                sender,
+                packetContent, 0, packetContent.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Copies the packet into a slot of the ring of this instance without
+     * blocking. The packet is dropped if the ring is full.
+     */
+    @Override
+    public void logPacket(
+            ProtocolName protocol,
+            byte[] sourceAddress,
+            int sourcePort,
+            byte[] destinationAddress,
+            int destinationPort,
+            TransportName transport,
+            boolean sender,
+            byte[] packetContent,
+            int packetOffset,
+            int packetLength)
+    {
+        if (!isLoggingEnabled(protocol))
+            return;
+
+        int samplingRate = samplingRates[protocol.ordinal()];
+
+        if ((samplingRate > 1)
+                && (packetCounts.getAndIncrement(protocol.ordinal())
+                        % samplingRate
+                    != 0))
+        {
+            return;
+        }
+
+        if (writerThread == null)
+        {
+            startWriterThread();
+            // The writer thread is not restarted after stop().
+            if (writerThread == null)
+                return;
+        }
+
+        PacketQueue.Slot slot = queue.claim();
+
+        if (slot == null)
+        {
+            droppedPacketCount.incrementAndGet();
+            return;
+        }
+
+        int length
+            = Math.min(
+                    packetLength,
+                    PcapngWriter.SNAPLEN - PcapngWriter.MAX_HEADERS_LENGTH);
+        byte[] data = slot.data;
+
+        if (data.length < length)
+            slot.data = data = new byte[Math.max(length, 1500)];
+        System.arraycopy(packetContent, packetOffset, data, 0, length);
+
+        slot.destinationAddress = destinationAddress;
+        slot.destinationPort = destinationPort;
+        slot.length = length;
+        slot.originalLength = packetLength;
+        slot.sender = sender;
+        slot.sourceAddress = sourceAddress;
+        slot.sourcePort = sourcePort;
+        slot.timestamp = timestampBase + System.nanoTime() / 1000L;
+        slot.transport = transport;
+
+        queue.publish(slot);
+    }
+
+    /**
+     * Writes the packets handed over through {@link #queue} until the
+     * current thread is no longer {@link #writerThread}.
+     */
+    private void runInWriterThread()
+    {
+        PcapngWriter writer = null;
+        long lastFlushTime = System.currentTimeMillis();
+        boolean dirty = false;
+
+        try
+        {
+            writer
+                = new PcapngWriter(
+                        getDirectory(),
+                        "jitsi",
+                        configuration.getLimit(),
+                        configuration.getLogfileCount());
+
+            while (true)
+            {
+                PacketQueue.Slot slot = queue.peek();
+
+                if (slot == null)
+                {
+                    long now = System.currentTimeMillis();
+
+                    if (dirty && (now - lastFlushTime >= FLUSH_INTERVAL))
+                    {
+                        writer.flush();
+                        lastFlushTime = now;
+                        dirty = false;
+                    }
+                    if (writerThread != Thread.currentThread())
+                        break;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                try
+                {
+                    writer.write(slot);
+                    dirty = true;
+                }
+                finally
+                {
+                    // Do not hold on to the addresses of the logged packet.
+                    slot.destinationAddress = null;
+                    slot.sourceAddress = null;
+                    queue.release();
+                }
+            }
+        }
+        catch (IOException ioe)
+        {
+            logger.error(
+                    "Failed to write packets, packet logging is disabled.",
+                    ioe);
+            disabled = true;
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                try
+                {
+                    writer.close();
+                }
+                catch (IOException ioe)
+                {
+                    logger.error("Failed to close packet log.", ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts {@link #writerThread} if it has not been started yet and makes
+     * sure that it writes the packets still waiting in {@link #queue} upon
+     * exit. Does nothing if this instance has been stopped.
+     */
+    private synchronized void startWriterThread()
+    {
+        if ((writerThread != null) || disabled)
+            return;
+
+        Thread writerThread
+            = new Thread(PacketLoggingServiceImpl.class.getName())
+            {
+                @Override
+                public void run()
+                {
+                    runInWriterThread();
+                }
+            };
+
+        writerThread.setDaemon(true);
+        this.writerThread = writerThread;
+        writerThread.start();
+
+        /*
+         * The writer thread is a daemon one so make sure that the packets
+         * which are still to be written are not lost upon exit.
+         */
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(PacketLoggingServiceImpl.class.getName() + ".stop")
+                {
+                    @Override
+                    public void run()
+                    {
+                        stop();
+                    }
+                });
+    }
+
+    /**
+     * Stops the writing of the logged packets. The packets which have already
+     * been logged are written and the current file is closed before the
+     * method returns. Packets logged afterwards are ignored.
+     */
+    public void stop()
+    {
+        Thread writerThread;
+
+        synchronized (this)
+        {
+            disabled = true;
+            writerThread = this.writerThread;
+            if (writerThread == null)
+                return;
+            this.writerThread = null;
+        }
+
+        LockSupport.unpark(writerThread);
+        try
+        {
+            writerThread.join();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.packetlogging;
+
+import java.util.concurrent.atomic.*;
+
+import org.jitsi.service.packetlogging.*;
+
+/**
+ * A bounded, lock-free, multiple-producer single-consumer ring of
+ * {@link Slot}s through which the threads which log packets hand them over to
+ * the single thread which writes them. The <tt>Slot</tt>s are preallocated and
+ * reused so that logging a packet does not allocate once the ring has warmed
+ * up. A producer which finds the ring full does not wait but gets
+ * <tt>null</tt> and is expected to drop its packet.
+ * <p>
+ * Each element of the ring carries a sequence number. A producer may claim the
+ * element at position <tt>p</tt> when its sequence is <tt>p</tt>, the
+ * consumer may read it when its sequence is <tt>p + 1</tt> and releases it for
+ * position <tt>p + capacity</tt>.
+ * </p>
+ */
+class PacketQueue
+{
+    /**
+     * The position in this ring of the next <tt>Slot</tt> to be read by the
+     * consumer. Accessed by the consumer thread only.
+     */
+    private long head;
+
+    /**
+     * The mask which maps a position in this ring to an index in
+     * {@link #slots}.
+     */
+    private final int mask;
+
+    /**
+     * The sequence numbers of the elements of {@link #slots}.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The preallocated elements of this ring.
+     */
+    private final Slot[] slots;
+
+    /**
+     * The position in this ring of the next <tt>Slot</tt> to be claimed by a
+     * producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Initializes a new <tt>PacketQueue</tt> instance.
+     *
+     * @param capacity the minimum number of packets which the new instance is
+     * to be able to hold. Rounded up to a power of two.
+     */
+    PacketQueue(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity");
+
+        int size = Integer.highestOneBit(capacity);
+
+        if (size < capacity)
+            size <<= 1;
+
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++)
+        {
+            sequences.set(i, i);
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Claims the next free <tt>Slot</tt> of this ring on behalf of a
+     * producer. The producer has to fill the claimed <tt>Slot</tt> in and hand
+     * it to {@link #publish(Slot)}.
+     *
+     * @return the claimed <tt>Slot</tt> or <tt>null</tt> if this ring is full
+     */
+    Slot claim()
+    {
+        while (true)
+        {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+
+            if (diff == 0)
+            {
+                if (tail.compareAndSet(position, position + 1))
+                {
+                    Slot slot = slots[index];
+
+                    slot.position = position;
+                    return slot;
+                }
+            }
+            else if (diff < 0)
+            {
+                // The consumer has not released the slot yet i.e. full.
+                return null;
+            }
+            // Another producer has claimed the position, try the next one.
+        }
+    }
+
+    /**
+     * Gets the next <tt>Slot</tt> published by the producers without removing
+     * it from this ring. Invoked by the consumer thread only.
+     *
+     * @return the next published <tt>Slot</tt> or <tt>null</tt> if this ring
+     * is empty
+     */
+    Slot peek()
+    {
+        int index = (int) (head & mask);
+
+        return (sequences.get(index) == head + 1) ? slots[index] : null;
+    }
+
+    /**
+     * Makes a <tt>Slot</tt> claimed through {@link #claim()} and filled in
+     * available to the consumer.
+     *
+     * @param slot the <tt>Slot</tt> to publish
+     */
+    void publish(Slot slot)
+    {
+        sequences.lazySet((int) (slot.position & mask), slot.position + 1);
+    }
+
+    /**
+     * Removes the <tt>Slot</tt> returned by {@link #peek()} from this ring so
+     * that producers may reuse it. Invoked by the consumer thread only.
+     */
+    void release()
+    {
+        sequences.lazySet((int) (head & mask), head + slots.length);
+        head++;
+    }
+
+    /**
+     * Describes a packet logged through a {@link PacketLoggingService}.
+     */
+    static class Slot
+    {
+        /**
+         * The bytes of the logged packet. Reused and grown as necessary.
+         */
+        byte[] data = new byte[0];
+
+        /**
+         * The destination address of the logged packet.
+         */
+        byte[] destinationAddress;
+
+        /**
+         * The destination port of the logged packet.
+         */
+        int destinationPort;
+
+        /**
+         * The number of bytes of the logged packet in {@link #data}.
+         */
+        int length;
+
+        /**
+         * The length of the logged packet before it was truncated to fit in
+         * {@link #data}.
+         */
+        int originalLength;
+
+        /**
+         * The position in the ring of this <tt>Slot</tt> while it is claimed.
+         */
+        long position;
+
+        /**
+         * The indicator which determines whether the logged packet was sent
+         * (as opposed to received).
+         */
+        boolean sender;
+
+        /**
+         * The source address of the logged packet.
+         */
+        byte[] sourceAddress;
+
+        /**
+         * The source port of the logged packet.
+         */
+        int sourcePort;
+
+        /**
+         * The time in microseconds since the epoch at which the packet was
+         * logged.
+         */
+        long timestamp;
+
+        /**
+         * The transport of the logged packet.
+         */
+        PacketLoggingService.TransportName transport;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.packetlogging;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.jitsi.service.packetlogging.*;
+import org.jitsi.util.*;
+
+/**
+ * Writes logged packets into a rotating set of pcapng files. Since the
+ * packets are logged without their network headers, IPv4 (or IPv6) and UDP
+ * (or TCP) headers are synthesized for them so that tools such as Wireshark
+ * can dissect them. The blocks are accumulated in a large direct
+ * <tt>ByteBuffer</tt> and written through a <tt>FileChannel</tt> when it is
+ * full or when {@link #flush()} is invoked.
+ * <p>
+ * The files are named <tt>&lt;baseName&gt;&lt;index&gt;.pcapng</tt> with the
+ * index <tt>0</tt> being the file currently written. Upon rotation, the file
+ * with index <tt>i</tt> is renamed to <tt>i + 1</tt> and the file with the
+ * greatest index is deleted.
+ * </p>
+ * <p>
+ * Not thread-safe, used by a single writer thread.
+ * </p>
+ */
+class PcapngWriter
+{
+    /**
+     * The size in bytes of the buffer in which the blocks are accumulated
+     * before they are written into the file.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The type of the pcapng Enhanced Packet Block.
+     */
+    private static final int EPB_TYPE = 6;
+
+    /**
+     * The type of the pcapng Interface Description Block.
+     */
+    private static final int IDB_TYPE = 1;
+
+    /**
+     * The link type of the packets written by <tt>PcapngWriter</tt> i.e.
+     * <tt>LINKTYPE_RAW</tt> (raw IPv4 or IPv6).
+     */
+    private static final int LINKTYPE_RAW = 101;
+
+    /**
+     * The maximum number of bytes of a packet including its synthesized
+     * network headers which are written.
+     */
+    static final int SNAPLEN = 0xFFFF;
+
+    /**
+     * The maximum number of bytes of the network headers synthesized by
+     * <tt>PcapngWriter</tt> (i.e. IPv6 and TCP).
+     */
+    static final int MAX_HEADERS_LENGTH = 40 + 20;
+
+    /**
+     * The type of the pcapng Section Header Block.
+     */
+    private static final int SHB_TYPE = 0x0A0D0D0A;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>PcapngWriter</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(PcapngWriter.class);
+
+    /**
+     * The name of the files without their indices and extension.
+     */
+    private final String baseName;
+
+    /**
+     * The buffer in which the blocks are accumulated.
+     */
+    private final ByteBuffer buffer
+        = ByteBuffer.allocateDirect(BUFFER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The <tt>FileChannel</tt> of the file currently written or
+     * <tt>null</tt> if no file is open.
+     */
+    private FileChannel channel;
+
+    /**
+     * The directory in which the files are written.
+     */
+    private final File directory;
+
+    /**
+     * The maximum size in bytes of a file or <tt>0</tt> for no limit.
+     */
+    private final long limit;
+
+    /**
+     * The maximum number of files.
+     */
+    private final int logfileCount;
+
+    /**
+     * The number of bytes written (or buffered to be written) into the
+     * current file.
+     */
+    private long size;
+
+    /**
+     * Initializes a new <tt>PcapngWriter</tt> instance.
+     *
+     * @param directory the directory in which the files are to be written
+     * @param baseName the name of the files without their indices and
+     * extension
+     * @param limit the maximum size in bytes of a file or <tt>0</tt> for no
+     * limit
+     * @param logfileCount the maximum number of files
+     */
+    PcapngWriter(File directory, String baseName, long limit, int logfileCount)
+    {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.limit = limit;
+        this.logfileCount = Math.max(logfileCount, 1);
+    }
+
+    /**
+     * Flushes and closes the file currently written, if any.
+     *
+     * @throws IOException if flushing or closing the file fails
+     */
+    void close()
+        throws IOException
+    {
+        if (channel != null)
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks accumulated in the buffer into the file.
+     *
+     * @throws IOException if writing into the file fails
+     */
+    void flush()
+        throws IOException
+    {
+        if ((channel != null) && (buffer.position() != 0))
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Gets the file with a specific index.
+     *
+     * @param index the index of the file to get
+     * @return the file with the specified <tt>index</tt>
+     */
+    private File getFile(int index)
+    {
+        return new File(directory, baseName + index + ".pcapng");
+    }
+
+    /**
+     * Shifts the existing files by one index (deleting the last one) and
+     * starts a new file with index <tt>0</tt>.
+     *
+     * @throws IOException if closing the previous file or opening the new one
+     * fails
+     */
+    private void rotate()
+        throws IOException
+    {
+        close();
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Failed to create " + directory);
+
+        File last = getFile(logfileCount - 1);
+
+        if (last.exists() && !last.delete())
+            throw new IOException("Failed to delete " + last);
+        for (int i = logfileCount - 2; i >= 0; i--)
+        {
+            File file = getFile(i);
+
+            if (file.exists())
+            {
+                File dest = getFile(i + 1);
+
+                if (!file.renameTo(dest))
+                    logger.warn("Failed to rename " + file + " to " + dest);
+            }
+        }
+
+        channel = new FileOutputStream(getFile(0)).getChannel();
+        size = 0;
+
+        // Section Header Block
+        buffer.putInt(SHB_TYPE);
+        buffer.putInt(28);
+        buffer.putInt(0x1A2B3C4D);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 0);
+        buffer.putLong(-1L);
+        buffer.putInt(28);
+        // Interface Description Block
+        buffer.putInt(IDB_TYPE);
+        buffer.putInt(20);
+        buffer.putShort((short) LINKTYPE_RAW);
+        buffer.putShort((short) 0);
+        buffer.putInt(SNAPLEN);
+        buffer.putInt(20);
+        size += 28 + 20;
+    }
+
+    /**
+     * Writes a logged packet as a pcapng Enhanced Packet Block, rotating the
+     * files if the block would exceed the size limit.
+     *
+     * @param slot the logged packet to write
+     * @throws IOException if writing fails
+     */
+    void write(PacketQueue.Slot slot)
+        throws IOException
+    {
+        byte[] src = slot.sourceAddress;
+        byte[] dst = slot.destinationAddress;
+        boolean ipv6
+            = ((src != null) && (src.length == 16))
+                || ((dst != null) && (dst.length == 16));
+        boolean tcp
+            = (slot.transport == PacketLoggingService.TransportName.TCP);
+        int transportHeaderLength = tcp ? 20 : 8;
+        int headersLength = (ipv6 ? 40 : 20) + transportHeaderLength;
+        int capturedLength = headersLength + slot.length;
+        int originalLength = headersLength + slot.originalLength;
+        int paddedLength = (capturedLength + 3) & ~3;
+        // EPB fields, packet data, epb_flags and opt_endofopt options.
+        int blockLength = 28 + paddedLength + 8 + 4 + 4;
+
+        if ((channel == null)
+                || ((limit > 0) && (size + blockLength > limit)))
+        {
+            rotate();
+        }
+        if (buffer.remaining() < blockLength)
+        {
+            flush();
+        }
+
+        buffer.putInt(EPB_TYPE);
+        buffer.putInt(blockLength);
+        buffer.putInt(0); // interface ID
+        buffer.putInt((int) (slot.timestamp >>> 32));
+        buffer.putInt((int) slot.timestamp);
+        buffer.putInt(capturedLength);
+        buffer.putInt(originalLength);
+
+        // The network headers are in network byte order.
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        int ipLength = Math.min(originalLength, 0xFFFF);
+
+        if (ipv6)
+        {
+            buffer.putInt(0x60000000);
+            buffer.putShort((short) (ipLength - 40));
+            buffer.put((byte) (tcp ? 6 : 17));
+            buffer.put((byte) 64);
+            putIPv6Address(src);
+            putIPv6Address(dst);
+        }
+        else
+        {
+            int ipHeaderOffset = buffer.position();
+
+            buffer.put((byte) 0x45);
+            buffer.put((byte) 0);
+            buffer.putShort((short) ipLength);
+            buffer.putInt(0x00004000); // identification, don't fragment
+            buffer.put((byte) 64);
+            buffer.put((byte) (tcp ? 6 : 17));
+            buffer.putShort((short) 0);
+            putIPv4Address(src);
+            putIPv4Address(dst);
+
+            int checksum = 0;
+
+            for (int i = 0; i < 20; i += 2)
+                checksum += buffer.getShort(ipHeaderOffset + i) & 0xFFFF;
+            while ((checksum >>> 16) != 0)
+                checksum = (checksum & 0xFFFF) + (checksum >>> 16);
+            buffer.putShort(ipHeaderOffset + 10, (short) ~checksum);
+        }
+
+        buffer.putShort((short) slot.sourcePort);
+        buffer.putShort((short) slot.destinationPort);
+        if (tcp)
+        {
+            buffer.putInt(0); // sequence number
+            buffer.putInt(0); // acknowledgment number
+            buffer.putShort((short) 0x5018); // data offset, PSH and ACK
+            buffer.putShort((short) 0xFFFF); // window
+            buffer.putInt(0); // checksum, urgent pointer
+        }
+        else
+        {
+            buffer.putShort(
+                    (short) Math.min(slot.originalLength + 8, 0xFFFF));
+            buffer.putShort((short) 0); // no checksum
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put(slot.data, 0, slot.length);
+        for (int i = capturedLength; i < paddedLength; i++)
+            buffer.put((byte) 0);
+
+        // epb_flags: the direction i.e. inbound (1) or outbound (2).
+        buffer.putShort((short) 2);
+        buffer.putShort((short) 4);
+        buffer.putInt(slot.sender ? 2 : 1);
+        // opt_endofopt
+        buffer.putInt(0);
+
+        buffer.putInt(blockLength);
+        size += blockLength;
+    }
+
+    /**
+     * Writes a specific address into {@link #buffer} as an IPv4 address.
+     *
+     * @param address the address to write. If it is not an IPv4 address,
+     * <tt>0.0.0.0</tt> is written.
+     */
+    private void putIPv4Address(byte[] address)
+    {
+        if ((address != null) && (address.length == 4))
+            buffer.put(address);
+        else
+            buffer.putInt(0);
+    }
+
+    /**
+     * Writes a specific address into {@link #buffer} as an IPv6 address.
+     *
+     * @param address the address to write. An IPv4 address is written as an
+     * IPv4-mapped IPv6 address.
+     */
+    private void putIPv6Address(byte[] address)
+    {
+        if ((address != null) && (address.length == 16))
+        {
+            buffer.put(address);
+        }
+        else
+        {
+            buffer.putLong(0);
+            buffer.putShort((short) 0);
+            if ((address != null) && (address.length == 4))
+            {
+                buffer.putShort((short) 0xFFFF);
+                buffer.put(address);
+            }
+            else
+            {
+                buffer.putShort((short) 0);
+                buffer.putInt(0);
+            }
+        }
+    }
+}
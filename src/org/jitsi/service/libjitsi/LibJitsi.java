@@ -315,7 +315,11 @@ public abstract class LibJitsi
      */
     public static void stop()
     {
-        impl = null;
+        LibJitsi impl = LibJitsi.impl;
+
+        LibJitsi.impl = null;
+        if (impl != null)
+            impl.doStop();
     }
 
     /**
@@ -325,6 +329,15 @@ public abstract class LibJitsi
     {
     }
 
+    /**
+     * Stops/uninitializes this implementation of the <tt>libjitsi</tt> library
+     * i.e. releases the resources acquired by the services associated with it.
+     * The default implementation does nothing.
+     */
+    protected void doStop()
+    {
+    }
+
     /**
      * Gets a service of a specific type associated with this implementation of
      * the <tt>libjitsi</tt> library.
@@ -325,6 +325,16 @@ public interface MediaService
      */
     public VolumeControl getInputVolumeControl();
 
+    /**
+     * Gets the metrics of all the <tt>MediaStream</tt>s of this
+     * <tt>MediaService</tt> which have not been closed accumulated into one
+     * snapshot.
+     *
+     * @return a new <tt>MediaStreamMetrics.Snapshot</tt> of the metrics of
+     * all the <tt>MediaStream</tt>s of this <tt>MediaService</tt>
+     */
+    public MediaStreamMetrics.Snapshot getMediaStreamMetrics();
+
     /**
      * Get a <tt>MediaDevice</tt> for a part of desktop streaming/sharing.
      *
@@ -0,0 +1,474 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.service.neomedia;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.util.metrics.*;
+
+/**
+ * The counters and histograms of a <tt>MediaStream</tt>. Unlike
+ * {@link MediaStreamStats}, which provides point values, they keep the
+ * distributions of the jitter, the round-trip time, the loss and the packet
+ * sizes. They are updated without locking and without allocating on the
+ * packet path and may be read (e.g. accumulated over all the
+ * <tt>MediaStream</tt>s of a <tt>MediaService</tt> through
+ * {@link MediaService#getMediaStreamMetrics()}) without disturbing it.
+ */
+public class MediaStreamMetrics
+{
+    /**
+     * The bounds in milliseconds of the buckets of the jitter histograms.
+     */
+    public static final long[] JITTER_BOUNDS_MS
+        = { 1, 2, 5, 10, 20, 30, 50, 75, 100, 150, 200, 300, 500, 1000 };
+
+    /**
+     * The bounds in percent of the buckets of the loss histograms.
+     */
+    public static final long[] LOSS_BOUNDS_PERCENT
+        = { 0, 1, 2, 3, 5, 10, 15, 20, 30, 50, 100 };
+
+    /**
+     * The bounds in bytes of the buckets of the packet size histograms.
+     */
+    public static final long[] PACKET_SIZE_BOUNDS
+        = { 64, 128, 192, 256, 384, 512, 768, 1024, 1200, 1500 };
+
+    /**
+     * The bounds in milliseconds of the buckets of the round-trip time
+     * histogram.
+     */
+    public static final long[] RTT_BOUNDS_MS
+        = {
+            10, 20, 30, 50, 75, 100, 150, 200, 300, 400, 500, 750, 1000, 2000,
+            5000
+        };
+
+    /**
+     * The bounds in nanoseconds of the buckets of the stage latency
+     * histograms.
+     */
+    public static final long[] STAGE_LATENCY_BOUNDS_NS
+        = {
+            250, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000, 200000,
+            500000, 1000000, 2000000, 5000000, 10000000
+        };
+
+    /**
+     * The number of RTP bytes received.
+     */
+    private final StripedCounter bytesReceived = new StripedCounter();
+
+    /**
+     * The number of RTP bytes sent.
+     */
+    private final StripedCounter bytesSent = new StripedCounter();
+
+    /**
+     * The inter-arrival jitter in milliseconds of the RTP packets received as
+     * reported by the local peer.
+     */
+    private final Histogram downloadJitterMs
+        = new Histogram(JITTER_BOUNDS_MS);
+
+    /**
+     * The sizes in bytes of the RTP packets received.
+     */
+    private final Histogram packetSizeReceived
+        = new Histogram(PACKET_SIZE_BOUNDS);
+
+    /**
+     * The sizes in bytes of the RTP packets sent.
+     */
+    private final Histogram packetSizeSent = new Histogram(PACKET_SIZE_BOUNDS);
+
+    /**
+     * The number of RTP packets received.
+     */
+    private final StripedCounter packetsReceived = new StripedCounter();
+
+    /**
+     * The number of RTP packets sent.
+     */
+    private final StripedCounter packetsSent = new StripedCounter();
+
+    /**
+     * The round-trip times in milliseconds computed from the RTCP reports
+     * received.
+     */
+    private final Histogram rttMs = new Histogram(RTT_BOUNDS_MS);
+
+    /**
+     * The latencies in nanoseconds of the (sampled) packets through the
+     * processing stages (e.g. the <tt>TransformEngine</tt>s) by stage name.
+     */
+    private final ConcurrentMap<String, Histogram> stageLatenciesNs
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The inter-arrival jitter in milliseconds of the RTP packets sent as
+     * reported by the remote peer.
+     */
+    private final Histogram uploadJitterMs = new Histogram(JITTER_BOUNDS_MS);
+
+    /**
+     * The fraction in percent of the RTP packets sent which were lost as
+     * reported by the remote peer.
+     */
+    private final Histogram uploadLossPercent
+        = new Histogram(LOSS_BOUNDS_PERCENT);
+
+    /**
+     * Adds the metrics of this instance to a specific snapshot.
+     *
+     * @param snapshot the <tt>Snapshot</tt> to add the metrics of this
+     * instance to
+     */
+    public void addTo(Snapshot snapshot)
+    {
+        snapshot.streamCount++;
+        snapshot.bytesReceived += bytesReceived.sum();
+        snapshot.bytesSent += bytesSent.sum();
+        snapshot.packetsReceived += packetsReceived.sum();
+        snapshot.packetsSent += packetsSent.sum();
+        downloadJitterMs.addTo(snapshot.downloadJitterMs);
+        packetSizeReceived.addTo(snapshot.packetSizeReceived);
+        packetSizeSent.addTo(snapshot.packetSizeSent);
+        rttMs.addTo(snapshot.rttMs);
+        uploadJitterMs.addTo(snapshot.uploadJitterMs);
+        uploadLossPercent.addTo(snapshot.uploadLossPercent);
+        for (Map.Entry<String, Histogram> e : stageLatenciesNs.entrySet())
+        {
+            String stage = e.getKey();
+            Histogram.Snapshot stageLatencyNs
+                = snapshot.stageLatenciesNs.get(stage);
+
+            if (stageLatencyNs == null)
+            {
+                stageLatencyNs
+                    = new Histogram.Snapshot(STAGE_LATENCY_BOUNDS_NS);
+                snapshot.stageLatenciesNs.put(stage, stageLatencyNs);
+            }
+            e.getValue().addTo(stageLatencyNs);
+        }
+    }
+
+    /**
+     * Records the inter-arrival jitter of the RTP packets received as reported
+     * by the local peer.
+     *
+     * @param jitterMs the jitter in milliseconds
+     */
+    public void downloadJitterReported(long jitterMs)
+    {
+        downloadJitterMs.record(jitterMs);
+    }
+
+    /**
+     * Gets the histogram of the latencies in nanoseconds of the packets
+     * through a specific processing stage. The histogram is to be retrieved
+     * once and then updated on the packet path.
+     *
+     * @param stage the name of the processing stage
+     * @return the <tt>Histogram</tt> of the latencies in nanoseconds of the
+     * packets through <tt>stage</tt>
+     */
+    public Histogram getStageLatencyNs(String stage)
+    {
+        Histogram stageLatencyNs = stageLatenciesNs.get(stage);
+
+        if (stageLatencyNs == null)
+        {
+            stageLatencyNs = new Histogram(STAGE_LATENCY_BOUNDS_NS);
+
+            Histogram oldValue
+                = stageLatenciesNs.putIfAbsent(stage, stageLatencyNs);
+
+            if (oldValue != null)
+                stageLatencyNs = oldValue;
+        }
+        return stageLatencyNs;
+    }
+
+    /**
+     * Records the reception of an RTP packet.
+     *
+     * @param length the length in bytes of the RTP packet
+     */
+    public void rtpPacketReceived(int length)
+    {
+        packetsReceived.increment();
+        bytesReceived.add(length);
+        packetSizeReceived.record(length);
+    }
+
+    /**
+     * Records the sending of an RTP packet.
+     *
+     * @param length the length in bytes of the RTP packet
+     */
+    public void rtpPacketSent(int length)
+    {
+        packetsSent.increment();
+        bytesSent.add(length);
+        packetSizeSent.record(length);
+    }
+
+    /**
+     * Records a round-trip time computed from an RTCP report received.
+     *
+     * @param rttMs the round-trip time in milliseconds
+     */
+    public void rttComputed(long rttMs)
+    {
+        this.rttMs.record(rttMs);
+    }
+
+    /**
+     * Takes a snapshot of the metrics of this instance.
+     *
+     * @return a new <tt>Snapshot</tt> of the metrics of this instance
+     */
+    public Snapshot snapshot()
+    {
+        Snapshot snapshot = new Snapshot();
+
+        addTo(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Records the inter-arrival jitter and the fraction lost of the RTP
+     * packets sent as reported by the remote peer.
+     *
+     * @param jitterMs the jitter in milliseconds
+     * @param lossPercent the fraction lost in percent
+     */
+    public void uploadFeedbackReported(long jitterMs, long lossPercent)
+    {
+        uploadJitterMs.record(jitterMs);
+        uploadLossPercent.record(lossPercent);
+    }
+
+    /**
+     * The metrics of one or more <tt>MediaStream</tt>s at a point in time.
+     */
+    public static class Snapshot
+    {
+        /**
+         * The number of RTP bytes received.
+         */
+        private long bytesReceived;
+
+        /**
+         * The number of RTP bytes sent.
+         */
+        private long bytesSent;
+
+        /**
+         * The inter-arrival jitter in milliseconds of the RTP packets
+         * received as reported by the local peer.
+         */
+        private final Histogram.Snapshot downloadJitterMs
+            = new Histogram.Snapshot(JITTER_BOUNDS_MS);
+
+        /**
+         * The sizes in bytes of the RTP packets received.
+         */
+        private final Histogram.Snapshot packetSizeReceived
+            = new Histogram.Snapshot(PACKET_SIZE_BOUNDS);
+
+        /**
+         * The sizes in bytes of the RTP packets sent.
+         */
+        private final Histogram.Snapshot packetSizeSent
+            = new Histogram.Snapshot(PACKET_SIZE_BOUNDS);
+
+        /**
+         * The number of RTP packets received.
+         */
+        private long packetsReceived;
+
+        /**
+         * The number of RTP packets sent.
+         */
+        private long packetsSent;
+
+        /**
+         * The round-trip times in milliseconds.
+         */
+        private final Histogram.Snapshot rttMs
+            = new Histogram.Snapshot(RTT_BOUNDS_MS);
+
+        /**
+         * The latencies in nanoseconds of the packets through the processing
+         * stages by stage name.
+         */
+        private final Map<String, Histogram.Snapshot> stageLatenciesNs
+            = new TreeMap<>();
+
+        /**
+         * The number of <tt>MediaStream</tt>s whose metrics are in this
+         * snapshot.
+         */
+        private int streamCount;
+
+        /**
+         * The inter-arrival jitter in milliseconds of the RTP packets sent as
+         * reported by the remote peer.
+         */
+        private final Histogram.Snapshot uploadJitterMs
+            = new Histogram.Snapshot(JITTER_BOUNDS_MS);
+
+        /**
+         * The fraction in percent of the RTP packets sent which were lost as
+         * reported by the remote peer.
+         */
+        private final Histogram.Snapshot uploadLossPercent
+            = new Histogram.Snapshot(LOSS_BOUNDS_PERCENT);
+
+        /**
+         * Gets the number of RTP bytes received.
+         *
+         * @return the number of RTP bytes received
+         */
+        public long getBytesReceived()
+        {
+            return bytesReceived;
+        }
+
+        /**
+         * Gets the number of RTP bytes sent.
+         *
+         * @return the number of RTP bytes sent
+         */
+        public long getBytesSent()
+        {
+            return bytesSent;
+        }
+
+        /**
+         * Gets the distribution of the inter-arrival jitter in milliseconds of
+         * the RTP packets received as reported by the local peer.
+         *
+         * @return the distribution of the download jitter in milliseconds
+         */
+        public Histogram.Snapshot getDownloadJitterMs()
+        {
+            return downloadJitterMs;
+        }
+
+        /**
+         * Gets the distribution of the sizes in bytes of the RTP packets
+         * received.
+         *
+         * @return the distribution of the sizes of the RTP packets received
+         */
+        public Histogram.Snapshot getPacketSizeReceived()
+        {
+            return packetSizeReceived;
+        }
+
+        /**
+         * Gets the distribution of the sizes in bytes of the RTP packets sent.
+         *
+         * @return the distribution of the sizes of the RTP packets sent
+         */
+        public Histogram.Snapshot getPacketSizeSent()
+        {
+            return packetSizeSent;
+        }
+
+        /**
+         * Gets the number of RTP packets received.
+         *
+         * @return the number of RTP packets received
+         */
+        public long getPacketsReceived()
+        {
+            return packetsReceived;
+        }
+
+        /**
+         * Gets the number of RTP packets sent.
+         *
+         * @return the number of RTP packets sent
+         */
+        public long getPacketsSent()
+        {
+            return packetsSent;
+        }
+
+        /**
+         * Gets the distribution of the round-trip times in milliseconds.
+         *
+         * @return the distribution of the round-trip times in milliseconds
+         */
+        public Histogram.Snapshot getRttMs()
+        {
+            return rttMs;
+        }
+
+        /**
+         * Gets the distributions of the latencies in nanoseconds of the
+         * packets through the processing stages (e.g. the
+         * <tt>TransformEngine</tt>s) which have been instrumented.
+         *
+         * @return the distributions of the latencies in nanoseconds of the
+         * packets by stage name
+         */
+        public Map<String, Histogram.Snapshot> getStageLatenciesNs()
+        {
+            return Collections.unmodifiableMap(stageLatenciesNs);
+        }
+
+        /**
+         * Gets the number of <tt>MediaStream</tt>s whose metrics are in this
+         * snapshot.
+         *
+         * @return the number of <tt>MediaStream</tt>s whose metrics are in
+         * this snapshot
+         */
+        public int getStreamCount()
+        {
+            return streamCount;
+        }
+
+        /**
+         * Gets the distribution of the inter-arrival jitter in milliseconds of
+         * the RTP packets sent as reported by the remote peer.
+         *
+         * @return the distribution of the upload jitter in milliseconds
+         */
+        public Histogram.Snapshot getUploadJitterMs()
+        {
+            return uploadJitterMs;
+        }
+
+        /**
+         * Gets the distribution of the fraction in percent of the RTP packets
+         * sent which were lost as reported by the remote peer.
+         *
+         * @return the distribution of the upload loss in percent
+         */
+        public Histogram.Snapshot getUploadLossPercent()
+        {
+            return uploadLossPercent;
+        }
+    }
+}
@@ -237,7 +237,7 @@ public class PacketLoggingConfiguration
      */
     public void setRTPLoggingEnabled(boolean enabled)
     {
-        this.rtpLoggingEnabled = true;
+        this.rtpLoggingEnabled = enabled;
     }
 
     /**
@@ -246,7 +246,7 @@ public class PacketLoggingConfiguration
      */
     public void setIce4JLoggingEnabled(boolean enabled)
     {
-        this.ice4jLoggingEnabled = true;
+        this.ice4jLoggingEnabled = enabled;
     }
 
     /**
@@ -255,7 +255,7 @@ public class PacketLoggingConfiguration
      */
     public void setArbitraryLoggingEnabled(boolean enabled)
     {
-        this.arbitraryLoggingEnabled = true;
+        this.arbitraryLoggingEnabled = enabled;
     }
 
     /**
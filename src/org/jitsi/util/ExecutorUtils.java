@@ -15,21 +15,144 @@
  */
 package org.jitsi.util;
 
+import java.lang.reflect.*;
 import java.util.concurrent.*;
 
+import org.jitsi.service.libjitsi.*;
+
 /**
  * Implements utility functions to facilitate work with <tt>Executor</tt>s and
- * <tt>ExecutorService</tt>.
+ * <tt>ExecutorService</tt>. Additionally, abstracts the creation of the
+ * <tt>Thread</tt>s which run the (blocking) background workers of libjitsi so
+ * that they may be run on virtual threads when the JVM supports them.
  *
  * @author Lyubomir Marinov
  */
 public class ExecutorUtils
 {
+    /**
+     * The <tt>Logger</tt> used by the <tt>ExecutorUtils</tt> class for
+     * logging output.
+     */
+    private static final Logger logger = Logger.getLogger(ExecutorUtils.class);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> and/or <tt>System</tt>
+     * boolean property which indicates whether the <tt>Thread</tt>s created by
+     * <tt>ExecutorUtils</tt> are to be virtual threads if the JVM supports
+     * them. Such threads are always daemon threads and ignore priorities. The
+     * default value is <tt>false</tt>.
+     */
+    public static final String VIRTUAL_THREADS_PNAME
+        = ExecutorUtils.class.getName() + ".VIRTUAL_THREADS";
+
+    /**
+     * The method <tt>Thread.Builder.factory()</tt> or <tt>null</tt> if the JVM
+     * does not support virtual threads.
+     */
+    private static final Method builderFactory;
+
+    /**
+     * The method <tt>Thread.Builder.name(String)</tt> or <tt>null</tt> if the
+     * JVM does not support virtual threads.
+     */
+    private static final Method builderName;
+
+    /**
+     * The method <tt>Thread.Builder.name(String, long)</tt> or <tt>null</tt>
+     * if the JVM does not support virtual threads.
+     */
+    private static final Method builderNameWithCounter;
+
+    /**
+     * The method <tt>Thread.Builder.unstarted(Runnable)</tt> or <tt>null</tt>
+     * if the JVM does not support virtual threads.
+     */
+    private static final Method builderUnstarted;
+
+    /**
+     * The method <tt>Thread.ofVirtual()</tt> or <tt>null</tt> if the JVM does
+     * not support virtual threads.
+     */
+    private static final Method ofVirtual;
+
+    static
+    {
+        Method factory = null;
+        Method name = null;
+        Method nameWithCounter = null;
+        Method unstarted = null;
+        Method of = null;
+
+        // Virtual threads are only accessible through reflection because
+        // libjitsi is compiled for JVMs which predate them.
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            factory = builderClass.getMethod("factory");
+            name = builderClass.getMethod("name", String.class);
+            nameWithCounter
+                = builderClass.getMethod("name", String.class, long.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+            of = Thread.class.getMethod("ofVirtual");
+
+            // Virtual threads are a preview feature in some JVMs which fail
+            // to create them unless preview features are enabled.
+            of.invoke(null);
+        }
+        catch (Throwable t)
+        {
+            if (t instanceof ThreadDeath)
+                throw (ThreadDeath) t;
+
+            of = null;
+        }
+
+        builderFactory = factory;
+        builderName = name;
+        builderNameWithCounter = nameWithCounter;
+        builderUnstarted = unstarted;
+        ofVirtual = of;
+    }
+
+    /**
+     * Determines whether the <tt>Thread</tt>s created by
+     * <tt>ExecutorUtils</tt> are to be virtual threads i.e. whether
+     * {@link #VIRTUAL_THREADS_PNAME} is <tt>true</tt> and the JVM supports
+     * virtual threads.
+     *
+     * @return <tt>true</tt> if the <tt>Thread</tt>s created by
+     * <tt>ExecutorUtils</tt> are to be virtual threads; otherwise,
+     * <tt>false</tt>
+     */
+    public static boolean isVirtualThreadsEnabled()
+    {
+        return
+            (ofVirtual != null)
+                && ConfigUtils.getBoolean(
+                        LibJitsi.getConfigurationService(),
+                        VIRTUAL_THREADS_PNAME,
+                        false);
+    }
+
+    /**
+     * Determines whether the JVM supports virtual threads.
+     *
+     * @return <tt>true</tt> if the JVM supports virtual threads; otherwise,
+     * <tt>false</tt>
+     */
+    public static boolean isVirtualThreadsSupported()
+    {
+        return ofVirtual != null;
+    }
+
     /**
      * Creates a thread pool that creates new threads as needed, but will reuse
      * previously constructed threads when they are available. Optionally, the
      * new threads are created as daemon threads and their names are based on a
-     * specific (prefix) string.
+     * specific (prefix) string. The new threads are virtual threads if
+     * {@link #isVirtualThreadsEnabled()}.
      *
      * @param daemon <tt>true</tt> to create the new threads as daemon threads
      * or <tt>false</tt> to create the new threads as user threads
@@ -42,44 +165,173 @@ public class ExecutorUtils
             final String baseName)
     {
         return
-            Executors.newCachedThreadPool(
-                    new ThreadFactory()
+            Executors.newCachedThreadPool(newThreadFactory(daemon, baseName));
+    }
+
+    /**
+     * Creates a new (unstarted) <tt>Thread</tt> which is to run a specific
+     * (blocking) background worker. The new <tt>Thread</tt> is a virtual
+     * thread if {@link #isVirtualThreadsEnabled()}; otherwise, it is a
+     * platform thread with the specified daemon status and priority.
+     *
+     * @param target the <tt>Runnable</tt> to be run by the new
+     * <tt>Thread</tt>
+     * @param name the name of the new <tt>Thread</tt> or <tt>null</tt> to
+     * leave it with its default name
+     * @param daemon <tt>true</tt> to create the new <tt>Thread</tt> as a
+     * daemon thread or <tt>false</tt> to create it as a user thread
+     * @param priority the priority of the new (platform) <tt>Thread</tt> or
+     * <tt>0</tt> to leave it with the default priority
+     * @return the new (unstarted) <tt>Thread</tt>
+     */
+    public static Thread newThread(
+            Runnable target,
+            String name,
+            boolean daemon,
+            int priority)
+    {
+        if (isVirtualThreadsEnabled())
+        {
+            Thread t = newVirtualThread(target, name);
+
+            if (t != null)
+                return t;
+        }
+
+        Thread t
+            = (name == null) ? new Thread(target) : new Thread(target, name);
+
+        t.setDaemon(daemon);
+        if ((priority != 0) && (priority != t.getPriority()))
+        {
+            try
+            {
+                t.setPriority(priority);
+            }
+            catch (IllegalArgumentException | SecurityException e)
+            {
+                logger.warn("Failed to use Thread priority: " + priority);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Creates a new <tt>ThreadFactory</tt> which creates daemon or user
+     * threads with names based on a specific (prefix) string. The new threads
+     * are virtual threads if {@link #isVirtualThreadsEnabled()} at the time
+     * the <tt>ThreadFactory</tt> is created.
+     *
+     * @param daemon <tt>true</tt> to create the new threads as daemon threads
+     * or <tt>false</tt> to create the new threads as user threads
+     * @param baseName the base/prefix to use for the names of the new threads
+     * or <tt>null</tt> to leave them with their default names
+     * @return the new <tt>ThreadFactory</tt>
+     */
+    public static ThreadFactory newThreadFactory(
+            final boolean daemon,
+            final String baseName)
+    {
+        if (isVirtualThreadsEnabled())
+        {
+            ThreadFactory threadFactory = newVirtualThreadFactory(baseName);
+
+            if (threadFactory != null)
+                return threadFactory;
+        }
+
+        return
+            new ThreadFactory()
+            {
+                /**
+                 * The default <tt>ThreadFactory</tt> implementation which is
+                 * augmented by this instance to create daemon
+                 * <tt>Thread</tt>s.
+                 */
+                private final ThreadFactory defaultThreadFactory
+                    = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = defaultThreadFactory.newThread(r);
+
+                    if (t != null)
                     {
-                        /**
-                         * The default <tt>ThreadFactory</tt> implementation
-                         * which is augmented by this instance to create daemon
-                         * <tt>Thread</tt>s.
-                         */
-                        private final ThreadFactory defaultThreadFactory
-                            = Executors.defaultThreadFactory();
+                        t.setDaemon(daemon);
 
-                        @Override
-                        public Thread newThread(Runnable r)
+                        /*
+                         * Additionally, make it known through the name of the
+                         * Thread that it is associated with the specified
+                         * class for debugging/informational purposes.
+                         */
+                        if ((baseName != null) && (baseName.length() != 0))
                         {
-                            Thread t = defaultThreadFactory.newThread(r);
-
-                            if (t != null)
-                            {
-                                t.setDaemon(daemon);
-
-                                /*
-                                 * Additionally, make it known through the name
-                                 * of the Thread that it is associated with the
-                                 * specified class for debugging/informational
-                                 * purposes.
-                                 */
-                                if ((baseName != null)
-                                        && (baseName.length() != 0))
-                                {
-                                    String name = t.getName();
-
-                                    if (name == null)
-                                        name = "";
-                                    t.setName(baseName + "-" + name);
-                                }
-                            }
-                            return t;
+                            String name = t.getName();
+
+                            if (name == null)
+                                name = "";
+                            t.setName(baseName + "-" + name);
                         }
-                    });
+                    }
+                    return t;
+                }
+            };
+    }
+
+    /**
+     * Creates a new (unstarted) virtual thread.
+     *
+     * @param target the <tt>Runnable</tt> to be run by the new thread
+     * @param name the name of the new thread or <tt>null</tt>
+     * @return the new (unstarted) virtual thread or <tt>null</tt> if it could
+     * not be created
+     */
+    private static Thread newVirtualThread(Runnable target, String name)
+    {
+        try
+        {
+            Object builder = ofVirtual.invoke(null);
+
+            if (name != null)
+                builder = builderName.invoke(builder, name);
+            return (Thread) builderUnstarted.invoke(builder, target);
+        }
+        catch (ReflectiveOperationException roe)
+        {
+            logger.warn("Failed to create a virtual thread.", roe);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new <tt>ThreadFactory</tt> which creates virtual threads.
+     *
+     * @param baseName the base/prefix to use for the names of the new threads
+     * or <tt>null</tt>
+     * @return the new <tt>ThreadFactory</tt> or <tt>null</tt> if it could not
+     * be created
+     */
+    private static ThreadFactory newVirtualThreadFactory(String baseName)
+    {
+        try
+        {
+            Object builder = ofVirtual.invoke(null);
+
+            if ((baseName != null) && (baseName.length() != 0))
+            {
+                builder
+                    = builderNameWithCounter.invoke(
+                            builder,
+                            baseName + "-virtual-",
+                            1L);
+            }
+            return (ThreadFactory) builderFactory.invoke(builder);
+        }
+        catch (ReflectiveOperationException roe)
+        {
+            logger.warn("Failed to create a virtual thread factory.", roe);
+            return null;
+        }
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util;
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A bounded first-in-first-out queue for a single producer thread and a
+ * single consumer thread which neither locks nor allocates. The elements are
+ * kept in a ring of fixed capacity which the producer and the consumer
+ * advance independently.
+ * <p>
+ * Only one thread at a time may invoke the methods of the producer
+ * ({@link #offer(Object)}) and only one thread at a time may invoke the
+ * methods of the consumer ({@link #await(long)}, {@link #peek()} and
+ * {@link #poll()}). The threads may change over time as long as the hand-over
+ * is otherwise synchronized.
+ * </p>
+ *
+ * @param <E> the type of the elements of the queue
+ */
+public class SPSCQueue<E>
+{
+    /**
+     * The ring of elements, the length of which is a power of two.
+     */
+    private final Object[] elements;
+
+    /**
+     * The number of elements taken out of this queue. Written by the consumer
+     * only.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The mask which maps {@link #head} and {@link #tail} to indexes in
+     * {@link #elements}.
+     */
+    private final int mask;
+
+    /**
+     * The number of elements put into this queue. Written by the producer
+     * only.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The consumer thread which is blocked in {@link #await(long)}, if any.
+     */
+    private volatile Thread waiter;
+
+    /**
+     * The indicator which determines whether {@link #wakeUp()} has been
+     * invoked since the consumer last returned from {@link #await(long)}.
+     */
+    private volatile boolean wokenUp;
+
+    /**
+     * Initializes a new <tt>SPSCQueue</tt> with (at least) a specific
+     * capacity.
+     *
+     * @param capacity the minimum number of elements the new instance is to be
+     * able to hold. Rounded up to a power of two.
+     */
+    public SPSCQueue(int capacity)
+    {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity");
+
+        int length = 1;
+
+        while (length < capacity)
+            length <<= 1;
+        elements = new Object[length];
+        mask = length - 1;
+    }
+
+    /**
+     * Blocks the (consumer) thread until this queue is not empty, a specific
+     * timeout expires, {@link #wakeUp()} is invoked or the thread is
+     * interrupted, whichever happens first. The interrupted status of the
+     * thread is left intact.
+     *
+     * @param timeout the maximum time in milliseconds to block or <tt>0</tt>
+     * to block without a timeout
+     */
+    public void await(long timeout)
+    {
+        if (!isEmpty())
+            return;
+
+        waiter = Thread.currentThread();
+        try
+        {
+            /*
+             * The producer and wakeUp() read waiter after they have written
+             * tail and wokenUp respectively so the consumer cannot miss them.
+             */
+            if (isEmpty() && !wokenUp)
+            {
+                if (timeout > 0)
+                    LockSupport.parkNanos(this, timeout * 1000000L);
+                else
+                    LockSupport.park(this);
+            }
+        }
+        finally
+        {
+            waiter = null;
+            wokenUp = false;
+        }
+    }
+
+    /**
+     * Gets the number of elements this queue is able to hold.
+     *
+     * @return the number of elements this queue is able to hold
+     */
+    public int capacity()
+    {
+        return elements.length;
+    }
+
+    /**
+     * Determines whether this queue is empty.
+     *
+     * @return <tt>true</tt> if this queue is empty; otherwise, <tt>false</tt>
+     */
+    public boolean isEmpty()
+    {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * Appends an element to this queue if it is not full. Invoked by the
+     * producer.
+     *
+     * @param e the element to append to this queue
+     * @return <tt>true</tt> if <tt>e</tt> has been appended to this queue;
+     * <tt>false</tt> if this queue is full
+     */
+    public boolean offer(E e)
+    {
+        if (e == null)
+            throw new NullPointerException("e");
+
+        long tail = this.tail.get();
+
+        if (tail - head.get() >= elements.length)
+            return false;
+
+        elements[(int) tail & mask] = e;
+        // Publishes e to the consumer.
+        this.tail.set(tail + 1);
+
+        Thread waiter = this.waiter;
+
+        if (waiter != null)
+            LockSupport.unpark(waiter);
+        return true;
+    }
+
+    /**
+     * Gets the element at the head of this queue without removing it. Invoked
+     * by the consumer.
+     *
+     * @return the element at the head of this queue or <tt>null</tt> if this
+     * queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek()
+    {
+        long head = this.head.get();
+
+        return
+            (head == tail.get()) ? null : (E) elements[(int) head & mask];
+    }
+
+    /**
+     * Removes the element at the head of this queue. Invoked by the consumer.
+     *
+     * @return the element removed from the head of this queue or
+     * <tt>null</tt> if this queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll()
+    {
+        long head = this.head.get();
+
+        if (head == tail.get())
+            return null;
+
+        int index = (int) head & mask;
+        E e = (E) elements[index];
+
+        elements[index] = null;
+        // Releases the slot to the producer.
+        this.head.set(head + 1);
+        return e;
+    }
+
+    /**
+     * Gets the number of elements in this queue. The value is exact only if
+     * neither the producer nor the consumer is modifying this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size()
+    {
+        long head = this.head.get();
+
+        return (int) Math.max(tail.get() - head, 0);
+    }
+
+    /**
+     * Wakes up the consumer thread if it is blocked in {@link #await(long)}
+     * e.g. in order to have it notice that this queue is being closed.
+     */
+    public void wakeUp()
+    {
+        wokenUp = true;
+
+        Thread waiter = this.waiter;
+
+        if (waiter != null)
+            LockSupport.unpark(waiter);
+    }
+}
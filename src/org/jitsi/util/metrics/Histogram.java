@@ -0,0 +1,309 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util.metrics;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A histogram with fixed buckets which records values without locking and
+ * without allocating. The buckets are defined by their (inclusive) upper
+ * bounds and there is an additional bucket for the values greater than the
+ * last bound. The distribution is read through {@link Snapshot}s which may be
+ * accumulated over many histograms with the same bounds.
+ */
+public class Histogram
+{
+    /**
+     * The (inclusive) upper bounds of the buckets in ascending order.
+     */
+    private final long[] bounds;
+
+    /**
+     * The number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * The maximum value recorded.
+     */
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * The sum of the values recorded.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Initializes a new <tt>Histogram</tt> with specific bucket bounds.
+     *
+     * @param bounds the (inclusive) upper bounds of the buckets in strictly
+     * ascending order
+     */
+    public Histogram(long... bounds)
+    {
+        checkBounds(bounds);
+
+        this.bounds = bounds.clone();
+        counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Checks that specific bucket bounds are in strictly ascending order.
+     *
+     * @param bounds the bucket bounds to check
+     * @throws IllegalArgumentException if <tt>bounds</tt> are not in strictly
+     * ascending order
+     */
+    private static void checkBounds(long[] bounds)
+    {
+        for (int i = 1; i < bounds.length; i++)
+        {
+            if (bounds[i - 1] >= bounds[i])
+                throw new IllegalArgumentException("bounds");
+        }
+    }
+
+    /**
+     * Adds the values recorded by this histogram to a specific snapshot.
+     *
+     * @param snapshot the <tt>Snapshot</tt> to add the values recorded by this
+     * histogram to. Must have the same bounds as this histogram.
+     */
+    public void addTo(Snapshot snapshot)
+    {
+        if (!Arrays.equals(bounds, snapshot.bounds))
+            throw new IllegalArgumentException("snapshot");
+
+        long count = 0;
+
+        for (int i = 0; i < snapshot.counts.length; i++)
+        {
+            long c = counts.get(i);
+
+            snapshot.counts[i] += c;
+            count += c;
+        }
+        if (count != 0)
+        {
+            snapshot.count += count;
+            snapshot.sum += sum.get();
+            snapshot.max = Math.max(snapshot.max, max.get());
+        }
+    }
+
+    /**
+     * Records a specific value.
+     *
+     * @param value the value to record
+     */
+    public void record(long value)
+    {
+        int index = Arrays.binarySearch(bounds, value);
+
+        if (index < 0)
+            index = -index - 1;
+        counts.incrementAndGet(index);
+        sum.addAndGet(value);
+
+        long max = this.max.get();
+
+        while (value > max && !this.max.compareAndSet(max, value))
+            max = this.max.get();
+    }
+
+    /**
+     * Takes a snapshot of the values recorded by this histogram.
+     *
+     * @return a new <tt>Snapshot</tt> of the values recorded by this
+     * histogram
+     */
+    public Snapshot snapshot()
+    {
+        Snapshot snapshot = new Snapshot(bounds);
+
+        addTo(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * The distribution of the values recorded by one or more
+     * <tt>Histogram</tt>s with the same bounds at a point in time.
+     */
+    public static class Snapshot
+    {
+        /**
+         * The (inclusive) upper bounds of the buckets in ascending order.
+         */
+        private final long[] bounds;
+
+        /**
+         * The number of values recorded.
+         */
+        private long count;
+
+        /**
+         * The number of values recorded in each bucket.
+         */
+        private final long[] counts;
+
+        /**
+         * The maximum value recorded.
+         */
+        private long max = Long.MIN_VALUE;
+
+        /**
+         * The sum of the values recorded.
+         */
+        private long sum;
+
+        /**
+         * Initializes a new empty <tt>Snapshot</tt> with specific bucket
+         * bounds.
+         *
+         * @param bounds the (inclusive) upper bounds of the buckets in
+         * strictly ascending order
+         */
+        public Snapshot(long... bounds)
+        {
+            checkBounds(bounds);
+
+            this.bounds = bounds.clone();
+            counts = new long[bounds.length + 1];
+        }
+
+        /**
+         * Adds the values of a specific snapshot to this snapshot.
+         *
+         * @param snapshot the <tt>Snapshot</tt> to add to this snapshot. Must
+         * have the same bounds as this snapshot.
+         */
+        public void add(Snapshot snapshot)
+        {
+            if (!Arrays.equals(bounds, snapshot.bounds))
+                throw new IllegalArgumentException("snapshot");
+
+            for (int i = 0; i < counts.length; i++)
+                counts[i] += snapshot.counts[i];
+            count += snapshot.count;
+            sum += snapshot.sum;
+            max = Math.max(max, snapshot.max);
+        }
+
+        /**
+         * Gets the (inclusive) upper bound of a specific bucket.
+         *
+         * @param bucket the index of the bucket
+         * @return the (inclusive) upper bound of <tt>bucket</tt> or
+         * <tt>Long.MAX_VALUE</tt> for the last bucket
+         */
+        public long getBound(int bucket)
+        {
+            return (bucket < bounds.length) ? bounds[bucket] : Long.MAX_VALUE;
+        }
+
+        /**
+         * Gets the number of buckets.
+         *
+         * @return the number of buckets
+         */
+        public int getBucketCount()
+        {
+            return counts.length;
+        }
+
+        /**
+         * Gets the number of values recorded.
+         *
+         * @return the number of values recorded
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Gets the number of values recorded in a specific bucket.
+         *
+         * @param bucket the index of the bucket
+         * @return the number of values recorded in <tt>bucket</tt>
+         */
+        public long getCount(int bucket)
+        {
+            return counts[bucket];
+        }
+
+        /**
+         * Gets the maximum value recorded.
+         *
+         * @return the maximum value recorded or <tt>0</tt> if no value has
+         * been recorded
+         */
+        public long getMax()
+        {
+            return (count == 0) ? 0 : max;
+        }
+
+        /**
+         * Gets the mean of the values recorded.
+         *
+         * @return the mean of the values recorded or <tt>0</tt> if no value
+         * has been recorded
+         */
+        public double getMean()
+        {
+            return (count == 0) ? 0 : sum / (double) count;
+        }
+
+        /**
+         * Gets an upper bound of a specific percentile of the values recorded
+         * i.e. the upper bound of the bucket in which the percentile falls (or
+         * the maximum value recorded if it is lower).
+         *
+         * @param percentile the percentile in the range [0, 100]
+         * @return an upper bound of <tt>percentile</tt> of the values recorded
+         * or <tt>0</tt> if no value has been recorded
+         */
+        public long getPercentile(double percentile)
+        {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("percentile");
+            if (count == 0)
+                return 0;
+
+            long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+            long cumulative = 0;
+
+            for (int i = 0; i < counts.length; i++)
+            {
+                cumulative += counts[i];
+                if (cumulative >= rank)
+                    return Math.min(getBound(i), max);
+            }
+            return max;
+        }
+
+        /**
+         * Gets the sum of the values recorded.
+         *
+         * @return the sum of the values recorded
+         */
+        public long getSum()
+        {
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util.metrics;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A counter which may be incremented by multiple threads without locking and
+ * without them contending for the same memory location. Each thread adds to
+ * one of a number of stripes (selected by the identifier of the thread) which
+ * are summed when the counter is read. Reading is therefore more expensive
+ * than incrementing and is not atomic with respect to concurrent increments.
+ */
+public class StripedCounter
+{
+    /**
+     * The number of <tt>long</tt>s between two stripes so that they do not
+     * share a cache line.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * The default number of stripes i.e. the number of available processors
+     * rounded up to a power of two and capped at <tt>16</tt>.
+     */
+    private static final int STRIPES;
+
+    static
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+
+        while (stripes < processors && stripes < 16)
+            stripes <<= 1;
+        STRIPES = stripes;
+    }
+
+    /**
+     * The stripes of this counter, {@link #PADDING} elements apart.
+     */
+    private final AtomicLongArray cells;
+
+    /**
+     * The mask which maps a hash of a thread identifier to a stripe.
+     */
+    private final int mask;
+
+    /**
+     * Initializes a new <tt>StripedCounter</tt> with a number of stripes
+     * suitable for the number of available processors.
+     */
+    public StripedCounter()
+    {
+        this(STRIPES);
+    }
+
+    /**
+     * Initializes a new <tt>StripedCounter</tt> with a specific number of
+     * stripes.
+     *
+     * @param stripes the number of stripes of the new instance. Must be a
+     * power of two.
+     */
+    public StripedCounter(int stripes)
+    {
+        if (stripes <= 0 || (stripes & (stripes - 1)) != 0)
+            throw new IllegalArgumentException("stripes");
+
+        cells = new AtomicLongArray(stripes * PADDING);
+        mask = stripes - 1;
+    }
+
+    /**
+     * Adds a specific value to this counter.
+     *
+     * @param delta the value to add
+     */
+    public void add(long delta)
+    {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+
+        cells.getAndAdd(((hash >>> 16) & mask) * PADDING, delta);
+    }
+
+    /**
+     * Adds one to this counter.
+     */
+    public void increment()
+    {
+        add(1);
+    }
+
+    /**
+     * Gets the sum of the values added to this counter.
+     *
+     * @return the sum of the values added to this counter
+     */
+    public long sum()
+    {
+        long sum = 0;
+
+        for (int i = 0, length = cells.length(); i < length; i += PADDING)
+            sum += cells.get(i);
+        return sum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.configuration;
+
+import java.io.*;
+import java.util.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.junit.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the delayed (write-behind) storing of the configuration file of
+ * {@link ConfigurationServiceImpl}.
+ */
+@RunWith(JUnit4.class)
+public class ConfigurationServiceImplTest
+{
+    /**
+     * The name of the thread which performs the delayed storing.
+     */
+    private static final String STORE_THREAD_NAME
+        = ConfigurationServiceImpl.class.getName() + ".storeExecutor";
+
+    /**
+     * The configuration file used by the test.
+     */
+    private File file;
+
+    /**
+     * The <tt>System</tt> properties overridden by the test mapped to their
+     * original values.
+     */
+    private final Map<String, String> systemProperties
+        = new HashMap<String, String>();
+
+    /**
+     * Determines whether the thread which performs the delayed storing is
+     * alive.
+     */
+    private static boolean isStoreThreadAlive()
+    {
+        for (Thread t : Thread.getAllStackTraces().keySet())
+        {
+            if (STORE_THREAD_NAME.equals(t.getName()) && t.isAlive())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the configuration file used by the test.
+     */
+    private Properties load()
+        throws IOException
+    {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+
+        try
+        {
+            properties.load(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * Sets a <tt>System</tt> property and remembers its original value.
+     */
+    private void setSystemProperty(String key, String value)
+    {
+        systemProperties.put(key, System.setProperty(key, value));
+    }
+
+    /**
+     * Points the configuration to a new configuration file in a temporary
+     * directory which specifies a specific delay of the storing.
+     */
+    private void setUp(long storeDelay)
+        throws IOException
+    {
+        File dir = File.createTempFile("libjitsi", "");
+
+        dir.delete();
+        file = new File(new File(dir, "config"), "test.properties");
+        file.getParentFile().mkdirs();
+        file.deleteOnExit();
+        file.getParentFile().deleteOnExit();
+        dir.deleteOnExit();
+
+        OutputStream out = new FileOutputStream(file);
+
+        try
+        {
+            Properties properties = new Properties();
+
+            properties.setProperty(
+                    ConfigurationServiceImpl.PNAME_STORE_DELAY,
+                    Long.toString(storeDelay));
+            properties.store(out, null);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        setSystemProperty(
+                ConfigurationService.PNAME_SC_HOME_DIR_LOCATION,
+                dir.getAbsolutePath());
+        setSystemProperty(
+                ConfigurationService.PNAME_SC_HOME_DIR_NAME,
+                "config");
+        setSystemProperty(
+                ConfigurationService.PNAME_CONFIGURATION_FILE_NAME,
+                file.getName());
+
+        LibJitsi.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        LibJitsi.stop();
+
+        for (Map.Entry<String, String> e : systemProperties.entrySet())
+        {
+            if (e.getValue() == null)
+                System.clearProperty(e.getKey());
+            else
+                System.setProperty(e.getKey(), e.getValue());
+        }
+        systemProperties.clear();
+    }
+
+    @Test
+    public void testStoreDelay()
+        throws Exception
+    {
+        setUp(500);
+
+        ConfigurationServiceImpl config = new ConfigurationServiceImpl();
+
+        config.setProperty("test.org.jitsi.A", "1");
+        config.setProperty("test.org.jitsi.B", "2");
+        // The changes are written on the background thread.
+        assertNull(load().getProperty("test.org.jitsi.A"));
+
+        for (int i = 0;
+                (i < 50) && (load().getProperty("test.org.jitsi.B") == null);
+                i++)
+        {
+            Thread.sleep(100);
+        }
+
+        Properties properties = load();
+
+        assertEquals("1", properties.getProperty("test.org.jitsi.A"));
+        assertEquals("2", properties.getProperty("test.org.jitsi.B"));
+
+        config.stop();
+    }
+
+    @Test
+    public void testStop()
+        throws Exception
+    {
+        setUp(60000);
+
+        ConfigurationServiceImpl config = new ConfigurationServiceImpl();
+
+        config.setProperty("test.org.jitsi.A", "1");
+        assertTrue(isStoreThreadAlive());
+        assertNull(load().getProperty("test.org.jitsi.A"));
+
+        // Stopping stores the pending changes and releases the thread.
+        config.stop();
+        assertEquals("1", load().getProperty("test.org.jitsi.A"));
+        for (int i = 0; (i < 50) && isStoreThreadAlive(); i++)
+            Thread.sleep(100);
+        assertFalse(isStoreThreadAlive());
+
+        // The delayed storing resumes upon a subsequent change.
+        config.setProperty("test.org.jitsi.A", "2");
+        config.stop();
+        assertEquals("2", load().getProperty("test.org.jitsi.A"));
+    }
+}
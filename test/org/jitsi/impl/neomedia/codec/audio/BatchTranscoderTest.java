@@ -0,0 +1,271 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.audio;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.impl.neomedia.codec.audio.BatchTranscoder.*;
+import org.junit.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the splitting of the batches of {@link BatchTranscoder} into tasks.
+ */
+@RunWith(JUnit4.class)
+public class BatchTranscoderTest
+{
+    /**
+     * Generates linear PCM of a 440 Hz tone.
+     *
+     * @param ms the duration of the tone in milliseconds
+     * @return signed 16-bit little-endian linear PCM at 8 kHz of
+     * <tt>ms</tt> milliseconds
+     */
+    private static byte[] createTone(int ms)
+    {
+        byte[] pcm = new byte[ms * 8 * 2];
+
+        for (int i = 0; i < pcm.length / 2; i++)
+        {
+            short sample
+                = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 8000.0));
+
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    /**
+     * Processes a specific channel alone with a specific input and returns
+     * its output.
+     *
+     * @param transcoder the <tt>BatchTranscoder</tt> of <tt>channel</tt>
+     * @param channel the channel to process
+     * @param in the input to process
+     * @return the output of the processing of <tt>channel</tt>
+     */
+    private static byte[] process(
+            BatchTranscoder transcoder,
+            Channel channel,
+            byte[] in)
+        throws InterruptedException
+    {
+        channel.setInput(in, 0, in.length);
+        channel.setOutput(null, 0);
+        transcoder.process(new Channel[] { channel }, 1);
+        assertNull(channel.getError());
+        if (channel.getOutputLength() == 0)
+            return new byte[0];
+
+        int offset = channel.getOutputOffset();
+
+        return
+            Arrays.copyOfRange(
+                    channel.getOutput(),
+                    offset,
+                    offset + channel.getOutputLength());
+    }
+
+    /**
+     * Transcodes G.729 into iLBC and back in packets of 60 ms and verifies
+     * the lengths of the frames of the target <tt>Codec</tt>s.
+     *
+     * @param ilbc {@link Codec#ILBC_20} or {@link Codec#ILBC_30}
+     * @param ilbcPayloadLength the length in bytes of a frame of
+     * <tt>ilbc</tt>
+     */
+    private static void testG729ILBC(Codec ilbc, int ilbcPayloadLength)
+        throws InterruptedException
+    {
+        BatchTranscoder transcoder = new BatchTranscoder(1);
+
+        try
+        {
+            byte[] g729
+                = process(
+                        transcoder,
+                        transcoder.openChannel(Codec.LINEAR, Codec.G729),
+                        createTone(60));
+
+            // Six G.729 frames of 10 ms.
+            assertEquals(6 * 10, g729.length);
+
+            Channel toILBC = transcoder.openChannel(Codec.G729, ilbc);
+            byte[] frames = process(transcoder, toILBC, g729);
+            int ms = (ilbc == Codec.ILBC_20) ? 20 : 30;
+
+            assertEquals((60 / ms) * ilbcPayloadLength, frames.length);
+
+            Channel toG729 = transcoder.openChannel(ilbc, Codec.G729);
+
+            assertEquals(60, process(transcoder, toG729, frames).length);
+
+            // The samples of 20 ms of G.729 which do not fill a 30 ms iLBC
+            // frame are kept until they do.
+            byte[] packet = Arrays.copyOf(g729, 20);
+            int length = 0;
+
+            for (int i = 0; i < 3; i++)
+                length += process(transcoder, toILBC, packet).length;
+            assertEquals((60 / ms) * ilbcPayloadLength, length);
+        }
+        finally
+        {
+            transcoder.close();
+        }
+    }
+
+    /**
+     * Transcodes G.729 into 20 ms iLBC and back.
+     */
+    @Test
+    public void testG729ILBC20()
+        throws InterruptedException
+    {
+        testG729ILBC(Codec.ILBC_20, 38);
+    }
+
+    /**
+     * Transcodes G.729 into 30 ms iLBC and back.
+     */
+    @Test
+    public void testG729ILBC30()
+        throws InterruptedException
+    {
+        testG729ILBC(Codec.ILBC_30, 50);
+    }
+
+    /**
+     * Verifies that a channel which reuses the pooled codec states of a
+     * closed channel produces the same output as a channel with new codec
+     * states.
+     */
+    @Test
+    public void testPooledChannels()
+        throws InterruptedException
+    {
+        BatchTranscoder transcoder = new BatchTranscoder(1);
+        BatchTranscoder fresh = new BatchTranscoder(1);
+
+        try
+        {
+            byte[] g729
+                = process(
+                        transcoder,
+                        transcoder.openChannel(Codec.LINEAR, Codec.G729),
+                        createTone(120));
+
+            for (Codec ilbc : new Codec[] { Codec.ILBC_20, Codec.ILBC_30 })
+            {
+                Channel channel = transcoder.openChannel(Codec.G729, ilbc);
+                byte[] expected = process(transcoder, channel, g729);
+
+                // The states of the codecs of the closed channel are pooled
+                // and reset.
+                transcoder.closeChannel(channel);
+                channel = transcoder.openChannel(Codec.G729, ilbc);
+                assertArrayEquals(
+                        expected,
+                        process(transcoder, channel, g729));
+                assertArrayEquals(
+                        expected,
+                        process(
+                                fresh,
+                                fresh.openChannel(Codec.G729, ilbc),
+                                g729));
+                transcoder.closeChannel(channel);
+            }
+        }
+        finally
+        {
+            transcoder.close();
+            fresh.close();
+        }
+    }
+
+    /**
+     * Processes batches of linear PCM channels of all sizes up to 100 on up
+     * to 12 threads and verifies that each channel is processed exactly once.
+     */
+    @Test(timeout = 60000)
+    public void testUnevenBatches()
+        throws InterruptedException
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        try
+        {
+            for (int parallelism = 1; parallelism <= 12; parallelism++)
+            {
+                BatchTranscoder transcoder
+                    = new BatchTranscoder(executor, parallelism);
+                Channel[] channels = new Channel[100];
+
+                for (int i = 0; i < channels.length; i++)
+                {
+                    channels[i]
+                        = transcoder.openChannel(Codec.LINEAR, Codec.LINEAR);
+                }
+                for (int count = 0; count <= channels.length; count++)
+                {
+                    for (int i = 0; i < channels.length; i++)
+                    {
+                        channels[i].setInput(
+                                new byte[] { (byte) i, (byte) count },
+                                0,
+                                2);
+                        channels[i].setOutput(new byte[] { -1, -1 }, 0);
+                    }
+
+                    transcoder.process(channels, count);
+
+                    for (int i = 0; i < channels.length; i++)
+                    {
+                        Channel channel = channels[i];
+
+                        assertNull(channel.getError());
+                        if (i < count)
+                        {
+                            assertEquals(2, channel.getOutputLength());
+                            assertEquals(
+                                    (byte) i,
+                                    channel.getOutput()[0]);
+                            assertEquals(
+                                    (byte) count,
+                                    channel.getOutput()[1]);
+                        }
+                        else
+                        {
+                            assertEquals(-1, channel.getOutput()[0]);
+                            // Drop the input which was not processed.
+                            channel.setInput(null, 0, 0);
+                        }
+                    }
+                }
+                transcoder.close();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
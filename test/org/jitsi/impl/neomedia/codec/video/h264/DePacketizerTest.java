@@ -0,0 +1,147 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.codec.video.h264;
+
+import java.util.concurrent.*;
+
+import javax.media.*;
+
+import org.jitsi.service.neomedia.control.*;
+import org.junit.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the requests for key frames of {@link DePacketizer} upon damaged
+ * access units.
+ */
+@RunWith(JUnit4.class)
+public class DePacketizerTest
+{
+    /**
+     * The payload of an RTP packet which carries a (complete) coded slice of
+     * an IDR picture as a Single NAL Unit Packet.
+     */
+    private static final byte[] IDR
+        = { 0x65, (byte) 0x88, (byte) 0x84, 0x00, 0x33, (byte) 0xFF };
+
+    /**
+     * The <tt>DePacketizer</tt> under test.
+     */
+    private DePacketizer dePacketizer;
+
+    /**
+     * The number of key frames requested by {@link #dePacketizer} which have
+     * not been awaited yet.
+     */
+    private final Semaphore keyFrameRequests = new Semaphore(0);
+
+    /**
+     * The RTP sequence number of the next packet to be processed.
+     */
+    private long sequenceNumber;
+
+    /**
+     * Determines whether {@link #dePacketizer} requests a key frame within a
+     * specific time.
+     */
+    private boolean awaitKeyFrameRequest(long timeout)
+        throws InterruptedException
+    {
+        return keyFrameRequests.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Has {@link #dePacketizer} process an RTP packet with a specific payload
+     * and with its marker bit set.
+     */
+    private void process(byte... payload)
+    {
+        Buffer inBuffer = new Buffer();
+
+        inBuffer.setData(payload.clone());
+        inBuffer.setOffset(0);
+        inBuffer.setLength(payload.length);
+        inBuffer.setSequenceNumber(sequenceNumber++);
+        inBuffer.setFlags(Buffer.FLAG_RTP_MARKER);
+        dePacketizer.doProcess(inBuffer, new Buffer());
+    }
+
+    @Before
+    public void setUp()
+        throws InterruptedException
+    {
+        KeyFrameControl keyFrameControl = new KeyFrameControlAdapter();
+
+        keyFrameControl.addKeyFrameRequester(
+                -1,
+                new KeyFrameControl.KeyFrameRequester()
+                {
+                    @Override
+                    public boolean requestKeyFrame()
+                    {
+                        keyFrameRequests.release();
+                        return true;
+                    }
+                });
+
+        dePacketizer = new DePacketizer();
+        dePacketizer.setKeyFrameControl(keyFrameControl);
+
+        // A complete IDR picture satisfies the need for a key frame.
+        process(IDR);
+        assertFalse(awaitKeyFrameRequest(500));
+    }
+
+    @After
+    public void tearDown()
+    {
+        dePacketizer.doClose();
+    }
+
+    @Test
+    public void testMalformedSTAPA()
+        throws InterruptedException
+    {
+        // The size of the aggregated NAL unit exceeds the payload.
+        process((byte) 0x18, (byte) 0x00, (byte) 0x10, (byte) 0x65);
+        assertTrue(awaitKeyFrameRequest(5000));
+    }
+
+    @Test
+    public void testTruncatedFUA()
+        throws InterruptedException
+    {
+        // An FU-A without a payload after its FU header.
+        process((byte) 0x7C, (byte) 0x85);
+        assertTrue(awaitKeyFrameRequest(5000));
+    }
+
+    @Test
+    public void testFUAWithoutStart()
+        throws InterruptedException
+    {
+        // An FU-A with its End bit but without a preceding Start bit.
+        process((byte) 0x7C, (byte) 0x45, (byte) 0x12, (byte) 0x34);
+        assertTrue(awaitKeyFrameRequest(5000));
+
+        // The key frame is requested until a complete IDR picture.
+        process(IDR);
+        assertFalse(awaitKeyFrameRequest(500));
+    }
+}
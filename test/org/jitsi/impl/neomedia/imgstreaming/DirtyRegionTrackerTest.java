@@ -0,0 +1,135 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.impl.neomedia.imgstreaming;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Basic test for {@link DirtyRegionTracker} class with synthetic screens.
+ */
+@RunWith(JUnit4.class)
+public class DirtyRegionTrackerTest
+{
+    /**
+     * Creates a synthetic screen with a gradient.
+     *
+     * @param type the type of the <tt>BufferedImage</tt> to create
+     * @return a new <tt>BufferedImage</tt> of size 100x70
+     */
+    private static BufferedImage createScreen(int type)
+    {
+        BufferedImage image = new BufferedImage(100, 70, type);
+
+        for (int y = 0; y < image.getHeight(); y++)
+            for (int x = 0; x < image.getWidth(); x++)
+                image.setRGB(x, y, 0xFF000000 | (x << 16) | (y << 8) | x);
+        return image;
+    }
+
+    @Test
+    public void testDirtyTiles()
+    {
+        DirtyRegionTracker tracker = new DirtyRegionTracker(100, 70, 32);
+        BufferedImage screen = createScreen(BufferedImage.TYPE_INT_RGB);
+
+        // The first frame has changed as a whole.
+        assertEquals(12, tracker.getTileCount());
+        assertEquals(12, tracker.update(screen));
+        assertEquals(new Rectangle(0, 0, 100, 70), tracker.getDirtyBounds());
+
+        // An unchanged frame is to be skipped.
+        assertEquals(0, tracker.update(screen));
+        assertNull(tracker.getDirtyBounds());
+
+        screen.setRGB(40, 10, 0xFFFFFFFF);
+        screen.setRGB(99, 69, 0xFFFFFFFF);
+        assertEquals(2, tracker.update(screen));
+        assertTrue(tracker.isDirty(1, 0));
+        assertTrue(tracker.isDirty(3, 2));
+        assertFalse(tracker.isDirty(2, 0));
+
+        List<Rectangle> regions = tracker.getDirtyRegions();
+
+        assertEquals(2, regions.size());
+        assertEquals(new Rectangle(32, 0, 32, 32), regions.get(0));
+        // The tiles at the edges are clipped to the frame.
+        assertEquals(new Rectangle(96, 64, 4, 6), regions.get(1));
+    }
+
+    @Test
+    public void testWrite()
+    {
+        DirtyRegionTracker tracker = new DirtyRegionTracker(100, 70, 32);
+        BufferedImage screen = createScreen(BufferedImage.TYPE_INT_RGB);
+
+        tracker.update(screen);
+
+        byte[] output = tracker.write(null, true);
+
+        assertEquals(100 * 70 * 4, output.length);
+
+        screen.setRGB(50, 50, 0xFF123456);
+        tracker.update(screen);
+        assertSame(output, tracker.write(output, true));
+
+        // Only the dirty tiles have been written but the whole frame is up to
+        // date.
+        int off = (50 * 100 + 50) * 4;
+
+        assertEquals((byte) 0xFF, output[off]);
+        assertEquals((byte) 0x12, output[off + 1]);
+        assertEquals((byte) 0x34, output[off + 2]);
+        assertEquals((byte) 0x56, output[off + 3]);
+        assertArrayEquals(tracker.write(null, false), output);
+    }
+
+    @Test
+    public void testImageTypes()
+    {
+        DirtyRegionTracker tracker = new DirtyRegionTracker(100, 70);
+
+        tracker.update(createScreen(BufferedImage.TYPE_INT_RGB));
+
+        byte[] rgb = tracker.write(null, false);
+
+        // The pixels of the other types are read through getRGB.
+        assertEquals(
+                tracker.getTileCount(),
+                tracker.update(createScreen(BufferedImage.TYPE_3BYTE_BGR)));
+        assertArrayEquals(rgb, tracker.write(null, false));
+        assertEquals(
+                0,
+                tracker.update(createScreen(BufferedImage.TYPE_3BYTE_BGR)));
+
+        // The raw bytes of the native grabber are tracked as well.
+        DirtyRegionTracker bytes = new DirtyRegionTracker(100, 70);
+
+        bytes.update(rgb, 0);
+        assertEquals(0, bytes.update(rgb.clone(), 0));
+        rgb[7] ^= 1;
+        assertEquals(1, bytes.update(rgb, 0));
+        assertTrue(bytes.isDirty(0, 0));
+        assertArrayEquals(rgb, bytes.write(null, false));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util;
+
+import org.junit.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Basic test for {@link SPSCQueue} class.
+ */
+@RunWith(JUnit4.class)
+public class SPSCQueueTest
+{
+    @Test
+    public void testBounded()
+    {
+        SPSCQueue<Integer> queue = new SPSCQueue<>(3);
+
+        assertEquals(4, queue.capacity());
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++)
+            assertTrue(queue.offer(i));
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        assertEquals(Integer.valueOf(0), queue.peek());
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertTrue(queue.offer(4));
+        for (int i = 1; i < 5; i++)
+            assertEquals(Integer.valueOf(i), queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testProducerConsumer()
+        throws InterruptedException
+    {
+        final SPSCQueue<Integer> queue = new SPSCQueue<>(8);
+        final int count = 100000;
+        Thread producer
+            = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < count;)
+                    {
+                        if (queue.offer(i))
+                            i++;
+                        else
+                            Thread.yield();
+                    }
+                }
+            };
+
+        producer.start();
+        for (int i = 0; i < count; i++)
+        {
+            Integer e;
+
+            while ((e = queue.poll()) == null)
+                queue.await(1000);
+            assertEquals(i, e.intValue());
+        }
+        producer.join();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testAwait()
+    {
+        SPSCQueue<Integer> queue = new SPSCQueue<>(1);
+        long start = System.currentTimeMillis();
+
+        queue.await(50);
+        assertTrue(System.currentTimeMillis() - start >= 40);
+
+        // A wake-up before the consumer blocks is not lost.
+        queue.wakeUp();
+        start = System.currentTimeMillis();
+        queue.await(0);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+}
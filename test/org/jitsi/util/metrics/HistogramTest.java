@@ -0,0 +1,99 @@
+/*
+ * Copyright @ 2015 Atlassian Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.util.metrics;
+
+import org.junit.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Basic test for {@link Histogram} and {@link StripedCounter} classes.
+ */
+@RunWith(JUnit4.class)
+public class HistogramTest
+{
+    @Test
+    public void testPercentiles()
+    {
+        Histogram histogram = new Histogram(10, 20, 50, 100);
+
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(5050, snapshot.getSum());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(10, snapshot.getCount(0));
+        assertEquals(30, snapshot.getCount(2));
+        assertEquals(0, snapshot.getCount(4));
+        assertEquals(10, snapshot.getPercentile(10));
+        assertEquals(50, snapshot.getPercentile(50));
+        assertEquals(100, snapshot.getPercentile(51));
+        assertEquals(100, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void testAggregation()
+    {
+        Histogram a = new Histogram(10, 20, 50, 100);
+        Histogram b = new Histogram(10, 20, 50, 100);
+
+        a.record(5);
+        b.record(15);
+        b.record(1000);
+
+        Histogram.Snapshot snapshot = new Histogram.Snapshot(10, 20, 50, 100);
+
+        a.addTo(snapshot);
+        b.addTo(snapshot);
+        assertEquals(3, snapshot.getCount());
+        assertEquals(1, snapshot.getCount(4));
+        assertEquals(20, snapshot.getPercentile(60));
+        // The overflow bucket is bounded by the maximum value recorded.
+        assertEquals(1000, snapshot.getPercentile(99));
+    }
+
+    @Test
+    public void testStripedCounter()
+        throws InterruptedException
+    {
+        final StripedCounter counter = new StripedCounter(4);
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i]
+                = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (int j = 0; j < 10000; j++)
+                            counter.increment();
+                    }
+                };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40000, counter.sum());
+    }
+}